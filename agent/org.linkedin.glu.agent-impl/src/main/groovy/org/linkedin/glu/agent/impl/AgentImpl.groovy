@@ -80,6 +80,8 @@ def class AgentImpl implements Agent, AgentContext, Shutdownable
    * <ul>
    * <li><code>restartSoftware</code>: the flag indicates whether the software that were running
    * before the agent was shutdown should be started again (default to <code>false</code>)</li>
+   * <li><code>restoreParallelism</code>: how many scripts get restored concurrently on boot
+   * (only when <code>storage</code> is provided, default to the number of processors)</li>
    * </ul>
    */
   void boot(args)
@@ -105,7 +107,8 @@ def class AgentImpl implements Agent, AgentContext, Shutdownable
       def f = new CommandGluScriptFactoryFactory(ioStorage: _commandManager.ioStorage)
       _scriptManager.scriptFactoryFactory.chain(f)
       _scriptManager = new StateKeeperScriptManager(scriptManager: _scriptManager,
-                                                    storage: storage)
+                                                    storage: storage,
+                                                    restoreParallelism: args.restoreParallelism)
       _commandManager.scriptManager = _scriptManager
     }
     else
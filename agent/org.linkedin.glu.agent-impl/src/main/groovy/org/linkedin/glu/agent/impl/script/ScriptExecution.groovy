@@ -17,6 +17,7 @@
 package org.linkedin.glu.agent.impl.script
 
 import java.util.concurrent.ExecutionException
+import java.util.concurrent.Future
 import java.util.concurrent.TimeUnit
 import java.util.concurrent.TimeoutException
 import org.slf4j.Logger
@@ -46,6 +47,11 @@ class ScriptExecution implements Startable, Shutdownable
   Timespan expiryDuration = Timespan.parse('1m')
   int expiryMaxElements = 50
 
+  /**
+   * When set, the executions run on the shared scheduler instead of a dedicated thread
+   */
+  ScriptExecutionScheduler scheduler
+
   /**
    * The timeline is sorted by futureExecutionTime first then queueing order
    * ({@link org.linkedin.glu.groovy.utils.concurrent.FutureExecutionImpl#compareTo} method)
@@ -78,6 +84,11 @@ class ScriptExecution implements Startable, Shutdownable
   private int _counter = 0
   private volatile Thread _thread
 
+  // when using the shared scheduler
+  private boolean _started = false
+  private boolean _running = false
+  private Future _wakeUp
+
   ScriptExecution(def source, String name, Logger log)
   {
     _source = source
@@ -115,9 +126,19 @@ class ScriptExecution implements Startable, Shutdownable
     {
       if(!_shutdown)
       {
-        _thread = Thread.start(_name, executeFutureTasks)
-        if(_log.isDebugEnabled())
-          _log.debug "Starting thread ${_thread}"
+        if(scheduler)
+        {
+          _started = true
+          wakeUp()
+          if(_log.isDebugEnabled())
+            _log.debug "Starting with shared scheduler"
+        }
+        else
+        {
+          _thread = Thread.start(_name, executeFutureTasks)
+          if(_log.isDebugEnabled())
+            _log.debug "Starting thread ${_thread}"
+        }
       }
     }
   }
@@ -130,6 +151,7 @@ class ScriptExecution implements Startable, Shutdownable
       {
         _shutdown = true
         lock.notifyAll()
+        wakeUp()
       }
     }
   }
@@ -152,6 +174,12 @@ class ScriptExecution implements Startable, Shutdownable
     if(!_shutdown)
       throw new IllegalStateException('call shutdown first')
 
+    if(scheduler)
+    {
+      waitForNoRunningExecution(null)
+      return
+    }
+
     if(_log.isDebugEnabled())
       _log.debug "Waiting for thread ${_thread} to terminate..."
 
@@ -168,6 +196,12 @@ class ScriptExecution implements Startable, Shutdownable
 
     timeout = ClockUtils.toTimespan(timeout)
 
+    if(scheduler)
+    {
+      waitForNoRunningExecution(timeout)
+      return
+    }
+
     if(_log.isDebugEnabled())
       _log.debug "Waiting for thread ${_thread} to terminate no longer than ${timeout}..."
 
@@ -191,6 +225,32 @@ class ScriptExecution implements Startable, Shutdownable
       _log.debug "Thread ${_thread} terminated."
   }
 
+  /**
+   * When using the shared scheduler, waits for the execution currently running (if any) to
+   * complete (same semantic as <code>Thread.join</code>: a timeout of 0 means forever).
+   */
+  private void waitForNoRunningExecution(Timespan timeout)
+  {
+    long timeoutInMilliseconds = timeout?.durationInMilliseconds ?: 0L
+    long endTime = System.currentTimeMillis() + timeoutInMilliseconds
+
+    synchronized(lock)
+    {
+      while(_running)
+      {
+        if(timeoutInMilliseconds == 0L)
+          lock.wait()
+        else
+        {
+          long timeToWait = endTime - System.currentTimeMillis()
+          if(timeToWait <= 0)
+            throw new TimeoutException()
+          lock.wait(timeToWait)
+        }
+      }
+    }
+  }
+
    /**
     * @return currently running execution 
     */
@@ -360,6 +420,7 @@ class ScriptExecution implements Startable, Shutdownable
       if(futureExecution instanceof TimerExecution)
         _timers[futureExecution.timer] = futureExecution
       lock.notifyAll()
+      wakeUp()
 
       if(_log.isDebugEnabled())
       {
@@ -583,37 +644,106 @@ class ScriptExecution implements Startable, Shutdownable
       }
 
       if(_current)
+        runCurrent()
+    }
+    if(_log.isDebugEnabled())
+    {
+      _log.debug("executeFutureTasks: exiting thread")
+    }
+  }
+
+  /**
+   * Runs the current execution then records it as a past execution (and reschedules it if it
+   * is a timer)
+   */
+  private void runCurrent()
+  {
+    if(_log.isDebugEnabled())
+    {
+      _log.debug("executeFutureTasks: running ${_current}")
+    }
+    _current.run()
+    if(_log.isDebugEnabled())
+    {
+      _log.debug("executeFutureTasks: completed ${_current}")
+    }
+    synchronized(lock)
+    {
+      _pastExecutions[_current.id] = _current
+      if(_current instanceof TimerExecution)
       {
-        if(_log.isDebugEnabled())
+        // we make sure that it has not been cancelled
+        if(_timers[_current.timer])
         {
-          _log.debug("executeFutureTasks: running ${_current}")
-        }
-        _current.run()
-        if(_log.isDebugEnabled())
-        {
-          _log.debug("executeFutureTasks: completed ${_current}")
-        }
-        synchronized(lock)
-        {
-          _pastExecutions[_current.id] = _current
-          if(_current instanceof TimerExecution)
-          {
-            // we make sure that it has not been cancelled
-            if(_timers[_current.timer])
-            {
-              scheduleTimer(_current.timer,
-                            null,
-                            _current.frequency,
-                            _current.onCancelPostCallback)
-            }
-          }
-          _current = null
+          scheduleTimer(_current.timer,
+                        null,
+                        _current.frequency,
+                        _current.onCancelPostCallback)
         }
       }
+      _current = null
     }
-    if(_log.isDebugEnabled())
+  }
+
+  /**
+   * When using the shared scheduler: (re)schedules the next run according to the timeline (or the
+   * heartbeat). Does nothing while an execution is running as it will be called on completion.
+   */
+  private void wakeUp()
+  {
+    synchronized(lock)
     {
-      _log.debug("executeFutureTasks: exiting thread")
+      if(!scheduler || !_started || _running)
+        return
+
+      _wakeUp?.cancel(false)
+      _wakeUp = null
+
+      if(!_shutdown)
+        _wakeUp = scheduler.schedule(executeNextFutureTask as Runnable, waitTime)
+    }
+  }
+
+  /**
+   * Equivalent of one iteration of {@link #executeFutureTasks} when using the shared scheduler:
+   * runs the first execution of the timeline if it is due (in the scheduler thread which is named
+   * after this script execution while running it) or simply waits some more.
+   */
+  private executeNextFutureTask = {
+    synchronized(lock)
+    {
+      if(_shutdown || _running)
+        return
+
+      if(waitTime > 0)
+      {
+        removeOldExecutions()
+        wakeUp()
+        return
+      }
+
+      _current = _timeline.first()
+      _timeline.remove(_current)
+      _futureExecutions.remove(_current.id)
+      _running = true
+    }
+
+    Thread thread = Thread.currentThread()
+    String threadName = thread.name
+    thread.name = _name
+    try
+    {
+      runCurrent()
+    }
+    finally
+    {
+      thread.name = threadName
+      synchronized(lock)
+      {
+        _running = false
+        lock.notifyAll()
+        wakeUp()
+      }
     }
   }
 
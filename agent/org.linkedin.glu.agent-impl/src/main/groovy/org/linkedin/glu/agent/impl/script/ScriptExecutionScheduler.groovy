@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2013 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.linkedin.glu.agent.impl.script
+
+import org.linkedin.glu.utils.concurrent.ExecutorServices
+import org.linkedin.util.clock.ClockUtils
+import org.linkedin.util.clock.Timespan
+import org.linkedin.util.lifecycle.Shutdownable
+import org.slf4j.Logger
+import org.slf4j.LoggerFactory
+
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.ThreadFactory
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.TimeoutException
+
+/**
+ * Shared engine for all the script executions (instead of one thread per mount point): a single
+ * timer thread keeps track of when each script execution needs to wake up and the executions
+ * run on a shared executor (a virtual thread per execution when the jvm supports it). Each
+ * {@link ScriptExecution} still runs its executions one at a time.
+ *
+ * @author yan@pongasoft.com */
+class ScriptExecutionScheduler implements Shutdownable
+{
+  public static final String MODULE = ScriptExecutionScheduler.class.getName();
+  public static final Logger log = LoggerFactory.getLogger(MODULE);
+
+  private final ScheduledExecutorService _timer
+  private final ExecutorService _executor
+
+  /**
+   * Constructor
+   */
+  ScriptExecutionScheduler()
+  {
+    this(ExecutorServices.newVirtualThreadPerTaskExecutor())
+  }
+
+  /**
+   * Constructor
+   */
+  ScriptExecutionScheduler(ExecutorService executor)
+  {
+    _executor = executor
+    _timer = Executors.newSingleThreadScheduledExecutor({ Runnable r ->
+      Thread thread = new Thread(r, "ScriptExecutionScheduler")
+      thread.daemon = true
+      return thread
+    } as ThreadFactory)
+  }
+
+  /**
+   * Runs the task on the shared executor once the delay has elapsed (right away if
+   * <code>delayInMilliseconds &lt;= 0</code>).
+   *
+   * @return a future to cancel the task (only effective if it has not started yet)
+   */
+  Future schedule(Runnable task, long delayInMilliseconds)
+  {
+    if(delayInMilliseconds <= 0)
+      return _executor.submit(task)
+
+    _timer.schedule({ _executor.execute(task) } as Runnable,
+                    delayInMilliseconds,
+                    TimeUnit.MILLISECONDS)
+  }
+
+  @Override
+  void shutdown()
+  {
+    log.info "Shutting down script execution scheduler..."
+    _timer.shutdownNow()
+    _executor.shutdown()
+  }
+
+  @Override
+  void waitForShutdown()
+  {
+    waitForShutdown(null)
+  }
+
+  @Override
+  void waitForShutdown(Object timeout)
+  {
+    if(!_executor.isShutdown())
+      throw new IllegalStateException('call shutdown first')
+
+    Timespan ts = ClockUtils.toTimespan(timeout)
+
+    if(ts == null)
+    {
+      while(!_executor.awaitTermination(1, TimeUnit.MINUTES))
+      {
+        log.info "Waiting for the script executions to complete..."
+      }
+    }
+    else
+    {
+      if(!_executor.awaitTermination(ts.durationInMilliseconds, TimeUnit.MILLISECONDS))
+        throw new TimeoutException()
+    }
+
+    log.info "Script execution scheduler shut down."
+  }
+}
@@ -59,6 +59,12 @@ def class ScriptManagerImpl implements ScriptManager
   @Initializable
   ScriptFactoryFactory scriptFactoryFactory = new ScriptFactoryFactoryImpl()
 
+  /**
+   * When set, all the scripts share this scheduler (otherwise each script gets its own thread)
+   */
+  @Initializable
+  ScriptExecutionScheduler scriptExecutionScheduler
+
   private volatile boolean _shutdown = false
   Timespan scriptGracePeriod1 = Timespan.parse('1s')
   Timespan scriptGracePeriod2 = Timespan.parse('1m')
@@ -112,20 +118,28 @@ def class ScriptManagerImpl implements ScriptManager
    * Install scripts.
    *
    * @see Agent#installScript(Object) for details
+   *
+   * Note that the script itself is created (fetched and loaded) outside of the lock so that
+   * several scripts can be installed concurrently (ex: when restoring the scripts on boot).
    */
-  synchronized ScriptNode installScript(args)
+  ScriptNode installScript(args)
   {
     // handle mountPoint first
     def mountPoint = MountPoint.create(args.mountPoint)
     if(!mountPoint)
       throw new IllegalArgumentException('mountPoint is required')
 
-    // first we check if the script is already installed
-    if(_scripts[mountPoint])
-      throw new DuplicateMountPointException(mountPoint.path)
+    ScriptNode parentNode
+
+    synchronized(this)
+    {
+      // first we check if the script is already installed
+      if(_scripts[mountPoint])
+        throw new DuplicateMountPointException(mountPoint.path)
 
-    // now we locate the right node
-    ScriptNode parentNode = getScript(args.parent ?: MountPoint.ROOT)
+      // now we locate the right node
+      parentNode = getScript(args.parent ?: MountPoint.ROOT)
+    }
 
     def initParameters = args.initParameters ?: [:]
 
@@ -157,14 +171,33 @@ def class ScriptManagerImpl implements ScriptManager
       throw new ScriptException(mountPoint.path, e)
     }
 
-    ScriptNode childNode  = parentNode.addChild(mountPoint,
-                                                initParameters,
-                                                childScript) {
-        
-      createNode(scriptConfig, sd, it)
-    }
+    ScriptNode childNode
 
-    addScriptNode(childNode)
+    synchronized(this)
+    {
+      // installed concurrently while the script was being created
+      if(_scripts[mountPoint])
+      {
+        GroovyLangUtils.noException { sd.scriptFactory.destroyScript(scriptConfig) }
+        throw new DuplicateMountPointException(mountPoint.path)
+      }
+
+      // parent uninstalled (or replaced) concurrently while the script was being created
+      if(!_scripts[parentNode.mountPoint].is(parentNode))
+      {
+        GroovyLangUtils.noException { sd.scriptFactory.destroyScript(scriptConfig) }
+        throw new NoSuchMountPointException(parentNode.mountPoint.path)
+      }
+
+      childNode = parentNode.addChild(mountPoint,
+                                      initParameters,
+                                      childScript) {
+
+        createNode(scriptConfig, sd, it)
+      }
+
+      addScriptNode(childNode)
+    }
 
     childNode.log.info("installScript(${args})")
 
@@ -226,7 +259,9 @@ def class ScriptManagerImpl implements ScriptManager
                                    scriptProperties: scriptProperties,
                                    scriptClosures: scriptClosures)
 
-    return new ScriptNode(agentContext, sd, stateMachine, script, log)
+    def node = new ScriptNode(agentContext, sd, stateMachine, script, log)
+    node.scriptExecution.scheduler = scriptExecutionScheduler
+    return node
   }
   
   /**
@@ -21,6 +21,16 @@ package org.linkedin.glu.agent.impl.script
 import org.linkedin.glu.agent.api.MountPoint
 import org.linkedin.glu.agent.impl.storage.Storage
 import org.linkedin.groovy.util.lang.GroovyLangUtils
+import org.linkedin.util.clock.Chronos
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executor
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.ThreadFactory
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
 
 /**
  * The purpose of this class is to keep track and record the state of the script manager
@@ -36,61 +46,199 @@ def class StateKeeperScriptManager implements ScriptManager
   private final @Delegate ScriptManager _scriptManager
   private final Storage _storage
 
+  /**
+   * How many scripts get restored concurrently (1 means restored one after the other in the
+   * calling thread)
+   */
+  int restoreParallelism = Runtime.runtime.availableProcessors()
+
+  /**
+   * Breakdown (in ms) of the last call to {@link #restoreScripts()}
+   */
+  private volatile Map<String, Object> _restoreTimings = [:]
+
   StateKeeperScriptManager(args)
   {
     _scriptManager = args.scriptManager
     _storage = args.storage
+    if(args.restoreParallelism != null)
+      restoreParallelism = args.restoreParallelism as int
   }
 
+  Map<String, Object> getRestoreTimings()
+  {
+    return _restoreTimings
+  }
+
+  /**
+   * Restores the scripts: the states are loaded concurrently, then each script is restored
+   * after its parent (independent subtrees are restored concurrently).
+   */
   void restoreScripts()
   {
-    def states = [:]
+    Chronos chronos = new Chronos()
 
-    // we load all the states firsts
-    _storage.mountPoints.each { MountPoint mp ->
-      try
-      {
-        states[mp] = _storage.loadState(mp)
-      }
-      catch(Exception e)
-      {
-        log.warn("Error while restoring state for ${mp} (ignored)", e)
-      }
+    ExecutorService executorService = null
+    Executor executor = { Runnable r -> r.run() } as Executor
+    if(restoreParallelism > 1)
+    {
+      def threadNumber = new AtomicInteger(0)
+      executorService = Executors.newFixedThreadPool(restoreParallelism, { Runnable r ->
+        Thread thread = new Thread(r, "StateKeeperScriptManager-restore-${threadNumber.incrementAndGet()}")
+        thread.daemon = true
+        return thread
+      } as ThreadFactory)
+      executor = executorService
     }
 
-    // then we restore each one
-    states.values().each { state ->
-      restoreScript(states, state)
+    try
+    {
+      def states = loadStates(executor)
+      long loadStatesTime = chronos.tick()
+
+      def timings = restoreScriptsParentFirst(executor, states)
+      timings.loadStates = loadStatesTime
+      timings.restoreScripts = chronos.tick()
+      timings.total = chronos.totalTime
+      timings.scriptsCount = states.size()
+      timings.parallelism = restoreParallelism
+
+      _restoreTimings = timings
+
+      log.info "Restored ${states.size()} script(s) in ${timings.total}ms ${timings}"
+    }
+    finally
+    {
+      executorService?.shutdown()
     }
   }
 
   /**
-   * Restores the script making sure to restore its parent first
+   * Loads all the states (concurrently)
    */
-  private void restoreScript(states, state)
+  private Map<MountPoint, Object> loadStates(Executor executor)
   {
-    // already restored
-    if(state == null)
-      return
+    def states = new ConcurrentHashMap<MountPoint, Object>()
 
-    def mp = state.scriptDefinition.mountPoint
-    def parent = state.scriptDefinition.parent
+    def mountPoints = _storage.mountPoints
+    def latch = new CountDownLatch(mountPoints.size())
 
-    if(parent)
+    mountPoints.each { MountPoint mp ->
+      executor.execute {
+        try
+        {
+          def state = _storage.loadState(mp)
+          if(state != null)
+            states[mp] = state
+        }
+        catch(Exception e)
+        {
+          log.warn("Error while restoring state for ${mp} (ignored)", e)
+        }
+        finally
+        {
+          latch.countDown()
+        }
+      }
+    }
+
+    latch.await()
+
+    return states
+  }
+
+  /**
+   * Restores each script making sure to restore its parent first
+   *
+   * @return the timings
+   */
+  private Map<String, Object> restoreScriptsParentFirst(Executor executor, Map<MountPoint, Object> states)
+  {
+    // parent => children (a script whose parent is not part of the states is a top level one)
+    Map<MountPoint, Collection> children = [:]
+    def topLevel = []
+    states.values().each { state ->
+      def parent = state.scriptDefinition.parent
+      if(parent && states.containsKey(parent))
+      {
+        def list = children[parent]
+        if(list == null)
+        {
+          list = []
+          children[parent] = list
+        }
+        list << state
+      }
+      else
+        topLevel << state
+    }
+
+    // only the states reachable from the top level ones can be restored
+    int reachableCount = 0
+    def toVisit = new LinkedList(topLevel)
+    while(toVisit)
     {
-      // restore parent first
-      restoreScript(states, states[parent])
+      def state = toVisit.removeFirst()
+      reachableCount++
+      children[state.scriptDefinition.mountPoint]?.each { toVisit << it }
+    }
+
+    if(reachableCount != states.size())
+      log.warn("Detected ${states.size() - reachableCount} state(s) with a cycle in their parent (ignored)")
+
+    def installScriptsTime = new AtomicLong(0)
+    def restoreStatesTime = new AtomicLong(0)
+    def slowest = [mountPoint: null, time: -1L]
+
+    def latch = new CountDownLatch(reachableCount)
+
+    Closure restoreSubtree
+    restoreSubtree = { state ->
+      executor.execute {
+        try
+        {
+          def times = restoreScript(state)
+          installScriptsTime.addAndGet(times[0])
+          restoreStatesTime.addAndGet(times[1])
+          synchronized(slowest)
+          {
+            if(times[0] + times[1] > slowest.time)
+            {
+              slowest.mountPoint = state.scriptDefinition.mountPoint
+              slowest.time = times[0] + times[1]
+            }
+          }
+        }
+        finally
+        {
+          // children are restored once their parent is
+          children[state.scriptDefinition.mountPoint]?.each { restoreSubtree(it) }
+          latch.countDown()
+        }
+      }
     }
 
-    restoreScript(state)
-    
-    states[mp] = null
+    topLevel.each { restoreSubtree(it) }
+
+    latch.await()
+
+    [
+      installScripts: installScriptsTime.get(),
+      restoreStates: restoreStatesTime.get(),
+      slowestMountPoint: slowest.mountPoint,
+      slowestTime: slowest.time
+    ]
   }
 
-  private void restoreScript(state)
+  /**
+   * @return the time (in ms) spent installing the script and restoring its state
+   */
+  private long[] restoreScript(state)
   {
     log.info "Restoring state: ${state}"
+    long[] times = [0L, 0L]
     GroovyLangUtils.noExceptionWithMessage("Invalid state detected: ${state}") {
+      Chronos chronos = new Chronos()
       ScriptNode node
       if(state.scriptDefinition.mountPoint == MountPoint.ROOT)
       {
@@ -100,6 +248,7 @@ def class StateKeeperScriptManager implements ScriptManager
       {
         node = _scriptManager.installScript(state.scriptDefinition)
       }
+      times[0] = chronos.tick()
 
       node.scriptState.restore(state)
 
@@ -108,7 +257,9 @@ def class StateKeeperScriptManager implements ScriptManager
         node.scheduleTimer(it)
       }
       addListener(node)
+      times[1] = chronos.tick()
     }
+    return times
   }
 
   public ScriptNode installRootScript(actionArgs)
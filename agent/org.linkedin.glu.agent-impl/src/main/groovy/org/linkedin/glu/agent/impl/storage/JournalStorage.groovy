@@ -0,0 +1,473 @@
+/*
+ * Copyright (c) 2013 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.linkedin.glu.agent.impl.storage
+
+import org.linkedin.glu.agent.api.MountPoint
+import org.linkedin.glu.agent.api.NoSuchMountPointException
+import org.linkedin.groovy.util.lang.GroovyLangUtils
+import org.slf4j.Logger
+import org.slf4j.LoggerFactory
+
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+import java.util.concurrent.ConcurrentHashMap
+import java.util.zip.CRC32
+
+/**
+ * Store the states in a single append-only journal file: each change (store or clear) is
+ * appended as a record (length, crc, type, mount point, state encoded with {@link StateCodec})
+ * and the latest (encoded) state of each mount point is kept in memory so reads never touch
+ * the disk. The journal is compacted (rewritten with only the live states then atomically
+ * renamed) once it contains more than {@link #compactionThreshold} obsolete records. On boot,
+ * the journal is replayed and an incomplete or corrupted tail (ex: agent killed in the middle
+ * of a write) is truncated. The first time the journal is created, the states found in the
+ * legacy (one file per mount point) storage are imported (the legacy files are left untouched)
+ * and they can be exported back with {@link #exportLegacyStates()} to roll back the migration.
+ * The agent properties are delegated to the legacy storage. This class is thread safe: reads do not lock
+ * and writes only lock for the duration of the append.
+ *
+ * @author yan@pongasoft.com  */
+class JournalStorage extends FilteredStorage
+{
+  public static final String MODULE = JournalStorage.class.getName();
+  public static final Logger log = LoggerFactory.getLogger(MODULE);
+
+  public static final int MAGIC = 0x474c554a // GLUJ
+  public static final int VERSION = 1
+
+  private static final int STORE = 1
+  private static final int CLEAR = 2
+  private static final int CLEAR_ALL = 3
+
+  private static final int HEADER_SIZE = 5
+
+  /**
+   * Number of obsolete records in the journal which triggers a compaction
+   */
+  int compactionThreshold = 1000
+
+  private final File _journalFile
+  private final Map<MountPoint, byte[]> _states = new ConcurrentHashMap<MountPoint, byte[]>()
+
+  // orders the changes (in memory and in the journal)
+  private final Object _journalLock = new Object()
+
+  private DataOutputStream _journal
+  private volatile int _recordsCount = 0
+
+  /**
+   * Constructor
+   */
+  JournalStorage(File journalFile, FileSystemStorage legacyStorage)
+  {
+    super(legacyStorage)
+    _journalFile = journalFile
+  }
+
+  /**
+   * Replays the journal (or imports the legacy states the first time) and opens it for
+   * appending. Must be called before using the storage.
+   */
+  void open()
+  {
+    synchronized(_journalLock)
+    {
+      if(_journalFile.exists())
+        replay()
+      else
+        importLegacyStates()
+
+      // importing the legacy states already opens the journal
+      if(_journal == null)
+        openJournal()
+    }
+  }
+
+  void close()
+  {
+    synchronized(_journalLock)
+    {
+      _journal?.close()
+      _journal = null
+    }
+  }
+
+  File getJournalFile()
+  {
+    return _journalFile
+  }
+
+  int getRecordsCount()
+  {
+    return _recordsCount
+  }
+
+  @Override
+  void clearState(MountPoint mountPoint)
+  {
+    synchronized(_journalLock)
+    {
+      if(_states.remove(mountPoint) != null)
+        append(CLEAR, mountPoint, null)
+    }
+  }
+
+  @Override
+  void clearAllStates()
+  {
+    synchronized(_journalLock)
+    {
+      _states.clear()
+      append(CLEAR_ALL, null, null)
+    }
+  }
+
+  @Override
+  def getMountPoints()
+  {
+    return new ArrayList<MountPoint>(_states.keySet())
+  }
+
+  @Override
+  def loadState(MountPoint mountPoint)
+  {
+    byte[] encodedState = mountPoint != null ? _states[mountPoint] : null
+
+    def state = GroovyLangUtils.noException(mountPoint, null) {
+      encodedState != null ? StateCodec.decode(encodedState) : null
+    }
+
+    if(extractMountPointFromState(state) != mountPoint)
+    {
+      if(log.isDebugEnabled())
+        log.debug("mountPoint mismatch [ignored]: ${extractMountPointFromState(state)} != ${mountPoint}")
+      throw new NoSuchMountPointException(mountPoint?.path)
+    }
+
+    return state
+  }
+
+  @Override
+  void storeState(MountPoint mountPoint, state)
+  {
+    if(extractMountPointFromState(state) != mountPoint)
+      throw new IllegalArgumentException("mismatch mountPoint: ${mountPoint} != ${extractMountPointFromState(state)}")
+
+    // encoding happens outside the lock
+    byte[] encodedState = StateCodec.encode(state)
+
+    synchronized(_journalLock)
+    {
+      _states[mountPoint] = encodedState
+      append(STORE, mountPoint, encodedState)
+    }
+  }
+
+  /**
+   * Removes the states which cannot be decoded anymore and the (stale) command states
+   *
+   * @return the mount points removed
+   */
+  Collection<MountPoint> deleteInvalidStates()
+  {
+    getMountPoints().findAll { MountPoint mountPoint ->
+      def state = GroovyLangUtils.noException(mountPoint, null) { loadState(mountPoint) }
+
+      if(state == null)
+      {
+        log.warn("Detected invalid state for ${mountPoint}... deleted")
+        clearState(mountPoint)
+        return true
+      }
+
+      if(mountPoint.path.startsWith("/_/command/"))
+      {
+        log.warn("Detected stale command state... deleted ${mountPoint}")
+        clearState(mountPoint)
+        return true
+      }
+
+      return false
+    }
+  }
+
+  /**
+   * Rewrites the journal with only the live states: the new journal is fully written (and
+   * synced) to a temporary file which then atomically replaces the current one, so that the
+   * current journal stays valid (and in use) until the very last moment.
+   */
+  void compact()
+  {
+    synchronized(_journalLock)
+    {
+      File tempFile = new File(_journalFile.parentFile, "${_journalFile.name}.tmp")
+      try
+      {
+        _journalFile.parentFile?.mkdirs()
+        FileOutputStream fos = new FileOutputStream(tempFile)
+        try
+        {
+          def out = new DataOutputStream(new BufferedOutputStream(fos))
+          writeHeader(out)
+          _states.each { MountPoint mountPoint, byte[] encodedState ->
+            writeRecord(out, STORE, mountPoint, encodedState)
+          }
+          out.flush()
+          fos.getFD().sync()
+        }
+        finally
+        {
+          fos.close()
+        }
+
+        Files.move(tempFile.toPath(),
+                   _journalFile.toPath(),
+                   StandardCopyOption.REPLACE_EXISTING,
+                   StandardCopyOption.ATOMIC_MOVE)
+
+        _recordsCount = _states.size()
+      }
+      finally
+      {
+        // the handle is swapped (it points to the replaced journal if the move succeeded)
+        _journal?.close()
+        _journal = null
+        if(tempFile.exists())
+          tempFile.delete()
+        openJournal()
+      }
+    }
+  }
+
+  private MountPoint extractMountPointFromState(state)
+  {
+    state?.scriptDefinition?.mountPoint
+  }
+
+  /**
+   * Must be called while holding the lock
+   */
+  private void append(int type, MountPoint mountPoint, byte[] encodedState)
+  {
+    if(_journal == null)
+      throw new IllegalStateException("journal is not open: ${_journalFile}")
+
+    writeRecord(_journal, type, mountPoint, encodedState)
+    _journal.flush()
+    _recordsCount++
+
+    if(_recordsCount - _states.size() > compactionThreshold)
+      compact()
+  }
+
+  private void openJournal()
+  {
+    boolean newJournal = !_journalFile.exists()
+    _journalFile.parentFile?.mkdirs()
+    _journal =
+      new DataOutputStream(new BufferedOutputStream(new FileOutputStream(_journalFile, true)))
+    if(newJournal)
+    {
+      writeHeader(_journal)
+      _journal.flush()
+    }
+  }
+
+  private void replay()
+  {
+    long validLength = HEADER_SIZE
+    long fileLength = _journalFile.length()
+
+    new DataInputStream(new BufferedInputStream(new FileInputStream(_journalFile))).withStream { DataInputStream input ->
+      int magic = input.readInt()
+      int version = input.readUnsignedByte()
+      if(magic != MAGIC || version != VERSION)
+        throw new IOException("unsupported journal ${_journalFile} [${magic}/${version}]")
+
+      while(true)
+      {
+        int recordLength
+        try
+        {
+          recordLength = input.readInt()
+        }
+        catch(EOFException ignored)
+        {
+          break
+        }
+
+        // a garbage length (ex: partially written) is treated like an incomplete record
+        if(recordLength < 0 || recordLength > fileLength - validLength - 4 - 8)
+        {
+          log.warn("Detected invalid record length (${recordLength}) at the end of ${_journalFile}... truncated")
+          break
+        }
+
+        byte[] record
+        long crc
+        try
+        {
+          crc = input.readLong()
+          record = new byte[recordLength]
+          input.readFully(record)
+        }
+        catch(EOFException ignored)
+        {
+          log.warn("Detected incomplete record at the end of ${_journalFile}... truncated")
+          break
+        }
+
+        if(computeCRC(record) != crc)
+        {
+          log.warn("Detected corrupted record at the end of ${_journalFile}... truncated")
+          break
+        }
+
+        applyRecord(record)
+        _recordsCount++
+        validLength += 4 + 8 + recordLength
+      }
+    }
+
+    if(validLength < fileLength)
+    {
+      RandomAccessFile raf = new RandomAccessFile(_journalFile, 'rw')
+      try
+      {
+        raf.setLength(validLength)
+      }
+      finally
+      {
+        raf.close()
+      }
+    }
+
+    log.info("Loaded ${_states.size()} state(s) from ${_journalFile} [${_recordsCount} record(s)]")
+  }
+
+  private void applyRecord(byte[] record)
+  {
+    def input = new DataInputStream(new ByteArrayInputStream(record))
+    int type = input.readUnsignedByte()
+    switch(type)
+    {
+      case STORE:
+        MountPoint mountPoint = MountPoint.fromPath(StateCodec.readString(input))
+        byte[] encodedState = new byte[input.available()]
+        input.readFully(encodedState)
+        _states[mountPoint] = encodedState
+        break
+
+      case CLEAR:
+        _states.remove(MountPoint.fromPath(StateCodec.readString(input)))
+        break
+
+      case CLEAR_ALL:
+        _states.clear()
+        break
+
+      default:
+        throw new IOException("unknown record type ${type} in ${_journalFile}")
+    }
+  }
+
+  private void importLegacyStates()
+  {
+    FileSystemStorage legacyStorage = (FileSystemStorage) storage
+
+    legacyStorage.mountPoints.each { MountPoint mountPoint ->
+      def state = GroovyLangUtils.noException(mountPoint, null) { legacyStorage.loadState(mountPoint) }
+      if(state != null)
+        _states[mountPoint] = StateCodec.encode(state)
+    }
+
+    compact()
+
+    // the legacy states are not removed (rollback)
+    if(_states)
+      log.info("Imported ${_states.size()} state(s) into ${_journalFile}")
+  }
+
+  /**
+   * Exports the states back into the legacy storage (which is cleared first) so that switching
+   * back to the one file per mount point storage does not lose them. The journal is then closed
+   * and renamed (<code>.exported</code>) so that the legacy states are imported again the next
+   * time the journal is used. Must be called after {@link #open()}.
+   *
+   * @return the mount points exported
+   */
+  Collection<MountPoint> exportLegacyStates()
+  {
+    synchronized(_journalLock)
+    {
+      FileSystemStorage legacyStorage = (FileSystemStorage) storage
+
+      legacyStorage.clearAllStates()
+
+      Collection<MountPoint> mountPoints = getMountPoints().findAll { MountPoint mountPoint ->
+        GroovyLangUtils.noExceptionWithValueOnException(false) {
+          legacyStorage.storeState(mountPoint, StateCodec.decode(_states[mountPoint]))
+          return true
+        }
+      }
+
+      close()
+
+      File exportedFile = new File(_journalFile.parentFile, "${_journalFile.name}.exported")
+      Files.move(_journalFile.toPath(),
+                 exportedFile.toPath(),
+                 StandardCopyOption.REPLACE_EXISTING)
+
+      log.info("Exported ${mountPoints.size()} state(s) from ${_journalFile} [${exportedFile}]")
+
+      return mountPoints
+    }
+  }
+
+  private static void writeHeader(DataOutput out)
+  {
+    out.writeInt(MAGIC)
+    out.writeByte(VERSION)
+  }
+
+  private static void writeRecord(DataOutput out,
+                                  int type,
+                                  MountPoint mountPoint,
+                                  byte[] encodedState)
+  {
+    def baos = new ByteArrayOutputStream()
+    def record = new DataOutputStream(baos)
+    record.writeByte(type)
+    if(mountPoint != null)
+      StateCodec.writeString(record, mountPoint.path)
+    if(encodedState != null)
+      record.write(encodedState)
+    record.flush()
+
+    byte[] bytes = baos.toByteArray()
+    out.writeInt(bytes.length)
+    out.writeLong(computeCRC(bytes))
+    out.write(bytes)
+  }
+
+  private static long computeCRC(byte[] bytes)
+  {
+    CRC32 crc = new CRC32()
+    crc.update(bytes)
+    return crc.value
+  }
+}
@@ -0,0 +1,260 @@
+/*
+ * Copyright (c) 2013 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.linkedin.glu.agent.impl.storage
+
+import org.linkedin.glu.agent.api.MountPoint
+
+/**
+ * Compact (tagged) binary encoding of a script state: the state is made of maps, lists and
+ * primitives which are encoded natively. Any other value (ex: an exception stored in the state
+ * machine) falls back to java serialization (tagged as such) so that no information is lost.
+ * The encoding is versioned ({@link #VERSION}) so that it can evolve.
+ *
+ * @author yan@pongasoft.com  */
+class StateCodec
+{
+  public static final int VERSION = 1
+
+  private static final int NULL = 0
+  private static final int TRUE = 1
+  private static final int FALSE = 2
+  private static final int INTEGER = 3
+  private static final int LONG = 4
+  private static final int DOUBLE = 5
+  private static final int STRING = 6
+  private static final int MAP = 7
+  private static final int LIST = 8
+  private static final int SET = 9
+  private static final int MOUNT_POINT = 10
+  private static final int URI = 11
+  private static final int DATE = 12
+  private static final int BYTES = 13
+  private static final int BIG_DECIMAL = 14
+  private static final int SERIALIZED = 15
+
+  static byte[] encode(state)
+  {
+    def baos = new ByteArrayOutputStream()
+    def dos = new DataOutputStream(baos)
+    dos.writeByte(VERSION)
+    writeValue(dos, state)
+    dos.flush()
+    return baos.toByteArray()
+  }
+
+  static def decode(byte[] bytes)
+  {
+    def dis = new DataInputStream(new ByteArrayInputStream(bytes))
+    int version = dis.readUnsignedByte()
+    if(version != VERSION)
+      throw new IOException("unsupported state encoding version: ${version}")
+    return readValue(dis)
+  }
+
+  static void writeString(DataOutput out, String s)
+  {
+    byte[] bytes = s.getBytes('UTF-8')
+    out.writeInt(bytes.length)
+    out.write(bytes)
+  }
+
+  static String readString(DataInput input)
+  {
+    byte[] bytes = new byte[input.readInt()]
+    input.readFully(bytes)
+    return new String(bytes, 'UTF-8')
+  }
+
+  private static void writeValue(DataOutput out, value)
+  {
+    switch(value)
+    {
+      case null:
+        out.writeByte(NULL)
+        break
+
+      case Boolean:
+        out.writeByte(value ? TRUE : FALSE)
+        break
+
+      case Integer:
+        out.writeByte(INTEGER)
+        out.writeInt(value)
+        break
+
+      case Long:
+        out.writeByte(LONG)
+        out.writeLong(value)
+        break
+
+      case Double:
+        out.writeByte(DOUBLE)
+        out.writeDouble(value)
+        break
+
+      case String:
+      case GString:
+        out.writeByte(STRING)
+        writeString(out, value.toString())
+        break
+
+      case Map:
+        out.writeByte(MAP)
+        out.writeInt(value.size())
+        value.each { k, v ->
+          writeValue(out, k)
+          writeValue(out, v)
+        }
+        break
+
+      case List:
+        out.writeByte(LIST)
+        writeCollection(out, value)
+        break
+
+      case Set:
+        out.writeByte(SET)
+        writeCollection(out, value)
+        break
+
+      case MountPoint:
+        out.writeByte(MOUNT_POINT)
+        writeString(out, value.path)
+        break
+
+      case java.net.URI:
+        out.writeByte(URI)
+        writeString(out, value.toString())
+        break
+
+      case Date:
+        if(value.getClass() == Date)
+        {
+          out.writeByte(DATE)
+          out.writeLong(value.time)
+        }
+        else
+          writeSerialized(out, value)
+        break
+
+      case byte[]:
+        out.writeByte(BYTES)
+        out.writeInt(value.length)
+        out.write(value)
+        break
+
+      case BigDecimal:
+        out.writeByte(BIG_DECIMAL)
+        writeString(out, value.toString())
+        break
+
+      default:
+        writeSerialized(out, value)
+        break
+    }
+  }
+
+  private static void writeCollection(DataOutput out, Collection collection)
+  {
+    out.writeInt(collection.size())
+    collection.each { writeValue(out, it) }
+  }
+
+  private static void writeSerialized(DataOutput out, value)
+  {
+    def baos = new ByteArrayOutputStream()
+    new ObjectOutputStream(baos).withStream { it.writeObject(value) }
+    byte[] bytes = baos.toByteArray()
+    out.writeByte(SERIALIZED)
+    out.writeInt(bytes.length)
+    out.write(bytes)
+  }
+
+  private static def readValue(DataInput input)
+  {
+    int tag = input.readUnsignedByte()
+    switch(tag)
+    {
+      case NULL:
+        return null
+
+      case TRUE:
+        return Boolean.TRUE
+
+      case FALSE:
+        return Boolean.FALSE
+
+      case INTEGER:
+        return input.readInt()
+
+      case LONG:
+        return input.readLong()
+
+      case DOUBLE:
+        return input.readDouble()
+
+      case STRING:
+        return readString(input)
+
+      case MAP:
+        int size = input.readInt()
+        def map = new LinkedHashMap(size)
+        size.times {
+          def key = readValue(input)
+          map[key] = readValue(input)
+        }
+        return map
+
+      case LIST:
+        return readCollection(input, new ArrayList())
+
+      case SET:
+        return readCollection(input, new LinkedHashSet())
+
+      case MOUNT_POINT:
+        return MountPoint.fromPath(readString(input))
+
+      case URI:
+        return new java.net.URI(readString(input))
+
+      case DATE:
+        return new Date(input.readLong())
+
+      case BYTES:
+        byte[] bytes = new byte[input.readInt()]
+        input.readFully(bytes)
+        return bytes
+
+      case BIG_DECIMAL:
+        return new BigDecimal(readString(input))
+
+      case SERIALIZED:
+        byte[] bytes = new byte[input.readInt()]
+        input.readFully(bytes)
+        return new ObjectInputStream(new ByteArrayInputStream(bytes)).withStream { it.readObject() }
+
+      default:
+        throw new IOException("unknown tag: ${tag}")
+    }
+  }
+
+  private static def readCollection(DataInput input, Collection collection)
+  {
+    input.readInt().times { collection << readValue(input) }
+    return collection
+  }
+}
@@ -0,0 +1,319 @@
+/*
+ * Copyright (c) 2013 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.linkedin.glu.agent.impl.storage
+
+import org.linkedin.glu.agent.api.MountPoint
+import org.linkedin.util.clock.ClockUtils
+import org.linkedin.util.clock.Timespan
+import org.linkedin.util.lifecycle.Shutdownable
+import org.slf4j.Logger
+import org.slf4j.LoggerFactory
+
+import java.util.concurrent.ScheduledThreadPoolExecutor
+import java.util.concurrent.ThreadFactory
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.TimeoutException
+
+/**
+ * Write behind for the states: storing (or clearing) a state simply records it as pending
+ * (only the latest state per mount point is kept) and the pending states are written to the
+ * underlying storage asynchronously (after {@link #delay}), so a burst of state changes for the
+ * same mount point results in a single write. Reads, {@link #flush()} and {@link #shutdown()}
+ * act as durability barriers: all the pending states are written first. A state which cannot
+ * be written remains pending: it is retried later (with an exponential backoff) and the failure
+ * is thrown to the caller of the barrier. The agent properties are not affected (delegated
+ * synchronously). This class is thread safe.
+ *
+ * @author yan@pongasoft.com */
+class WriteBehindStorage extends FilteredStorage implements Shutdownable
+{
+  public static final String MODULE = WriteBehindStorage.class.getName();
+  public static final Logger log = LoggerFactory.getLogger(MODULE);
+
+  /**
+   * Marker for a cleared state
+   */
+  private static final Object CLEARED_STATE = new Object()
+
+  /**
+   * How long to wait (after a state change) before writing the pending states
+   */
+  Timespan delay = Timespan.parse('100')
+
+  /**
+   * How long to wait before retrying to write the states which could not be written (doubled
+   * after each consecutive failure, up to {@link #maxRetryDelay})
+   */
+  Timespan retryDelay = Timespan.parse('1s')
+
+  Timespan maxRetryDelay = Timespan.parse('1m')
+
+  private final ScheduledThreadPoolExecutor _executor
+
+  // orders the writes to the underlying storage
+  private final Object _writeLock = new Object()
+
+  private final Map<MountPoint, Object> _pendingStates = new LinkedHashMap<MountPoint, Object>()
+  private boolean _flushScheduled = false
+  private boolean _retryScheduled = false
+  private boolean _shutdown = false
+  private int _consecutiveFailures = 0
+
+  WriteBehindStorage(Storage storage)
+  {
+    super(storage)
+    _executor = new ScheduledThreadPoolExecutor(1, { Runnable r ->
+      Thread thread = new Thread(r, "WriteBehindStorage")
+      thread.daemon = true
+      return thread
+    } as ThreadFactory)
+    // on shutdown the pending states are written right away
+    _executor.executeExistingDelayedTasksAfterShutdownPolicy = false
+  }
+
+  void storeState(MountPoint mountPoint, state)
+  {
+    enqueue(mountPoint, state)
+  }
+
+  void clearState(MountPoint mountPoint)
+  {
+    enqueue(mountPoint, CLEARED_STATE)
+  }
+
+  void clearAllStates()
+  {
+    synchronized(_writeLock)
+    {
+      synchronized(_pendingStates)
+      {
+        _pendingStates.clear()
+      }
+      super.clearAllStates()
+    }
+  }
+
+  def getMountPoints()
+  {
+    flush()
+    return super.getMountPoints()
+  }
+
+  def loadState(MountPoint mountPoint)
+  {
+    flush()
+    return super.loadState(mountPoint)
+  }
+
+  /**
+   * @return the number of states not written yet
+   */
+  int getPendingStatesCount()
+  {
+    synchronized(_pendingStates)
+    {
+      return _pendingStates.size()
+    }
+  }
+
+  /**
+   * Durability barrier: writes all the pending states to the underlying storage. The states
+   * which cannot be written remain pending (and are retried later) and the first failure is
+   * thrown.
+   */
+  void flush()
+  {
+    synchronized(_writeLock)
+    {
+      Map<MountPoint, Object> states
+
+      synchronized(_pendingStates)
+      {
+        if(_pendingStates.isEmpty())
+          return
+
+        states = new LinkedHashMap<MountPoint, Object>(_pendingStates)
+        _pendingStates.clear()
+      }
+
+      if(log.isDebugEnabled())
+        log.debug("flush: ${states.size()} state(s)")
+
+      Throwable failure = null
+
+      states.each { MountPoint mountPoint, state ->
+        try
+        {
+          writeState(mountPoint, state)
+        }
+        catch(Throwable th)
+        {
+          if(failure == null)
+            failure = th
+
+          synchronized(_pendingStates)
+          {
+            // a state stored in the meantime supersedes the one which could not be written
+            if(!_pendingStates.containsKey(mountPoint))
+              _pendingStates[mountPoint] = state
+          }
+        }
+      }
+
+      if(failure)
+      {
+        scheduleRetry()
+        throw failure
+      }
+
+      synchronized(_pendingStates)
+      {
+        _consecutiveFailures = 0
+      }
+    }
+  }
+
+  private void enqueue(MountPoint mountPoint, state)
+  {
+    synchronized(_pendingStates)
+    {
+      if(!_shutdown)
+      {
+        _pendingStates[mountPoint] = state
+        if(!_flushScheduled)
+        {
+          _flushScheduled = true
+          _executor.schedule(flushPendingStates as Runnable,
+                             delay.durationInMilliseconds,
+                             TimeUnit.MILLISECONDS)
+        }
+        return
+      }
+    }
+
+    // after shutdown the states are written synchronously
+    synchronized(_writeLock)
+    {
+      writeState(mountPoint, state)
+    }
+  }
+
+  private def flushPendingStates = {
+    synchronized(_pendingStates)
+    {
+      _flushScheduled = false
+    }
+
+    flushInBackground()
+  }
+
+  private def retryPendingStates = {
+    synchronized(_pendingStates)
+    {
+      _retryScheduled = false
+    }
+
+    flushInBackground()
+  }
+
+  private void flushInBackground()
+  {
+    try
+    {
+      flush()
+    }
+    catch(Throwable th)
+    {
+      log.warn("Error while writing the states (${pendingStatesCount} pending, will retry)", th)
+    }
+  }
+
+  private void scheduleRetry()
+  {
+    synchronized(_pendingStates)
+    {
+      _consecutiveFailures++
+
+      if(!_shutdown && !_retryScheduled)
+      {
+        long retryDelayInMilliseconds =
+          retryDelay.durationInMilliseconds * (1L << Math.min(_consecutiveFailures - 1, 20))
+        retryDelayInMilliseconds =
+          Math.min(retryDelayInMilliseconds, maxRetryDelay.durationInMilliseconds)
+
+        _retryScheduled = true
+        _executor.schedule(retryPendingStates as Runnable,
+                           retryDelayInMilliseconds,
+                           TimeUnit.MILLISECONDS)
+      }
+    }
+  }
+
+  private void writeState(MountPoint mountPoint, state)
+  {
+    if(state.is(CLEARED_STATE))
+      storage.clearState(mountPoint)
+    else
+      storage.storeState(mountPoint, state)
+  }
+
+  @Override
+  void shutdown()
+  {
+    synchronized(_pendingStates)
+    {
+      if(_shutdown)
+        return
+      _shutdown = true
+    }
+
+    _executor.shutdown()
+
+    try
+    {
+      flush()
+    }
+    catch(Throwable th)
+    {
+      // there is no retry after shutdown
+      log.error("Error while writing the states: ${pendingStatesCount} state(s) not written", th)
+    }
+  }
+
+  @Override
+  void waitForShutdown()
+  {
+    waitForShutdown(null)
+  }
+
+  @Override
+  void waitForShutdown(Object timeout)
+  {
+    if(!_shutdown)
+      throw new IllegalStateException('call shutdown first')
+
+    Timespan ts = ClockUtils.toTimespan(timeout)
+
+    if(ts == null)
+      _executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS)
+    else
+    {
+      if(!_executor.awaitTermination(ts.durationInMilliseconds, TimeUnit.MILLISECONDS))
+        throw new TimeoutException()
+    }
+  }
+}
@@ -0,0 +1,436 @@
+/*
+ * Copyright (c) 2013 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.linkedin.glu.agent.impl.zookeeper
+
+import org.linkedin.glu.agent.api.MountPoint
+import org.linkedin.glu.agent.impl.storage.AgentProperties
+import org.linkedin.glu.agent.impl.storage.WriteOnlyStorage
+import org.linkedin.groovy.util.json.JsonUtils
+import org.linkedin.groovy.util.lang.GroovyLangUtils
+import org.linkedin.util.clock.Clock
+import org.linkedin.util.clock.ClockUtils
+import org.linkedin.util.clock.SystemClock
+import org.linkedin.util.clock.Timespan
+import org.linkedin.util.lifecycle.Shutdownable
+import org.slf4j.Logger
+import org.slf4j.LoggerFactory
+
+import java.util.concurrent.ScheduledThreadPoolExecutor
+import java.util.concurrent.ThreadFactory
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.TimeoutException
+
+/**
+ * Limits the writes of the states in ZooKeeper (every console watches them):
+ * <ul>
+ * <li>a state identical to the one already published is not written (suppressed)</li>
+ * <li>a state which differs only by its {@link #volatileFields} is not written (suppressed)
+ * unless the published one is older than {@link #volatileFieldsMaxAge}: the latest suppressed
+ * state is written once the published one reaches this age (even if no other change
+ * happens)</li>
+ * <li>the states are written at most once every {@link #minPublishInterval} for the agent: the
+ * changes happening in between are batched (only the latest state of each mount point is
+ * written, the other ones are coalesced)</li>
+ * </ul>
+ * The payload of each node is unchanged (compact json of the full state) so that the readers
+ * do not have to change. This class is thread safe: the writes in ZooKeeper happen outside the
+ * lock protecting the states (they are serialized by a separate lock to keep their order).
+ *
+ * @author yan@pongasoft.com  */
+class BatchedZooKeeperStorage implements WriteOnlyStorage, Shutdownable
+{
+  public static final String MODULE = BatchedZooKeeperStorage.class.getName();
+  public static final Logger log = LoggerFactory.getLogger(MODULE);
+
+  /**
+   * Minimum amount of time between 2 batches of writes
+   */
+  Timespan minPublishInterval = Timespan.parse('500')
+
+  /**
+   * Fields of the state (dot separated path, ex: <code>scriptState.script.lastCheck</code>)
+   * whose changes alone do not trigger a write
+   */
+  Collection<String> volatileFields = []
+
+  /**
+   * A state which differs only by its volatile fields is written anyway if the published one
+   * is older than this (<code>null</code> means never)
+   */
+  Timespan volatileFieldsMaxAge = Timespan.parse('5m')
+
+  Clock clock = SystemClock.INSTANCE
+
+  private final ZooKeeperStorage _zkStorage
+  private final ScheduledThreadPoolExecutor _executor
+
+  // serializes the writes in ZooKeeper (always acquired before the lock on this)
+  private final Object _publishLock = new Object()
+
+  private static class PublishedState
+  {
+    String state
+    String nonVolatileState
+    long time
+  }
+
+  private final Map<MountPoint, PublishedState> _publishedStates = [:]
+  private final Map<MountPoint, PublishedState> _pendingStates = new LinkedHashMap<MountPoint, PublishedState>()
+  private final Map<MountPoint, PublishedState> _suppressedStates = [:]
+  private long _lastPublishTime = 0
+  // the states taken from the pending ones which are being written
+  private int _publishingCount = 0
+  private boolean _publishScheduled = false
+  private boolean _shutdown = false
+
+  private long _publishedCount = 0
+  private long _suppressedCount = 0
+  private long _coalescedCount = 0
+
+  /**
+   * Constructor
+   */
+  BatchedZooKeeperStorage(ZooKeeperStorage zkStorage)
+  {
+    _zkStorage = zkStorage
+    _executor = new ScheduledThreadPoolExecutor(1, { Runnable r ->
+      Thread thread = new Thread(r, "BatchedZooKeeperStorage")
+      thread.daemon = true
+      return thread
+    } as ThreadFactory)
+    // on shutdown the pending states are written right away
+    _executor.executeExistingDelayedTasksAfterShutdownPolicy = false
+  }
+
+  ZooKeeperStorage getZkStorage()
+  {
+    return _zkStorage
+  }
+
+  /**
+   * @return the number of states written in ZooKeeper
+   */
+  synchronized long getPublishedCount()
+  {
+    return _publishedCount
+  }
+
+  /**
+   * @return the number of states not written because identical (or only volatile fields changed)
+   */
+  synchronized long getSuppressedCount()
+  {
+    return _suppressedCount
+  }
+
+  /**
+   * @return the number of states not written because replaced by a more recent one in the
+   * same batch
+   */
+  synchronized long getCoalescedCount()
+  {
+    return _coalescedCount
+  }
+
+  /**
+   * @return the number of states not written yet (including the ones being written)
+   */
+  synchronized int getPendingStatesCount()
+  {
+    return _pendingStates.size() + _publishingCount
+  }
+
+  @Override
+  void storeState(MountPoint mountPoint, state)
+  {
+    def publishedState = _zkStorage.toPublishedState(state)
+
+    def newState = new PublishedState(state: JsonUtils.compactPrint(publishedState))
+    newState.nonVolatileState =
+      volatileFields ? JsonUtils.compactPrint(removeVolatileFields(publishedState)) : newState.state
+
+    boolean publishNow = false
+
+    synchronized(this)
+    {
+      long now = clock.currentTimeMillis()
+
+      PublishedState previousState = _publishedStates[mountPoint]
+      if(previousState && isSuppressed(previousState, newState, now))
+      {
+        _suppressedCount++
+        // the latest state is the one already published
+        if(_pendingStates.remove(mountPoint))
+          _coalescedCount++
+
+        if(previousState.state == newState.state)
+          _suppressedStates.remove(mountPoint)
+        else
+          suppressVolatileState(mountPoint, previousState, newState, now)
+        return
+      }
+
+      _suppressedStates.remove(mountPoint)
+      publishNow = enqueue(mountPoint, newState, now)
+    }
+
+    if(publishNow)
+      publishPendingStates()
+  }
+
+  /**
+   * Must be called while holding the lock
+   *
+   * @return <code>true</code> if the pending states must be written right away (by the caller,
+   *         once the lock is released)
+   */
+  private boolean enqueue(MountPoint mountPoint, PublishedState newState, long now)
+  {
+    if(_pendingStates.put(mountPoint, newState))
+      _coalescedCount++
+
+    // a write in progress is not waited for (the states are published once it completes)
+    if(_shutdown ||
+       (!_publishScheduled &&
+        _publishingCount == 0 &&
+        now - _lastPublishTime >= minPublishInterval.durationInMilliseconds))
+      return true
+
+    if(!_publishScheduled)
+    {
+      _publishScheduled = true
+      long delay = Math.max(0, _lastPublishTime + minPublishInterval.durationInMilliseconds - now)
+      _executor.schedule({ publish() } as Runnable, delay, TimeUnit.MILLISECONDS)
+    }
+
+    return false
+  }
+
+  /**
+   * Keeps the latest state which differs only by its volatile fields and schedules its write
+   * for when the published state reaches {@link #volatileFieldsMaxAge}. Must be called while
+   * holding the lock.
+   */
+  private void suppressVolatileState(MountPoint mountPoint,
+                                     PublishedState previousState,
+                                     PublishedState newState,
+                                     long now)
+  {
+    if(volatileFieldsMaxAge == null || _shutdown)
+      return
+
+    // already scheduled for this published state
+    if(_suppressedStates.put(mountPoint, newState) != null)
+      return
+
+    long delay =
+      Math.max(0, previousState.time + volatileFieldsMaxAge.durationInMilliseconds - now)
+    _executor.schedule({ republish(mountPoint, previousState) } as Runnable,
+                       delay,
+                       TimeUnit.MILLISECONDS)
+  }
+
+  /**
+   * Writes the latest suppressed state if the published one has not changed in the meantime
+   */
+  private void republish(MountPoint mountPoint, PublishedState previousState)
+  {
+    boolean publishNow = false
+
+    synchronized(this)
+    {
+      if(!_publishedStates[mountPoint].is(previousState))
+        return
+
+      PublishedState state = _suppressedStates.remove(mountPoint)
+      if(state != null)
+        publishNow = enqueue(mountPoint, state, clock.currentTimeMillis())
+    }
+
+    if(publishNow)
+      publishPendingStates()
+  }
+
+  @Override
+  void clearState(MountPoint mountPoint)
+  {
+    synchronized(_publishLock)
+    {
+      synchronized(this)
+      {
+        _pendingStates.remove(mountPoint)
+        _suppressedStates.remove(mountPoint)
+        _publishedStates.remove(mountPoint)
+      }
+      _zkStorage.clearState(mountPoint)
+    }
+  }
+
+  @Override
+  void clearAllStates()
+  {
+    synchronized(_publishLock)
+    {
+      synchronized(this)
+      {
+        _pendingStates.clear()
+        _suppressedStates.clear()
+        _publishedStates.clear()
+      }
+      _zkStorage.clearAllStates()
+    }
+  }
+
+  @Override
+  AgentProperties saveAgentProperties(AgentProperties agentProperties)
+  {
+    _zkStorage.saveAgentProperties(agentProperties)
+  }
+
+  @Override
+  AgentProperties updateAgentProperty(String name, String value)
+  {
+    _zkStorage.updateAgentProperty(name, value)
+  }
+
+  /**
+   * Writes all the pending states now
+   */
+  void publish()
+  {
+    synchronized(this)
+    {
+      _publishScheduled = false
+    }
+    publishPendingStates()
+  }
+
+  @Override
+  void shutdown()
+  {
+    synchronized(this)
+    {
+      if(_shutdown)
+        return
+      _shutdown = true
+    }
+
+    _executor.shutdown()
+    publish()
+
+    log.info("Published states: ${publishedCount} [suppressed: ${suppressedCount}, coalesced: ${coalescedCount}]")
+  }
+
+  @Override
+  void waitForShutdown() throws InterruptedException, IllegalStateException
+  {
+    waitForShutdown(null)
+  }
+
+  @Override
+  void waitForShutdown(Object timeout) throws InterruptedException, IllegalStateException, TimeoutException
+  {
+    synchronized(this)
+    {
+      if(!_shutdown)
+        throw new IllegalStateException("call shutdown first")
+    }
+
+    Timespan t = ClockUtils.toTimespan(timeout)
+    if(t == null)
+      _executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS)
+    else
+      if(!_executor.awaitTermination(t.durationInMilliseconds, TimeUnit.MILLISECONDS))
+        throw new TimeoutException("timeout while waiting for shutdown [${t}]")
+  }
+
+  /**
+   * Takes the pending states (while holding the lock) and writes them in ZooKeeper (outside of
+   * it). Must be called without holding the lock.
+   */
+  private void publishPendingStates()
+  {
+    synchronized(_publishLock)
+    {
+      Map<MountPoint, PublishedState> states
+      long now
+
+      synchronized(this)
+      {
+        if(!_pendingStates)
+          return
+
+        states = new LinkedHashMap<MountPoint, PublishedState>(_pendingStates)
+        _pendingStates.clear()
+        _publishingCount = states.size()
+        now = clock.currentTimeMillis()
+        _lastPublishTime = now
+      }
+
+      states.each { MountPoint mountPoint, PublishedState state ->
+        boolean published = GroovyLangUtils.noException(mountPoint, false) {
+          _zkStorage.publishState(mountPoint, state.state)
+        }
+
+        synchronized(this)
+        {
+          _publishingCount--
+          if(published)
+          {
+            state.time = now
+            _publishedStates[mountPoint] = state
+            _publishedCount++
+          }
+          else
+          {
+            // not written (ex: ZooKeeper is not connected) => it will not be suppressed next time
+            _publishedStates.remove(mountPoint)
+          }
+        }
+      }
+    }
+  }
+
+  private boolean isSuppressed(PublishedState previousState, PublishedState newState, long now)
+  {
+    if(previousState.state == newState.state)
+      return true
+
+    if(previousState.nonVolatileState != newState.nonVolatileState)
+      return false
+
+    return volatileFieldsMaxAge == null ||
+           now - previousState.time < volatileFieldsMaxAge.durationInMilliseconds
+  }
+
+  /**
+   * Removes the volatile fields (the state is a copy so it can be modified)
+   */
+  private def removeVolatileFields(state)
+  {
+    volatileFields.each { String field ->
+      def path = field.tokenize('.')
+      def map = state
+      path.subList(0, path.size() - 1).each { key ->
+        map = map instanceof Map ? map[key] : null
+      }
+      if(map instanceof Map)
+        map.remove(path[-1])
+    }
+    return state
+  }
+}
@@ -143,24 +143,43 @@ class ZooKeeperStorage implements WriteOnlyStorage
 
   public void storeState(MountPoint mountPoint, state)
   {
-    zkSafe(_zkState) {  IZKClient zk ->
-      // modifying the state so making a copy
-      state = LangUtils.deepClone(state)
+    publishState(mountPoint, JsonUtils.compactPrint(toPublishedState(state)))
+  }
 
-      def error = state.scriptState.stateMachine.error
-      if(error instanceof Throwable)
-      {
-        error = extractStackTrace(error, [])
-        state.scriptState.stateMachine.error = error
-      }
+  /**
+   * @return a copy of the state as it gets published in ZooKeeper (the exception is replaced by
+   * its stack trace)
+   */
+  def toPublishedState(state)
+  {
+    // modifying the state so making a copy
+    state = LangUtils.deepClone(state)
+
+    def error = state.scriptState.stateMachine.error
+    if(error instanceof Throwable)
+    {
+      error = extractStackTrace(error, [])
+      state.scriptState.stateMachine.error = error
+    }
 
-      state = JsonUtils.compactPrint(state)
+    return state
+  }
 
+  /**
+   * Writes the (already serialized) state in ZooKeeper
+   *
+   * @return <code>true</code> if the state was written, <code>false</code> otherwise (ex:
+   * zookeeper not connected)
+   */
+  boolean publishState(MountPoint mountPoint, String state)
+  {
+    zkSafe(_zkState) {  IZKClient zk ->
       zk.createOrSetWithParents(mountPoint.toPathWithNoSlash(),
                                 state,
                                 ACLs,
                                 CreateMode.PERSISTENT)
-    }
+      return true
+    } ?: false
   }
 
   @Override
@@ -587,6 +587,46 @@ def class TestAgentImpl extends GroovyTestCase
     }
   }
 
+  /**
+   * The scripts are restored concurrently (parent first)
+   */
+  void testParallelRestore()
+  {
+    def mountPoints = ['/p', '/p/c1', '/p/c2', '/p/c1/g', '/q'].collect { MountPoint.fromPath(it) }
+    def parents = [MountPoint.ROOT, mountPoints[0], mountPoints[0], mountPoints[1], MountPoint.ROOT]
+
+    mountPoints.eachWithIndex { MountPoint mountPoint, int i ->
+      agent.installScript(mountPoint: mountPoint,
+                          parent: parents[i],
+                          initParameters: [p1: mountPoint.path],
+                          scriptFactory: new FromClassNameScriptFactory(MyScriptTestParent))
+      agent.executeAction(mountPoint: mountPoint,
+                          action: 'install',
+                          actionArgs: [p: 'c'])
+      assertTrue agent.waitForState(mountPoint: mountPoint, state: 'installed')
+    }
+
+    // now we shutdown the current agent and we recreate a new one
+    agent.shutdown()
+    agent.waitForShutdown(0)
+
+    agent = new AgentImpl()
+    Storage storage = createStorage()
+    agent.boot(shellForScripts: shell,
+               taggeable: new TagsStorage(storage, APTN),
+               storage: storage,
+               restoreParallelism: 4)
+
+    assertEquals(([MountPoint.ROOT] + mountPoints).sort(), agent.getMountPoints().sort())
+
+    mountPoints.eachWithIndex { MountPoint mountPoint, int i ->
+      assertEquals([currentState: 'installed'], agent.getState(mountPoint: mountPoint))
+      def fullState = agent.getFullState(mountPoint: mountPoint)
+      assertEquals(parents[i], fullState.scriptDefinition.parent)
+      assertEquals("${mountPoint.path}c".toString(), fullState.scriptState.script.vp1)
+    }
+  }
+
   /**
    * Testing proper agent shutdown (glu-20).
    */
@@ -1079,6 +1119,19 @@ gc: 1000
     }
   }
 
+  private static class MyScriptTestParent
+  {
+    def vp1
+
+    def install = { args ->
+      vp1 = params.p1 + args.p
+    }
+
+    def createChild = { args ->
+      return args.script
+    }
+  }
+
   private static class MyScriptTestAgentImpl3
   {
     def vp1
@@ -24,6 +24,12 @@ import org.linkedin.glu.agent.api.NoSuchMountPointException
 import org.linkedin.groovy.util.io.fs.FileSystemImpl
 import org.linkedin.groovy.util.io.fs.FileSystem
 import org.linkedin.glu.agent.impl.storage.AgentProperties
+import org.linkedin.glu.agent.impl.storage.WriteBehindStorage
+import org.linkedin.glu.agent.impl.storage.FilteredStorage
+import org.linkedin.glu.agent.impl.storage.JournalStorage
+import org.linkedin.util.clock.Timespan
+import org.linkedin.util.clock.SystemClock
+import org.linkedin.groovy.util.concurrent.GroovyConcurrentUtils
 
 /**
  * Tests for file system storage (actually writing to the disk)
@@ -184,4 +190,220 @@ class TestFileSystemStorage extends GroovyTestCase
     // we read it back
     assertEquals([p1: 'v1', scriptDefinition: [mountPoint: mp]], storage.loadState(mp))
   }
+
+  /**
+   * The states are written asynchronously and coalesced
+   */
+  public void testWriteBehindStorage()
+  {
+    WriteBehindStorage wbStorage = new WriteBehindStorage(storage)
+    // making sure that the writes happen only on demand
+    wbStorage.delay = Timespan.parse('1h')
+
+    MountPoint mp = MountPoint.create('/a/b/c')
+    File stateFile = new File(rootFile, '_a_b_c')
+
+    (1..3).each {
+      wbStorage.storeState(mp, [p1: "v${it}".toString(), scriptDefinition: [mountPoint: mp]])
+    }
+
+    // nothing written yet and only the latest state is kept
+    assertFalse stateFile.exists()
+    assertEquals(1, wbStorage.pendingStatesCount)
+
+    // reading is a barrier
+    assertEquals([p1: 'v3', scriptDefinition: [mountPoint: mp]], wbStorage.loadState(mp))
+    assertTrue stateFile.exists()
+    assertEquals(0, wbStorage.pendingStatesCount)
+
+    // store then clear => the clear wins
+    wbStorage.storeState(mp, [p1: 'v4', scriptDefinition: [mountPoint: mp]])
+    wbStorage.clearState(mp)
+    assertTrue stateFile.exists()
+    assertEquals(1, wbStorage.pendingStatesCount)
+
+    // shutdown writes the pending states
+    wbStorage.shutdown()
+    wbStorage.waitForShutdown('5s')
+    assertFalse stateFile.exists()
+    assertEquals(0, storage.mountPoints.size())
+
+    // after shutdown the states are written synchronously
+    wbStorage.storeState(mp, [p1: 'v5', scriptDefinition: [mountPoint: mp]])
+    assertTrue stateFile.exists()
+    assertEquals([p1: 'v5', scriptDefinition: [mountPoint: mp]], storage.loadState(mp))
+
+    // the delay is honored
+    wbStorage = new WriteBehindStorage(storage)
+    wbStorage.delay = Timespan.parse('10')
+    wbStorage.clearState(mp)
+    GroovyConcurrentUtils.waitForCondition(SystemClock.INSTANCE, '5s', '10') {
+      !stateFile.exists()
+    }
+    wbStorage.shutdown()
+    wbStorage.waitForShutdown('5s')
+  }
+
+  /**
+   * A state which cannot be written remains pending: the failure is thrown to the caller of the
+   * barrier and the write is retried
+   */
+  public void testWriteBehindStorageFailure()
+  {
+    int failures = 2
+    def failingStorage = new FilteredStorage(storage) {
+      @Override
+      void storeState(MountPoint mountPoint, state)
+      {
+        if(failures-- > 0)
+          throw new IOException("disk full")
+        super.storeState(mountPoint, state)
+      }
+    }
+
+    WriteBehindStorage wbStorage = new WriteBehindStorage(failingStorage)
+    wbStorage.delay = Timespan.parse('1h')
+    wbStorage.retryDelay = Timespan.parse('1h')
+
+    MountPoint mp = MountPoint.create('/a/b/c')
+    File stateFile = new File(rootFile, '_a_b_c')
+
+    wbStorage.storeState(mp, [p1: 'v1', scriptDefinition: [mountPoint: mp]])
+
+    // the failure is surfaced (to the barrier) and the state is not dropped
+    assertEquals('disk full', shouldFail(IOException) { wbStorage.flush() })
+    assertFalse stateFile.exists()
+    assertEquals(1, wbStorage.pendingStatesCount)
+
+    // a state stored in the meantime supersedes the one which failed
+    wbStorage.storeState(mp, [p1: 'v2', scriptDefinition: [mountPoint: mp]])
+    shouldFail(IOException) { wbStorage.loadState(mp) }
+    assertEquals(1, wbStorage.pendingStatesCount)
+    assertEquals([p1: 'v2', scriptDefinition: [mountPoint: mp]], wbStorage.loadState(mp))
+    assertEquals(0, wbStorage.pendingStatesCount)
+
+    wbStorage.shutdown()
+    wbStorage.waitForShutdown('5s')
+
+    // the write is retried (after the retry delay)
+    failures = 1
+    wbStorage = new WriteBehindStorage(failingStorage)
+    wbStorage.delay = Timespan.parse('1h')
+    wbStorage.retryDelay = Timespan.parse('10')
+    wbStorage.storeState(mp, [p1: 'v3', scriptDefinition: [mountPoint: mp]])
+    shouldFail(IOException) { wbStorage.flush() }
+    GroovyConcurrentUtils.waitForCondition(SystemClock.INSTANCE, '5s', '10') {
+      wbStorage.pendingStatesCount == 0
+    }
+    assertEquals([p1: 'v3', scriptDefinition: [mountPoint: mp]], storage.loadState(mp))
+
+    wbStorage.shutdown()
+    wbStorage.waitForShutdown('5s')
+  }
+
+  /**
+   * Test for the journal storage (import, replay, compaction and tail recovery)
+   */
+  public void testJournalStorage()
+  {
+    MountPoint mp = MountPoint.create('/a/b/c')
+    MountPoint mp2 = MountPoint.create('/d')
+
+    // a state in the legacy storage
+    storage.storeState(mp, [p1: 'v1', scriptDefinition: [mountPoint: mp]])
+    assertTrue new File(rootFile, '_a_b_c').exists()
+
+    File journalFile = agentPropertiesFileSystem.toResource('/state.journal').file
+
+    // the legacy state is imported (and kept) the first time
+    JournalStorage journalStorage = new JournalStorage(journalFile, storage)
+    journalStorage.compactionThreshold = 5
+    journalStorage.open()
+    assertTrue journalFile.exists()
+    assertTrue new File(rootFile, '_a_b_c').exists()
+    assertEquals([mp], journalStorage.mountPoints)
+    assertEquals([p1: 'v1', scriptDefinition: [mountPoint: mp]], journalStorage.loadState(mp))
+
+    def error = new Exception('e1')
+    def state = [
+      p1: 'v2',
+      p2: [1, 2L, 3.5d, null, true, new BigDecimal('1.1')],
+      p3: ['a'] as Set,
+      p4: new URI('file:/tmp'),
+      scriptDefinition: [mountPoint: mp],
+      scriptState: [stateMachine: [currentState: 'installed', error: error]]
+    ]
+    journalStorage.storeState(mp, state)
+    journalStorage.storeState(mp2, [p2: 'v2', scriptDefinition: [mountPoint: mp2]])
+
+    shouldFail(IllegalArgumentException) {
+      journalStorage.storeState(MountPoint.create('/foo'),
+                                [p1: 'v3', scriptDefinition: [mountPoint: MountPoint.create('/foo2')]])
+    }
+
+    shouldFail(NoSuchMountPointException) {
+      journalStorage.loadState(MountPoint.create('/foo'))
+    }
+
+    // replay
+    journalStorage.close()
+    journalStorage = new JournalStorage(journalFile, storage)
+    journalStorage.open()
+    assertEquals([mp, mp2].sort(), journalStorage.mountPoints.sort())
+    def loadedState = journalStorage.loadState(mp)
+    assertEquals('e1', loadedState.scriptState.stateMachine.remove('error').message)
+    state.scriptState.stateMachine.remove('error')
+    assertEquals(state, loadedState)
+
+    // compaction
+    journalStorage.compactionThreshold = 5
+    10.times { journalStorage.storeState(mp2, [p2: "v${it}", scriptDefinition: [mountPoint: mp2]]) }
+    assertTrue journalStorage.recordsCount <= 7
+    assertEquals([p2: 'v9', scriptDefinition: [mountPoint: mp2]], journalStorage.loadState(mp2))
+
+    // incomplete record at the end (clear of mp2) => ignored and truncated
+    journalStorage.clearState(mp2)
+    journalStorage.close()
+    long length = journalFile.length()
+    RandomAccessFile raf = new RandomAccessFile(journalFile, 'rw')
+    raf.setLength(length - 2)
+    raf.close()
+    journalStorage = new JournalStorage(journalFile, storage)
+    journalStorage.open()
+    assertEquals([mp, mp2].sort(), journalStorage.mountPoints.sort())
+    assertTrue journalFile.length() < length - 2
+    assertEquals([p2: 'v9', scriptDefinition: [mountPoint: mp2]], journalStorage.loadState(mp2))
+
+    // garbage record length at the end => ignored and truncated (nothing allocated)
+    journalStorage.close()
+    length = journalFile.length()
+    raf = new RandomAccessFile(journalFile, 'rw')
+    raf.seek(length)
+    raf.writeInt(Integer.MAX_VALUE)
+    raf.writeLong(0L)
+    raf.close()
+    journalStorage = new JournalStorage(journalFile, storage)
+    journalStorage.open()
+    assertEquals([mp, mp2].sort(), journalStorage.mountPoints.sort())
+    assertEquals(length, journalFile.length())
+
+    // rollback:the states are exported back to the legacy storage
+    assertEquals([mp, mp2].sort(), journalStorage.exportLegacyStates().sort())
+    assertFalse journalFile.exists()
+    assertTrue new File(journalFile.parentFile, 'state.journal.exported').exists()
+    assertEquals([mp, mp2].sort(), storage.mountPoints.sort())
+    assertEquals([p2: 'v9', scriptDefinition: [mountPoint: mp2]], storage.loadState(mp2))
+
+    // and imported again
+    journalStorage = new JournalStorage(journalFile, storage)
+    journalStorage.open()
+    assertEquals([mp, mp2].sort(), journalStorage.mountPoints.sort())
+
+    journalStorage.clearAllStates()
+    journalStorage.close()
+    journalStorage = new JournalStorage(journalFile, storage)
+    journalStorage.open()
+    assertEquals(0, journalStorage.mountPoints.size())
+    journalStorage.close()
+  }
 }
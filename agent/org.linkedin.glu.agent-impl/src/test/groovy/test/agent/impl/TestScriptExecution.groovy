@@ -17,6 +17,7 @@
 package test.agent.impl
 
 import org.linkedin.glu.agent.impl.script.ScriptExecution
+import org.linkedin.glu.agent.impl.script.ScriptExecutionScheduler
 import junit.framework.Assert
 import org.linkedin.util.concurrent.ThreadControl
 import org.linkedin.util.clock.Timespan
@@ -267,6 +268,74 @@ class TestScriptExecution extends GroovyTestCase
     }
   }
 
+  /**
+   * Script executions sharing the same scheduler: executions are still serial for a given
+   * script execution but run concurrently across script executions
+   */
+  void testSharedScheduler()
+  {
+    ThreadControl tc = new ThreadControl(Timespan.parse('5s'))
+    ScriptExecutionScheduler scheduler = new ScriptExecutionScheduler()
+
+    def createScriptExecution = { String name ->
+      def source = [invocable: new ScriptExecutionTest1(tc: tc),
+                    name: name,
+                    checkValidTransitionForAction: { }]
+      ScriptExecution se = new ScriptExecution(source, name, log)
+      se.scheduler = scheduler
+      se.start()
+      return se
+    }
+
+    ScriptExecution se1 = createScriptExecution('s1')
+    ScriptExecution se2 = createScriptExecution('s2')
+
+    try
+    {
+      def fe1 = se1.executeAction('action1', [p1: 'v1'])
+      def fe2 = se1.executeAction('action1', [p1: 'v2'])
+      def fe3 = se2.executeAction('action1', [p1: 'v3'])
+
+      // v1 and v3 run concurrently (different script executions)
+      tc.waitForBlock('action1.v1')
+      tc.waitForBlock('action1.v3')
+
+      // v2 must wait for v1 to complete
+      shouldFail(TimeoutException) { tc.waitForBlock('action1.v2', Timespan.parse('100')) }
+      assertEquals([fe2], se1.timeline)
+      assertEquals(fe1, se1.current)
+
+      tc.unblock('action1.v1')
+      assertEquals('v1', fe1.get('5s'))
+      tc.waitForBlock('action1.v2')
+      tc.unblock('action1.v2')
+      assertEquals('v2', fe2.get('5s'))
+      tc.unblock('action1.v3')
+      assertEquals('v3', fe3.get('5s'))
+
+      waitForScriptExecution(se1) { se1.pastExecutions.size() == 2 }
+      waitForScriptExecution(se2) { se2.pastExecutions.size() == 1 }
+
+      // timers fire (and repeat) on the shared scheduler
+      se2.scheduleTimer('timer1', '10', '500', null)
+      tc.waitForBlock('timer1.0')
+      tc.unblock('timer1.0')
+      tc.waitForBlock('timer1.0')
+      tc.unblock('timer1.0')
+      waitForScriptExecution(se2) { se2.timeline.size() == 1 && se2.current == null }
+      assertTrue(se2.cancelTimer('timer1', false))
+      assertEquals(0, se2.timeline.size())
+      assertEquals(3, se2.pastExecutions.size())
+    }
+    finally
+    {
+      [se1, se2].each { it.shutdown() }
+      [se1, se2].each { it.waitForShutdown('5s') }
+      scheduler.shutdown()
+      scheduler.waitForShutdown('5s')
+    }
+  }
+
   void waitForScriptExecution(ScriptExecution se, Closure closure)
   {
     GroovyConcurrentUtils.waitForCondition(clock, '5s', '10', closure)
@@ -18,6 +18,7 @@
 
 package test.agent.impl
 
+import org.linkedin.glu.agent.impl.zookeeper.BatchedZooKeeperStorage
 import org.linkedin.glu.agent.impl.zookeeper.ZooKeeperStorage
 import org.linkedin.glu.agent.api.MountPoint
 import org.apache.zookeeper.KeeperException
@@ -30,6 +31,11 @@ import org.linkedin.groovy.util.json.JsonUtils
 import org.linkedin.glu.agent.impl.storage.AgentProperties
 import org.linkedin.zookeeper.client.ZKData
 import org.linkedin.glu.groovy.utils.test.GluGroovyTestUtils
+import org.linkedin.groovy.util.concurrent.GroovyConcurrentUtils
+import org.linkedin.util.clock.SystemClock
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
 
 /**
  * This test will start a zookeeper server and shuts it down, so it is not relying on one currently
@@ -206,4 +212,159 @@ class TestZookeeperStorage extends GroovyTestCase
                                               [mp],
                                               storage.mountPoints)
   }
+
+  /**
+   * Unchanged states are not written and the changes are batched
+   */
+  public void testBatchedStorage()
+  {
+    IZKClient c = client.chroot('storage')
+    IZKClient p = client.chroot('agent.properties')
+
+    BatchedZooKeeperStorage storage = new BatchedZooKeeperStorage(new ZooKeeperStorage(c, p))
+    storage.minPublishInterval = Timespan.parse('2s')
+    storage.volatileFields = ['scriptState.script.lastCheck']
+    storage.volatileFieldsMaxAge = null
+
+    def state = { String currentState, long lastCheck ->
+      [scriptState: [script: [lastCheck: lastCheck], stateMachine: [currentState: currentState]]]
+    }
+
+    def ab = MountPoint.create('/a/b')
+    def abc = MountPoint.create('/a/b/c')
+
+    // first write goes through right away
+    storage.storeState(ab, state('installed', 1))
+    assertEquals(JsonUtils.compactPrint(state('installed', 1)), c.getStringData('_a_b'))
+    assertEquals(1, storage.publishedCount)
+
+    // identical state => suppressed
+    storage.storeState(ab, state('installed', 1))
+    assertEquals(1, storage.suppressedCount)
+
+    // only a volatile field changed => suppressed
+    storage.storeState(ab, state('installed', 2))
+    assertEquals(2, storage.suppressedCount)
+    assertEquals(JsonUtils.compactPrint(state('installed', 1)), c.getStringData('_a_b'))
+
+    // changes within minPublishInterval are batched (and coalesced)
+    storage.storeState(ab, state('running', 3))
+    storage.storeState(ab, state('stopped', 4))
+    storage.storeState(abc, state('running', 4))
+    assertEquals(2, storage.pendingStatesCount)
+    assertEquals(1, storage.coalescedCount)
+    assertEquals(JsonUtils.compactPrint(state('installed', 1)), c.getStringData('_a_b'))
+
+    GroovyConcurrentUtils.waitForCondition(SystemClock.INSTANCE, '5s', '10') {
+      storage.pendingStatesCount == 0
+    }
+    assertEquals(JsonUtils.compactPrint(state('stopped', 4)), c.getStringData('_a_b'))
+    assertEquals(JsonUtils.compactPrint(state('running', 4)), c.getStringData('_a_b_c'))
+    assertEquals(3, storage.publishedCount)
+
+    // shutdown writes the pending states
+    storage.storeState(abc, state('stopped', 5))
+    storage.shutdown()
+    storage.waitForShutdown('5s')
+    assertEquals(JsonUtils.compactPrint(state('stopped', 5)), c.getStringData('_a_b_c'))
+    assertEquals(4, storage.publishedCount)
+  }
+
+  /**
+   * A state which differs only by its volatile fields is written once the published one is older
+   * than volatileFieldsMaxAge (even if no other store happens)
+   */
+  public void testBatchedStorageVolatileFieldsMaxAge()
+  {
+    IZKClient c = client.chroot('storage')
+    IZKClient p = client.chroot('agent.properties')
+
+    BatchedZooKeeperStorage storage = new BatchedZooKeeperStorage(new ZooKeeperStorage(c, p))
+    storage.minPublishInterval = Timespan.parse('10')
+    storage.volatileFields = ['scriptState.script.lastCheck']
+    storage.volatileFieldsMaxAge = Timespan.parse('1s')
+
+    def state = { String currentState, long lastCheck ->
+      [scriptState: [script: [lastCheck: lastCheck], stateMachine: [currentState: currentState]]]
+    }
+
+    def ab = MountPoint.create('/a/b')
+
+    storage.storeState(ab, state('installed', 1))
+    assertEquals(JsonUtils.compactPrint(state('installed', 1)), c.getStringData('_a_b'))
+
+    // only volatile fields changed => suppressed then written (latest one) later on
+    storage.storeState(ab, state('installed', 2))
+    storage.storeState(ab, state('installed', 3))
+    assertEquals(2, storage.suppressedCount)
+    assertEquals(JsonUtils.compactPrint(state('installed', 1)), c.getStringData('_a_b'))
+
+    GroovyConcurrentUtils.waitForCondition(SystemClock.INSTANCE, '5s', '10') {
+      c.getStringData('_a_b') == JsonUtils.compactPrint(state('installed', 3))
+    }
+    assertEquals(2, storage.publishedCount)
+
+    // back to the published state => nothing left to write
+    storage.storeState(ab, state('installed', 4))
+    storage.storeState(ab, state('installed', 3))
+    Thread.sleep(1500)
+    assertEquals(2, storage.publishedCount)
+    assertEquals(JsonUtils.compactPrint(state('installed', 3)), c.getStringData('_a_b'))
+
+    storage.shutdown()
+    storage.waitForShutdown('5s')
+  }
+
+  /**
+   * A (slow) write in ZooKeeper does not prevent the states from being stored in the meantime
+   */
+  public void testBatchedStorageSlowPublication()
+  {
+    IZKClient c = client.chroot('storage')
+    IZKClient p = client.chroot('agent.properties')
+
+    CountDownLatch publishing = new CountDownLatch(1)
+    CountDownLatch resume = new CountDownLatch(1)
+
+    def zkStorage = new ZooKeeperStorage(c, p) {
+      @Override
+      boolean publishState(MountPoint mountPoint, String state)
+      {
+        publishing.countDown()
+        resume.await()
+        return super.publishState(mountPoint, state)
+      }
+    }
+
+    BatchedZooKeeperStorage storage = new BatchedZooKeeperStorage(zkStorage)
+    storage.minPublishInterval = Timespan.parse('10')
+
+    def state = { String currentState ->
+      [scriptState: [stateMachine: [currentState: currentState]]]
+    }
+
+    def ab = MountPoint.create('/a/b')
+    def abc = MountPoint.create('/a/b/c')
+
+    def thread = Thread.start { storage.storeState(ab, state('installed')) }
+    assertTrue(publishing.await(5, TimeUnit.SECONDS))
+
+    // the write of /a/b is blocked => the store of /a/b/c does not wait for it
+    storage.storeState(abc, state('running'))
+    assertEquals(0, storage.publishedCount)
+    assertEquals(2, storage.pendingStatesCount)
+
+    resume.countDown()
+    thread.join()
+
+    GroovyConcurrentUtils.waitForCondition(SystemClock.INSTANCE, '5s', '10') {
+      storage.pendingStatesCount == 0
+    }
+    assertEquals(2, storage.publishedCount)
+    assertEquals(JsonUtils.compactPrint(state('installed')), c.getStringData('_a_b'))
+    assertEquals(JsonUtils.compactPrint(state('running')), c.getStringData('_a_b_c'))
+
+    storage.shutdown()
+    storage.waitForShutdown('5s')
+  }
 }
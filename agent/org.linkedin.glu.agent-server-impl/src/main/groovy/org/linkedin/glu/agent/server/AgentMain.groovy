@@ -29,7 +29,10 @@ import org.linkedin.glu.agent.impl.script.ScriptLoader
 import org.linkedin.glu.agent.impl.script.SharedClassLoaderScriptLoader
 import org.linkedin.glu.agent.impl.storage.DualWriteStorage
 import org.linkedin.glu.agent.impl.storage.FileSystemStorage
+import org.linkedin.glu.agent.impl.storage.JournalStorage
 import org.linkedin.glu.agent.impl.storage.Storage
+import org.linkedin.glu.agent.impl.storage.WriteBehindStorage
+import org.linkedin.glu.agent.impl.zookeeper.BatchedZooKeeperStorage
 import org.linkedin.glu.agent.impl.zookeeper.ZooKeeperStorage
 import org.linkedin.glu.agent.rest.common.RestServerFactoryImpl
 import org.linkedin.glu.agent.rest.resources.AgentResource
@@ -76,6 +79,7 @@ import org.linkedin.glu.utils.core.DisabledFeatureProxy
 import org.linkedin.glu.agent.impl.command.CommandManagerImpl
 import org.linkedin.glu.commands.impl.FileSystemCommandExecutionIOStorage
 import org.linkedin.glu.agent.impl.script.ScriptManagerImpl
+import org.linkedin.glu.agent.impl.script.ScriptExecutionScheduler
 
 import org.linkedin.glu.agent.impl.command.CommandGluScriptFactoryFactory
 import org.linkedin.glu.agent.impl.script.AbstractScriptFactoryFactory
@@ -133,7 +137,12 @@ class AgentMain implements LifecycleListener, Configurable
   protected def _restServer
   protected DualWriteStorage _dwStorage = null
   protected ZooKeeperStorage _zkStorage = null
+  protected BatchedZooKeeperStorage _batchedZkStorage = null
+  protected Map<String, Long> _loggedZkStatePublicationCounters = null
+  protected WriteBehindStorage _wbStorage = null
+  protected JournalStorage _journalStorage = null
   protected Storage _storage = null
+  protected ScriptExecutionScheduler _scriptExecutionScheduler = null
 
   protected final Object _lock = new Object()
   protected volatile boolean _receivedShutdown = false
@@ -471,11 +480,18 @@ class AgentMain implements LifecycleListener, Configurable
                            zooKeeper: _zkClient)
 
     _storage = createStorage()
-    def scriptManager = new ScriptManagerImpl(agentContext: _agentContext)
+    if(Config.getOptionalBoolean(_config, "${prefix}.agent.scriptExecution.sharedScheduler", true))
+      _scriptExecutionScheduler = new ScriptExecutionScheduler()
+    def scriptManager = new ScriptManagerImpl(agentContext: _agentContext,
+                                              scriptExecutionScheduler: _scriptExecutionScheduler)
     def scriptFactoryFactory = scriptManager.scriptFactoryFactory
     if(_storage)
-      scriptManager = new StateKeeperScriptManager(scriptManager: scriptManager,
-                                                   storage: _storage)
+      scriptManager =
+        new StateKeeperScriptManager(scriptManager: scriptManager,
+                                     storage: _storage,
+                                     restoreParallelism: Config.getOptionalInt(_config,
+                                                                               "${prefix}.agent.scriptState.restoreParallelism",
+                                                                               Runtime.runtime.availableProcessors()))
 
     TagsStorage tagsStorage = new TagsStorage(_storage, "${prefix}.agent.tags".toString())
 
@@ -550,6 +566,28 @@ class AgentMain implements LifecycleListener, Configurable
       log.info 'Agent shut down...'
     }
 
+    if(_scriptExecutionScheduler)
+    {
+      _scriptExecutionScheduler.shutdown()
+      _scriptExecutionScheduler.waitForShutdown()
+    }
+
+    if(_wbStorage)
+    {
+      log.info 'Writing pending states...'
+      _wbStorage.shutdown()
+      _wbStorage.waitForShutdown()
+      log.info 'Pending states written.'
+    }
+
+    if(_batchedZkStorage)
+    {
+      _batchedZkStorage.shutdown()
+      _batchedZkStorage.waitForShutdown()
+    }
+
+    _journalStorage?.close()
+
     if(_zkClient)
     {
       log.info 'Stopping ZooKeeper client...'
@@ -746,28 +784,98 @@ class AgentMain implements LifecycleListener, Configurable
 
   protected Storage createStorage()
   {
-    def fileSystem =
-      new FileSystemImpl(GroovyIOUtils.toFile(Config.getRequiredString(_config,
-                                                                       "${prefix}.agent.scriptStateDir")),
-                         _agentTempDir)
+    def scriptStateDir =
+      GroovyIOUtils.toFile(Config.getRequiredString(_config, "${prefix}.agent.scriptStateDir"))
+
+    def fileSystem = new FileSystemImpl(scriptStateDir, _agentTempDir)
     
-    Storage storage = new FileSystemStorage(fileSystem,
-                                            _agentProperties,
-                                            _persistentPropertiesFile)
+    FileSystemStorage fsStorage = new FileSystemStorage(fileSystem,
+                                                        _agentProperties,
+                                                        _persistentPropertiesFile)
 
-    // clean up on boot
-    def invalidStates = storage.deleteInvalidStates()
-    if(invalidStates)
-      log.warn("cleaned up invalid states [${invalidStates.size()}]")
+    Storage storage = fsStorage
+
+    def journalFile =
+      GroovyIOUtils.toFile(Config.getOptionalString(_config,
+                                                    "${prefix}.agent.scriptState.journalFile",
+                                                    "${scriptStateDir}.journal"))
+
+    boolean journalMode =
+      Config.getOptionalString(_config, "${prefix}.agent.scriptState.storage", 'fileSystem') == 'journal'
+
+    // clean up on boot (the state files are only used by the journal when it gets created)
+    if(!journalMode || !journalFile.exists())
+    {
+      def invalidStates = fsStorage.deleteInvalidStates()
+      if(invalidStates)
+        log.warn("cleaned up invalid states [${invalidStates.size()}]")
+    }
+
+    // the states are stored in a single journal (the legacy state files are imported first)
+    if(journalMode)
+    {
+      _journalStorage = new JournalStorage(journalFile, fsStorage)
+      _journalStorage.compactionThreshold =
+        Config.getOptionalInt(_config,
+                              "${prefix}.agent.scriptState.journalCompactionThreshold",
+                              _journalStorage.compactionThreshold)
+      _journalStorage.open()
+
+      def invalidStates = _journalStorage.deleteInvalidStates()
+      if(invalidStates)
+        log.warn("cleaned up invalid states [${invalidStates.size()}]")
+
+      storage = _journalStorage
+    }
+    else
+    {
+      // rollback: the states of the journal (if any) are exported back to the state files
+      if(journalFile.exists())
+      {
+        def journalStorage = new JournalStorage(journalFile, fsStorage)
+        journalStorage.open()
+        journalStorage.exportLegacyStates()
+      }
+    }
 
     _zkStorage = createZooKeeperStorage()
 
     if(_zkStorage)
     {
-      _dwStorage = new DualWriteStorage(storage, _zkStorage)
+      def zkStorage = _zkStorage
+
+      // limits the number of writes in ZooKeeper (watched by every console)
+      if(Config.getOptionalBoolean(_config, "${prefix}.agent.zkStatePublication.batched", false))
+      {
+        _batchedZkStorage = new BatchedZooKeeperStorage(_zkStorage)
+        _batchedZkStorage.minPublishInterval =
+          Timespan.parse(Config.getOptionalString(_config,
+                                                  "${prefix}.agent.zkStatePublication.minInterval",
+                                                  _batchedZkStorage.minPublishInterval.toString()))
+        _batchedZkStorage.volatileFields =
+          Config.getOptionalString(_config,
+                                   "${prefix}.agent.zkStatePublication.volatileFields",
+                                   '').tokenize(',')*.trim()
+        def volatileFieldsMaxAge =
+          Config.getOptionalString(_config,
+                                   "${prefix}.agent.zkStatePublication.volatileFieldsMaxAge",
+                                   _batchedZkStorage.volatileFieldsMaxAge.toString())
+        _batchedZkStorage.volatileFieldsMaxAge =
+          volatileFieldsMaxAge == 'never' ? null : Timespan.parse(volatileFieldsMaxAge)
+        zkStorage = _batchedZkStorage
+      }
+
+      _dwStorage = new DualWriteStorage(storage, zkStorage)
       storage = _dwStorage
     }
 
+    // script actions do not wait for the states to be written (file system and ZooKeeper)
+    if(Config.getOptionalBoolean(_config, "${prefix}.agent.scriptState.writeBehind", false))
+    {
+      _wbStorage = new WriteBehindStorage(storage)
+      storage = _wbStorage
+    }
+
     return storage
   }
 
@@ -830,6 +938,15 @@ class AgentMain implements LifecycleListener, Configurable
         }
 
         log.info("Syncing filesystem <=> ZooKeeper")
+        try
+        {
+          _wbStorage?.flush()
+        }
+        catch(Throwable th)
+        {
+          // the states not written are retried (and written to both storages)
+          log.warn("could not write the pending states before syncing... ignored", th)
+        }
         _dwStorage.sync()
       }
     }
@@ -886,6 +1003,8 @@ class AgentMain implements LifecycleListener, Configurable
                   else
                     throw ke // will be handled by noException
                 }
+
+                logZooKeeperStatePublicationCounters()
               }
               else
               {
@@ -902,6 +1021,36 @@ class AgentMain implements LifecycleListener, Configurable
     }
   }
 
+  /**
+   * @return the counters of the (batched) publication of the states in ZooKeeper
+   *         (<code>null</code> when the publication is not batched)
+   */
+  Map<String, Long> getZooKeeperStatePublicationCounters()
+  {
+    if(!_batchedZkStorage)
+      return null
+
+    return [
+      publishedCount: _batchedZkStorage.publishedCount,
+      suppressedCount: _batchedZkStorage.suppressedCount,
+      coalescedCount: _batchedZkStorage.coalescedCount
+    ]
+  }
+
+  /**
+   * Logs the counters of the (batched) publication of the states in ZooKeeper (only when they
+   * changed since the last time)
+   */
+  protected void logZooKeeperStatePublicationCounters()
+  {
+    Map<String, Long> counters = getZooKeeperStatePublicationCounters()
+    if(counters != null && counters != _loggedZkStatePublicationCounters)
+    {
+      log.info("ZooKeeper state publication: ${counters}")
+      _loggedZkStatePublicationCounters = counters
+    }
+  }
+
   public void onDisconnected()
   {
     if(_zkClient)
@@ -81,10 +81,16 @@ interface AgentsTracker extends Startable, Destroyable
   Map<String, Map<MountPoint, MountPointInfo>> getMountPointInfos()
 
   /**
-   * @return a map [accuracy: _accuracyLevel_, allInfos: [_agentName_: [agent: _agentInfo_, mountPoints: _mountPointInfos_]]
+   * @return a map [accuracy: _accuracyLevel_, transactionId: _zkTxId_, allInfos: [_agentName_: [agent: _agentInfo_, mountPoints: _mountPointInfos_]]
    */
   def getAllInfosWithAccuracy()
 
+  /**
+   * @return the (zookeeper) transaction id of the last event seen by this tracker. It changes
+   *         every time an agent or a mount point changes (<code>-1</code> if not tracking)
+   */
+  long getTransactionId()
+
   /**
    * Clears the agent info for the given agent
    * @return <code>true</code> if the agent was cleared, <code>false</code> if it was already cleared
@@ -224,7 +224,7 @@ class AgentsTrackerImpl implements AgentsTracker, LifecycleListener, ErrorListen
   }
 
   /**
-   * @return a map [accuracy: _accuracyLevel_, allInfos: [h1: [agent: _agentInfo_, mountPoints: _mountPointInfos_]]
+   * @return a map [accuracy: _accuracyLevel_, transactionId: _zkTxId_, allInfos: [h1: [agent: _agentInfo_, mountPoints: _mountPointInfos_]]
    */
   def getAllInfosWithAccuracy()
   {
@@ -235,10 +235,20 @@ class AgentsTrackerImpl implements AgentsTracker, LifecycleListener, ErrorListen
     }
     else
     {
-      return [accuracy: AccuracyLevel.INACCURATE, allInfos: [:]]
+      return [accuracy: AccuracyLevel.INACCURATE, transactionId: -1L, allInfos: [:]]
     }
   }
 
+  @Override
+  long getTransactionId()
+  {
+    def agentsTrackerInstance = _agentsTrackerInstance
+    if(agentsTrackerInstance)
+      return agentsTrackerInstance.transactionId
+    else
+      return -1L
+  }
+
   /**
    * Returns all agent infos
    */
@@ -453,7 +463,7 @@ class AgentsTrackerInstance
   }
 
   /**
-   * @return a map with <code>accuracy</code> and <code>allInfos</code>
+   * @return a map with <code>accuracy</code>, <code>transactionId</code> and <code>allInfos</code>
    */
   def getAllInfosWithAccuracy()
   {
@@ -477,7 +487,7 @@ class AgentsTrackerInstance
     if(_stopTracking)
       accuracy = AccuracyLevel.INACCURATE
 
-    return [accuracy: accuracy, allInfos: res]
+    return [accuracy: accuracy, transactionId: txAfter, allInfos: res]
   }
 
   /**
@@ -266,9 +266,13 @@ public class FileSystemCommandExecutionIOStorage extends AbstractCommandExecutio
    */
   InputStream createInputStream(Resource resource)
   {
-    InputStream res = pluginService.executeMethod(FileSystemCommandExecutionIOStorage,
-                                                  "createInputStream",
-                                                  [resource: resource]) as InputStream
+    InputStream res = null
+
+    if(pluginService.hasPluginMethod(FileSystemCommandExecutionIOStorage, "createInputStream"))
+      res = pluginService.executeMethod(FileSystemCommandExecutionIOStorage,
+                                        "createInputStream",
+                                        [resource: resource]) as InputStream
+
     if(!res)
       res = resource.inputStream
 
@@ -280,9 +284,12 @@ public class FileSystemCommandExecutionIOStorage extends AbstractCommandExecutio
    */
   OutputStream createOutputStream(Resource resource)
   {
-    OutputStream res = pluginService.executeMethod(FileSystemCommandExecutionIOStorage,
-                                                   "createOutputStream",
-                                                   [resource: resource]) as OutputStream
+    OutputStream res = null
+
+    if(pluginService.hasPluginMethod(FileSystemCommandExecutionIOStorage, "createOutputStream"))
+      res = pluginService.executeMethod(FileSystemCommandExecutionIOStorage,
+                                        "createOutputStream",
+                                        [resource: resource]) as OutputStream
 
     if(!res)
       res = new FileOutputStream(resource.file)
@@ -33,12 +33,30 @@ plugins.StreamFileContentPlugin.unrestrictedLocation = "/"
 // set to '0' if you don't want deployments to be automatically archived
 console.deploymentService.autoArchiveTimeout = "30m"
 
+// set to true if you want the details of archived deployments to be stored in a compact
+// (binary) format
+console.deploymentService.deploymentStorage.compactDetails = false
+
 // set to true if you want to display state delta in error even if there is a delta (yellow vs red)
 console.deltaService.stateDeltaOverridesDelta = true
 
+// number of entries from which the delta is computed in parallel (set it to a very big number
+// if you want the delta to always be computed in a single thread)
+console.deltaService.parallelDeltaThreshold = 2000
+
+// number of threads used to compute the delta in parallel (defaults to the number of processors)
+//console.deltaService.parallelism = 4
+
+// set to true if your custom delta (DeltaMgrImpl subclass) can be called concurrently when the
+// delta is computed in parallel (by default the calls are serialized)
+console.deltaService.parallelCustomDelta = false
+
 // set to false if you want missing agents to not be skipped anymore in plan computation
 console.plannerService.planner.skipMissingAgents = true
 
+// number of transition plans kept in memory (set to 0 if you want plans to always be recomputed)
+console.plannerService.transitionPlanCacheSize = 20
+
 console.trackerService.zookeeperRoot = '/org/glu'
 
 // connection timeout when the console tries to talk to the agent (rest)
@@ -21,7 +21,10 @@ import org.slf4j.Logger
 import org.slf4j.LoggerFactory
 import org.springframework.cache.ehcache.EhCacheFactoryBean
 import org.linkedin.util.clock.Timespan
+import org.linkedin.util.clock.SystemClock
 import java.util.concurrent.Executors
+import java.util.concurrent.ForkJoinPool
+import org.linkedin.glu.utils.concurrent.ExecutorServices
 
 import org.linkedin.groovy.util.io.fs.FileSystemImpl
 import org.linkedin.glu.grails.utils.ConsoleConfig
@@ -32,6 +35,12 @@ import org.linkedin.glu.orchestration.engine.commands.CommandsService
 import org.linkedin.glu.orchestration.engine.commands.CommandExecutionStorageImpl
 import org.linkedin.glu.commands.impl.FileSystemCommandExecutionIOStorage
 import org.linkedin.glu.commands.impl.MemoryCommandExecutionIOStorage
+import org.linkedin.glu.provisioner.plan.impl.LeafStepConcurrencyLimiter
+import org.linkedin.glu.provisioner.plan.impl.PlanExecutionProgressDispatcher
+import org.linkedin.glu.provisioner.plan.impl.PlanExecutor
+import org.linkedin.glu.provisioner.plan.impl.NonBlockingPlanExecutor
+import org.linkedin.glu.orchestration.engine.action.execution.AgentLeafStepPartitioner
+import org.linkedin.glu.orchestration.engine.action.execution.ActionKindLeafStepPartitioner
 
 class GrailsPluginLoadOrderDebugger implements PluginManagerAware
 {
@@ -60,20 +69,117 @@ beans = {
   def fixedThreadPoolSize =
     consoleConfig.console.deploymentService.deployer.planExecutor.leafExecutorService.fixedThreadPoolSize ?: 0
 
-  if(fixedThreadPoolSize ?: 0 > 0)
+  def virtualThreads =
+    consoleConfig.console.deploymentService.deployer.planExecutor.leafExecutorService.virtualThreads ?: false
+
+  // the composite steps (executor) wait for their children, so in virtual threads mode they
+  // run on virtual threads as well
+  if(virtualThreads)
   {
-    log.info "Setting leafExecutorService thread pool size to [${fixedThreadPoolSize}]"
-    leafExecutorService(Executors, fixedThreadPoolSize) { bean ->
-      bean.factoryMethod = "newFixedThreadPool"
+    log.info "Using virtual threads for executor and leafExecutorService (supported=${ExecutorServices.isVirtualThreadSupported()})"
+    executor(ExecutorServices) { bean ->
+      bean.factoryMethod = "newVirtualThreadPerTaskExecutor"
+      bean.destroyMethod = "shutdown"
+    }
+    leafExecutorService(ExecutorServices) { bean ->
+      bean.factoryMethod = "newVirtualThreadPerTaskExecutor"
       bean.destroyMethod = "shutdown"
     }
   }
   else
   {
-    leafExecutorService(Executors) { bean ->
+    executor(Executors) { bean ->
       bean.factoryMethod = "newCachedThreadPool"
       bean.destroyMethod = "shutdown"
     }
+
+    if(fixedThreadPoolSize ?: 0 > 0)
+    {
+      log.info "Setting leafExecutorService thread pool size to [${fixedThreadPoolSize}]"
+      leafExecutorService(Executors, fixedThreadPoolSize) { bean ->
+        bean.factoryMethod = "newFixedThreadPool"
+        bean.destroyMethod = "shutdown"
+      }
+    }
+    else
+    {
+      leafExecutorService(Executors) { bean ->
+        bean.factoryMethod = "newCachedThreadPool"
+        bean.destroyMethod = "shutdown"
+      }
+    }
+  }
+
+  /**
+   * Pool used to compute the delta in parallel (large fabrics)
+   */
+  def deltaParallelism =
+    (consoleConfig.console.deltaService.parallelism ?: Runtime.runtime.availableProcessors()) as int
+
+  deltaForkJoinPool(ForkJoinPool, deltaParallelism) { bean ->
+    bean.destroyMethod = "shutdown"
+  }
+
+  /**
+   * Limits on how many leaf steps execute at the same time (unlimited by default)
+   */
+  def concurrencyLimits = consoleConfig.console.deploymentService.deployer.planExecutor.concurrencyLimits
+
+  def leafStepPartitionLimits = []
+
+  if(concurrencyLimits.maxPerAgent)
+  {
+    log.info "Limiting concurrent steps per agent to [${concurrencyLimits.maxPerAgent}]"
+    leafStepPartitionLimits << new LeafStepConcurrencyLimiter.PartitionLimit(new AgentLeafStepPartitioner(),
+                                                                             concurrencyLimits.maxPerAgent as int)
+  }
+
+  if(concurrencyLimits.maxPerAction)
+  {
+    log.info "Limiting concurrent steps per action to ${concurrencyLimits.maxPerAction}"
+    def partitionLimit = new LeafStepConcurrencyLimiter.PartitionLimit(new ActionKindLeafStepPartitioner(), 0)
+    partitionLimit.maxByPartition = concurrencyLimits.maxPerAction.collectEntries { k, v -> [k, v as int] }
+    leafStepPartitionLimits << partitionLimit
+  }
+
+  if(concurrencyLimits.maxLeafSteps)
+    log.info "Limiting concurrent steps to [${concurrencyLimits.maxLeafSteps}]"
+
+  leafStepConcurrencyLimiter(LeafStepConcurrencyLimiter) {
+    maxConcurrentLeafSteps = (concurrencyLimits.maxLeafSteps ?: 0) as int
+    partitionLimits = leafStepPartitionLimits
+  }
+
+  /**
+   * Delivers the progress events of all deployments
+   */
+  def progressDispatcherConfig = consoleConfig.console.deploymentService.deployer.planExecutor.progressDispatcher
+
+  progressDispatcher(PlanExecutionProgressDispatcher, (progressDispatcherConfig.threadCount ?: PlanExecutionProgressDispatcher.DEFAULT_THREAD_COUNT) as int) { bean ->
+    bean.destroyMethod = "shutdown"
+    capacity = (progressDispatcherConfig.capacity ?: PlanExecutionProgressDispatcher.DEFAULT_CAPACITY) as int
+    overflowCapacity = (progressDispatcherConfig.overflowCapacity ?: PlanExecutionProgressDispatcher.DEFAULT_OVERFLOW_CAPACITY) as int
+    batchSize = (progressDispatcherConfig.batchSize ?: PlanExecutionProgressDispatcher.DEFAULT_BATCH_SIZE) as int
+    overflowPolicy = (progressDispatcherConfig.overflowPolicy ?: 'COALESCE') as PlanExecutionProgressDispatcher.OverflowPolicy
+  }
+
+  /**
+   * The non blocking plan executor does not tie up a thread per composite (parallel or sequential)
+   * step while its children are running
+   */
+  def nonBlocking =
+    consoleConfig.console.deploymentService.deployer.planExecutor.nonBlocking ?: false
+
+  if(nonBlocking)
+    log.info "Using non blocking plan executor"
+
+  planExecutor(nonBlocking ? NonBlockingPlanExecutor : PlanExecutor) {
+    clock = SystemClock.instance()
+    executorService = ref('executor')
+    leafExecutorService = ref('leafExecutorService')
+    leafStepExecutor = ref('leafExecutor')
+    leafStepConcurrencyLimiter = ref('leafStepConcurrencyLimiter')
+    progressDispatcher = ref('progressDispatcher')
   }
 
   /**
@@ -16,9 +16,15 @@
 
 package org.linkedin.glu.console.controllers
 
+import org.linkedin.glu.orchestration.engine.agents.AgentsService
+
 /**
  * @author ypujante@linkedin.com */
 class AdminController
 {
-  def index = { }
+  AgentsService agentsService
+
+  def index = {
+    return [currentSystemModelSnapshotStats: agentsService.currentSystemModelSnapshotStats]
+  }
 }
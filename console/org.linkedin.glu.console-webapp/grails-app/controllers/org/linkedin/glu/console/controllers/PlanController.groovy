@@ -498,7 +498,9 @@ public class PlanController extends ControllerBase
     if(plan)
     {
       response.setContentType('text/xml')
-      render plan.toXml()
+      // streaming: the plan can be very big
+      plan.writeXml(null, response.outputStream)
+      response.outputStream.flush()
     }
     else
     {
@@ -569,7 +571,8 @@ public class PlanController extends ControllerBase
     if(deployment && deployment.planExecution.plan.id == params.planId)
     {
       response.setContentType('text/xml')
-      render deployment.planExecution.toXml()
+      deployment.planExecution.writeXml(null, response.outputStream)
+      response.outputStream.flush()
     }
     else
     {
@@ -740,7 +743,8 @@ public class PlanController extends ControllerBase
       else
       {
         response.setContentType('text/xml')
-        render deployment.planXml
+        deployment.writePlanXml(response.outputStream)
+        response.outputStream.flush()
       }
     }
     else
@@ -789,6 +793,8 @@ class ProgressTracker implements IPlanExecutionProgressTracker
 
   int _leafStepsCompletedCount = 0
 
+  def _queuedLeafStepIds = new HashSet()
+
   public void onPlanStart(IPlanExecution planExecution)
   {
     this.plan = planExecution.plan
@@ -820,6 +826,11 @@ class ProgressTracker implements IPlanExecutionProgressTracker
     return _leafStepsCompletedCount
   }
 
+  synchronized int getLeafStepsQueuedCount()
+  {
+    return _queuedLeafStepIds.size()
+  }
+
   synchronized int getCompletionPercentage()
   {
     if(plan.leafStepsCount == 0)
@@ -835,14 +846,25 @@ class ProgressTracker implements IPlanExecutionProgressTracker
     return res
   }
 
+  public synchronized void onStepQueued(IStepExecution stepExecution)
+  {
+    _steps[stepExecution.step.id] = stepExecution
+    if(stepExecution.step.type == IStep.Type.LEAF)
+      _queuedLeafStepIds << stepExecution.step.id
+  }
+
   public synchronized void onStepStart(IStepExecution stepExecution)
   {
     _steps[stepExecution.step.id] = stepExecution
+    _queuedLeafStepIds.remove(stepExecution.step.id)
   }
 
   public synchronized void onStepEnd(IStepCompletionStatus stepExecutionStatus)
   {
     if(stepExecutionStatus.step.type == IStep.Type.LEAF)
+    {
       _leafStepsCompletedCount++
+      _queuedLeafStepIds.remove(stepExecutionStatus.step.id)
+    }
   }
 }
\ No newline at end of file
@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) 2013 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package org.linkedin.glu.console.domain
+
+/**
+ * Details of an archived deployment stored in a compact (binary) format (see
+ * <code>CompactXmlCodec</code>). Kept separately from the deployment so that they are only
+ * loaded when needed.
+ *
+ * @author yan@pongasoft.com */
+class DbDeploymentDetails
+{
+  static constraints = {
+    deploymentId(nullable: false, unique: true)
+    content(nullable: false, maxSize: 64 * 1024 * 1024)
+  }
+
+  Long deploymentId
+  byte[] content
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2013 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package org.linkedin.glu.console.domain
+
+/**
+ * A batch of progress events of a running deployment (see <code>DeploymentProgressJournal</code>).
+ * The batches are deleted once the deployment ends (the details of the deployment then contain
+ * everything).
+ *
+ * @author yan@pongasoft.com */
+class DbDeploymentProgress
+{
+  static constraints = {
+    deploymentId(nullable: false)
+    events(nullable: false)
+  }
+
+  static mapping = {
+    deploymentId index: 'deployment_progress_deployment_id_idx'
+    columns {
+      events type: 'text'
+    }
+  }
+
+  Long deploymentId
+  String events // one event per line
+}
@@ -704,14 +704,28 @@ public class ConsoleTagLib
       }.join(' - ')
     }
 
+    // children of a dag: the steps which need to complete first
+    if(args.dependsOn)
+    {
+      out << " (after ${args.dependsOn.collect { (it.metadata.name ?: it.id).encodeAsHTML() }.join(', ')})"
+    }
+
     if(step instanceof CompositeStep)
     {
       step.steps.each { child ->
-        if(step.type == IStep.Type.PARALLEL)
+        def dependsOn = null
+        switch(step.type)
         {
-          stepIdx = [:]
+          case IStep.Type.PARALLEL:
+            stepIdx = [:]
+            break
+
+          case IStep.Type.DAG:
+            stepIdx = [:]
+            dependsOn = step.getPredecessors(child)
+            break
         }
-        out << "<dd>" << cl.renderStep(step: child, stepIdx: stepIdx) << "</dd>"
+        out << "<dd>" << cl.renderStep(step: child, stepIdx: stepIdx, dependsOn: dependsOn) << "</dd>"
       }
     }
 
@@ -737,6 +751,9 @@ public class ConsoleTagLib
 
     if(!status)
     {
+      if(progress[step.id]?.queued)
+        status = "QUEUED"
+      else
       if(progress[step.id])
         status = "RUNNING"
       else
@@ -754,6 +771,9 @@ public class ConsoleTagLib
 
     if(!duration)
     {
+      if(progress[step.id]?.queued)
+        duration = "queued"
+      else
       if(progress[step.id]?.startTime)
         duration = "running [${cl.formatDuration(time: progress[step.id].startTime)}]"
       else
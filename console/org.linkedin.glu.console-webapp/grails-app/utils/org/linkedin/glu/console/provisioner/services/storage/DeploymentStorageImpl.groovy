@@ -1,5 +1,5 @@
 /*
- * Copyright (c) 2011 Yan Pujante
+ * Copyright (c) 2011-2013 Yan Pujante
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -19,6 +19,9 @@ package org.linkedin.glu.console.provisioner.services.storage
 import org.linkedin.glu.orchestration.engine.deployment.DeploymentStorage
 import org.linkedin.glu.orchestration.engine.deployment.ArchivedDeployment
 import org.linkedin.glu.console.domain.DbDeployment
+import org.linkedin.glu.console.domain.DbDeploymentDetails
+import org.linkedin.glu.console.domain.DbDeploymentProgress
+import org.linkedin.glu.provisioner.plan.api.CompactXmlCodec
 import org.linkedin.glu.provisioner.plan.api.IStepCompletionStatus
 import org.linkedin.util.annotations.Initializable
 import org.linkedin.glu.console.domain.LightDbDeployment
@@ -34,10 +37,27 @@ public class DeploymentStorageImpl implements DeploymentStorage
   @Initializable
   int maxResults = 25
 
+  /**
+   * When <code>true</code>, the details of a deployment are stored in a compact (binary) format
+   * when the deployment ends (and separately from the deployment itself)
+   */
+  @Initializable
+  boolean compactDetails = false
+
   @Override
   ArchivedDeployment getArchivedDeployment(String id)
   {
-    createArchivedDeployment(DbDeployment.get(id as long))
+    ArchivedDeployment deployment = createArchivedDeployment(DbDeployment.get(id as long))
+
+    // the deployment has not ended (or the console was restarted while it was running)
+    if(deployment && !deployment.endDate)
+    {
+      def batches = DbDeploymentProgress.findAllByDeploymentId(id as long, [sort: 'id'])
+      if(batches)
+        deployment.progress = batches.collect { it.events }.join('\n')
+    }
+
+    return deployment
   }
 
   @Override
@@ -77,14 +97,36 @@ public class DeploymentStorageImpl implements DeploymentStorage
     if(deployment == null)
       return null
     
-    return new ArchivedDeployment(id: deployment.id.toString(),
-                                  startDate: deployment.startDate,
-                                  endDate: deployment.endDate,
-                                  username: deployment.username,
-                                  fabric: deployment.fabric,
-                                  description: deployment.description,
-                                  status: deployment.status,
-                                  details: deployment.details)
+    def archivedDeployment = new ArchivedDeployment(id: deployment.id.toString(),
+                                                    startDate: deployment.startDate,
+                                                    endDate: deployment.endDate,
+                                                    username: deployment.username,
+                                                    fabric: deployment.fabric,
+                                                    description: deployment.description,
+                                                    status: deployment.status,
+                                                    details: deployment.details)
+
+    // details stored in compact format
+    if(deployment.details == null)
+    {
+      long deploymentId = deployment.id
+      archivedDeployment.detailsLoader = { loadCompactDetails(deploymentId) }
+    }
+
+    return archivedDeployment
+  }
+
+  protected String loadCompactDetails(long deploymentId)
+  {
+    String details = null
+
+    DbDeploymentDetails.withTransaction {
+      DbDeploymentDetails deploymentDetails = DbDeploymentDetails.findByDeploymentId(deploymentId)
+      if(deploymentDetails)
+        details = CompactXmlCodec.instance().decode(deploymentDetails.content)
+    }
+
+    return details
   }
 
   protected ArchivedDeployment createArchivedDeployment(LightDbDeployment deployment)
@@ -124,6 +166,18 @@ public class DeploymentStorageImpl implements DeploymentStorage
     return archivedDeployment
   }
 
+  @Override
+  void appendDeploymentProgress(String id, Collection<String> events)
+  {
+    DbDeploymentProgress.withTransaction {
+      def progress = new DbDeploymentProgress(deploymentId: id as long,
+                                              events: events.join('\n'))
+
+      if(!progress.save())
+        log.warn("could not save progress for deployment ${id}: ${progress.errors}")
+    }
+  }
+
   @Override
   ArchivedDeployment endDeployment(String id,
                                    IStepCompletionStatus status,
@@ -142,8 +196,23 @@ public class DeploymentStorageImpl implements DeploymentStorage
         deployment.startDate = new Date(status.startTime)
         deployment.endDate = new Date(status.endTime)
         deployment.status = status.status.name()
+        if(compactDetails && details != null)
+        {
+          def deploymentDetails =
+            new DbDeploymentDetails(deploymentId: deployment.id,
+                                    content: CompactXmlCodec.instance().encode(details))
+          if(deploymentDetails.save())
+            details = null
+          else
+            log.warn("could not save compact details for deployment ${id}: ${deploymentDetails.errors}")
+        }
+
         deployment.details = details
 
+        // the details now contain the entire progress
+        DbDeploymentProgress.executeUpdate("delete DbDeploymentProgress p where p.deploymentId = ?",
+                                           [id as long])
+
         if(!deployment.save())
         {
           log.warn("could not save deployment ${id}: ${deployment.errors}")
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2013 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.linkedin.glu.orchestration.engine.benchmarks;
+
+import org.linkedin.glu.orchestration.engine.action.descriptor.ActionDescriptor;
+import org.linkedin.glu.orchestration.engine.delta.SystemModelDelta;
+import org.linkedin.glu.provisioner.plan.api.ILeafStepExecutor;
+import org.linkedin.glu.provisioner.plan.api.IStep;
+import org.linkedin.glu.provisioner.plan.api.IStepCompletionStatus;
+import org.linkedin.glu.provisioner.plan.api.LeafStep;
+import org.linkedin.glu.provisioner.plan.api.Plan;
+import org.linkedin.glu.provisioner.plan.impl.NonBlockingPlanExecutor;
+import org.linkedin.glu.provisioner.plan.impl.PlanExecutor;
+import org.linkedin.glu.utils.concurrent.ExecutorServices;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the execution of a plan (<code>PlanExecutor.executePlan</code>) with a leaf step
+ * executor which does nothing: this measures the overhead of the plan execution engine itself.
+ *
+ * @author yan@pongasoft.com
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class PlanExecutorBenchmark
+{
+  /**
+   * Leaf step executor which does nothing
+   */
+  public static class NoOpLeafStepExecutor implements ILeafStepExecutor<ActionDescriptor>
+  {
+    @Override
+    public Object executeLeafStep(LeafStep<ActionDescriptor> leafStep) throws Exception
+    {
+      return null;
+    }
+  }
+
+  @State(Scope.Benchmark)
+  public static class PlanExecutorState
+  {
+    @Param({"SEQUENTIAL", "PARALLEL"})
+    public IStep.Type stepType;
+
+    @Param({"false", "true"})
+    public boolean nonBlocking;
+
+    /**
+     * virtual threads require java 21+ (falls back to a cached thread pool otherwise)
+     */
+    @Param({"false", "true"})
+    public boolean virtualThreads;
+
+    public Plan<ActionDescriptor> plan;
+    public ExecutorService executorService;
+    public PlanExecutor<ActionDescriptor> planExecutor;
+
+    @Setup
+    public void setupPlanExecutor(SystemModelsState state)
+    {
+      SystemModelDelta delta =
+        state.deltaMgr.computeDelta(state.expectedModel, state.currentModel, null);
+      plan = state.planner.computeDeploymentPlan(stepType, delta);
+
+      if(virtualThreads)
+        executorService = ExecutorServices.newVirtualThreadPerTaskExecutor();
+      else
+        executorService = Executors.newCachedThreadPool();
+      if(nonBlocking)
+        planExecutor = new NonBlockingPlanExecutor<ActionDescriptor>(executorService,
+                                                                     new NoOpLeafStepExecutor());
+      else
+        planExecutor = new PlanExecutor<ActionDescriptor>(executorService,
+                                                          new NoOpLeafStepExecutor());
+    }
+
+    @TearDown
+    public void tearDownPlanExecutor()
+    {
+      executorService.shutdownNow();
+    }
+  }
+
+  @Benchmark
+  public IStepCompletionStatus<ActionDescriptor> executePlan(PlanExecutorState state)
+    throws InterruptedException
+  {
+    return state.planExecutor.executePlan(state.plan).waitForCompletion();
+  }
+}
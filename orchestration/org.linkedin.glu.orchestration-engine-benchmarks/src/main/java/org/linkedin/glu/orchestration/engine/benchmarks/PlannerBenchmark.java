@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2013 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.linkedin.glu.orchestration.engine.benchmarks;
+
+import org.linkedin.glu.orchestration.engine.action.descriptor.ActionDescriptor;
+import org.linkedin.glu.orchestration.engine.delta.SystemModelDelta;
+import org.linkedin.glu.orchestration.engine.planner.TransitionPlan;
+import org.linkedin.glu.provisioner.plan.api.IStep;
+import org.linkedin.glu.provisioner.plan.api.Plan;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the planner: computing the transition plan from a delta
+ * (<code>PlannerImpl.computeTransitionPlan</code>) and building the plan from the transition plan
+ * (<code>TransitionPlanImpl.buildPlan</code>).
+ *
+ * @author yan@pongasoft.com
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class PlannerBenchmark
+{
+  @State(Scope.Benchmark)
+  public static class PlannerState
+  {
+    @Param({"SEQUENTIAL", "PARALLEL"})
+    public IStep.Type stepType;
+
+    public SystemModelDelta delta;
+    public TransitionPlan<ActionDescriptor> transitionPlan;
+
+    @Setup
+    public void setupPlanner(SystemModelsState state)
+    {
+      delta = state.deltaMgr.computeDelta(state.expectedModel, state.currentModel, null);
+      transitionPlan = state.planner.computeTransitionPlan(delta);
+    }
+  }
+
+  @Benchmark
+  public TransitionPlan<ActionDescriptor> computeTransitionPlan(SystemModelsState state,
+                                                                PlannerState plannerState)
+  {
+    return state.planner.computeTransitionPlan(plannerState.delta);
+  }
+
+  @Benchmark
+  public Plan<ActionDescriptor> buildPlan(PlannerState plannerState)
+  {
+    return plannerState.transitionPlan.buildPlan(plannerState.stepType);
+  }
+
+  @Benchmark
+  public Plan<ActionDescriptor> computeDeploymentPlan(SystemModelsState state,
+                                                      PlannerState plannerState)
+  {
+    SystemModelDelta delta =
+      state.deltaMgr.computeDelta(state.expectedModel, state.currentModel, null);
+    return state.planner.computeDeploymentPlan(plannerState.stepType, delta);
+  }
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) 2013 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.linkedin.glu.orchestration.engine.benchmarks;
+
+import org.linkedin.glu.provisioner.core.model.SystemEntry;
+import org.linkedin.glu.provisioner.core.model.SystemModel;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Generates synthetic (but deterministic for a given seed) system models to feed the benchmarks.
+ * The expected model contains <code>agentsCount * mountPointsPerAgent</code> entries. The current
+ * model is derived from the expected model and differs from it for a ratio
+ * (<code>deltaRatio</code>) of the entries (missing entry, different script or different state).
+ *
+ * @author yan@pongasoft.com
+ */
+public class SystemModelGenerator
+{
+  public static final String CURRENT_STATE = "currentState";
+
+  private String _fabric = "f1";
+  private int _agentsCount = 100;
+  private int _mountPointsPerAgent = 10;
+  private int _parentChildDepth = 0;
+  private int _tagsPerEntry = 0;
+  private int _tagsPoolSize = 20;
+  private double _deltaRatio = 0.1;
+  private long _seed = 0;
+
+  /**
+   * Constructor
+   */
+  public SystemModelGenerator()
+  {
+  }
+
+  public String getFabric()
+  {
+    return _fabric;
+  }
+
+  public void setFabric(String fabric)
+  {
+    _fabric = fabric;
+  }
+
+  public int getAgentsCount()
+  {
+    return _agentsCount;
+  }
+
+  public void setAgentsCount(int agentsCount)
+  {
+    _agentsCount = agentsCount;
+  }
+
+  public int getMountPointsPerAgent()
+  {
+    return _mountPointsPerAgent;
+  }
+
+  public void setMountPointsPerAgent(int mountPointsPerAgent)
+  {
+    _mountPointsPerAgent = mountPointsPerAgent;
+  }
+
+  /**
+   * @return the number of children in each parent/child chain (<code>0</code> means no
+   *         parent/child relationship at all, <code>1</code> means each parent has one child,
+   *         <code>2</code> means parent -> child -> grand child, etc...)
+   */
+  public int getParentChildDepth()
+  {
+    return _parentChildDepth;
+  }
+
+  public void setParentChildDepth(int parentChildDepth)
+  {
+    _parentChildDepth = parentChildDepth;
+  }
+
+  public int getTagsPerEntry()
+  {
+    return _tagsPerEntry;
+  }
+
+  public void setTagsPerEntry(int tagsPerEntry)
+  {
+    _tagsPerEntry = tagsPerEntry;
+  }
+
+  public int getTagsPoolSize()
+  {
+    return _tagsPoolSize;
+  }
+
+  public void setTagsPoolSize(int tagsPoolSize)
+  {
+    _tagsPoolSize = tagsPoolSize;
+  }
+
+  public double getDeltaRatio()
+  {
+    return _deltaRatio;
+  }
+
+  public void setDeltaRatio(double deltaRatio)
+  {
+    _deltaRatio = deltaRatio;
+  }
+
+  public long getSeed()
+  {
+    return _seed;
+  }
+
+  public void setSeed(long seed)
+  {
+    _seed = seed;
+  }
+
+  public int getEntriesCount()
+  {
+    return _agentsCount * _mountPointsPerAgent;
+  }
+
+  /**
+   * @return the expected model (every entry is expected to be <code>running</code>)
+   */
+  public SystemModel generateExpectedModel()
+  {
+    SystemModel model = createModel("expected");
+
+    Random random = new Random(_seed);
+
+    for(int a = 0; a < _agentsCount; a++)
+    {
+      for(int m = 0; m < _mountPointsPerAgent; m++)
+      {
+        model.addEntry(createEntry(a, m, random));
+      }
+    }
+
+    return model;
+  }
+
+  /**
+   * @return the current model (as it would be built from ZooKeeper) which differs from the
+   *         expected model by <code>deltaRatio</code>
+   */
+  public SystemModel generateCurrentModel()
+  {
+    SystemModel model = createModel("current");
+
+    // same seed => same tags than the expected model
+    Random random = new Random(_seed);
+    Random deltaRandom = new Random(_seed + 1);
+
+    for(int a = 0; a < _agentsCount; a++)
+    {
+      for(int m = 0; m < _mountPointsPerAgent; m++)
+      {
+        SystemEntry entry = createEntry(a, m, random);
+
+        Map<String, Object> metadata = new HashMap<String, Object>();
+        metadata.put(CURRENT_STATE, entry.getEntryState());
+        entry.setMetadata(metadata);
+
+        if(deltaRandom.nextDouble() < _deltaRatio)
+        {
+          switch(deltaRandom.nextInt(3))
+          {
+            case 0:
+              // missing entry
+              entry = null;
+              break;
+
+            case 1:
+              entry.setScript("http://repository/scripts/s" + (m + 1));
+              break;
+
+            case 2:
+              entry.setEntryState("stopped");
+              metadata.put(CURRENT_STATE, "stopped");
+              break;
+          }
+        }
+
+        if(entry != null)
+          model.addEntry(entry);
+      }
+    }
+
+    return model;
+  }
+
+  protected SystemModel createModel(String id)
+  {
+    SystemModel model = new SystemModel();
+    model.setFabric(_fabric);
+    model.setId(id);
+    return model;
+  }
+
+  protected SystemEntry createEntry(int agentIdx, int mountPointIdx, Random random)
+  {
+    SystemEntry entry = new SystemEntry();
+    entry.setAgent("a" + agentIdx);
+    entry.setMountPoint("/m" + mountPointIdx);
+    entry.setScript("http://repository/scripts/s" + mountPointIdx);
+    entry.setEntryState("running");
+
+    if(_parentChildDepth > 0)
+    {
+      // mount points are grouped in chains of (depth + 1) entries: the first one of the
+      // chain is the parent of the second one, etc...
+      int positionInChain = mountPointIdx % (_parentChildDepth + 1);
+      if(positionInChain > 0)
+        entry.setParent("/m" + (mountPointIdx - 1));
+    }
+
+    if(_tagsPerEntry > 0)
+    {
+      Collection<String> tags = new ArrayList<String>(_tagsPerEntry);
+      for(int i = 0; i < _tagsPerEntry; i++)
+      {
+        tags.add("tag" + random.nextInt(_tagsPoolSize));
+      }
+      entry.setTags(tags);
+    }
+
+    return entry;
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2013 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.linkedin.glu.orchestration.engine.benchmarks;
+
+import org.linkedin.glu.orchestration.engine.delta.impl.DeltaMgrImpl;
+import org.linkedin.glu.orchestration.engine.planner.impl.PlannerImpl;
+import org.linkedin.glu.provisioner.core.model.SystemModel;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmark state holding the (expected and current) system models generated with
+ * {@link SystemModelGenerator}. The size of the models is controlled by the JMH parameters
+ * (ex: <code>-p agentsCount=4000 -p mountPointsPerAgent=10</code> for a 40k entries fabric).
+ *
+ * @author yan@pongasoft.com
+ */
+@State(Scope.Benchmark)
+public class SystemModelsState
+{
+  @Param({"100", "1000"})
+  public int agentsCount;
+
+  @Param({"10"})
+  public int mountPointsPerAgent;
+
+  @Param({"0", "2"})
+  public int parentChildDepth;
+
+  @Param({"3"})
+  public int tagsPerEntry;
+
+  @Param({"0.1"})
+  public double deltaRatio;
+
+  /**
+   * number of entries from which the delta is computed in parallel (use a big number to force
+   * the single threaded computation)
+   */
+  @Param({"2000"})
+  public int parallelDeltaThreshold;
+
+  public SystemModel expectedModel;
+  public SystemModel currentModel;
+
+  public DeltaMgrImpl deltaMgr;
+  public PlannerImpl planner;
+
+  @Setup
+  public void setupModels()
+  {
+    SystemModelGenerator generator = new SystemModelGenerator();
+    generator.setAgentsCount(agentsCount);
+    generator.setMountPointsPerAgent(mountPointsPerAgent);
+    generator.setParentChildDepth(parentChildDepth);
+    generator.setTagsPerEntry(tagsPerEntry);
+    generator.setDeltaRatio(deltaRatio);
+
+    expectedModel = generator.generateExpectedModel();
+    currentModel = generator.generateCurrentModel();
+
+    deltaMgr = new DeltaMgrImpl();
+    deltaMgr.setParallelDeltaThreshold(parallelDeltaThreshold);
+    planner = new PlannerImpl();
+  }
+}
@@ -70,10 +70,30 @@ interface AgentsService
   void streamFileContent(args, Closure closure)
 
   /**
-   * Builds the current system model based on the live data from ZooKeeper
+   * Builds the current system model based on the live data from ZooKeeper. The model is only
+   * rebuilt when ZooKeeper has changed since the last call (tracker transaction id), otherwise
+   * the same (shared) snapshot is returned: the caller must never modify it!
    */
   SystemModel getCurrentSystemModel(Fabric fabric)
 
+  /**
+   * Builds the current system model based on the live data from ZooKeeper by reusing the entries
+   * from <code>previousCurrentModel</code> for all the agents that are not part of
+   * <code>changedAgents</code> (only the entries of the changed agents are recreated).
+   *
+   * @param previousCurrentModel a model previously returned by this service (<code>null</code>
+   *                             means rebuild entirely)
+   */
+  SystemModel getCurrentSystemModel(Fabric fabric,
+                                    SystemModel previousCurrentModel,
+                                    Collection<String> changedAgents)
+
+  /**
+   * @return the statistics of the current system model snapshot (<code>hits</code>,
+   *         <code>misses</code> and <code>hitRate</code>)
+   */
+  Map<String, Object> getCurrentSystemModelSnapshotStats()
+
   /**
    * Executes the shell command. Note that this call is non blocking.
    *
@@ -21,6 +21,7 @@ import org.linkedin.glu.agent.api.Agent
 import org.linkedin.glu.agent.api.MountPoint
 import org.linkedin.glu.agent.rest.client.AgentFactory
 import org.linkedin.glu.agent.tracker.AgentInfo
+import org.linkedin.glu.agent.tracker.AgentsTracker.AccuracyLevel
 import org.linkedin.glu.agent.tracker.MountPointInfo
 import org.linkedin.glu.provisioner.core.model.SystemEntry
 import org.linkedin.glu.provisioner.core.model.SystemModel
@@ -40,6 +41,9 @@ import org.linkedin.util.reflect.ObjectProxyBuilder
 import org.linkedin.util.clock.Timespan
 import org.linkedin.glu.agent.api.TimeOutException
 
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+
 /**
  * @author ypujante
  */
@@ -72,6 +76,14 @@ class AgentsServiceImpl implements AgentsService, AgentURIProvider, MountPointSt
   @Initializable(required = false)
   int agentRecoveryNumRetries = 10
 
+  /**
+   * the current system model (per fabric) along with the tracker transaction id it was built from
+   * (it is shared between callers so it must never be modified) */
+  private final Map<String, Map> _currentSystemModelSnapshots = new ConcurrentHashMap<String, Map>()
+
+  private final AtomicLong _currentSystemModelSnapshotHits = new AtomicLong(0)
+  private final AtomicLong _currentSystemModelSnapshotMisses = new AtomicLong(0)
+
   @Override
   URI getAgentURI(String fabric, String agent) throws NoSuchAgentException
   {
@@ -218,7 +230,76 @@ class AgentsServiceImpl implements AgentsService, AgentURIProvider, MountPointSt
    */
   SystemModel getCurrentSystemModel(Fabric fabric)
   {
+    def snapshot = _currentSystemModelSnapshots[fabric.name]
+
+    // nothing has changed in ZooKeeper since the snapshot was built => reuse it
+    if(snapshot && snapshot.transactionId == trackerService.getTransactionId(fabric))
+    {
+      _currentSystemModelSnapshotHits.incrementAndGet()
+      return snapshot.systemModel
+    }
+
+    long misses = _currentSystemModelSnapshotMisses.incrementAndGet()
+
+    if(log.isDebugEnabled())
+      log.debug("current system model snapshot miss for ${fabric.name} (hits: ${_currentSystemModelSnapshotHits.get()}, misses: ${misses})")
+
     def allInfosAndAccuracy = getAllInfosWithAccuracy(fabric)
+
+    SystemModel systemModel = buildCurrentSystemModel(fabric, allInfosAndAccuracy, null, null)
+
+    // only an accurate model (no change while it was being read) can be reused
+    if(allInfosAndAccuracy.accuracy == AccuracyLevel.ACCURATE)
+    {
+      synchronized(_currentSystemModelSnapshots)
+      {
+        snapshot = _currentSystemModelSnapshots[fabric.name]
+        if(!snapshot || snapshot.transactionId < allInfosAndAccuracy.transactionId)
+        {
+          _currentSystemModelSnapshots[fabric.name] = [
+            transactionId: allInfosAndAccuracy.transactionId,
+            systemModel: systemModel
+          ]
+        }
+      }
+    }
+
+    return systemModel
+  }
+
+  /**
+   * Builds the current system model based on the live data from ZooKeeper (reusing the entries
+   * of the agents that have not changed)
+   */
+  SystemModel getCurrentSystemModel(Fabric fabric,
+                                    SystemModel previousCurrentModel,
+                                    Collection<String> changedAgents)
+  {
+    buildCurrentSystemModel(fabric,
+                            getAllInfosWithAccuracy(fabric),
+                            previousCurrentModel,
+                            changedAgents)
+  }
+
+  @Override
+  Map<String, Object> getCurrentSystemModelSnapshotStats()
+  {
+    long hits = _currentSystemModelSnapshotHits.get()
+    long misses = _currentSystemModelSnapshotMisses.get()
+    long total = hits + misses
+
+    [
+      hits: hits,
+      misses: misses,
+      hitRate: total == 0 ? 0.0d : (double) hits / total
+    ]
+  }
+
+  private SystemModel buildCurrentSystemModel(Fabric fabric,
+                                              def allInfosAndAccuracy,
+                                              SystemModel previousCurrentModel,
+                                              Collection<String> changedAgents)
+  {
     def agents = allInfosAndAccuracy.allInfos
     def accuracy = allInfosAndAccuracy.accuracy
 
@@ -237,6 +318,17 @@ class AgentsServiceImpl implements AgentsService, AgentURIProvider, MountPointSt
     agents.values().each { agent ->
       def agentName = agent.info.agentName
 
+      // reusing the entries of the agent when it has not changed
+      if(previousCurrentModel != null && !changedAgents?.contains(agentName))
+      {
+        Collection<SystemEntry> previousEntries = previousCurrentModel.findAgentEntries(agentName)
+        if(previousEntries)
+        {
+          previousEntries.each { systemModel.addEntry(it) }
+          return
+        }
+      }
+
       if(agent.mountPoints)
       {
         agent.mountPoints.values().each { MountPointInfo mp ->
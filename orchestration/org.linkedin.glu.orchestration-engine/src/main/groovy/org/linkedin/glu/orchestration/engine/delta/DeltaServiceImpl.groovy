@@ -57,6 +57,12 @@ class DeltaServiceImpl implements DeltaService
   @Initializable
   AuthorizationService authorizationService
 
+  /**
+   * When set, the delta with the current model is maintained incrementally
+   */
+  @Initializable
+  IncrementalDeltaService incrementalDeltaService
+
   String prettyPrint(SystemModelDelta delta)
   {
     computeDeltaAsJSON([delta: delta, prettyPrint: true])
@@ -77,16 +83,9 @@ class DeltaServiceImpl implements DeltaService
       SystemModel currentModel = params.currentModel
 
       if(currentModel == null)
-      {
-        Fabric fabric = fabricService.findFabric(expectedModel.fabric)
-
-        if(!fabric)
-          throw new IllegalArgumentException("unknown fabric ${expectedModel.fabric}")
-
-        currentModel = agentsService.getCurrentSystemModel(fabric)
-      }
-
-      delta = deltaMgr.computeDelta(expectedModel, currentModel, null)
+        delta = computeCurrentDelta(expectedModel)
+      else
+        delta = deltaMgr.computeDelta(expectedModel, currentModel, null)
     }
 
     boolean flatten = params.flatten?.toString() == "true"
@@ -154,16 +153,11 @@ class DeltaServiceImpl implements DeltaService
     if(!expectedModel)
       return null
 
-    Fabric fabric = fabricService.findFabric(expectedModel.fabric)
-
-    if(!fabric)
-      throw new IllegalArgumentException("unknown fabric ${expectedModel.fabric}")
-
-    SystemModel currentSystem = agentsService.getCurrentSystemModel(fabric)
+    SystemModelDelta delta = computeCurrentDelta(expectedModel)
 
     [
-        delta: computeDelta(expectedModel, currentSystem),
-        accuracy: currentSystem.metadata.accuracy
+        delta: flattenDelta(delta),
+        accuracy: delta.currentSystemModel.metadata.accuracy
     ]
   }
 
@@ -173,6 +167,22 @@ class DeltaServiceImpl implements DeltaService
     if(!expectedModel)
       return null
 
+    SystemModelDelta delta = computeCurrentDelta(expectedModel)
+
+    [
+        delta: delta,
+        accuracy: delta.currentSystemModel.metadata.accuracy
+    ]
+  }
+
+  /**
+   * Computes the delta between the expected model and the current model (live data)
+   */
+  protected SystemModelDelta computeCurrentDelta(SystemModel expectedModel)
+  {
+    if(incrementalDeltaService)
+      return incrementalDeltaService.computeDelta(expectedModel)
+
     Fabric fabric = fabricService.findFabric(expectedModel.fabric)
 
     if(!fabric)
@@ -180,17 +190,17 @@ class DeltaServiceImpl implements DeltaService
 
     SystemModel currentModel = agentsService.getCurrentSystemModel(fabric)
 
-    [
-        delta: deltaMgr.computeDelta(expectedModel, currentModel, null),
-        accuracy: currentModel.metadata.accuracy
-    ]
+    deltaMgr.computeDelta(expectedModel, currentModel, null)
   }
 
   Collection<Map<String, Object>> computeDelta(SystemModel expectedModel,
                                                SystemModel currentModel)
   {
-    SystemModelDelta delta = deltaMgr.computeDelta(expectedModel, currentModel, null)
+    flattenDelta(deltaMgr.computeDelta(expectedModel, currentModel, null))
+  }
 
+  protected Collection<Map<String, Object>> flattenDelta(SystemModelDelta delta)
+  {
     Collection<Map<String, Object>> flattenedDelta =
       delta.flatten(new TreeMap<String, Map<String, Object>>()).values()
 
@@ -395,11 +405,21 @@ class DeltaServiceImpl implements DeltaService
                                                SystemModel currentModel,
                                                CustomDeltaDefinition deltaDefinition)
   {
+    computeCustomGroupByDelta(deltaMgr.computeDelta(expectedModel, currentModel, null),
+                              deltaDefinition)
+  }
+
+  CustomGroupByDelta computeCustomGroupByDelta(SystemModelDelta delta,
+                                               CustomDeltaDefinition deltaDefinition)
+  {
+    SystemModel expectedModel = delta.expectedSystemModel
+    SystemModel currentModel = delta.currentSystemModel
+
     CustomGroupByDelta res = new CustomGroupByDelta(expectedModel: expectedModel,
                                                     deltaDefinition: deltaDefinition,
                                                     accuracy: currentModel.metadata.accuracy as AccuracyLevel)
 
-    def current = computeDelta(expectedModel, currentModel)
+    def current = flattenDelta(delta)
 
     List<CustomDeltaColumnDefinition> columnsDefinitions = deltaDefinition.columnsDefinition
 
@@ -585,14 +605,7 @@ class DeltaServiceImpl implements DeltaService
     if(!expectedModel)
       return null
 
-    Fabric fabric = fabricService.findFabric(expectedModel.fabric)
-
-    if(!fabric)
-      throw new IllegalArgumentException("unknown fabric ${expectedModel.fabric}")
-
-    SystemModel currentModel = agentsService.getCurrentSystemModel(fabric)
-
-    computeCustomGroupByDelta(expectedModel, currentModel, deltaDefinition)
+    computeCustomGroupByDelta(computeCurrentDelta(expectedModel), deltaDefinition)
   }
 
   @Override
@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2013 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.linkedin.glu.orchestration.engine.delta
+
+import org.linkedin.glu.provisioner.core.model.SystemModel
+
+/**
+ * Maintains a long lived delta per fabric (between the expected model and the live current model)
+ * which gets updated incrementally when ZooKeeper events are received (only the entries that
+ * have changed are recomputed).
+ *
+ * @author yan@pongasoft.com
+ */
+interface IncrementalDeltaService
+{
+  /**
+   * Computes the delta between the expected model and the current model (live data from
+   * ZooKeeper). Note that when the expected model is filtered (or does not have an id), the delta
+   * is fully recomputed.
+   *
+   * @return the delta (<code>null</code> if no expected model). Note that the delta returned
+   *         may be shared and should not be modified.
+   */
+  SystemModelDelta computeDelta(SystemModel expectedModel)
+}
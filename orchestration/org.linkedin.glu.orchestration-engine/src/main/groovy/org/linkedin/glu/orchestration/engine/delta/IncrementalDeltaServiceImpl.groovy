@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2013 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.linkedin.glu.orchestration.engine.delta
+
+import org.linkedin.glu.agent.tracker.NodeEvent
+import org.linkedin.glu.agent.tracker.TrackerEventsListener
+import org.linkedin.glu.orchestration.engine.agents.AgentsService
+import org.linkedin.glu.orchestration.engine.fabric.Fabric
+import org.linkedin.glu.orchestration.engine.fabric.FabricService
+import org.linkedin.glu.orchestration.engine.tracker.TrackerService
+import org.linkedin.glu.provisioner.core.model.SystemEntry
+import org.linkedin.glu.provisioner.core.model.SystemModel
+import org.linkedin.util.annotations.Initializable
+
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * @author yan@pongasoft.com
+ */
+class IncrementalDeltaServiceImpl implements IncrementalDeltaService
+{
+  public static final String MODULE = IncrementalDeltaServiceImpl.class.getName();
+  public static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(MODULE);
+
+  @Initializable(required = true)
+  AgentsService agentsService
+
+  @Initializable(required = true)
+  TrackerService trackerService
+
+  @Initializable(required = true)
+  FabricService fabricService
+
+  @Initializable(required = true)
+  DeltaMgr deltaMgr
+
+  // key is fabric name
+  private final Map<String, FabricDelta> _fabricDeltas = [:]
+
+  @Override
+  SystemModelDelta computeDelta(SystemModel expectedModel)
+  {
+    if(!expectedModel)
+      return null
+
+    Fabric fabric = fabricService.findFabric(expectedModel.fabric)
+
+    if(!fabric)
+      throw new IllegalArgumentException("unknown fabric ${expectedModel.fabric}")
+
+    // the long lived delta is only maintained for the full (unfiltered) expected model
+    if(expectedModel.filters != null || !expectedModel.id)
+      return deltaMgr.computeDelta(expectedModel, agentsService.getCurrentSystemModel(fabric), null)
+
+    getFabricDelta(fabric).computeDelta(expectedModel)
+  }
+
+  private synchronized FabricDelta getFabricDelta(Fabric fabric)
+  {
+    FabricDelta fabricDelta = _fabricDeltas[fabric.name]
+
+    // the fabric has changed => start from scratch (note that the fabric instances get
+    // recreated when the fabric service cache is reset, hence the comparison on the content)
+    if(fabricDelta != null && !isSameFabric(fabricDelta.fabric, fabric))
+    {
+      trackerService.unregisterAgentListener(fabricDelta.fabric, fabricDelta.agentsListener)
+      trackerService.unregisterMountPointListener(fabricDelta.fabric, fabricDelta.mountPointsListener)
+      fabricDelta = null
+    }
+
+    if(fabricDelta == null)
+    {
+      fabricDelta = new FabricDelta(fabric: fabric,
+                                    agentsService: agentsService,
+                                    deltaMgr: deltaMgr)
+      trackerService.registerAgentListener(fabric, fabricDelta.agentsListener)
+      trackerService.registerMountPointListener(fabric, fabricDelta.mountPointsListener)
+      _fabricDeltas[fabric.name] = fabricDelta
+    }
+
+    return fabricDelta
+  }
+
+  private static boolean isSameFabric(Fabric f1, Fabric f2)
+  {
+    return f1.name == f2.name && f1.zkConnectString == f2.zkConnectString
+  }
+}
+
+/**
+ * Maintains the delta for one fabric. The tracker events are only recorded (agents that have
+ * changed) and the delta is updated (incrementally) on demand.
+ */
+class FabricDelta
+{
+  public static final String MODULE = FabricDelta.class.getName();
+  public static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(MODULE);
+
+  Fabric fabric
+  AgentsService agentsService
+  DeltaMgr deltaMgr
+
+  // agents which have changed since the last time the delta was computed
+  private final Set<String> _changedAgents =
+    Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>())
+
+  private String _expectedModelId
+  private SystemModel _currentModel
+  private SystemModelDelta _delta
+
+  // same instances for registering and unregistering
+  final TrackerEventsListener agentsListener = { Collection<NodeEvent> events ->
+    events.each { NodeEvent event ->
+      if(event.nodeInfo?.agentName)
+        _changedAgents << event.nodeInfo.agentName
+    }
+  } as TrackerEventsListener
+
+  final TrackerEventsListener mountPointsListener = { Collection<NodeEvent> events ->
+    events.each { NodeEvent event ->
+      if(event.nodeInfo?.agentName)
+        _changedAgents << event.nodeInfo.agentName
+    }
+  } as TrackerEventsListener
+
+  synchronized SystemModelDelta computeDelta(SystemModel expectedModel)
+  {
+    if(_delta == null || _expectedModelId != expectedModel.id)
+    {
+      // changes recorded so far are going to be part of the new current model
+      _changedAgents.clear()
+      _currentModel = agentsService.getCurrentSystemModel(fabric)
+      _delta = deltaMgr.computeDelta(expectedModel, _currentModel, null)
+      _expectedModelId = expectedModel.id
+      return _delta
+    }
+
+    Set<String> changedAgents = drainChangedAgents()
+
+    if(changedAgents)
+    {
+      SystemModel currentModel =
+        agentsService.getCurrentSystemModel(fabric, _currentModel, changedAgents)
+
+      // the keys before and after the change
+      Set<String> changedKeys = new HashSet<String>()
+      changedAgents.each { String agentName ->
+        addKeys(_currentModel, agentName, changedKeys)
+        addKeys(currentModel, agentName, changedKeys)
+      }
+
+      _delta = deltaMgr.computeIncrementalDelta(_delta, currentModel, changedKeys)
+      _currentModel = currentModel
+
+      if(log.isDebugEnabled())
+        log.debug("[${fabric.name}] delta updated for ${changedAgents.size()} agent(s)")
+    }
+
+    return _delta
+  }
+
+  private Set<String> drainChangedAgents()
+  {
+    Set<String> changedAgents = new HashSet<String>()
+    Iterator<String> iterator = _changedAgents.iterator()
+    while(iterator.hasNext())
+    {
+      changedAgents << iterator.next()
+      iterator.remove()
+    }
+    return changedAgents
+  }
+
+  private static void addKeys(SystemModel model, String agentName, Set<String> keys)
+  {
+    model.findAgentEntries(agentName).each { SystemEntry entry -> keys << entry.key }
+  }
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright (c) 2011 Yan Pujante
+ * Copyright (c) 2011-2013 Yan Pujante
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -22,10 +22,36 @@ public class ArchivedDeployment extends Deployment
 {
   String status
   String details // xml representation of the plan
+  String progress // journaled progress events (only while the deployment has not ended)
+
+  /**
+   * When set (and <code>details</code> is not), the details are loaded lazily (and only once)
+   * by calling this closure
+   */
+  Closure detailsLoader
+
+  String getDetails()
+  {
+    if(details == null && detailsLoader != null)
+    {
+      details = detailsLoader()
+      detailsLoader = null
+    }
+    return details
+  }
+
+  /**
+   * @return the journaled progress events of a deployment which has not ended (see
+   *         {@link DeploymentProgressJournal#parseEvents(String)}), empty otherwise
+   */
+  List<Map> getProgressEvents()
+  {
+    DeploymentProgressJournal.parseEvents(progress)
+  }
 
   @Override
   String getPlanXml()
   {
-    details
+    getDetails()
   }
 }
\ No newline at end of file
@@ -32,4 +32,10 @@ public class CurrentDeployment extends Deployment
   {
     planExecution.plan.toXml()
   }
+
+  @Override
+  void writePlanXml(OutputStream out)
+  {
+    planExecution.plan.writeXml(null, out)
+  }
 }
\ No newline at end of file
@@ -38,4 +38,15 @@ public abstract class Deployment
   }
 
   abstract String getPlanXml()
+
+  /**
+   * Writes the xml of the plan to the stream (subclasses can write it without building it in
+   * memory first)
+   */
+  void writePlanXml(OutputStream out)
+  {
+    String xml = getPlanXml()
+    if(xml != null)
+      out.write(xml.getBytes("UTF-8"))
+  }
 }
\ No newline at end of file
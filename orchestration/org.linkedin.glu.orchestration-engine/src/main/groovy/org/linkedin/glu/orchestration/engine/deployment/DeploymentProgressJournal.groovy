@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) 2013 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package org.linkedin.glu.orchestration.engine.deployment
+
+import org.linkedin.glu.provisioner.plan.api.IStep
+import org.linkedin.glu.provisioner.plan.api.IStepCompletionStatus
+import org.linkedin.glu.provisioner.plan.api.IStepExecution
+import org.linkedin.glu.provisioner.plan.api.Plan
+import org.linkedin.glu.provisioner.plan.api.XmlStepCompletionStatusBuilder
+import org.linkedin.util.clock.Clock
+import org.linkedin.util.clock.SystemClock
+import org.linkedin.util.clock.Timespan
+import org.slf4j.Logger
+import org.slf4j.LoggerFactory
+
+import java.util.concurrent.RejectedExecutionException
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.TimeUnit
+
+/**
+ * Write behind journal of the progress of a deployment: the step start/end events are buffered
+ * and written to the storage in batches (by the (shared) executor, never by the thread
+ * tracking the progress) so that the progress of a running deployment is not lost if the
+ * console gets restarted. A batch is written as soon as it reaches <code>batchSize</code> or
+ * at most <code>flushFrequency</code> after its first event was added.
+ *
+ * <p>The executor may use several threads: the batches of a given journal are still written one
+ * at a time and in order. The details of the deployment are built incrementally as well (each
+ * step is rendered when its end event is written, see {@link XmlStepCompletionStatusBuilder}).
+ *
+ * <p>Each event is one line: <code>time TAB (START|END) TAB stepId TAB status TAB name</code>
+ * (status is <code>-</code> for a start event).
+ *
+ * @author yan@pongasoft.com */
+class DeploymentProgressJournal
+{
+  public static final String MODULE = DeploymentProgressJournal.class.getName();
+  public static final Logger log = LoggerFactory.getLogger(MODULE);
+
+  final DeploymentStorage deploymentStorage
+  final String deploymentId
+  final ScheduledExecutorService executor
+  final int batchSize
+  final Timespan flushFrequency
+  final Clock clock
+
+  private final XmlStepCompletionStatusBuilder _detailsBuilder
+  // serializes the writes of this journal (the executor may use several threads)
+  private final Object _writeLock = new Object()
+
+  private List<String> _pendingEvents = []
+  private List<IStepCompletionStatus> _pendingStatuses = []
+  private boolean _flushScheduled = false
+  private boolean _immediateFlushScheduled = false
+  private boolean _closed = false
+
+  /**
+   * Constructor
+   */
+  DeploymentProgressJournal(DeploymentStorage deploymentStorage,
+                            String deploymentId,
+                            Plan plan,
+                            ScheduledExecutorService executor,
+                            int batchSize,
+                            Timespan flushFrequency,
+                            Clock clock)
+  {
+    this.deploymentStorage = deploymentStorage
+    this.deploymentId = deploymentId
+    this.executor = executor
+    this.batchSize = Math.max(1, batchSize)
+    this.flushFrequency = flushFrequency
+    this.clock = clock ?: SystemClock.INSTANCE
+    _detailsBuilder = new XmlStepCompletionStatusBuilder(plan)
+  }
+
+  void onStepStart(IStepExecution stepExecution)
+  {
+    addEvent(clock.currentTimeMillis(), 'START', stepExecution.step, '-')
+  }
+
+  void onStepEnd(IStepCompletionStatus status)
+  {
+    addEvent(status.endTime, 'END', status.step, status.status.name(), status)
+  }
+
+  /**
+   * @return the details of the deployment (the xml of the completion status of the plan, built
+   *         from the steps already rendered)
+   */
+  String getDetails(IStepCompletionStatus planStatus, Map context)
+  {
+    _detailsBuilder.toXml(planStatus, context)
+  }
+
+  /**
+   * Closes the journal: the pending events are written and then <code>onClosed</code> is
+   * executed (by the executor as well, so after all the events of this journal).
+   */
+  void close(Closure onClosed)
+  {
+    synchronized(this)
+    {
+      if(_closed)
+        return
+      _closed = true
+    }
+
+    execute {
+      flush()
+      try
+      {
+        onClosed?.call()
+      }
+      catch(Throwable th)
+      {
+        log.warn("[${deploymentId}] could not complete the journal (ignored)", th)
+      }
+    }
+  }
+
+  /**
+   * Writes all the pending events (if any) to the storage.
+   */
+  void flush()
+  {
+    synchronized(_writeLock)
+    {
+      List<String> events
+      List<IStepCompletionStatus> statuses
+
+      synchronized(this)
+      {
+        events = _pendingEvents
+        _pendingEvents = []
+        statuses = _pendingStatuses
+        _pendingStatuses = []
+        _flushScheduled = false
+        _immediateFlushScheduled = false
+      }
+
+      statuses.each { IStepCompletionStatus status ->
+        _detailsBuilder.onStepCompleted(status)
+      }
+
+      if(events)
+      {
+        try
+        {
+          deploymentStorage.appendDeploymentProgress(deploymentId, events)
+        }
+        catch(Throwable th)
+        {
+          log.warn("[${deploymentId}] could not write ${events.size()} progress events (ignored)", th)
+        }
+      }
+    }
+  }
+
+  /**
+   * Parses the events written by the journal (see {@link ArchivedDeployment#getProgress()})
+   *
+   * @return a list of maps (<code>time</code>, <code>type</code>, <code>stepId</code>,
+   *         <code>status</code> (<code>null</code> for a start event) and <code>name</code>)
+   */
+  static List<Map> parseEvents(String events)
+  {
+    if(!events)
+      return []
+
+    events.readLines().findAll { it }.collect { String event ->
+      def fields = event.split('\t', 5)
+      [
+        time: fields[0] as long,
+        type: fields[1],
+        stepId: fields[2],
+        status: fields[3] == '-' ? null : fields[3],
+        name: fields.size() > 4 ? fields[4] : ''
+      ]
+    }
+  }
+
+  private void addEvent(long time,
+                        String type,
+                        IStep step,
+                        String status,
+                        IStepCompletionStatus completionStatus = null)
+  {
+    String event = [time, type, step.id, status, step.metadata.name ?: ''].join('\t')
+
+    synchronized(this)
+    {
+      if(_closed)
+        return
+
+      _pendingEvents << event
+      if(completionStatus)
+        _pendingStatuses << completionStatus
+
+      if(_pendingEvents.size() >= batchSize)
+      {
+        if(!_immediateFlushScheduled)
+        {
+          _immediateFlushScheduled = true
+          execute { flush() }
+        }
+      }
+      else
+      {
+        if(!_flushScheduled)
+        {
+          _flushScheduled = true
+          schedule(flushFrequency?.durationInMilliseconds ?: 0) { flush() }
+        }
+      }
+    }
+  }
+
+  private void execute(Closure closure)
+  {
+    schedule(0, closure)
+  }
+
+  private void schedule(long delay, Closure closure)
+  {
+    try
+    {
+      executor.schedule(closure as Runnable, delay, TimeUnit.MILLISECONDS)
+    }
+    catch(RejectedExecutionException e)
+    {
+      // the executor has been shutdown... writing in this thread instead
+      closure()
+    }
+  }
+}
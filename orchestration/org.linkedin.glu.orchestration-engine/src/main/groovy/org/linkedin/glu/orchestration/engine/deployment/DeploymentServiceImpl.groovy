@@ -33,6 +33,11 @@ import org.linkedin.groovy.util.clock.ClosureTimerTask
 import org.linkedin.glu.provisioner.plan.api.IStepCompletionStatus
 import org.linkedin.glu.groovy.utils.plugins.PluginService
 
+import java.util.concurrent.Executors
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.ThreadFactory
+import java.util.concurrent.TimeUnit
+
 /**
  * System service.
  *
@@ -72,6 +77,34 @@ class DeploymentServiceImpl implements DeploymentService, Startable, Destroyable
   @Initializable
   PluginService pluginService
 
+  /**
+   * The progress of a running deployment is journaled (in batches of this size) in the
+   * storage (set it to 0 to disable the journal and archive the deployment at the end only)
+   */
+  @Initializable
+  int progressJournalBatchSize = 100
+
+  /**
+   * How long an event can stay in the journal before being written
+   */
+  @Initializable
+  Timespan progressJournalFlushFrequency = Timespan.parse('1s')
+
+  /**
+   * How many threads write the journals (the batches of a given deployment are always written in
+   * order, so a slow deployment does not delay the other ones)
+   */
+  @Initializable
+  int progressJournalThreadCount = 2
+
+  /**
+   * How long to wait (on destroy) for the pending batches to be written
+   */
+  @Initializable
+  Timespan progressJournalShutdownTimeout = Timespan.parse('10s')
+
+  private ScheduledExecutorService _progressJournalExecutor = null
+
   private Map<String, CurrentDeployment> _deployments = [:]
   private Map<String, Plan> _plans = [:]
 
@@ -81,6 +114,44 @@ class DeploymentServiceImpl implements DeploymentService, Startable, Destroyable
   void destroy()
   {
     _autoArchiveTimer?.cancel()
+    ScheduledExecutorService executor
+    synchronized(this)
+    {
+      executor = _progressJournalExecutor
+    }
+
+    if(executor)
+    {
+      // already scheduled batches will still be written
+      executor.shutdown()
+      try
+      {
+        if(!executor.awaitTermination(progressJournalShutdownTimeout.durationInMilliseconds,
+                                      TimeUnit.MILLISECONDS))
+          log.warn("Progress journal batches not written after ${progressJournalShutdownTimeout} (ignored)")
+      }
+      catch(InterruptedException e)
+      {
+        log.warn("Interrupted while waiting for the progress journal batches (ignored)")
+        Thread.currentThread().interrupt()
+      }
+    }
+  }
+
+  private synchronized ScheduledExecutorService getProgressJournalExecutor()
+  {
+    if(_progressJournalExecutor == null)
+    {
+      int count = 0
+      _progressJournalExecutor =
+        Executors.newScheduledThreadPool(Math.max(1, progressJournalThreadCount), { Runnable runnable ->
+          Thread thread = new Thread(runnable, "DeploymentServiceJournal-${++count}")
+          thread.daemon = true
+          return thread
+        } as ThreadFactory)
+    }
+
+    return _progressJournalExecutor
   }
 
   @Override
@@ -296,12 +367,23 @@ class DeploymentServiceImpl implements DeploymentService, Startable, Destroyable
 
       def id = deployment.id
 
+      DeploymentProgressJournal journal = null
+      if(progressJournalBatchSize > 0)
+        journal = new DeploymentProgressJournal(deploymentStorage,
+                                                id,
+                                                plan,
+                                                getProgressJournalExecutor(),
+                                                progressJournalBatchSize,
+                                                progressJournalFlushFrequency,
+                                                clock)
+
       def tracker = new ProgressTracker(deploymentStorage,
                                         pluginService,
                                         progressTracker,
                                         id,
                                         model,
-                                        description)
+                                        description,
+                                        journal)
 
       def planExecution = deployer.executePlan(plan, tracker)
 
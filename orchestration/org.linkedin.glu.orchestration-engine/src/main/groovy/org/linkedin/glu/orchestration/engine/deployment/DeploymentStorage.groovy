@@ -43,6 +43,12 @@ public interface DeploymentStorage
                                      String username,
                                      String details)
 
+  /**
+   * Appends a batch of progress events (see {@link DeploymentProgressJournal} for the format)
+   * to a deployment which has not ended yet. The events are kept until the deployment ends.
+   */
+  void appendDeploymentProgress(String id, Collection<String> events)
+
   ArchivedDeployment endDeployment(String id,
                                    IStepCompletionStatus status,
                                    String details)
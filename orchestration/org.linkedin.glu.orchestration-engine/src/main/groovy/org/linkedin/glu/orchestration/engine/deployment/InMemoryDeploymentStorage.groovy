@@ -67,6 +67,15 @@ public class InMemoryDeploymentStorage implements DeploymentStorage
     return deployment
   }
 
+  @Override
+  void appendDeploymentProgress(String id, Collection<String> events)
+  {
+    ArchivedDeployment deployment = deployments[id]
+
+    if(deployment && !deployment.endDate)
+      deployment.progress = [deployment.progress, *events].findAll { it != null }.join('\n')
+  }
+
   @Override
   ArchivedDeployment endDeployment(String id, IStepCompletionStatus status, String details)
   {
@@ -76,6 +85,7 @@ public class InMemoryDeploymentStorage implements DeploymentStorage
     deployment.endDate = new Date(status.endTime)
     deployment.status = status.status.name()
     deployment.details = details
+    deployment.progress = null
 
     return deployment
   }
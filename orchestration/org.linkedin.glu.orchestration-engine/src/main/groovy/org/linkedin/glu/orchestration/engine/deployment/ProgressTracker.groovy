@@ -1,6 +1,6 @@
 /*
  * Copyright (c) 2010-2010 LinkedIn, Inc
- * Portions Copyright (c) 2011 Yan Pujante
+ * Portions Copyright (c) 2011-2013 Yan Pujante
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -21,9 +21,15 @@ import org.linkedin.glu.provisioner.core.model.SystemModel
 import org.linkedin.glu.provisioner.plan.api.FilteredPlanExecutionProgressTracker
 import org.linkedin.glu.provisioner.plan.api.IPlanExecution
 import org.linkedin.glu.provisioner.plan.api.IStepCompletionStatus
+import org.linkedin.glu.provisioner.plan.api.IStepExecution
 import org.linkedin.glu.groovy.utils.plugins.PluginService
 
 /**
+ * When a journal is provided, the progress of the deployment is written (in batches) while the
+ * deployment runs and the deployment is archived by the journal (write behind) instead of by
+ * the thread tracking the progress. The details of the deployment are then built incrementally
+ * by the journal (instead of rendering the whole plan execution at the end).
+ *
  * @author yan@pongasoft.com */
 class ProgressTracker<T> extends FilteredPlanExecutionProgressTracker<T>
 {
@@ -33,6 +39,7 @@ class ProgressTracker<T> extends FilteredPlanExecutionProgressTracker<T>
   private IPlanExecution _planExecution
   private final SystemModel _model
   private final String _description
+  private final DeploymentProgressJournal _journal
 
   def ProgressTracker(DeploymentStorage deploymentStorage,
                       PluginService pluginService,
@@ -40,6 +47,17 @@ class ProgressTracker<T> extends FilteredPlanExecutionProgressTracker<T>
                       deploymentId,
                       SystemModel model,
                       String description)
+  {
+    this(deploymentStorage, pluginService, tracker, deploymentId, model, description, null)
+  }
+
+  def ProgressTracker(DeploymentStorage deploymentStorage,
+                      PluginService pluginService,
+                      tracker,
+                      deploymentId,
+                      SystemModel model,
+                      String description,
+                      DeploymentProgressJournal journal)
   {
     super(tracker)
     _deploymentStorage = deploymentStorage
@@ -47,6 +65,7 @@ class ProgressTracker<T> extends FilteredPlanExecutionProgressTracker<T>
     _deploymentId = deploymentId
     _model = model
     _description = description
+    _journal = journal
   }
 
   public void onPlanStart(IPlanExecution<T> planExecution)
@@ -64,10 +83,38 @@ class ProgressTracker<T> extends FilteredPlanExecutionProgressTracker<T>
   }
 
 
+  @Override
+  void onStepStart(IStepExecution<T> stepExecution)
+  {
+    super.onStepStart(stepExecution)
+    _journal?.onStepStart(stepExecution)
+  }
+
+  @Override
+  void onStepEnd(IStepCompletionStatus<T> status)
+  {
+    super.onStepEnd(status)
+    _journal?.onStepEnd(status)
+  }
+
+  /**
+   * The plugin is called once the deployment has been archived (by the journal, if any)
+   */
   public void onPlanEnd(IStepCompletionStatus<T> status)
   {
     super.onPlanEnd(status)
-    String details = _planExecution.toXml([fabric: _model.fabric, systemId: _model.id])
+    if(_journal)
+      _journal.close { endDeployment(status) }
+    else
+      endDeployment(status)
+  }
+
+  private void endDeployment(IStepCompletionStatus<T> status)
+  {
+    def context = [fabric: _model.fabric, systemId: _model.id]
+    String details = _journal ?
+      _journal.getDetails(status, context) :
+      _planExecution.toXml(context)
     _deploymentStorage.endDeployment(_deploymentId, status, details)
     _pluginService?.executeMethod(DeploymentService,
                                  "post_executeDeploymentPlan",
@@ -36,6 +36,13 @@ import org.linkedin.glu.orchestration.engine.delta.DeltaSystemModelFilter
 import org.linkedin.glu.orchestration.engine.delta.impl.BounceDeltaSystemModelFilter
 import org.linkedin.glu.orchestration.engine.delta.impl.RedeployDeltaSystemModelFilter
 import org.linkedin.glu.groovy.utils.plugins.PluginService
+import org.linkedin.glu.orchestration.engine.delta.IncrementalDeltaService
+import org.linkedin.glu.orchestration.engine.tracker.TrackerService
+import org.linkedin.glu.utils.collections.EvictingWithLRUPolicyMap
+
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.FutureTask
 
 /**
  * System service.
@@ -66,6 +73,28 @@ class PlannerServiceImpl implements PlannerService
   @Initializable
   PluginService pluginService
 
+  /**
+   * When set, the delta with the current model is maintained incrementally
+   */
+  @Initializable
+  IncrementalDeltaService incrementalDeltaService
+
+  /**
+   * When set, the transition plans are memoized: the key is the expected model (content hash and
+   * filters), the filters/states used to compute the delta and the tracker transaction id (which
+   * changes whenever the current model changes).
+   */
+  @Initializable
+  TrackerService trackerService
+
+  /**
+   * Maximum number of transition plans to memoize (<code>0</code> to disable)
+   */
+  @Initializable
+  int transitionPlanCacheSize = 20
+
+  private Map<Map, FutureTask<TransitionPlan<ActionDescriptor>>> _transitionPlans = null
+
   /**
    * Compute deployment plans between the system provided (params.system) and the current
    * system.
@@ -124,12 +153,85 @@ class PlannerServiceImpl implements PlannerService
     if(!fabric)
       throw new IllegalArgumentException("unknown fabric ${expectedModel.fabric}")
 
-    SystemModel currentModel = agentsService.getCurrentSystemModel(fabric)
+    def transitionPlanFactory = {
+      // the incremental delta can be used only for a plain delta with the current model
+      if(incrementalDeltaService && !currentModelFilter && !filter && !toStates)
+        return planner.computeTransitionPlan(incrementalDeltaService.computeDelta(expectedModel))
+
+      SystemModel currentModel = agentsService.getCurrentSystemModel(fabric)
+
+      if(currentModelFilter)
+        currentModel = currentModel.filterBy(currentModelFilter)
+
+      return computeTransitionPlan(expectedModel, currentModel, filter, toStates)
+    }
+
+    TransitionPlan<ActionDescriptor> transitionPlan
+
+    if(trackerService && transitionPlanCacheSize > 0 && expectedModel.id)
+    {
+      def key = [
+        fabric: fabric.name,
+        systemId: expectedModel.id,
+        filters: expectedModel.filters,
+        expectedModelFilter: expectedModelFilter,
+        currentModelFilter: currentModelFilter,
+        filter: filter,
+        toStates: toStates,
+        transactionId: trackerService.getTransactionId(fabric)
+      ]
+      transitionPlan = getOrComputeTransitionPlan(key, transitionPlanFactory)
+    }
+    else
+      transitionPlan = transitionPlanFactory()
+
+    buildPlans(params, expectedModel, transitionPlan, metadata)
+  }
+
+  /**
+   * Returns the memoized transition plan for the given key or computes it (only once when
+   * several identical requests are made concurrently). Entries computed for an older
+   * transaction id of the same fabric are discarded as they can no longer be used.
+   */
+  private TransitionPlan<ActionDescriptor> getOrComputeTransitionPlan(Map key,
+                                                                      Closure transitionPlanFactory)
+  {
+    FutureTask<TransitionPlan<ActionDescriptor>> future
+    boolean computeInThisThread = false
 
-    if(currentModelFilter)
-      currentModel = currentModel.filterBy(currentModelFilter)
+    synchronized(this)
+    {
+      if(_transitionPlans == null)
+        _transitionPlans = new EvictingWithLRUPolicyMap(transitionPlanCacheSize, true)
 
-    doComputeDeploymentPlans(params, expectedModel, currentModel, filter, metadata, toStates)
+      future = _transitionPlans[key]
+      if(future == null)
+      {
+        _transitionPlans.keySet().removeAll { Map k ->
+          k.fabric == key.fabric && k.transactionId != key.transactionId
+        }
+        future = new FutureTask<TransitionPlan<ActionDescriptor>>(transitionPlanFactory as Callable)
+        _transitionPlans[key] = future
+        computeInThisThread = true
+      }
+    }
+
+    if(computeInThisThread)
+      future.run()
+
+    try
+    {
+      return future.get()
+    }
+    catch(ExecutionException e)
+    {
+      synchronized(this)
+      {
+        if(_transitionPlans[key].is(future))
+          _transitionPlans.remove(key)
+      }
+      throw e.cause
+    }
   }
 
   /**
@@ -148,6 +250,20 @@ class PlannerServiceImpl implements PlannerService
                                                                       DeltaSystemModelFilter filter,
                                                                       def metadata,
                                                                       Collection<String> toStates)
+  {
+    TransitionPlan<ActionDescriptor> transitionPlan =
+      computeTransitionPlan(expectedModel, currentModel, filter, toStates)
+
+    buildPlans(params, expectedModel, transitionPlan, metadata)
+  }
+
+  /**
+   * Compute the transition plan: delta(s) between expected and current model, then transitions
+   */
+  private TransitionPlan<ActionDescriptor> computeTransitionPlan(SystemModel expectedModel,
+                                                                 SystemModel currentModel,
+                                                                 DeltaSystemModelFilter filter,
+                                                                 Collection<String> toStates)
   {
     // 1. compute delta
     def delta
@@ -157,8 +273,19 @@ class PlannerServiceImpl implements PlannerService
       delta = deltaMgr.computeDelta(expectedModel, currentModel, filter)
 
     // 2. compute the transition plan
-    TransitionPlan<ActionDescriptor> transitionPlan = planner.computeTransitionPlan(delta)
+    planner.computeTransitionPlan(delta)
+  }
 
+  /**
+   * Build the deployment plans from the transition plan already computed (see
+   * <code>doComputeDeploymentPlans</code> for details). The transition plan is not modified so
+   * it can be shared: each call builds new plans.
+   */
+  private Collection<Plan<ActionDescriptor>> buildPlans(params,
+                                                        SystemModel expectedModel,
+                                                        TransitionPlan<ActionDescriptor> transitionPlan,
+                                                        def metadata)
+  {
     Collection<Type> types = []
     if(params.stepType)
       types << Type.valueOf(params.stepType.toString())
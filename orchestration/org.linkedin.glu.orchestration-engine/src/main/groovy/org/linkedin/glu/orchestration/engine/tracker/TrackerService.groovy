@@ -19,6 +19,8 @@ package org.linkedin.glu.orchestration.engine.tracker
 import org.linkedin.glu.agent.api.MountPoint
 import org.linkedin.glu.agent.tracker.AgentInfo
 import org.linkedin.glu.agent.tracker.MountPointInfo
+import org.linkedin.glu.agent.tracker.NodeEvent
+import org.linkedin.glu.agent.tracker.TrackerEventsListener
 import org.linkedin.glu.orchestration.engine.fabric.Fabric
 
 /**
@@ -34,10 +36,17 @@ interface TrackerService
 
   /**
    * @return a map [accuracy: _accuracyLevel_,
+   *                transactionId: _zkTxId_,
    *                allInfos: [_agentName_: [agent: _agentInfo_, mountPoints: _mountPointInfos_]]
    */
   def getAllInfosWithAccuracy(Fabric fabric)
 
+  /**
+   * @return the (zookeeper) transaction id of the last event seen by the tracker for this fabric
+   *         (changes every time an agent or a mount point changes)
+   */
+  long getTransactionId(Fabric fabric)
+
   Map<MountPoint, MountPointInfo> getMountPointInfos(Fabric fabric, String agentName)
 
   MountPointInfo getMountPointInfo(Fabric fabric, String agentName, mountPoint)
@@ -59,4 +68,30 @@ interface TrackerService
   boolean waitForState(String fabric, String agentName, def mountPoint, String state, def timeout)
 
   boolean waitForState(Fabric fabric, String agentName, def mountPoint, String state, def timeout)
-}
+
+  /**
+   * Registers a listener which will be notified of all agent events in the given fabric (the
+   * listener survives the tracker being recreated)
+   */
+  void registerAgentListener(Fabric fabric,
+                             TrackerEventsListener<AgentInfo, NodeEvent<AgentInfo>> listener)
+
+  /**
+   * Registers a listener which will be notified of all mount point events in the given fabric
+   * (the listener survives the tracker being recreated)
+   */
+  void registerMountPointListener(Fabric fabric,
+                                  TrackerEventsListener<MountPointInfo, NodeEvent<MountPointInfo>> listener)
+
+  /**
+   * Unregisters a listener previously registered with {@link #registerAgentListener}
+   */
+  void unregisterAgentListener(Fabric fabric,
+                               TrackerEventsListener<AgentInfo, NodeEvent<AgentInfo>> listener)
+
+  /**
+   * Unregisters a listener previously registered with {@link #registerMountPointListener}
+   */
+  void unregisterMountPointListener(Fabric fabric,
+                                    TrackerEventsListener<MountPointInfo, NodeEvent<MountPointInfo>> listener)
+}
\ No newline at end of file
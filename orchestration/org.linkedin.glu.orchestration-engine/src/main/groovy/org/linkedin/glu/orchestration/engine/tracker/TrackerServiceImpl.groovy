@@ -21,6 +21,7 @@ import org.linkedin.groovy.util.concurrent.GroovyConcurrentUtils
 import org.linkedin.util.clock.Clock
 import org.linkedin.util.clock.SystemClock
 
+import java.util.concurrent.CopyOnWriteArrayList
 import java.util.concurrent.TimeoutException
 import org.apache.zookeeper.WatchedEvent
 import org.linkedin.glu.agent.tracker.AgentsTracker
@@ -39,6 +40,7 @@ import org.linkedin.glu.agent.api.MountPoint
 import org.linkedin.util.annotations.Initializable
 import org.linkedin.glu.agent.tracker.PrefixAgentInfoPropertyAccessor
 import org.linkedin.glu.agent.tracker.AgentInfoPropertyAccessor
+import org.linkedin.glu.agent.tracker.NodeEvent
 
 /**
  * @author ypujante
@@ -62,6 +64,9 @@ class TrackerServiceImpl implements TrackerService, Destroyable
 
   private final def _trackers = [:]
 
+  // key is fabric name, value is [agent: [listeners], mountPoint: [listeners]]
+  private final def _listeners = [:]
+
   Map<String, AgentInfo> getAgentInfos(Fabric fabric)
   {
     return getAgentsTrackerByFabric(fabric).getAgentInfos()
@@ -82,6 +87,11 @@ class TrackerServiceImpl implements TrackerService, Destroyable
     return getAgentsTrackerByFabric(fabric).getAllInfosWithAccuracy()
   }
 
+  long getTransactionId(Fabric fabric)
+  {
+    return getAgentsTrackerByFabric(fabric).getTransactionId()
+  }
+
   Map<MountPoint, MountPointInfo> getMountPointInfos(Fabric fabric, String agentName)
   {
     return getAgentsTrackerByFabric(fabric).getMountPointInfos(agentName)
@@ -104,6 +114,63 @@ class TrackerServiceImpl implements TrackerService, Destroyable
     return clearAgentInfo(fabricService.findFabric(fabric), agentName)
   }
 
+  @Override
+  synchronized void registerAgentListener(Fabric fabric,
+                                          TrackerEventsListener<AgentInfo, NodeEvent<AgentInfo>> listener)
+  {
+    getListeners(fabric.name).agent << listener
+  }
+
+  @Override
+  synchronized void registerMountPointListener(Fabric fabric,
+                                               TrackerEventsListener<MountPointInfo, NodeEvent<MountPointInfo>> listener)
+  {
+    getListeners(fabric.name).mountPoint << listener
+  }
+
+  @Override
+  synchronized void unregisterAgentListener(Fabric fabric,
+                                            TrackerEventsListener<AgentInfo, NodeEvent<AgentInfo>> listener)
+  {
+    getListeners(fabric.name).agent.remove(listener)
+  }
+
+  @Override
+  synchronized void unregisterMountPointListener(Fabric fabric,
+                                                 TrackerEventsListener<MountPointInfo, NodeEvent<MountPointInfo>> listener)
+  {
+    getListeners(fabric.name).mountPoint.remove(listener)
+  }
+
+  /**
+   * The trackers only know about one listener (per kind) which dispatches to this list so that
+   * listeners can be added/removed independently of the tracker
+   */
+  private def getListeners(String fabricName)
+  {
+    def listeners = _listeners[fabricName]
+    if(listeners == null)
+    {
+      listeners = [agent: new CopyOnWriteArrayList(), mountPoint: new CopyOnWriteArrayList()]
+      _listeners[fabricName] = listeners
+    }
+    return listeners
+  }
+
+  private void dispatchEvents(Collection<TrackerEventsListener> listeners, events)
+  {
+    listeners.each { TrackerEventsListener listener ->
+      try
+      {
+        listener.onEvents(events)
+      }
+      catch(Throwable th)
+      {
+        log.warn("Exception while dispatching tracker events (ignored)", th)
+      }
+    }
+  }
+
   private final Object _mountPointEventsLock = new Object()
 
   @Override
@@ -197,6 +264,15 @@ class TrackerServiceImpl implements TrackerService, Destroyable
 
         tracker.registerMountPointListener(mountPointEventsListener as TrackerEventsListener)
 
+        // registering the listeners added through this service
+        def listeners = getListeners(fabricName)
+        tracker.registerAgentListener({ events ->
+          dispatchEvents(listeners.agent, events)
+        } as TrackerEventsListener)
+        tracker.registerMountPointListener({ events ->
+          dispatchEvents(listeners.mountPoint, events)
+        } as TrackerEventsListener)
+
         tracker.start()
 
         def timeout = '10s'
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2013 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.linkedin.glu.orchestration.engine.action.execution;
+
+import org.linkedin.glu.orchestration.engine.action.descriptor.ActionDescriptor;
+import org.linkedin.glu.orchestration.engine.action.descriptor.ScriptLifecycleInstallActionDescriptor;
+import org.linkedin.glu.orchestration.engine.action.descriptor.ScriptLifecycleUninstallActionDescriptor;
+import org.linkedin.glu.orchestration.engine.action.descriptor.ScriptTransitionActionDescriptor;
+import org.linkedin.glu.provisioner.plan.api.ILeafStepPartitioner;
+import org.linkedin.glu.provisioner.plan.api.LeafStep;
+
+/**
+ * Partitions the leaf steps by kind of action: the script action for a transition (ex:
+ * <code>install</code>, <code>start</code>...) or <code>installScript</code> /
+ * <code>uninstallScript</code> for the script lifecycle. Other actions are not partitioned.
+ *
+ * @author yan@pongasoft.com
+ */
+public class ActionKindLeafStepPartitioner implements ILeafStepPartitioner<ActionDescriptor>
+{
+  public static final String INSTALL_SCRIPT = "installScript";
+  public static final String UNINSTALL_SCRIPT = "uninstallScript";
+
+  /**
+   * Constructor
+   */
+  public ActionKindLeafStepPartitioner()
+  {
+  }
+
+  @Override
+  public Object computePartitionKey(LeafStep<ActionDescriptor> leafStep)
+  {
+    ActionDescriptor action = leafStep.getAction();
+
+    if(action instanceof ScriptTransitionActionDescriptor)
+      return ((ScriptTransitionActionDescriptor) action).getAction();
+
+    if(action instanceof ScriptLifecycleInstallActionDescriptor)
+      return INSTALL_SCRIPT;
+
+    if(action instanceof ScriptLifecycleUninstallActionDescriptor)
+      return UNINSTALL_SCRIPT;
+
+    return null;
+  }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2013 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.linkedin.glu.orchestration.engine.action.execution;
+
+import org.linkedin.glu.orchestration.engine.action.descriptor.ActionDescriptor;
+import org.linkedin.glu.orchestration.engine.action.descriptor.AgentActionDescriptor;
+import org.linkedin.glu.provisioner.plan.api.ILeafStepPartitioner;
+import org.linkedin.glu.provisioner.plan.api.LeafStep;
+
+/**
+ * Partitions the leaf steps by agent (so that the number of actions running on the same agent at
+ * the same time can be limited).
+ *
+ * @author yan@pongasoft.com
+ */
+public class AgentLeafStepPartitioner implements ILeafStepPartitioner<ActionDescriptor>
+{
+  /**
+   * Constructor
+   */
+  public AgentLeafStepPartitioner()
+  {
+  }
+
+  @Override
+  public Object computePartitionKey(LeafStep<ActionDescriptor> leafStep)
+  {
+    ActionDescriptor action = leafStep.getAction();
+
+    if(action instanceof AgentActionDescriptor)
+      return ((AgentActionDescriptor) action).getAgent();
+
+    return null;
+  }
+}
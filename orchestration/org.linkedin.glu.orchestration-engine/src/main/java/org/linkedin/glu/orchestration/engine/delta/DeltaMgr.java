@@ -19,6 +19,7 @@ package org.linkedin.glu.orchestration.engine.delta;
 import org.linkedin.glu.provisioner.core.model.SystemModel;
 
 import java.util.Collection;
+import java.util.Set;
 
 /**
  * @author yan@pongasoft.com
@@ -42,4 +43,24 @@ public interface DeltaMgr
                                              SystemModel currentModel,
                                              Collection<String> toStates,
                                              DeltaSystemModelFilter filter);
+
+  /**
+   * Computes a new delta from a previously computed one when only some entries of the current
+   * model have changed. Only the entries in <code>changedKeys</code> (and the entries they are in
+   * a parent/child relationship with) are recomputed, all the other ones are reused from
+   * <code>previousDelta</code>.
+   *
+   * Note that <code>previousDelta</code> must have been computed on unfiltered models and without
+   * {@link DeltaSystemModelFilter} otherwise a full delta is computed.
+   *
+   * @param previousDelta the delta previously computed (not modified by this call)
+   * @param currentModel the new current model
+   * @param changedKeys the keys of the entries which (may) have changed between the current model
+   *                    of <code>previousDelta</code> and <code>currentModel</code> (note that it
+   *                    should contain all the keys of an agent whose tags have changed)
+   * @return the new delta
+   */
+  SystemModelDelta computeIncrementalDelta(SystemModelDelta previousDelta,
+                                           SystemModel currentModel,
+                                           Set<String> changedKeys);
 }
\ No newline at end of file
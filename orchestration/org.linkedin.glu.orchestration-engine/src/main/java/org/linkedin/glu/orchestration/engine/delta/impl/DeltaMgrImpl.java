@@ -34,6 +34,7 @@ import java.util.Collection;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * @author yan@pongasoft.com
@@ -48,6 +49,22 @@ public class DeltaMgrImpl implements DeltaMgr, InternalDeltaProcessor
 
   private Set<String> _excludedInVersionMismatch = null;
 
+  /**
+   * Number of entries from which the delta gets computed in parallel
+   */
+  private int _parallelDeltaThreshold = 2000;
+
+  /**
+   * When <code>false</code> (default), the custom delta methods
+   * ({@link #processCustomDelta(InternalSystemEntryDelta)}...) are never called concurrently even
+   * when the delta is computed in parallel (so that subclasses can keep state)
+   */
+  private boolean _parallelCustomDelta = false;
+
+  private final Object _customDeltaLock = new Object();
+
+  private ForkJoinPool _forkJoinPool = null;
+
   /**
    * Constructor
    */
@@ -77,6 +94,56 @@ public class DeltaMgrImpl implements DeltaMgr, InternalDeltaProcessor
     _excludedInVersionMismatch = excludedInVersionMismatch;
   }
 
+  public int getParallelDeltaThreshold()
+  {
+    return _parallelDeltaThreshold;
+  }
+
+  @Initializer
+  public void setParallelDeltaThreshold(int parallelDeltaThreshold)
+  {
+    _parallelDeltaThreshold = parallelDeltaThreshold;
+  }
+
+  public boolean isParallelCustomDelta()
+  {
+    return _parallelCustomDelta;
+  }
+
+  @Initializer
+  public void setParallelCustomDelta(boolean parallelCustomDelta)
+  {
+    _parallelCustomDelta = parallelCustomDelta;
+  }
+
+  /**
+   * @return the pool used to compute the delta in parallel (created on demand if not provided)
+   */
+  public synchronized ForkJoinPool getForkJoinPool()
+  {
+    if(_forkJoinPool == null)
+      _forkJoinPool = new ForkJoinPool();
+    return _forkJoinPool;
+  }
+
+  @Initializer
+  public synchronized void setForkJoinPool(ForkJoinPool forkJoinPool)
+  {
+    _forkJoinPool = forkJoinPool;
+  }
+
+  /**
+   * Shuts down the pool used to compute the delta in parallel
+   */
+  public synchronized void destroy()
+  {
+    if(_forkJoinPool != null)
+    {
+      _forkJoinPool.shutdown();
+      _forkJoinPool = null;
+    }
+  }
+
   @Override
   public SystemModelDelta computeDelta(SystemModel filteredExpectedModel,
                                        SystemModel filteredCurrentModel,
@@ -84,6 +151,8 @@ public class DeltaMgrImpl implements DeltaMgr, InternalDeltaProcessor
   {
     SingleDeltaBuilder builder =
       new SingleDeltaBuilder(this, filteredExpectedModel, filteredCurrentModel, filter);
+    builder.setForkJoinPool(getForkJoinPool());
+    builder.setParallelThreshold(_parallelDeltaThreshold);
     return builder.build();
   }
 
@@ -98,17 +167,59 @@ public class DeltaMgrImpl implements DeltaMgr, InternalDeltaProcessor
     return builder.build();
   }
 
+  @Override
+  public SystemModelDelta computeIncrementalDelta(SystemModelDelta previousDelta,
+                                                  SystemModel currentModel,
+                                                  Set<String> changedKeys)
+  {
+    if(previousDelta.getExpectedSystemModel().getFilters() != null ||
+       previousDelta.getCurrentSystemModel().getFilters() != null ||
+       currentModel.getFilters() != null)
+    {
+      if(log.isDebugEnabled())
+        log.debug("filtered models => computing full delta");
+      return computeDelta(previousDelta.getExpectedSystemModel(), currentModel, null);
+    }
+
+    IncrementalDeltaBuilder builder =
+      new IncrementalDeltaBuilder(this,
+                                  (InternalSystemModelDelta) previousDelta,
+                                  currentModel,
+                                  changedKeys);
+    return builder.build();
+  }
+
   @Override
   public InternalSystemEntryDelta processSystemEntryDelta(InternalSystemEntryDelta sed)
   {
     // processing version mismatch
-    processCustomDeltaPreVersionMismatch(sed);
+    if(_parallelCustomDelta)
+    {
+      processCustomDeltaPreVersionMismatch(sed);
+    }
+    else
+    {
+      synchronized(_customDeltaLock)
+      {
+        processCustomDeltaPreVersionMismatch(sed);
+      }
+    }
 
     // processing version mismatch
     processVersionMismatch(sed);
 
     // a chance to add custom processing
-    processCustomDeltaPostVersionMismatch(sed);
+    if(_parallelCustomDelta)
+    {
+      processCustomDeltaPostVersionMismatch(sed);
+    }
+    else
+    {
+      synchronized(_customDeltaLock)
+      {
+        processCustomDeltaPostVersionMismatch(sed);
+      }
+    }
 
     return sed;
   }
@@ -153,7 +264,17 @@ public class DeltaMgrImpl implements DeltaMgr, InternalDeltaProcessor
   protected void processDelta(InternalSystemEntryDelta sed)
   {
     // give a chance for custom delta...
-    processCustomDelta(sed);
+    if(_parallelCustomDelta)
+    {
+      processCustomDelta(sed);
+    }
+    else
+    {
+      synchronized(_customDeltaLock)
+      {
+        processCustomDelta(sed);
+      }
+    }
 
     if(sed.getDeltaState() != null)
       return;
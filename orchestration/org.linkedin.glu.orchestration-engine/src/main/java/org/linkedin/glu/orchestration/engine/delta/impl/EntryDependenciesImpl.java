@@ -43,6 +43,31 @@ public class EntryDependenciesImpl implements EntryDependencies
   {
   }
 
+  /**
+   * Copy constructor: copies all the parent/child relationships from <code>dependencies</code>
+   * except the ones involving any of the <code>excludedKeys</code>
+   */
+  public EntryDependenciesImpl(EntryDependencies dependencies, Set<String> excludedKeys)
+  {
+    for(String key : dependencies.getEntriesWithParents())
+    {
+      String parent = dependencies.findParent(key);
+      if(!excludedKeys.contains(key) && !excludedKeys.contains(parent))
+        setParent(key, parent);
+    }
+  }
+
+  /**
+   * Adds all the parent/child relationships from <code>dependencies</code>
+   */
+  public void addAll(EntryDependencies dependencies)
+  {
+    for(String key : dependencies.getEntriesWithParents())
+    {
+      setParent(key, dependencies.findParent(key));
+    }
+  }
+
   @Override
   public DependencyType getDependencyType(String key)
   {
@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2013 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.linkedin.glu.orchestration.engine.delta.impl;
+
+import org.linkedin.glu.provisioner.core.model.SystemEntry;
+import org.linkedin.glu.provisioner.core.model.SystemModel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Builds a new delta out of a previously computed delta when only some entries of the current
+ * model have changed. The changed entries are expanded to the full parent/child "cluster" they
+ * belong to (in the expected model, the previous current model and the new current model), and
+ * only the entries of those clusters are recomputed (using a {@link SingleDeltaBuilder} restricted
+ * to those keys). All the other entry deltas are reused as-is from the previous delta.
+ *
+ * Note that the previous delta is never modified (it may be in use by other threads).
+ *
+ * @author yan@pongasoft.com
+ */
+public class IncrementalDeltaBuilder
+{
+  public static final String MODULE = IncrementalDeltaBuilder.class.getName();
+  public static final Logger log = LoggerFactory.getLogger(MODULE);
+
+  private final InternalDeltaProcessor _deltaProcessor;
+  private final InternalSystemModelDelta _previousDelta;
+  private final SystemModel _currentModel;
+  private final Set<String> _changedKeys;
+
+  private Set<String> _affectedKeys;
+
+  /**
+   * Constructor
+   */
+  public IncrementalDeltaBuilder(InternalDeltaProcessor deltaProcessor,
+                                 InternalSystemModelDelta previousDelta,
+                                 SystemModel currentModel,
+                                 Set<String> changedKeys)
+  {
+    _deltaProcessor = deltaProcessor;
+    _previousDelta = previousDelta;
+    _currentModel = currentModel;
+    _changedKeys = changedKeys;
+  }
+
+  public InternalSystemModelDelta getPreviousDelta()
+  {
+    return _previousDelta;
+  }
+
+  public SystemModel getCurrentModel()
+  {
+    return _currentModel;
+  }
+
+  public Set<String> getChangedKeys()
+  {
+    return _changedKeys;
+  }
+
+  /**
+   * @return all the keys that need to be recomputed (changed keys + parent/child clusters)
+   */
+  public Set<String> getAffectedKeys()
+  {
+    if(_affectedKeys == null)
+      _affectedKeys = computeAffectedKeys();
+    return _affectedKeys;
+  }
+
+  /**
+   * Builds and return the delta
+   */
+  public InternalSystemModelDelta build()
+  {
+    SystemModel expectedModel = _previousDelta.getExpectedSystemModel();
+
+    Set<String> affectedKeys = getAffectedKeys();
+
+    // 1. recompute the deltas for the affected keys only
+    SingleDeltaBuilder builder = new SingleDeltaBuilder(_deltaProcessor,
+                                                        expectedModel,
+                                                        _currentModel,
+                                                        null,
+                                                        new HashSet<String>(affectedKeys));
+    InternalSystemModelDelta partialDelta = builder.build();
+
+    // 2. merge the dependencies: expected model has not changed so we reuse it
+    SystemModelDeltaImpl delta = new SystemModelDeltaImpl(expectedModel, _currentModel);
+    delta.setExpectedDependencies(_previousDelta.getExpectedDependencies());
+    EntryDependenciesImpl currentDependencies =
+      new EntryDependenciesImpl(_previousDelta.getCurrentDependencies(), affectedKeys);
+    currentDependencies.addAll(partialDelta.getCurrentDependencies());
+    delta.setCurrentDependencies(currentDependencies);
+
+    // 3. reuse the (unchanged) entry deltas
+    Set<String> affectedAgents = new HashSet<String>();
+    for(InternalSystemEntryDelta entryDelta : partialDelta.getAllEntryDeltas())
+    {
+      affectedAgents.add(entryDelta.getAgent());
+    }
+
+    Set<String> nonEmptyAgents = new HashSet<String>();
+    for(InternalSystemEntryDelta entryDelta : _previousDelta.getAllEntryDeltas())
+    {
+      if(!affectedKeys.contains(entryDelta.getKey()))
+      {
+        delta.setEntryDelta(entryDelta);
+        if(!entryDelta.isEmptyAgent() && affectedAgents.contains(entryDelta.getAgent()))
+          nonEmptyAgents.add(entryDelta.getAgent());
+      }
+    }
+
+    // 4. add the recomputed entry deltas
+    for(InternalSystemEntryDelta entryDelta : partialDelta.getAllEntryDeltas())
+    {
+      delta.setEntryDelta(entryDelta);
+    }
+
+    // an agent may have become (non) empty because of an entry that was not recomputed
+    delta.removeNonEmptyAgents(nonEmptyAgents);
+
+    if(log.isDebugEnabled())
+      log.debug("recomputed " + affectedKeys.size() + " entries for " + _changedKeys.size() +
+                " changed entries");
+
+    return delta;
+  }
+
+  /**
+   * The changed keys are expanded to all the entries they are in a parent/child relationship with
+   * (transitively) in any of the models involved.
+   */
+  protected Set<String> computeAffectedKeys()
+  {
+    Set<String> affectedKeys = new HashSet<String>();
+
+    EntryDependencies expectedDependencies = _previousDelta.getExpectedDependencies();
+    EntryDependencies previousCurrentDependencies = _previousDelta.getCurrentDependencies();
+
+    Deque<String> keysToProcess = new ArrayDeque<String>(_changedKeys);
+
+    while(!keysToProcess.isEmpty())
+    {
+      String key = keysToProcess.pop();
+
+      if(!affectedKeys.add(key))
+        continue;
+
+      addDependencies(expectedDependencies, key, keysToProcess);
+      addDependencies(previousCurrentDependencies, key, keysToProcess);
+
+      SystemEntry entry = _currentModel.findEntry(key);
+      if(entry != null && !entry.isDefaultParent())
+      {
+        SystemEntry parentEntry = _currentModel.findEntry(entry.getAgent(), entry.getParent());
+        if(parentEntry != null)
+          keysToProcess.push(parentEntry.getKey());
+      }
+
+      Collection<String> children = _currentModel.findChildrenKeys(key);
+      if(children != null)
+        keysToProcess.addAll(children);
+    }
+
+    return affectedKeys;
+  }
+
+  private static void addDependencies(EntryDependencies dependencies,
+                                      String key,
+                                      Deque<String> keysToProcess)
+  {
+    String parent = dependencies.findParent(key);
+    if(parent != null)
+      keysToProcess.push(parent);
+
+    keysToProcess.addAll(dependencies.findChildren(key));
+  }
+}
@@ -29,6 +29,11 @@ public interface InternalSystemModelDelta extends SystemModelDelta
   InternalSystemEntryDelta findAnyEntryDelta(String key);
   void setEntryDelta(InternalSystemEntryDelta delta);
 
+  /**
+   * @return all the entry deltas (including the ones that are filtered out)
+   */
+  Collection<InternalSystemEntryDelta> getAllEntryDeltas();
+
   /* parent (getter) */
   InternalSystemEntryDelta findExpectedParentEntryDelta(String key);
   InternalSystemEntryDelta findCurrentParentEntryDelta(String key);
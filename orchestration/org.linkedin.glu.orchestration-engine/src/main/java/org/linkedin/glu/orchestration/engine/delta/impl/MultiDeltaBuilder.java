@@ -139,7 +139,8 @@ public class MultiDeltaBuilder
   {
     if("<expected>".equals(state))
     {
-      SystemModel systemModel = getOriginalUnfilteredExpectedModel().clone();
+      // the entries are never modified (only replaced by clones) => sharing them is fine
+      SystemModel systemModel = getOriginalUnfilteredExpectedModel().shallowClone();
       _newFilteredKeys.addAll(getOriginalDelta().getFilteredKeys());
       return systemModel;
     }
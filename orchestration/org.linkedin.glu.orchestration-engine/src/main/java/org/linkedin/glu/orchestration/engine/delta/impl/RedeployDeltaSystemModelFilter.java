@@ -41,4 +41,26 @@ public class RedeployDeltaSystemModelFilter implements DeltaSystemModelFilter
     return expectedEntry != null &&
            (_expectedSystemFilter == null || _expectedSystemFilter.filter(expectedEntry));
   }
+
+  @Override
+  public boolean equals(Object o)
+  {
+    if(this == o) return true;
+    if(!(o instanceof RedeployDeltaSystemModelFilter)) return false;
+
+    RedeployDeltaSystemModelFilter that = (RedeployDeltaSystemModelFilter) o;
+
+    if(_expectedSystemFilter != null ?
+       !_expectedSystemFilter.equals(that._expectedSystemFilter) :
+       that._expectedSystemFilter != null)
+      return false;
+
+    return true;
+  }
+
+  @Override
+  public int hashCode()
+  {
+    return _expectedSystemFilter != null ? _expectedSystemFilter.hashCode() : 0;
+  }
 }
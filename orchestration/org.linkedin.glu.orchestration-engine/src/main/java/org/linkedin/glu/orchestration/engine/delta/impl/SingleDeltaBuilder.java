@@ -24,9 +24,17 @@ import org.linkedin.groovy.util.state.StateMachine;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * @author yan@pongasoft.com
@@ -52,6 +60,9 @@ public class SingleDeltaBuilder
   private Set<String> _parentKeys;
   private HashSet<String> _nonEmptyAgents;
 
+  private ForkJoinPool _forkJoinPool;
+  private int _parallelThreshold = Integer.MAX_VALUE;
+
   /**
    * Constructor
    */
@@ -60,6 +71,22 @@ public class SingleDeltaBuilder
                             SystemModel filteredCurrentModel,
                             DeltaSystemModelFilter deltaSystemModelFilter)
   {
+    this(deltaProcessor, filteredExpectedModel, filteredCurrentModel, deltaSystemModelFilter, null);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param filteredKeys the keys that will be part of the delta (<code>null</code> means compute
+   *                     them from the models and the filter)
+   */
+  public SingleDeltaBuilder(InternalDeltaProcessor deltaProcessor,
+                            SystemModel filteredExpectedModel,
+                            SystemModel filteredCurrentModel,
+                            DeltaSystemModelFilter deltaSystemModelFilter,
+                            Set<String> filteredKeys)
+  {
+    _filteredKeys = filteredKeys;
     _filteredExpectedModel = filteredExpectedModel;
     _filteredCurrentModel = filteredCurrentModel;
 
@@ -77,6 +104,29 @@ public class SingleDeltaBuilder
       _systemModelDelta = null;
   }
 
+  /**
+   * Constructor for a partition of the work (parallel build): shares everything with
+   * <code>parent</code> except the delta in which the entries are recorded
+   */
+  private SingleDeltaBuilder(SingleDeltaBuilder parent)
+  {
+    _deltaProcessor = parent._deltaProcessor;
+    _filteredExpectedModel = parent._filteredExpectedModel;
+    _filteredCurrentModel = parent._filteredCurrentModel;
+    _deltaSystemModelFilter = parent._deltaSystemModelFilter;
+    _unfilteredExpectedModel = parent._unfilteredExpectedModel;
+    _unfilteredCurrentModel = parent._unfilteredCurrentModel;
+    _filteredKeys = parent._filteredKeys;
+
+    SystemModelDeltaImpl delta =
+      new SystemModelDeltaImpl(_filteredExpectedModel, _filteredCurrentModel);
+    delta.setExpectedDependencies(parent._systemModelDelta.getExpectedDependencies());
+    delta.setCurrentDependencies(parent._systemModelDelta.getCurrentDependencies());
+    _systemModelDelta = delta;
+
+    _nonEmptyAgents = new HashSet<String>();
+  }
+
   public SystemModel getFilteredCurrentModel()
   {
     return _filteredCurrentModel;
@@ -167,6 +217,34 @@ public class SingleDeltaBuilder
     _parentKeys = parentKeys;
   }
 
+  public ForkJoinPool getForkJoinPool()
+  {
+    return _forkJoinPool;
+  }
+
+  /**
+   * @param forkJoinPool the pool to use for building the delta in parallel (<code>null</code>
+   *                     means always build it in the calling thread)
+   */
+  public void setForkJoinPool(ForkJoinPool forkJoinPool)
+  {
+    _forkJoinPool = forkJoinPool;
+  }
+
+  public int getParallelThreshold()
+  {
+    return _parallelThreshold;
+  }
+
+  /**
+   * @param parallelThreshold the delta is built in parallel only when the number of keys is at
+   *                          least this number
+   */
+  public void setParallelThreshold(int parallelThreshold)
+  {
+    _parallelThreshold = parallelThreshold;
+  }
+
   /**
    * Builds and return the delta
    */
@@ -182,7 +260,25 @@ public class SingleDeltaBuilder
 
     Set<String> filteredKeys = new HashSet<String>(getFilteredKeys());
 
-    for(String parentKey : getParentKeys())
+    if(_forkJoinPool != null && filteredKeys.size() >= _parallelThreshold)
+    {
+      buildInParallel(filteredKeys);
+    }
+    else
+    {
+      processEntries(getParentKeys(), filteredKeys);
+    }
+
+    _systemModelDelta.removeNonEmptyAgents(_nonEmptyAgents);
+
+    _systemModelDeltaBuilt = true;
+
+    return _systemModelDelta;
+  }
+
+  protected void processEntries(Collection<String> parentKeys, Set<String> filteredKeys)
+  {
+    for(String parentKey : parentKeys)
     {
       processParentChild(parentKey, filteredKeys);
     }
@@ -191,12 +287,65 @@ public class SingleDeltaBuilder
     {
       processEntry(entryKey);
     }
+  }
+
+  /**
+   * A parent and its children always belong to the same agent, so the agent is the unit of work:
+   * each partition (group of agents) is processed in its own builder and the results are then
+   * merged in agent order.
+   */
+  protected void buildInParallel(Set<String> filteredKeys)
+  {
+    Map<String, AgentPartition> partitionsByAgent = new TreeMap<String, AgentPartition>();
+
+    for(String parentKey : getParentKeys())
+    {
+      findPartition(partitionsByAgent, parentKey).parentKeys.add(parentKey);
+    }
 
-    _systemModelDelta.removeNonEmptyAgents(_nonEmptyAgents);
+    for(String entryKey : filteredKeys)
+    {
+      findPartition(partitionsByAgent, entryKey).filteredKeys.add(entryKey);
+    }
 
-    _systemModelDeltaBuilt = true;
+    // the parent/child processing may add keys while other partitions are reading them
+    Set<String> concurrentFilteredKeys =
+      Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>(getFilteredKeys().size()));
+    concurrentFilteredKeys.addAll(getFilteredKeys());
+    _filteredKeys = concurrentFilteredKeys;
 
-    return _systemModelDelta;
+    // make sure they are computed before being shared
+    getUnfilteredExpectedModel();
+    getUnfilteredCurrentModel();
+
+    List<AgentPartition> partitions = new ArrayList<AgentPartition>(partitionsByAgent.values());
+
+    _forkJoinPool.invoke(new PartitionsAction(partitions, 0, partitions.size()));
+
+    for(AgentPartition partition : partitions)
+    {
+      for(InternalSystemEntryDelta entryDelta :
+        partition.builder.getSystemModelDelta().getAllEntryDeltas())
+      {
+        _systemModelDelta.setEntryDelta(entryDelta);
+      }
+      _nonEmptyAgents.addAll(partition.builder._nonEmptyAgents);
+    }
+  }
+
+  private AgentPartition findPartition(Map<String, AgentPartition> partitionsByAgent, String key)
+  {
+    // key is agent:mountPoint
+    int idx = key.indexOf(':');
+    String agent = idx == -1 ? key : key.substring(0, idx);
+
+    AgentPartition partition = partitionsByAgent.get(agent);
+    if(partition == null)
+    {
+      partition = new AgentPartition();
+      partitionsByAgent.put(agent, partition);
+    }
+    return partition;
   }
 
   protected void processParentChild(String parentKey, Set<String> filteredKeys)
@@ -286,6 +435,55 @@ public class SingleDeltaBuilder
     return dependencies;
   }
 
+  /**
+   * The keys of one agent
+   */
+  private static class AgentPartition
+  {
+    private final Collection<String> parentKeys = new ArrayList<String>();
+    private final Set<String> filteredKeys = new HashSet<String>();
+    private SingleDeltaBuilder builder;
+  }
+
+  /**
+   * Processes a range of partitions (splits it in 2 until small enough)
+   */
+  private class PartitionsAction extends RecursiveAction
+  {
+    private static final int MAX_PARTITIONS_PER_ACTION = 16;
+
+    private final List<AgentPartition> _partitions;
+    private final int _start;
+    private final int _end;
+
+    private PartitionsAction(List<AgentPartition> partitions, int start, int end)
+    {
+      _partitions = partitions;
+      _start = start;
+      _end = end;
+    }
+
+    @Override
+    protected void compute()
+    {
+      if(_end - _start <= MAX_PARTITIONS_PER_ACTION)
+      {
+        for(int i = _start; i < _end; i++)
+        {
+          AgentPartition partition = _partitions.get(i);
+          partition.builder = new SingleDeltaBuilder(SingleDeltaBuilder.this);
+          partition.builder.processEntries(partition.parentKeys, partition.filteredKeys);
+        }
+      }
+      else
+      {
+        int middle = (_start + _end) >>> 1;
+        invokeAll(new PartitionsAction(_partitions, _start, middle),
+                  new PartitionsAction(_partitions, middle, _end));
+      }
+    }
+  }
+
   public static int computeDepth(StateMachine stateMachine, String state)
   {
     if(state == null)
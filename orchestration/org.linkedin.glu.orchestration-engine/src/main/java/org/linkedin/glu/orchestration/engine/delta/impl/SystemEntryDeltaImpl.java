@@ -91,7 +91,7 @@ public class SystemEntryDeltaImpl implements InternalSystemEntryDelta
     if(entry == null)
       return Collections.emptyMap();
 
-    return entry.flatten();
+    return entry.getFlattenedView();
   }
 
   private static Map<String, SystemEntryValue> computeValues(SystemEntry expectedEntry,
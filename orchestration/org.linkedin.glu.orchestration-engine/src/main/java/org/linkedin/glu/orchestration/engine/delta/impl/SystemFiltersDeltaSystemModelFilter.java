@@ -46,4 +46,32 @@ public class SystemFiltersDeltaSystemModelFilter implements DeltaSystemModelFilt
     return (_currentEntrySystemFilter == null  || _currentEntrySystemFilter.filter(currentEntry)) &&
            (_expectedEntrySystemFilter == null || _expectedEntrySystemFilter.filter(expectedEntry));
   }
+
+  @Override
+  public boolean equals(Object o)
+  {
+    if(this == o) return true;
+    if(o == null || getClass() != o.getClass()) return false;
+
+    SystemFiltersDeltaSystemModelFilter that = (SystemFiltersDeltaSystemModelFilter) o;
+
+    if(_currentEntrySystemFilter != null ?
+       !_currentEntrySystemFilter.equals(that._currentEntrySystemFilter) :
+       that._currentEntrySystemFilter != null)
+      return false;
+    if(_expectedEntrySystemFilter != null ?
+       !_expectedEntrySystemFilter.equals(that._expectedEntrySystemFilter) :
+       that._expectedEntrySystemFilter != null)
+      return false;
+
+    return true;
+  }
+
+  @Override
+  public int hashCode()
+  {
+    int result = _expectedEntrySystemFilter != null ? _expectedEntrySystemFilter.hashCode() : 0;
+    result = 31 * result + (_currentEntrySystemFilter != null ? _currentEntrySystemFilter.hashCode() : 0);
+    return result;
+  }
 }
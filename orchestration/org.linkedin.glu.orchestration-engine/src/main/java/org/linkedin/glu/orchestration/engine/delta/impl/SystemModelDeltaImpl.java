@@ -123,6 +123,12 @@ public class SystemModelDeltaImpl implements InternalSystemModelDelta
     return _deltas.get(key);
   }
 
+  @Override
+  public Collection<InternalSystemEntryDelta> getAllEntryDeltas()
+  {
+    return Collections.unmodifiableCollection(_deltas.values());
+  }
+
   @Override
   public void setEntryDelta(InternalSystemEntryDelta delta)
   {
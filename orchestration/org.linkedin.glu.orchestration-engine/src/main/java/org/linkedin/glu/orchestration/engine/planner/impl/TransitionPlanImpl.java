@@ -18,12 +18,14 @@ package org.linkedin.glu.orchestration.engine.planner.impl;
 
 import org.linkedin.glu.orchestration.engine.action.descriptor.ActionDescriptor;
 import org.linkedin.glu.orchestration.engine.planner.TransitionPlan;
+import org.linkedin.glu.provisioner.plan.api.DagStepBuilder;
 import org.linkedin.glu.provisioner.plan.api.ICompositeStepBuilder;
 import org.linkedin.glu.provisioner.plan.api.IStep;
 import org.linkedin.glu.provisioner.plan.api.Plan;
 import org.linkedin.glu.provisioner.plan.api.PlanBuilder;
 
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
@@ -63,12 +65,19 @@ public class TransitionPlanImpl implements TransitionPlan<ActionDescriptor>
     }
     else
     {
-      ICompositeStepBuilder<ActionDescriptor> stepBuilder = builder.addSequentialSteps();
+      if(type == IStep.Type.DAG)
+      {
+        addDagSteps(builder.addDagSteps());
+      }
+      else
+      {
+        ICompositeStepBuilder<ActionDescriptor> stepBuilder = builder.addSequentialSteps();
 
-      Set<Transition> roots =
-        findRoots(new TreeSet<Transition>(Transition.TransitionComparator.INSTANCE));
+        Set<Transition> roots =
+          findRoots(new TreeSet<Transition>(Transition.TransitionComparator.INSTANCE));
 
-      addSteps(stepBuilder, type, roots, 0, new HashSet<Transition>());
+        addSteps(stepBuilder, type, roots, 0, new HashSet<Transition>());
+      }
     }
 
 
@@ -134,6 +143,39 @@ public class TransitionPlanImpl implements TransitionPlan<ActionDescriptor>
     addSteps(stepBuilder, type, nextTransitions, depth + 1, alreadyProcessed);
   }
 
+  /**
+   * Each transition becomes a node of the dag and depends directly on the transitions it must
+   * execute after: as opposed to {@link #addSteps(ICompositeStepBuilder, IStep.Type, Set, int, Set)}
+   * there is no 'depth' barrier (a transition does not wait for unrelated transitions).
+   */
+  private void addDagSteps(DagStepBuilder<ActionDescriptor> dagBuilder)
+  {
+    Set<Transition> transitions =
+      new TreeSet<Transition>(Transition.TransitionComparator.INSTANCE);
+    transitions.addAll(_transitions);
+
+    Map<Transition, ICompositeStepBuilder<ActionDescriptor>> nodes =
+      new HashMap<Transition, ICompositeStepBuilder<ActionDescriptor>>();
+
+    for(Transition transition : transitions)
+    {
+      ICompositeStepBuilder<ActionDescriptor> node = dagBuilder.addNode();
+      transition.addSteps(node);
+      nodes.put(transition, node);
+    }
+
+    for(Transition transition : transitions)
+    {
+      ICompositeStepBuilder<ActionDescriptor> node = nodes.get(transition);
+      for(Transition t : transition.getExecuteAfter())
+      {
+        ICompositeStepBuilder<ActionDescriptor> predecessor = nodes.get(t);
+        if(predecessor != null)
+          dagBuilder.addDependency(node, predecessor);
+      }
+    }
+  }
+
   private boolean checkExecuteBefore(Transition transition, Set<Transition> alreadyProcessed)
   {
     for(Transition t : transition.getExecuteAfter())
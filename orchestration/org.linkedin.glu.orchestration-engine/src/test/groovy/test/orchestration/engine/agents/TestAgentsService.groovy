@@ -25,6 +25,7 @@ import org.linkedin.glu.orchestration.engine.tracker.TrackerService
 import org.linkedin.glu.agent.rest.client.AgentFactory
 import org.linkedin.zookeeper.tracker.TrackedNode
 import java.security.AccessControlException
+import org.linkedin.glu.agent.tracker.AgentsTracker.AccuracyLevel
 
 /**
  * @author yan@pongasoft.com */
@@ -111,4 +112,53 @@ public class TestAgentsService extends GroovyTestCase
       assertEquals(newFileContent, fc)
     }
   }
-}
\ No newline at end of file
+
+  /**
+   * The current system model is reused until the tracker transaction id changes
+   */
+  public void testCurrentSystemModelSnapshot()
+  {
+    long transactionId = 1
+    def accuracy = AccuracyLevel.ACCURATE
+    int allInfosCalls = 0
+
+    def trackerService = [
+      getTransactionId: { Fabric fabric -> transactionId },
+      getAllInfosWithAccuracy: { Fabric fabric ->
+        allInfosCalls++
+        [
+          accuracy: accuracy,
+          transactionId: transactionId,
+          allInfos: [a1: [info: [agentName: 'a1'], mountPoints: [:]]]
+        ]
+      }
+    ]
+
+    agentsService.trackerService = trackerService as TrackerService
+
+    def fabric = new Fabric(name: 'f1')
+
+    def model = agentsService.getCurrentSystemModel(fabric)
+    assertEquals(['a1:null'], model.findEntries().key)
+    assertEquals(1, allInfosCalls)
+
+    // nothing changed => same snapshot
+    assertTrue(model.is(agentsService.getCurrentSystemModel(fabric)))
+    assertEquals(1, allInfosCalls)
+    assertEquals([hits: 1L, misses: 1L, hitRate: 0.5d], agentsService.currentSystemModelSnapshotStats)
+
+    // zookeeper event => rebuilt
+    transactionId = 2
+    def newModel = agentsService.getCurrentSystemModel(fabric)
+    assertFalse(model.is(newModel))
+    assertEquals(2, allInfosCalls)
+    assertTrue(newModel.is(agentsService.getCurrentSystemModel(fabric)))
+
+    // a partial model is never reused
+    transactionId = 3
+    accuracy = AccuracyLevel.PARTIAL
+    model = agentsService.getCurrentSystemModel(fabric)
+    assertFalse(model.is(agentsService.getCurrentSystemModel(fabric)))
+    assertEquals(4, allInfosCalls)
+  }
+}
@@ -27,6 +27,11 @@ import org.linkedin.glu.orchestration.engine.delta.SystemEntryDelta.DeltaState
 import org.linkedin.glu.provisioner.core.model.JSONSystemModelSerializer
 import org.linkedin.glu.orchestration.engine.delta.CustomDeltaDefinition
 import org.linkedin.glu.orchestration.engine.delta.CustomGroupByDelta
+import org.linkedin.glu.orchestration.engine.delta.IncrementalDeltaServiceImpl
+import org.linkedin.glu.orchestration.engine.tracker.TrackerService
+import org.linkedin.glu.orchestration.engine.fabric.Fabric
+import org.linkedin.glu.orchestration.engine.fabric.FabricService
+import org.linkedin.glu.orchestration.engine.agents.AgentsService
 
 class TestDeltaService extends GroovyTestCase
 {
@@ -2054,6 +2059,111 @@ class TestDeltaService extends GroovyTestCase
                            deltaF(current, expected, "mountPoint='/p1'"))
   }
 
+  /**
+   * The incremental delta must always be identical to the full delta
+   */
+  void testIncrementalDelta()
+  {
+    def expected = m([agent: 'a1', mountPoint: '/p1', script: 's2'],
+                     [agent: 'a1', mountPoint: '/c1', script: 's1', parent: '/p1'],
+                     [agent: 'a1', mountPoint: '/m1', script: 's1'],
+                     [agent: 'a2', mountPoint: '/x', script: 's1'])
+
+    def current = m([agent: 'a1', mountPoint: '/p1', script: 's1',
+                     entryState: 'running', metadata: [currentState: 'running']],
+                    [agent: 'a1', mountPoint: '/c1', script: 's1', parent: '/p1',
+                     entryState: 'running', metadata: [currentState: 'running']],
+                    [agent: 'a1', mountPoint: '/m1', script: 's1',
+                     entryState: 'running', metadata: [currentState: 'running']],
+                    [agent: 'a2', entryState: 'NA', metadata: [emptyAgent: true, currentState: 'NA']])
+
+    def previousDelta = deltaMgr.computeDelta(expected, current, null)
+
+    // p1 is fixed (which impacts c1) and x gets deployed on the (previously empty) agent a2
+    current = m([agent: 'a1', mountPoint: '/p1', script: 's2',
+                 entryState: 'running', metadata: [currentState: 'running']],
+                [agent: 'a1', mountPoint: '/c1', script: 's1', parent: '/p1',
+                 entryState: 'running', metadata: [currentState: 'running']],
+                [agent: 'a1', mountPoint: '/m1', script: 's1',
+                 entryState: 'running', metadata: [currentState: 'running']],
+                [agent: 'a2', mountPoint: '/x', script: 's1',
+                 entryState: 'running', metadata: [currentState: 'running']])
+
+    def incrementalDelta =
+      deltaMgr.computeIncrementalDelta(previousDelta,
+                                       current,
+                                       ['a1:/p1', 'a2:null', 'a2:/x'] as Set)
+
+    assertEqualsIgnoreType(deltaMgr.computeDelta(expected, current, null).flatten(new TreeMap()),
+                           incrementalDelta.flatten(new TreeMap()))
+
+    // the previous delta must not have been modified
+    assertEquals('delta', previousDelta.findEntryDelta('a1:/p1').deltaStatus)
+    assertEquals('notDeployed', previousDelta.findEntryDelta('a2:/x').deltaStatus)
+
+    // m1 and x are undeployed (a2 becomes empty)
+    current = m([agent: 'a1', mountPoint: '/p1', script: 's2',
+                 entryState: 'running', metadata: [currentState: 'running']],
+                [agent: 'a1', mountPoint: '/c1', script: 's1', parent: '/p1',
+                 entryState: 'running', metadata: [currentState: 'running']],
+                [agent: 'a2', entryState: 'NA', metadata: [emptyAgent: true, currentState: 'NA']])
+
+    assertEqualsIgnoreType(deltaMgr.computeDelta(expected, current, null).flatten(new TreeMap()),
+                           deltaMgr.computeIncrementalDelta(incrementalDelta,
+                                                            current,
+                                                            ['a1:/m1', 'a2:/x', 'a2:null'] as Set).flatten(new TreeMap()))
+  }
+
+  /**
+   * The delta computed in parallel must be identical to the one computed in a single thread
+   */
+  void testParallelDelta()
+  {
+    def expected = []
+    def current = []
+
+    (1..20).each { idx ->
+      def agent = "a${idx}".toString()
+
+      // empty agents
+      if(idx % 7 == 0)
+      {
+        current << [agent: agent, entryState: 'NA', metadata: [emptyAgent: true, currentState: 'NA']]
+        if(idx % 2 == 0)
+          expected << [agent: agent, mountPoint: '/e1', script: 's1']
+        return
+      }
+
+      expected << [agent: agent, mountPoint: '/p1', script: 's1']
+      expected << [agent: agent, mountPoint: '/c1', script: 's1', parent: '/p1']
+      expected << [agent: agent, mountPoint: '/m1', script: 's1', tags: ['t1']]
+
+      current << [agent: agent, mountPoint: '/p1', script: idx % 3 == 0 ? 's2' : 's1',
+                  entryState: 'running', metadata: [currentState: 'running']]
+      current << [agent: agent, mountPoint: '/c1', script: 's1', parent: '/p1',
+                  entryState: idx % 4 == 0 ? 'stopped' : 'running',
+                  metadata: [currentState: idx % 4 == 0 ? 'stopped' : 'running']]
+      if(idx % 5 != 0)
+        current << [agent: agent, mountPoint: '/m1', script: 's1', tags: ['t1'],
+                    entryState: 'running', metadata: [currentState: 'running']]
+    }
+
+    SystemModel expectedModel = toSystem(expected)
+    SystemModel currentModel = toSystem(current)
+
+    DeltaMgrImpl parallelDeltaMgr = new DeltaMgrImpl(parallelDeltaThreshold: 1)
+
+    [null, "mountPoint='/c1'", "tags.hasAny('t1')"].each { filter ->
+      SystemModel filteredExpectedModel = filter ? expectedModel.filterBy(filter) : expectedModel
+
+      def delta = deltaMgr.computeDelta(filteredExpectedModel, currentModel, null)
+      def parallelDelta = parallelDeltaMgr.computeDelta(filteredExpectedModel, currentModel, null)
+
+      assertEqualsIgnoreType(delta.flatten(new TreeMap()), parallelDelta.flatten(new TreeMap()))
+      assertEquals(delta.emptyAgents, parallelDelta.emptyAgents)
+    }
+  }
+
   // Testing for use case where metadata changes (version in this case)
   // entry | current | expected
   // e1    | null    | null
@@ -2634,6 +2744,53 @@ class TestDeltaService extends GroovyTestCase
     deltaService.computeDeltaAsJSON(params)
   }
 
+  /**
+   * The fabric instances get recreated when the fabric cache is reset: the delta (and its tracker
+   * listeners) should only be recreated when the fabric actually changes
+   */
+  void testIncrementalDeltaFabricChange()
+  {
+    def listeners = []
+    def zkConnectString = 'zk1'
+
+    def trackerService = [
+      registerAgentListener: { f, l -> listeners << l },
+      registerMountPointListener: { f, l -> listeners << l },
+      unregisterAgentListener: { f, l -> listeners.remove(l) },
+      unregisterMountPointListener: { f, l -> listeners.remove(l) }
+    ] as TrackerService
+
+    def fabricService = [
+      findFabric: { String name -> new Fabric(name: name, zkConnectString: zkConnectString) }
+    ] as FabricService
+
+    def agentsService = [
+      getCurrentSystemModel: { Fabric f -> m([agent: 'a1', mountPoint: '/m1', script: 's1']) }
+    ] as AgentsService
+
+    def incrementalDeltaService = new IncrementalDeltaServiceImpl(agentsService: agentsService,
+                                                                  trackerService: trackerService,
+                                                                  fabricService: fabricService,
+                                                                  deltaMgr: deltaMgr)
+
+    SystemModel expected = m([agent: 'a1', mountPoint: '/m1', script: 's1'])
+    expected.id = 'e1'
+
+    incrementalDeltaService.computeDelta(expected)
+    assertEquals(2, listeners.size())
+    def previousListeners = new ArrayList(listeners)
+
+    // new fabric instance, same content
+    incrementalDeltaService.computeDelta(expected)
+    assertEquals(previousListeners, listeners)
+
+    // the fabric changes => previous listeners are unregistered
+    zkConnectString = 'zk2'
+    incrementalDeltaService.computeDelta(expected)
+    assertEquals(2, listeners.size())
+    assertTrue(listeners.intersect(previousListeners).isEmpty())
+  }
+
   private SystemModel m(Map... entries)
   {
     SystemModel model = new SystemModel(fabric: "f1")
@@ -253,6 +253,51 @@ public class TestDeploymentService extends GroovyTestCase
 
   }
 
+  /**
+   * Test for the progress journal
+   */
+  public void testProgressJournal()
+  {
+    ThreadControl tc = new ThreadControl(Timespan.parse('30s'))
+
+    deploymentService.progressJournalFlushFrequency = Timespan.parse('10')
+
+    Plan plan = createPlan('f1', 'p') {
+      tc.block('p')
+    }
+    deploymentService.savePlan(plan)
+    CurrentDeployment deployment =
+      deploymentService.executeDeploymentPlan(new SystemModel(id: 'sma', fabric: 'f1'), plan)
+
+    tc.waitForBlock('p')
+
+    // the steps which have started are journaled while the deployment is running
+    GroovyConcurrentUtils.waitForCondition(SystemClock.INSTANCE, '10s', '10') {
+      deploymentStorage.getArchivedDeployment(deployment.id).progress?.contains('p.S0.L0')
+    }
+    assertNull(deploymentStorage.getArchivedDeployment(deployment.id).status)
+    def event = deploymentStorage.getArchivedDeployment(deployment.id).progressEvents.find {
+      it.name == 'p.S0.L0'
+    }
+    assertEquals('START', event.type)
+    assertNull(event.status)
+
+    tc.unblock('p')
+    deployment.planExecution.waitForCompletion()
+
+    // the deployment is then archived by the journal
+    GroovyConcurrentUtils.waitForCondition(SystemClock.INSTANCE, '10s', '10') {
+      deploymentStorage.getArchivedDeployment(deployment.id).status == 'COMPLETED'
+    }
+    assertNull(deploymentStorage.getArchivedDeployment(deployment.id).progress)
+
+    // the details are built incrementally (same as rendering the whole execution at the end)
+    assertEquals(deployment.planExecution.toXml([fabric: 'f1', systemId: 'sma']),
+                 deploymentStorage.getArchivedDeployment(deployment.id).details)
+
+    deploymentService.destroy()
+  }
+
   private Plan createPlan(String fabric, String planId, Closure action)
   {
     def stepBuilder = new StepBuilder().sequential(name: "${planId}.S0".toString()) {
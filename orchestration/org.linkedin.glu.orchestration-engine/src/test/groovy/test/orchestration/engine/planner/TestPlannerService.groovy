@@ -31,6 +31,7 @@ import org.linkedin.glu.provisioner.plan.api.Plan
 import org.linkedin.glu.orchestration.engine.planner.PlannerServiceImpl
 import org.linkedin.glu.provisioner.core.model.JSONSystemModelSerializer
 import org.linkedin.glu.groovy.utils.plugins.PluginServiceImpl
+import org.linkedin.glu.orchestration.engine.tracker.TrackerService
 
 /**
  * @author yan@pongasoft.com */
@@ -1286,6 +1287,68 @@ public class TestPlannerService extends GroovyTestCase
   }
 
 
+  /**
+   * Transition plans are memoized until the tracker transaction id changes
+   */
+  public void testTransitionPlanMemoization()
+  {
+    SystemModel expectedModel =
+      m(
+        [agent: 'a1', mountPoint: '/m1', script: 's1'],
+        [agent: 'a1', mountPoint: '/m2', script: 's1']
+      )
+    expectedModel.id = 'e1'
+
+    SystemModel currentSystemModel =
+      m(
+        [agent: 'a1', mountPoint: '/m1', script: 's1'])
+
+    int currentModelCalls = 0
+    long transactionId = 1
+
+    AgentsService countingAgentsService = [
+      getCurrentSystemModel: { Fabric fabric -> currentModelCalls++; currentSystemModel }
+    ] as AgentsService
+
+    TrackerService trackerService = [
+      getTransactionId: { Fabric fabric -> transactionId }
+    ] as TrackerService
+
+    PlannerServiceImpl service = new PlannerServiceImpl(planner: planner,
+                                                        deltaMgr: deltaMgr,
+                                                        fabricService: fabricService,
+                                                        agentsService: countingAgentsService,
+                                                        planIdFactory: { null },
+                                                        pluginService: pluginService,
+                                                        trackerService: trackerService)
+
+    def p1 = service.computeDeployPlans([system: expectedModel, stepType: Type.SEQUENTIAL], null)
+    assertEquals(1, currentModelCalls)
+    assertEquals(4, p1[0].leafStepsCount)
+
+    // same expected model and transaction id => no recomputation
+    def p2 = service.computeDeployPlans([system: expectedModel, stepType: Type.SEQUENTIAL], null)
+    assertEquals(1, currentModelCalls)
+    assertEquals(p1[0].toXml(), p2[0].toXml())
+    assertNotSame(p1[0], p2[0])
+
+    // the plans are built for each call
+    assertEquals(2, service.computeDeployPlans([system: expectedModel], null).size())
+    assertEquals(1, currentModelCalls)
+
+    // current model changes => new transaction id
+    currentSystemModel = m([agent: 'a1', mountPoint: '/m3', script: 's1'])
+    transactionId = 2
+    def p3 = service.computeDeployPlans([system: expectedModel, stepType: Type.SEQUENTIAL], null)
+    assertEquals(2, currentModelCalls)
+    assertEquals(12, p3[0].leafStepsCount)
+
+    // disabled
+    service.transitionPlanCacheSize = 0
+    service.computeDeployPlans([system: expectedModel, stepType: Type.SEQUENTIAL], null)
+    assertEquals(3, currentModelCalls)
+  }
+
   private Plan<ActionDescriptor> upgradePlan(Type type,
                                              SystemModel currentSystemModel,
                                              Collection<String> agents)
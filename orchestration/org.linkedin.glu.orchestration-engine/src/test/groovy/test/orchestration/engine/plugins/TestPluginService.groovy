@@ -100,6 +100,185 @@ public class TestPluginService extends GroovyTestCase
       assertEquals(0, executions.size())
     }
   }
+
+  /**
+   * When the plugin is a collection, the closures are called in the order of the collection and
+   * the result of one is provided to the next one
+   */
+  public void testChainedPlugins()
+  {
+    def executions = []
+
+    def plugin1 =
+    [
+      S1_m1: { args ->
+        executions << [p1_S1_m1: new HashMap(args)]
+        return 'r1'
+      },
+
+      S1_pre_m2: { args ->
+        executions << [p1_S1_pre_m2: new HashMap(args)]
+        return 'pre1'
+      },
+
+      S1_post_m2: { args ->
+        executions << [p1_S1_post_m2: new HashMap(args)]
+        return null
+      }
+    ]
+
+    def plugin2 =
+    [
+      S1_m1: { args ->
+        executions << [p2_S1_m1: new HashMap(args)]
+        return 'r2'
+      },
+
+      S1_pre_m2: { args ->
+        executions << [p2_S1_pre_m2: new HashMap(args)]
+        return null
+      },
+
+      S1_post_m2: { args ->
+        executions << [p2_S1_post_m2: new HashMap(args)]
+        return 'post2'
+      }
+    ]
+
+    pluginService.plugin = [plugin1, plugin2]
+
+    assertEquals('r2', pluginService.executeMethod(S1, "m1", [p1: 'pv1']))
+    assertEquals(2, executions.size())
+    assertEquals([p1: 'pv1'], executions[0]['p1_S1_m1'])
+    assertEquals([p1: 'pv1', pluginResult: 'r1'], executions[1]['p2_S1_m1'])
+
+    // reverse order => reverse calls
+    executions.clear()
+    pluginService.plugin = [plugin2, plugin1]
+    assertEquals('r1', pluginService.executeMethod(S1, "m1", [p1: 'pv1']))
+    assertEquals(2, executions.size())
+    assertEquals([p1: 'pv1'], executions[0]['p2_S1_m1'])
+    assertEquals([p1: 'pv1', pluginResult: 'r2'], executions[1]['p1_S1_m1'])
+
+    executions.clear()
+    pluginService.plugin = [plugin1, plugin2]
+    def serviceArgs = null
+    def res = pluginService.executePrePostMethods(S1, "m2", [p2: 'pv2']) { args ->
+      serviceArgs = new HashMap(args)
+      return 2
+    }
+    assertEquals('post2', res)
+    assertEquals([p2: 'pv2', pluginResult: 'pre1'], serviceArgs)
+    assertEquals(4, executions.size())
+    assertEquals([p2: 'pv2'], executions[0]['p1_S1_pre_m2'])
+    // p2_S1_pre_m2 receives the result of p1_S1_pre_m2
+    assertEquals([p2: 'pv2', pluginResult: 'pre1'], executions[1]['p2_S1_pre_m2'])
+    assertEquals([p2: 'pv2', serviceResult: 2], executions[2]['p1_S1_post_m2'])
+    // p1_S1_post_m2 returned null => nothing to chain
+    assertEquals([p2: 'pv2', serviceResult: 2], executions[3]['p2_S1_post_m2'])
+  }
+
+  public void testHasPluginMethod()
+  {
+    assertFalse(pluginService.hasPluginMethod(S1, "m1"))
+
+    pluginService.plugin = [
+      S1_m1: { args -> },
+      S1_pre_m2: { args -> },
+      S1_post_m3: { args -> },
+      notAClosure: 'abc'
+    ]
+
+    assertTrue(pluginService.hasPluginMethod(S1, "m1"))
+    assertTrue(pluginService.hasPluginMethod(S1, "m2"))
+    assertTrue(pluginService.hasPluginMethod(S1, "pre_m2"))
+    assertTrue(pluginService.hasPluginMethod(S1, "m3"))
+    assertFalse(pluginService.hasPluginMethod(S1, "m4"))
+    assertFalse(pluginService.hasPluginMethod(S1, "notAClosure"))
+    assertFalse(pluginService.hasPluginMethod(PluginClass, "m1"))
+
+    // the table is rebuilt when the plugin changes
+    pluginService.plugin = [S1_m4: { args -> }]
+    assertFalse(pluginService.hasPluginMethod(S1, "m1"))
+    assertTrue(pluginService.hasPluginMethod(S1, "m4"))
+  }
+
+  public void testPrePostMethods()
+  {
+    def executions = []
+
+    pluginService.plugin = [
+      S1_pre_m1: { args ->
+        executions << [S1_pre_m1: new HashMap(args)]
+        return 'pre'
+      },
+
+      S1_post_m1: { args ->
+        executions << [S1_post_m1: new HashMap(args)]
+        return args.serviceException ? null : 'post'
+      }
+    ]
+
+    def serviceArgs = null
+    def res = pluginService.executePrePostMethods(S1, "m1", [p1: 'pv1']) { args ->
+      serviceArgs = new HashMap(args)
+      return 1
+    }
+
+    // post result replaces the service result
+    assertEquals('post', res)
+    assertEquals([p1: 'pv1', pluginResult: 'pre'], serviceArgs)
+    assertEquals(2, executions.size())
+    assertEquals([p1: 'pv1'], executions[0]['S1_pre_m1'])
+    assertEquals([p1: 'pv1', serviceResult: 1], executions[1]['S1_post_m1'])
+
+    // service exception is provided to the post closure and rethrown
+    executions.clear()
+    def exception = new IllegalStateException('m1')
+    try
+    {
+      pluginService.executePrePostMethods(S1, "m1", [p1: 'pv1']) { args ->
+        throw exception
+      }
+      fail("should fail")
+    }
+    catch(IllegalStateException e)
+    {
+      assertTrue(e.is(exception))
+    }
+    assertEquals(2, executions.size())
+    assertEquals([p1: 'pv1'], executions[0]['S1_pre_m1'])
+    assertEquals([p1: 'pv1', serviceException: exception], executions[1]['S1_post_m1'])
+  }
+
+  /**
+   * When no plugin closure is attached to the method, the service closure is called directly with
+   * the original arguments
+   */
+  public void testNoPluginMethod()
+  {
+    def pluginArgs = [p1: 'pv1']
+    def serviceArgs = null
+
+    // no plugin at all
+    assertNull(pluginService.executeMethod(S1, "m1", pluginArgs))
+    assertEquals(1, pluginService.executePrePostMethods(S1, "m1", pluginArgs) { args ->
+      serviceArgs = args
+      return 1
+    })
+    assertTrue(serviceArgs.is(pluginArgs))
+
+    // plugin without the method
+    serviceArgs = null
+    pluginService.plugin = [S1_pre_m2: { args -> 'pre' }]
+    assertNull(pluginService.executeMethod(S1, "m1", pluginArgs))
+    assertEquals(1, pluginService.executePrePostMethods(S1, "m1", pluginArgs) { args ->
+      serviceArgs = args
+      return 1
+    })
+    assertTrue(serviceArgs.is(pluginArgs))
+    assertEquals([p1: 'pv1'], pluginArgs)
+  }
 }
 
 // fake service class for plugin api
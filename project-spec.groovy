@@ -26,6 +26,7 @@ spec = [
     grails: '2.2.1',
     groovy: '2.0.7',
     jetty: '8.1.10.v20130312', // '9.0.0.v20130308' (cannot use 9 -> requires jdk 1.7)
+    jmh: '1.21',
     utilsMisc: '2.0.2-SNAPSHOT',
     utilsZookeeper: '2.0.2',
     restlet: '2.1.2',
@@ -68,6 +69,8 @@ spec.external = [
     version: spec.versions.jetty,
     ext: "tar.gz"
   ],
+  jmhCore: "org.openjdk.jmh:jmh-core:${spec.versions.jmh}",
+  jmhGeneratorAnnprocess: "org.openjdk.jmh:jmh-generator-annprocess:${spec.versions.jmh}",
   junit: 'junit:junit:4.10',
   utilsMiscCore: "org.pongasoft:org.linkedin.util-core:${spec.versions.utilsMisc}",
   utilsMiscGroovy: "org.pongasoft:org.linkedin.util-groovy:${spec.versions.utilsMisc}",
@@ -31,7 +31,7 @@ class FlattenSystemFilter extends NameEqualsValueSystemFilter
 
   def boolean filter(SystemEntry entry)
   {
-    return entry?.flatten()?."${name}" == value
+    return entry?.flattenedView?."${name}" == value
   }
 
   @Override
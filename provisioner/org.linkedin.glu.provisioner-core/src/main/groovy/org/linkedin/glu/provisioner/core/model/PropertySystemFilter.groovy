@@ -137,6 +137,14 @@ class PropertySystemFilter extends NameEqualsValueSystemFilter
     super.setName(computeName())
   }
 
+  /**
+   * @return the (read only) tokens making up the name of the property
+   */
+  Collection<PropertyToken> getTokens()
+  {
+    Collections.unmodifiableCollection(_tokens)
+  }
+
   private String computeName()
   {
     StringBuilder sb = new StringBuilder()
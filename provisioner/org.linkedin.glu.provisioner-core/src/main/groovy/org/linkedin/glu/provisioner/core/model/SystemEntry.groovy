@@ -17,13 +17,15 @@
 
 package org.linkedin.glu.provisioner.core.model
 
+import org.linkedin.glu.groovy.utils.collections.GluGroovyCollectionUtils
 import org.linkedin.groovy.util.collections.GroovyCollectionsUtils
 import org.linkedin.groovy.util.json.JsonUtils
 import org.linkedin.glu.utils.tags.TaggeableTreeSetImpl
 import org.linkedin.glu.utils.tags.ReadOnlyTaggeable
-import org.linkedin.util.lang.LangUtils
 import org.linkedin.glu.groovy.util.state.DefaultStateMachine
 
+import java.util.concurrent.atomic.AtomicLong
+
 /**
  * @author ypujante@linkedin.com */
 class SystemEntry implements ReadOnlyTaggeable, MetadataProvider
@@ -41,6 +43,124 @@ class SystemEntry implements ReadOnlyTaggeable, MetadataProvider
   Map<String, Object> metadata = [:] // optional
   volatile ReadOnlyTaggeable entryTags = ReadOnlyTaggeable.EMPTY // optional
 
+  // number of modifications of the entries which are part of an index (see markIndexed)
+  private static final AtomicLong INDEXED_ENTRIES_MODIFICATIONS = new AtomicLong(0)
+
+  // cached (read only) version of flatten: reset when the entry is modified (setters)
+  private volatile Map _flattened = null
+
+  // the maps/collections are read only (set when the entry is flattened or indexed)
+  private volatile boolean _frozen = false
+
+  // the entry is part of an index (SystemEntriesIndex)
+  private volatile boolean _indexed = false
+
+  void setAgent(String agent)
+  {
+    this.@agent = agent
+    modified()
+  }
+
+  void setMountPoint(String mountPoint)
+  {
+    this.@mountPoint = mountPoint
+    modified()
+  }
+
+  void setScript(def script)
+  {
+    this.@script = script
+    _frozen = false
+    modified()
+  }
+
+  void setEntryState(String entryState)
+  {
+    this.@entryState = entryState
+    modified()
+  }
+
+  void setParent(String parent)
+  {
+    this.@parent = parent
+    modified()
+  }
+
+  void setInitParameters(def initParameters)
+  {
+    this.@initParameters = initParameters
+    _frozen = false
+    modified()
+  }
+
+  void setActionArgs(def actionArgs)
+  {
+    this.@actionArgs = actionArgs
+    _frozen = false
+    modified()
+  }
+
+  void setMetadata(Map<String, Object> metadata)
+  {
+    this.@metadata = metadata
+    _frozen = false
+    modified()
+  }
+
+  void setEntryTags(ReadOnlyTaggeable entryTags)
+  {
+    ReadOnlyTaggeable previousEntryTags = this.@entryTags
+    this.@entryTags = entryTags
+    // the tags are not part of the flattened version (and replacing the tags with the same tags,
+    // for example when they get interned by a model, does not modify the entry)
+    if(_indexed && previousEntryTags != entryTags)
+      INDEXED_ENTRIES_MODIFICATIONS.incrementAndGet()
+  }
+
+  private void modified()
+  {
+    _flattened = null
+    if(_indexed)
+      INDEXED_ENTRIES_MODIFICATIONS.incrementAndGet()
+  }
+
+  /**
+   * Called when the entry becomes part of an index: from then on, the entry is frozen (the maps
+   * and collections are read only) and any modification through a setter is tracked (see
+   * {@link #getIndexedEntriesModifications()}) so that the index can be invalidated.
+   */
+  void markIndexed()
+  {
+    freeze()
+    _indexed = true
+  }
+
+  /**
+   * @return the number of modifications (through the setters) of the entries which are part of
+   *         an index: a cheap way for an index to know that it is stale
+   */
+  static long getIndexedEntriesModifications()
+  {
+    return INDEXED_ENTRIES_MODIFICATIONS.get()
+  }
+
+  /**
+   * Makes the maps and collections read only: they can no longer be modified in place (only
+   * replaced through the setters) which guarantees that the cached flattened version and the
+   * indexes are not stale.
+   */
+  private synchronized void freeze()
+  {
+    if(!_frozen)
+    {
+      this.@script = GluGroovyCollectionUtils.deepFreeze(script)
+      this.@initParameters = GluGroovyCollectionUtils.deepFreeze(initParameters)
+      this.@actionArgs = GluGroovyCollectionUtils.deepFreeze(actionArgs)
+      this.@metadata = GluGroovyCollectionUtils.deepFreeze(metadata)
+      _frozen = true
+    }
+  }
+
   String getKey()
   {
     return "${agent}:${mountPoint}".toString()
@@ -166,7 +286,7 @@ class SystemEntry implements ReadOnlyTaggeable, MetadataProvider
 
   void setTags(Collection<String> tags)
   {
-    entryTags = new TaggeableTreeSetImpl(tags)
+    setEntryTags(new TaggeableTreeSetImpl(tags))
   }
 
   boolean isEmptyAgent()
@@ -188,19 +308,91 @@ class SystemEntry implements ReadOnlyTaggeable, MetadataProvider
    */
   Map flatten(Map destMap)
   {
-    def er = toExternalRepresentation()
-    er.remove('tags')
-    GroovyCollectionsUtils.flatten(er, destMap)
-    destMap.key = key
-    destMap.entryState = getEntryState() // not part of er if <code>null</code>
+    destMap.putAll(getFlattenedView())
     return destMap
   }
 
+  /**
+   * The flattened version of the entry is computed once and cached (the cache is reset when the
+   * entry is modified through its setters). Note that once the entry has been flattened, the
+   * content of <code>metadata</code>, <code>initParameters</code>... is read only (use the
+   * setters to replace them).
+   *
+   * @return a read only flattened version of the entry (a map with only one level)
+   */
+  Map getFlattenedView()
+  {
+    Map flattened = _flattened
+
+    if(flattened == null)
+    {
+      freeze()
+      def er = toExternalRepresentation()
+      er.remove('tags')
+      flattened = GroovyCollectionsUtils.flatten(er, [:])
+      flattened.key = key
+      flattened.entryState = getEntryState() // not part of er if <code>null</code>
+      flattened = Collections.unmodifiableMap(flattened)
+      _flattened = flattened
+    }
+
+    return flattened
+  }
+
+  /**
+   * Same as going through the external representation (the values which are not part of it
+   * are not copied) but without serialization. When the entry is frozen (copy on write), the read
+   * only maps and collections as well as the flattened version are shared with the clone
+   * (modifying the clone is done through the setters). Otherwise only the maps and collections
+   * are copied, the values and the tags (which are never modified, only replaced) are shared.
+   */
   public SystemEntry clone()
   {
-    def ext = toExternalRepresentation()
-    ext = LangUtils.deepClone(ext)
-    return fromExternalRepresentation(ext)
+    SystemEntry entry = new SystemEntry(agent: agent)
+
+    if(_frozen)
+    {
+      synchronized(this)
+      {
+        entry.@script = script
+        entry.@mountPoint = mountPoint
+        entry.@entryState = entryState
+        entry.@parent = parent
+        entry.@initParameters = initParameters
+        entry.@metadata = metadata
+        entry.@actionArgs = actionArgs
+        entry.@entryTags = entryTags
+        entry._frozen = true
+        entry._flattened = _flattened
+      }
+      return entry
+    }
+
+    if(script)
+      entry.script = GluGroovyCollectionUtils.deepCopy(script)
+
+    if(mountPoint)
+      entry.mountPoint = mountPoint
+
+    if(entryState)
+      entry.entryState = entryState
+
+    if(parent && parent != DEFAULT_PARENT)
+      entry.parent = parent
+
+    if(initParameters)
+      entry.initParameters = GluGroovyCollectionUtils.deepCopy(initParameters)
+
+    if(metadata)
+      entry.metadata = GluGroovyCollectionUtils.deepCopy(metadata)
+
+    if(actionArgs)
+      entry.actionArgs = GluGroovyCollectionUtils.deepCopy(actionArgs)
+
+    if(hasTags())
+      entry.entryTags = entryTags
+
+    return entry
   }
 
   static SystemEntry fromExternalRepresentation(def er)
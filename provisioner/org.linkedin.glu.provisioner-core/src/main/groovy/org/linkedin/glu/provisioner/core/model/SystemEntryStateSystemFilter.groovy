@@ -58,4 +58,21 @@ public class SystemEntryStateSystemFilter implements SystemFilter
     else
       new SystemEntryStateSystemFilter(states: states as Set)
   }
+
+  boolean equals(o)
+  {
+    if(this.is(o)) return true;
+    if(!(o instanceof SystemEntryStateSystemFilter)) return false;
+
+    SystemEntryStateSystemFilter that = (SystemEntryStateSystemFilter) o;
+
+    if(states != that.states) return false;
+
+    return true;
+  }
+
+  int hashCode()
+  {
+    return (states != null ? states.hashCode() : 0);
+  }
 }
\ No newline at end of file
@@ -59,10 +59,15 @@ import org.linkedin.glu.utils.tags.TagsSerializer
  * @author ypujante@linkedin.com  */
 public class SystemFilterBuilder
 {
+  /**
+   * The parsed filters are cached (and shared) */
+  static final SystemFilterParseCache PARSE_CACHE = new SystemFilterParseCache()
+
   LogicSystemFilterChain filter
 
   /**
-   * Parses the dsl (see documentation)
+   * Parses the dsl (see documentation). The result is cached and shared so it must not be
+   * modified (the logic chains are read only).
    */
   static SystemFilter parse(String dsl)
   {
@@ -71,6 +76,22 @@ public class SystemFilterBuilder
 
     dsl = dsl.trim()
 
+    if(dsl == '' || dsl == '-')
+      return null
+
+    return PARSE_CACHE.parse(dsl)
+  }
+
+  /**
+   * Parses the dsl without using the cache
+   */
+  static SystemFilter doParse(String dsl)
+  {
+    if(dsl == null)
+      return null
+
+    dsl = dsl.trim()
+
     if(dsl == '' || dsl == '-')
       return null
 
@@ -96,7 +117,24 @@ public class SystemFilterBuilder
       shell.resetLoadedClasses()
     }
 
-    return builder.optimizeFilter(builder.filter)
+    return makeReadOnly(builder.optimizeFilter(builder.filter))
+  }
+
+  /**
+   * Makes the logic chains read only
+   */
+  private static SystemFilter makeReadOnly(SystemFilter filter)
+  {
+    if(filter instanceof LogicSystemFilterChain)
+    {
+      filter.filters.each { makeReadOnly(it) }
+      filter.filters = Collections.unmodifiableSet(filter.filters)
+    }
+
+    if(filter instanceof LogicNotSystemFilter)
+      makeReadOnly(filter.filter)
+
+    return filter
   }
 
   private static ExpandoMetaClass createEMC(Class clazz, Closure cl)
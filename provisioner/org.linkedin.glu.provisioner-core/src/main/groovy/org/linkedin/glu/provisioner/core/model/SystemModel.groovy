@@ -17,6 +17,7 @@
 
 package org.linkedin.glu.provisioner.core.model
 
+import org.linkedin.glu.groovy.utils.collections.GluGroovyCollectionUtils
 import org.linkedin.glu.provisioner.core.model.builder.SystemModelBuilder
 import org.linkedin.util.codec.CodecUtils
 import org.linkedin.util.codec.OneWayCodec
@@ -27,8 +28,9 @@ import org.linkedin.util.lang.LangUtils
 import org.linkedin.groovy.util.collections.GroovyCollectionsUtils
 
 import org.linkedin.glu.utils.tags.ReadOnlyTaggeable
+import org.linkedin.glu.utils.tags.TagDictionary
 import org.linkedin.glu.utils.tags.Taggeable
-import org.linkedin.glu.utils.tags.TaggeableTreeSetImpl
+import org.linkedin.glu.utils.tags.TaggeableBitSetImpl
 
 /**
  * @author ypujante@linkedin.com  */
@@ -37,10 +39,20 @@ class SystemModel implements MetadataProvider
   public static final OneWayCodec SHA1 =
     OneWayMessageDigestCodec.createSHA1Instance('', HexaCodec.INSTANCE)
 
-  private final Map<String, SystemEntry> _entries = new TreeMap()
-  private final Map<String, Collection<String>> _children = new HashMap<String,Collection<String>>()
+  // either a TreeMap, a (read only) FilteredSystemEntries view when the model is filtered (or
+  // shallow cloned) or a CopyOnWriteSystemEntries when such a model is then modified
+  private Map<String, SystemEntry> _entries = new TreeMap()
+  // only when _entries is a TreeMap (the other ones compute the children)
+  private Map<String, Collection<String>> _children = new HashMap<String,Collection<String>>()
+
+  // lazily computed and shared by all the views created from this model (reset when modified)
+  private volatile SystemEntriesIndex _entriesIndex = null
   private Map<String, Taggeable> _agentTags = new TreeMap<String, Taggeable>()
 
+  // the tags of this model (agent and entries) are interned in a dictionary owned by the model
+  // (shared with the views) so that it is garbage collected with it
+  private TagDictionary _tagDictionary = new TagDictionary()
+
   String id
   String fabric
 
@@ -77,12 +89,33 @@ class SystemModel implements MetadataProvider
 
   void addEntry(SystemEntry entry)
   {
+    copyOnWrite()
+    _entriesIndex = null
+
     if(_entries.containsKey(entry.key))
     {
       throw new IllegalArgumentException("already defined entry ${entry.key}")
     }
     _entries[entry.key] = entry
-    if(entry.parent != SystemEntry.DEFAULT_PARENT)
+    addChild(entry)
+    ReadOnlyTaggeable entryTags = entry.entryTags
+    def agentTags = getAgentTags(entry.agent)
+    if(!entryTags.hasAllTags(agentTags.tags) ||
+       (entryTags.hasTags() && !isInterned(entryTags)))
+    {
+      entry.entryTags = new TaggeableBitSetImpl(_tagDictionary, entryTags.tags + agentTags.tags)
+    }
+  }
+
+  private boolean isInterned(ReadOnlyTaggeable taggeable)
+  {
+    return taggeable instanceof TaggeableBitSetImpl &&
+           ((TaggeableBitSetImpl) taggeable).dictionary.is(_tagDictionary)
+  }
+
+  private void addChild(SystemEntry entry)
+  {
+    if(_children != null && entry.parent != SystemEntry.DEFAULT_PARENT)
     {
       Collection<String> children = _children[entry.parentKey]
       if(children == null)
@@ -90,11 +123,6 @@ class SystemModel implements MetadataProvider
       _children[entry.parentKey] = children
       children << entry.key
     }
-    def agentTags = getAgentTags(entry.agent)
-    if(!entry.entryTags.hasAllTags(agentTags.tags))
-    {
-      entry.tags = entry.entryTags.tags + agentTags.tags
-    }
   }
 
   void updateEntry(SystemEntry entry)
@@ -105,6 +133,9 @@ class SystemModel implements MetadataProvider
 
   void removeEntry(String key)
   {
+    copyOnWrite()
+    _entriesIndex = null
+
     _entries.remove(key)
   }
 
@@ -120,7 +151,22 @@ class SystemModel implements MetadataProvider
 
   Collection<String> findChildrenKeys(String parentKey)
   {
-    _children[parentKey]
+    if(_entries instanceof FilteredSystemEntries || _entries instanceof CopyOnWriteSystemEntries)
+      return _entries.findChildrenKeys(parentKey)
+    else
+      return _children[parentKey]
+  }
+
+  /**
+   * @return all the entries for the given agent (empty collection if none)
+   */
+  Collection<SystemEntry> findAgentEntries(String agent)
+  {
+    if(_entries instanceof FilteredSystemEntries || _entries instanceof CopyOnWriteSystemEntries)
+      return _entries.findAgentEntries(agent)
+
+    // entries are sorted by key (agent:mountPoint) => ';' is the character right after ':'
+    return ((TreeMap) _entries).subMap("${agent}:".toString(), "${agent};".toString()).values().collect { it }
   }
 
   Collection<SystemEntry> findEntries()
@@ -196,7 +242,7 @@ class SystemModel implements MetadataProvider
     Taggeable taggeable = _agentTags[agentName]
     if(!taggeable)
     {
-      taggeable = new TaggeableTreeSetImpl(tags)
+      taggeable = new TaggeableBitSetImpl(_tagDictionary, tags)
       _agentTags[agentName] = taggeable
     }
     else
@@ -348,16 +394,56 @@ class SystemModel implements MetadataProvider
                                         metadata: metadata,
                                         filters: newFilters,
                                         _agentTags: _agentTags,
+                                        _tagDictionary: _tagDictionary,
                                         _unfilteredModel: _unfilteredModel ?: this)
 
-    _entries.values().each { SystemEntry se ->
-      if(filter.filter(se))
-        model.addEntry(se)
-    }
+    // the entries are not copied: the new model is a view sharing the entries of this model
+    model._entries = filterEntries(filter)
+    model._children = null
 
     return model
   }
 
+  private FilteredSystemEntries filterEntries(SystemFilter filter)
+  {
+    FilteredSystemEntries entries
+
+    if(_entries instanceof FilteredSystemEntries)
+      entries = (FilteredSystemEntries) _entries
+    else
+      entries = FilteredSystemEntries.createAll(getEntriesIndex())
+
+    if(filter instanceof SystemEntryKeyModelFilter)
+      return entries.filterByKeys(filter.keys)
+    else
+      return entries.filterBy(filter)
+  }
+
+  private SystemEntriesIndex getEntriesIndex()
+  {
+    SystemEntriesIndex index = _entriesIndex
+    if(index == null)
+    {
+      index = new SystemEntriesIndex(_entries.values())
+      _entriesIndex = index
+    }
+    return index
+  }
+
+  /**
+   * A filtered model shares its entries with the model it was created from: when modified, it
+   * only records the entries which are added/replaced/removed (copy on write per entry) instead of
+   * copying all of them.
+   */
+  private void copyOnWrite()
+  {
+    if(_entries instanceof FilteredSystemEntries)
+    {
+      _entries = new CopyOnWriteSystemEntries((FilteredSystemEntries) _entries)
+      _children = null
+    }
+  }
+
 
   /**
    * @return the system as it was unfiltered 
@@ -464,18 +550,58 @@ class SystemModel implements MetadataProvider
     return map
   }
 
+  /**
+   * Same as going through the external representation (note that the clone is not filtered and
+   * contains only the entries of this model) but without serialization
+   * (see {@link SystemEntry#clone()})
+   */
   public SystemModel clone()
   {
-    def ext = toExternalRepresentation()
-    ext = LangUtils.deepClone(ext)
-    return fromExternalRepresentation(ext)
+    SystemModel model = cloneNoEntries()
+    _entries.values().each { SystemEntry entry ->
+      model.addEntry(entry.clone())
+    }
+    return model
   }
 
   public SystemModel cloneNoEntries()
   {
-    def ext = toExternalRepresentation(false)
-    ext = LangUtils.deepClone(ext)
-    return fromExternalRepresentation(ext)
+    SystemModel model =
+      new SystemModel(id: id,
+                      fabric: fabric,
+                      metadata: GluGroovyCollectionUtils.deepCopy(metadata) ?: [:])
+
+    _agentTags.each { String agentName, Taggeable tags ->
+      model.addAgentTags(agentName, tags.tags)
+    }
+
+    return model
+  }
+
+  /**
+   * Cheap version of {@link #clone()} (structural sharing): the clone shares the entries of this
+   * model (no copy) which means that the entries must not be modified in place (use
+   * {@link #updateEntry(SystemEntry)} with a cloned entry instead). Adding/updating/removing
+   * entries in the clone does not affect this model (and vice versa) and only costs the modified
+   * entries (see {@link CopyOnWriteSystemEntries}).
+   */
+  public SystemModel shallowClone()
+  {
+    SystemModel model = cloneNoEntries()
+
+    if(_entries instanceof FilteredSystemEntries)
+      model._entries = _entries
+    else
+    {
+      if(_entries instanceof CopyOnWriteSystemEntries)
+        model._entries = new CopyOnWriteSystemEntries((CopyOnWriteSystemEntries) _entries)
+      else
+        model._entries = FilteredSystemEntries.createAll(getEntriesIndex())
+    }
+
+    model._children = null
+
+    return model
   }
 
   static SystemModel fromExternalRepresentation(def er)
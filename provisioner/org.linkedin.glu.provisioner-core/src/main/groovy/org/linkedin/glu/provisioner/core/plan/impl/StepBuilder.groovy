@@ -16,6 +16,7 @@
 
 package org.linkedin.glu.provisioner.core.plan.impl
 
+import org.linkedin.glu.provisioner.plan.api.DagStepBuilder
 import org.linkedin.glu.provisioner.plan.api.IStepBuilder
 import org.linkedin.glu.provisioner.plan.api.LeafStep
 import org.linkedin.glu.provisioner.plan.api.SequentialStepBuilder
@@ -25,6 +26,8 @@ import org.linkedin.glu.provisioner.plan.api.ParallelStepBuilder
  * @author ypujante@linkedin.com  */
 public class StepBuilder extends BuilderSupport
 {
+  private final Map<DagStepBuilder, Map> _dagNodes = new IdentityHashMap<DagStepBuilder, Map>()
+
   protected void setParent(Object parent, Object child)
   {
   }
@@ -43,6 +46,11 @@ public class StepBuilder extends BuilderSupport
   {
     def stepBuilder = getCurrentStepBuilder()
 
+    // children of a dag: each child is a node which may depend on previous siblings
+    def dependsOn = attributes.remove('dependsOn')
+    if(stepBuilder instanceof DagStepBuilder)
+      stepBuilder = addDagNode(stepBuilder, attributes.id, dependsOn)
+
     switch(name)
     {
       case 'sequential':
@@ -71,6 +79,19 @@ public class StepBuilder extends BuilderSupport
       stepBuilder.metadata = attributes
       return stepBuilder
 
+      case 'dag':
+        if(stepBuilder != null)
+        {
+          stepBuilder = stepBuilder.addDagSteps()
+        }
+        else
+        {
+          stepBuilder = new DagStepBuilder()
+        }
+        stepBuilder.id = attributes.remove('id')
+        stepBuilder.metadata = attributes
+        return stepBuilder
+
       case 'leaf':
         def action = attributes.remove('action')
         String id = attributes.remove('id')
@@ -78,10 +99,38 @@ public class StepBuilder extends BuilderSupport
         return null
       
       default:
-       throw new IllegalArgumentException("only leaf/sequential/parallel allowed")
+       throw new IllegalArgumentException("only leaf/sequential/parallel/dag allowed")
     }
   }
 
+  private def addDagNode(DagStepBuilder dagStepBuilder, String id, def dependsOn)
+  {
+    def nodes = _dagNodes[dagStepBuilder]
+    if(nodes == null)
+    {
+      nodes = [:]
+      _dagNodes[dagStepBuilder] = nodes
+    }
+
+    def node = dagStepBuilder.addNode()
+
+    if(id)
+      nodes[id] = node
+
+    // the serialized form (xml) is a comma separated list
+    if(dependsOn instanceof String)
+      dependsOn = dependsOn.split(',').collect { it.trim() }
+
+    dependsOn?.each { String predecessorId ->
+      def predecessor = nodes[predecessorId]
+      if(predecessor == null)
+        throw new IllegalArgumentException("unknown step ${predecessorId} (must be declared before)")
+      dagStepBuilder.addDependency(node, predecessor)
+    }
+
+    return node
+  }
+
   protected Object createNode(Object name, Map attributes, Object value)
   {
     return new Node(getCurrentNode(), name, attributes, value);
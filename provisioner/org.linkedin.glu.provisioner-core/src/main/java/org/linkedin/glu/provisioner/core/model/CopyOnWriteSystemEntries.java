@@ -0,0 +1,267 @@
+/*
+ * Copyright (c) 2013 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.linkedin.glu.provisioner.core.model;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * The (sorted by key) entries of a model which shares its entries with another model (filtered
+ * view or shallow clone) and has been modified: instead of copying all the entries, only the
+ * entries which are added, replaced or removed are recorded (copy on write per entry), the other
+ * ones are read from the shared (read only) view.
+ *
+ * This class is not thread safe.
+ *
+ * @author yan@pongasoft.com
+ */
+public class CopyOnWriteSystemEntries extends AbstractMap<String, SystemEntry>
+{
+  private final FilteredSystemEntries _shared;
+
+  // the entries added or replaced (a null value is a removed shared entry)
+  private final TreeMap<String, SystemEntry> _changes;
+  private int _size;
+
+  /**
+   * Constructor
+   */
+  public CopyOnWriteSystemEntries(FilteredSystemEntries shared)
+  {
+    _shared = shared;
+    _changes = new TreeMap<String, SystemEntry>();
+    _size = shared.size();
+  }
+
+  /**
+   * Copy constructor (only copies the changes)
+   */
+  public CopyOnWriteSystemEntries(CopyOnWriteSystemEntries other)
+  {
+    _shared = other._shared;
+    _changes = new TreeMap<String, SystemEntry>(other._changes);
+    _size = other._size;
+  }
+
+  @Override
+  public SystemEntry put(String key, SystemEntry entry)
+  {
+    if(entry == null)
+      throw new NullPointerException("null entry");
+
+    SystemEntry previousEntry = get(key);
+    _changes.put(key, entry);
+    if(previousEntry == null)
+      _size++;
+    return previousEntry;
+  }
+
+  @Override
+  public SystemEntry remove(Object key)
+  {
+    SystemEntry previousEntry = get(key);
+    if(previousEntry != null)
+    {
+      if(_shared.containsKey(key))
+        _changes.put((String) key, null);
+      else
+        _changes.remove(key);
+      _size--;
+    }
+    return previousEntry;
+  }
+
+  @Override
+  public SystemEntry get(Object key)
+  {
+    if(_changes.containsKey(key))
+      return _changes.get(key);
+    return _shared.get(key);
+  }
+
+  @Override
+  public boolean containsKey(Object key)
+  {
+    return get(key) != null;
+  }
+
+  @Override
+  public int size()
+  {
+    return _size;
+  }
+
+  @Override
+  public boolean isEmpty()
+  {
+    return _size == 0;
+  }
+
+  /**
+   * @return the keys of the children of the provided parent or <code>null</code> if none
+   */
+  public Collection<String> findChildrenKeys(String parentKey)
+  {
+    Collection<String> res = null;
+
+    Collection<String> sharedChildrenKeys = _shared.findChildrenKeys(parentKey);
+    if(sharedChildrenKeys != null)
+    {
+      for(String key : sharedChildrenKeys)
+      {
+        if(!_changes.containsKey(key))
+        {
+          if(res == null)
+            res = new HashSet<String>();
+          res.add(key);
+        }
+      }
+    }
+
+    for(SystemEntry entry : _changes.values())
+    {
+      if(entry != null &&
+         !entry.isDefaultParent() &&
+         parentKey.equals(entry.getParentKey()))
+      {
+        if(res == null)
+          res = new HashSet<String>();
+        res.add(entry.getKey());
+      }
+    }
+
+    return res;
+  }
+
+  /**
+   * @return the entries of the agent (sorted by key)
+   */
+  public Collection<SystemEntry> findAgentEntries(String agent)
+  {
+    Map<String, SystemEntry> res = new TreeMap<String, SystemEntry>();
+
+    for(SystemEntry entry : _shared.findAgentEntries(agent))
+      res.put(entry.getKey(), entry);
+
+    // entries are sorted by key (agent:mountPoint) => ';' is the character right after ':'
+    for(Map.Entry<String, SystemEntry> change :
+          _changes.subMap(agent + ":", agent + ";").entrySet())
+    {
+      if(change.getValue() == null)
+        res.remove(change.getKey());
+      else
+        res.put(change.getKey(), change.getValue());
+    }
+
+    return new ArrayList<SystemEntry>(res.values());
+  }
+
+  @Override
+  public Set<Map.Entry<String, SystemEntry>> entrySet()
+  {
+    return new AbstractSet<Map.Entry<String, SystemEntry>>()
+    {
+      @Override
+      public Iterator<Map.Entry<String, SystemEntry>> iterator()
+      {
+        return new MergedIterator();
+      }
+
+      @Override
+      public int size()
+      {
+        return _size;
+      }
+    };
+  }
+
+  /**
+   * Merges (in key order) the shared entries and the changes
+   */
+  private class MergedIterator implements Iterator<Map.Entry<String, SystemEntry>>
+  {
+    private final Iterator<Map.Entry<String, SystemEntry>> _sharedIterator =
+      _shared.entrySet().iterator();
+    private final Iterator<Map.Entry<String, SystemEntry>> _changesIterator =
+      _changes.entrySet().iterator();
+
+    private Map.Entry<String, SystemEntry> _nextShared = advance(_sharedIterator);
+    private Map.Entry<String, SystemEntry> _nextChange = advance(_changesIterator);
+    private Map.Entry<String, SystemEntry> _next = computeNext();
+
+    @Override
+    public boolean hasNext()
+    {
+      return _next != null;
+    }
+
+    @Override
+    public Map.Entry<String, SystemEntry> next()
+    {
+      if(_next == null)
+        throw new NoSuchElementException();
+      Map.Entry<String, SystemEntry> res = _next;
+      _next = computeNext();
+      return res;
+    }
+
+    @Override
+    public void remove()
+    {
+      throw new UnsupportedOperationException("use CopyOnWriteSystemEntries.remove");
+    }
+
+    private Map.Entry<String, SystemEntry> computeNext()
+    {
+      while(_nextShared != null || _nextChange != null)
+      {
+        // the shared entries before the next change are not modified
+        if(_nextChange == null ||
+           (_nextShared != null && _nextShared.getKey().compareTo(_nextChange.getKey()) < 0))
+        {
+          Map.Entry<String, SystemEntry> res = _nextShared;
+          _nextShared = advance(_sharedIterator);
+          return res;
+        }
+
+        // the change replaces (or removes) the shared entry
+        if(_nextShared != null && _nextShared.getKey().equals(_nextChange.getKey()))
+          _nextShared = advance(_sharedIterator);
+
+        Map.Entry<String, SystemEntry> change = _nextChange;
+        _nextChange = advance(_changesIterator);
+        if(change.getValue() != null)
+          return new SimpleImmutableEntry<String, SystemEntry>(change);
+      }
+
+      return null;
+    }
+
+    private Map.Entry<String, SystemEntry> advance(Iterator<Map.Entry<String, SystemEntry>> iterator)
+    {
+      return iterator.hasNext() ? iterator.next() : null;
+    }
+  }
+}
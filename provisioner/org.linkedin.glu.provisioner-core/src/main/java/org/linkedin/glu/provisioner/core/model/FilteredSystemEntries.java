@@ -0,0 +1,438 @@
+/*
+ * Copyright (c) 2013 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package org.linkedin.glu.provisioner.core.model;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A read only (sorted by key) view of the entries of a system model: the entries and the indexes
+ * are shared with the unfiltered model ({@link SystemEntriesIndex}) and the view only keeps track
+ * of which entries are included. Filtering a view is a simple pass over the included entries.
+ *
+ * @author yan@pongasoft.com
+ */
+public class FilteredSystemEntries extends AbstractMap<String, SystemEntry>
+{
+  private final SystemEntriesIndex _index;
+  private final BitSet _included;
+  private final int _size;
+
+  /**
+   * @return a view containing all the entries of the index
+   */
+  public static FilteredSystemEntries createAll(SystemEntriesIndex index)
+  {
+    BitSet included = new BitSet(index.size());
+    included.set(0, index.size());
+    return new FilteredSystemEntries(index, included);
+  }
+
+  /**
+   * Constructor
+   */
+  public FilteredSystemEntries(SystemEntriesIndex index, BitSet included)
+  {
+    _index = index;
+    _included = included;
+    _size = included.cardinality();
+  }
+
+  public SystemEntriesIndex getIndex()
+  {
+    return _index;
+  }
+
+  /**
+   * @return a view containing only the entries of this view accepted by the filter. Tags, keys and
+   *         property equality filters use the inverted indexes of {@link SystemEntriesIndex}
+   *         (and/or/not being turned into set operations), the other filters are compiled
+   *         (see {@link SystemFilterCompiler}) and evaluated on the remaining candidates only.
+   */
+  public FilteredSystemEntries filterBy(SystemFilter filter)
+  {
+    return new FilteredSystemEntries(_index, filter(filter, (BitSet) _included.clone()));
+  }
+
+  /**
+   * @return a view containing only the entries of this view accepted by the predicate
+   */
+  public FilteredSystemEntries filterBy(SystemEntryPredicate predicate)
+  {
+    BitSet included = new BitSet(_index.size());
+    for(int i = _included.nextSetBit(0); i >= 0; i = _included.nextSetBit(i + 1))
+    {
+      if(predicate.apply(_index.getEntry(i)))
+        included.set(i);
+    }
+    return new FilteredSystemEntries(_index, included);
+  }
+
+  /**
+   * @return a view containing only the entries of this view whose key is part of <code>keys</code>
+   */
+  public FilteredSystemEntries filterByKeys(Collection<String> keys)
+  {
+    BitSet included = findPositions(keys);
+    included.and(_included);
+    return new FilteredSystemEntries(_index, included);
+  }
+
+  /**
+   * @param candidates the positions to filter (modified by this call)
+   * @return the positions accepted by the filter (a subset of <code>candidates</code>)
+   */
+  private BitSet filter(SystemFilter filter, BitSet candidates)
+  {
+    if(filter == null || candidates.isEmpty())
+      return candidates;
+
+    if(filter instanceof LogicAndSystemFilterChain)
+    {
+      Collection<SystemFilter> filters = ((LogicAndSystemFilterChain) filter).getFilters();
+
+      // the indexed filters are cheaper (and narrow down the candidates) so they go first
+      for(SystemFilter f : filters)
+      {
+        if(isIndexed(f))
+          candidates = filter(f, candidates);
+      }
+      for(SystemFilter f : filters)
+      {
+        if(!isIndexed(f))
+          candidates = filter(f, candidates);
+      }
+      return candidates;
+    }
+
+    if(filter instanceof LogicOrSystemFilterChain)
+    {
+      BitSet res = new BitSet(_index.size());
+      for(SystemFilter f : ((LogicOrSystemFilterChain) filter).getFilters())
+      {
+        if(candidates.isEmpty())
+          break;
+        BitSet accepted = filter(f, (BitSet) candidates.clone());
+        res.or(accepted);
+        candidates.andNot(accepted);
+      }
+      return res;
+    }
+
+    if(filter instanceof LogicNotSystemFilter)
+    {
+      candidates.andNot(filter(((LogicNotSystemFilter) filter).getFilter(),
+                               (BitSet) candidates.clone()));
+      return candidates;
+    }
+
+    if(filter instanceof TagsSystemFilter && isIndexed(filter))
+    {
+      TagsSystemFilter tagsFilter = (TagsSystemFilter) filter;
+      if(tagsFilter.isAllTags())
+      {
+        for(String tag : tagsFilter.getTags())
+          candidates.and(_index.findTagPositions(tag));
+      }
+      else
+      {
+        BitSet positions = new BitSet(_index.size());
+        for(String tag : tagsFilter.getTags())
+          positions.or(_index.findTagPositions(tag));
+        candidates.and(positions);
+      }
+      return candidates;
+    }
+
+    if(filter instanceof SystemEntryKeyModelFilter && isIndexed(filter))
+    {
+      candidates.and(findPositions(((SystemEntryKeyModelFilter) filter).getKeys()));
+      return candidates;
+    }
+
+    if(filter instanceof PropertySystemFilter && isIndexed(filter))
+    {
+      PropertySystemFilter propertyFilter = (PropertySystemFilter) filter;
+      SystemEntriesIndex.PropertyIndex propertyIndex = _index.findPropertyIndex(propertyFilter);
+      if(propertyIndex != null)
+      {
+        BitSet unindexed = (BitSet) candidates.clone();
+        unindexed.and(propertyIndex.findUnindexedPositions());
+        unindexed = scan(SystemFilterCompiler.compile(filter), unindexed);
+
+        candidates.and(propertyIndex.findPositions((String) propertyFilter.getValue()));
+        candidates.or(unindexed);
+        return candidates;
+      }
+    }
+
+    return scan(SystemFilterCompiler.compile(filter), candidates);
+  }
+
+  /**
+   * @return <code>true</code> if the filter can (most likely) use an index
+   */
+  private static boolean isIndexed(SystemFilter filter)
+  {
+    if(filter instanceof TagsSystemFilter)
+    {
+      Collection<String> tags = ((TagsSystemFilter) filter).getTags();
+      return tags != null && !tags.isEmpty();
+    }
+
+    if(filter instanceof SystemEntryKeyModelFilter)
+      return ((SystemEntryKeyModelFilter) filter).getKeys() != null;
+
+    if(filter instanceof PropertySystemFilter)
+      return ((PropertySystemFilter) filter).getValue() instanceof String;
+
+    return false;
+  }
+
+  /**
+   * @return the positions of the keys (which are in the index)
+   */
+  private BitSet findPositions(Collection<?> keys)
+  {
+    BitSet positions = new BitSet(_index.size());
+    for(Object key : keys)
+    {
+      if(key instanceof String)
+      {
+        int position = _index.findPosition((String) key);
+        if(position != -1)
+          positions.set(position);
+      }
+    }
+    return positions;
+  }
+
+  /**
+   * Evaluates the predicate on each candidate
+   */
+  private BitSet scan(SystemEntryPredicate predicate, BitSet candidates)
+  {
+    for(int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1))
+    {
+      if(!predicate.apply(_index.getEntry(i)))
+        candidates.clear(i);
+    }
+    return candidates;
+  }
+
+  /**
+   * @return the keys of the (included) children of the provided parent or <code>null</code> if
+   *         none
+   */
+  public Collection<String> findChildrenKeys(String parentKey)
+  {
+    Collection<String> res = null;
+    for(int position : _index.findChildrenPositions(parentKey))
+    {
+      if(_included.get(position))
+      {
+        if(res == null)
+          res = new HashSet<String>();
+        res.add(_index.getKey(position));
+      }
+    }
+    return res;
+  }
+
+  /**
+   * @return the (included) entries of the agent (sorted by key)
+   */
+  public Collection<SystemEntry> findAgentEntries(String agent)
+  {
+    Collection<SystemEntry> res = new ArrayList<SystemEntry>();
+
+    // entries are sorted by key (agent:mountPoint) => ';' is the character right after ':'
+    int end = _index.findFirstPosition(agent + ";");
+    for(int i = _included.nextSetBit(_index.findFirstPosition(agent + ":"));
+        i >= 0 && i < end;
+        i = _included.nextSetBit(i + 1))
+    {
+      res.add(_index.getEntry(i));
+    }
+
+    return res;
+  }
+
+  @Override
+  public int size()
+  {
+    return _size;
+  }
+
+  @Override
+  public boolean isEmpty()
+  {
+    return _size == 0;
+  }
+
+  @Override
+  public boolean containsKey(Object key)
+  {
+    return findIncludedPosition(key) != -1;
+  }
+
+  @Override
+  public SystemEntry get(Object key)
+  {
+    int position = findIncludedPosition(key);
+    return position == -1 ? null : _index.getEntry(position);
+  }
+
+  @Override
+  public Set<String> keySet()
+  {
+    return new AbstractSet<String>()
+    {
+      @Override
+      public Iterator<String> iterator()
+      {
+        return new IncludedIterator<String>()
+        {
+          @Override
+          protected String get(int position)
+          {
+            return _index.getKey(position);
+          }
+        };
+      }
+
+      @Override
+      public boolean contains(Object o)
+      {
+        return containsKey(o);
+      }
+
+      @Override
+      public int size()
+      {
+        return _size;
+      }
+    };
+  }
+
+  @Override
+  public Collection<SystemEntry> values()
+  {
+    return new AbstractCollection<SystemEntry>()
+    {
+      @Override
+      public Iterator<SystemEntry> iterator()
+      {
+        return new IncludedIterator<SystemEntry>()
+        {
+          @Override
+          protected SystemEntry get(int position)
+          {
+            return _index.getEntry(position);
+          }
+        };
+      }
+
+      @Override
+      public int size()
+      {
+        return _size;
+      }
+    };
+  }
+
+  @Override
+  public Set<Map.Entry<String, SystemEntry>> entrySet()
+  {
+    return new AbstractSet<Map.Entry<String, SystemEntry>>()
+    {
+      @Override
+      public Iterator<Map.Entry<String, SystemEntry>> iterator()
+      {
+        return new IncludedIterator<Map.Entry<String, SystemEntry>>()
+        {
+          @Override
+          protected Map.Entry<String, SystemEntry> get(int position)
+          {
+            return new SimpleImmutableEntry<String, SystemEntry>(_index.getKey(position),
+                                                                 _index.getEntry(position));
+          }
+        };
+      }
+
+      @Override
+      public int size()
+      {
+        return _size;
+      }
+    };
+  }
+
+  private int findIncludedPosition(Object key)
+  {
+    if(!(key instanceof String))
+      return -1;
+
+    int position = _index.findPosition((String) key);
+    if(position != -1 && _included.get(position))
+      return position;
+    else
+      return -1;
+  }
+
+  /**
+   * Iterates over the included entries (in key order)
+   */
+  private abstract class IncludedIterator<T> implements Iterator<T>
+  {
+    private int _next = _included.nextSetBit(0);
+
+    protected abstract T get(int position);
+
+    @Override
+    public boolean hasNext()
+    {
+      return _next >= 0;
+    }
+
+    @Override
+    public T next()
+    {
+      if(_next < 0)
+        throw new NoSuchElementException();
+      int position = _next;
+      _next = _included.nextSetBit(position + 1);
+      return get(position);
+    }
+
+    @Override
+    public void remove()
+    {
+      throw new UnsupportedOperationException("read only view");
+    }
+  }
+}
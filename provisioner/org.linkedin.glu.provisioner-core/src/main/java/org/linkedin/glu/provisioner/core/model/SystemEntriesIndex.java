@@ -0,0 +1,347 @@
+/*
+ * Copyright (c) 2013 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package org.linkedin.glu.provisioner.core.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Immutable index (sorted by key) of the entries of a system model. It is shared by all the
+ * filtered views ({@link FilteredSystemEntries}) created from the model.
+ *
+ * The index also maintains (lazily) inverted indexes (value -> positions) for the tags and for
+ * the properties used in equality filters (agent, metadata.xxx, etc...) so that filtering does
+ * not have to look at every entry. The indexed entries are frozen (their maps cannot be modified
+ * in place) and the inverted indexes are discarded as soon as an indexed entry is modified through
+ * a setter (ex: tags, entry state) so that they are never stale.
+ *
+ * @author yan@pongasoft.com
+ */
+public class SystemEntriesIndex
+{
+  private static final int[] NO_CHILDREN = new int[0];
+
+  private final SystemEntry[] _entries;
+  private final String[] _keys;
+  private final Map<String, Integer> _positions;
+  private final Map<String, int[]> _children;
+
+  // lazily computed (and discarded when an indexed entry is modified)
+  private volatile long _modifications;
+  private volatile Map<String, int[]> _tags = null;
+  private final ConcurrentMap<String, PropertyIndex> _properties =
+    new ConcurrentHashMap<String, PropertyIndex>();
+
+  /**
+   * Constructor
+   *
+   * @param sortedEntries the entries sorted by key
+   */
+  public SystemEntriesIndex(Collection<SystemEntry> sortedEntries)
+  {
+    _modifications = SystemEntry.getIndexedEntriesModifications();
+    _entries = sortedEntries.toArray(new SystemEntry[sortedEntries.size()]);
+    _keys = new String[_entries.length];
+    _positions = new HashMap<String, Integer>(_entries.length * 4 / 3 + 1);
+
+    Map<String, List<Integer>> children = new HashMap<String, List<Integer>>();
+
+    for(int i = 0; i < _entries.length; i++)
+    {
+      SystemEntry entry = _entries[i];
+      entry.markIndexed();
+      _keys[i] = entry.getKey();
+      _positions.put(_keys[i], i);
+
+      if(!SystemEntry.DEFAULT_PARENT.equals(entry.getParent()))
+      {
+        List<Integer> positions = children.get(entry.getParentKey());
+        if(positions == null)
+        {
+          positions = new ArrayList<Integer>();
+          children.put(entry.getParentKey(), positions);
+        }
+        positions.add(i);
+      }
+    }
+
+    _children = new HashMap<String, int[]>(children.size() * 4 / 3 + 1);
+    for(Map.Entry<String, List<Integer>> entry : children.entrySet())
+    {
+      List<Integer> positions = entry.getValue();
+      int[] array = new int[positions.size()];
+      for(int i = 0; i < array.length; i++)
+        array[i] = positions.get(i);
+      _children.put(entry.getKey(), array);
+    }
+  }
+
+  public int size()
+  {
+    return _entries.length;
+  }
+
+  public SystemEntry getEntry(int position)
+  {
+    return _entries[position];
+  }
+
+  public String getKey(int position)
+  {
+    return _keys[position];
+  }
+
+  /**
+   * @return the position of the entry or <code>-1</code> if there is no such entry
+   */
+  public int findPosition(String key)
+  {
+    Integer position = _positions.get(key);
+    return position == null ? -1 : position;
+  }
+
+  /**
+   * @return the position of the first key which is greater than or equal to <code>key</code>
+   */
+  public int findFirstPosition(String key)
+  {
+    int position = Arrays.binarySearch(_keys, key);
+    return position < 0 ? -(position + 1) : position;
+  }
+
+  /**
+   * @return the positions of all the entries whose parent is <code>parentKey</code>
+   */
+  public int[] findChildrenPositions(String parentKey)
+  {
+    int[] positions = _children.get(parentKey);
+    return positions == null ? NO_CHILDREN : positions;
+  }
+
+  /**
+   * @return the positions of all the entries having the provided tag (which includes the agent
+   *         tags)
+   */
+  public BitSet findTagPositions(String tag)
+  {
+    long modifications = checkModifications();
+
+    Map<String, int[]> tags = _tags;
+
+    if(tags == null)
+    {
+      Map<String, PositionsBuilder> builders = new HashMap<String, PositionsBuilder>();
+      for(int i = 0; i < _entries.length; i++)
+      {
+        for(String entryTag : _entries[i].getTags())
+        {
+          PositionsBuilder builder = builders.get(entryTag);
+          if(builder == null)
+          {
+            builder = new PositionsBuilder();
+            builders.put(entryTag, builder);
+          }
+          builder.add(i);
+        }
+      }
+      tags = PositionsBuilder.build(builders);
+      synchronized(this)
+      {
+        if(isCurrent(modifications))
+          _tags = tags;
+      }
+    }
+
+    return toBitSet(tags.get(tag));
+  }
+
+  /**
+   * @return the (inverted) index of the values of the property (<code>null</code> if the
+   *         property cannot be indexed)
+   */
+  public PropertyIndex findPropertyIndex(PropertySystemFilter filter)
+  {
+    long modifications = checkModifications();
+
+    PropertyIndex index = _properties.get(filter.getName());
+
+    if(index == null)
+    {
+      for(PropertySystemFilter.PropertyToken token : filter.getTokens())
+      {
+        if(!(token instanceof PropertySystemFilter.StringPropertyToken))
+          return null;
+      }
+
+      SystemFilterCompiler.PropertyPath path = SystemFilterCompiler.compilePropertyPath(filter);
+      if(path == null)
+        return null;
+
+      index = new PropertyIndex(path);
+      synchronized(this)
+      {
+        if(isCurrent(modifications))
+        {
+          PropertyIndex previousIndex = _properties.putIfAbsent(filter.getName(), index);
+          if(previousIndex != null)
+            index = previousIndex;
+        }
+      }
+    }
+
+    return index;
+  }
+
+  /**
+   * Discards the inverted indexes if any indexed entry has been modified since they were computed
+   * (the keys, positions and children do not depend on the values which can be modified).
+   *
+   * @return the number of modifications the inverted indexes are about to be computed for
+   */
+  private long checkModifications()
+  {
+    long modifications = SystemEntry.getIndexedEntriesModifications();
+    if(modifications != _modifications)
+    {
+      synchronized(this)
+      {
+        if(modifications != _modifications)
+        {
+          _tags = null;
+          _properties.clear();
+          _modifications = modifications;
+        }
+      }
+    }
+    return modifications;
+  }
+
+  /**
+   * @return <code>true</code> if no entry has been modified while computing an inverted index
+   *         (in which case it is not kept)
+   */
+  private boolean isCurrent(long modifications)
+  {
+    return _modifications == modifications &&
+           SystemEntry.getIndexedEntriesModifications() == modifications;
+  }
+
+  private static BitSet toBitSet(int[] positions)
+  {
+    BitSet res = new BitSet();
+    if(positions != null)
+    {
+      for(int position : positions)
+        res.set(position);
+    }
+    return res;
+  }
+
+  /**
+   * Inverted index for a property: only <code>String</code> values are indexed. The entries for
+   * which the value is not a <code>String</code> (ex: a collection) are simply tracked so that they
+   * can be evaluated with the filter.
+   */
+  public class PropertyIndex
+  {
+    private final Map<String, int[]> _positionsByValue;
+    private final int[] _unindexedPositions;
+
+    private PropertyIndex(SystemFilterCompiler.PropertyPath path)
+    {
+      Map<String, PositionsBuilder> builders = new HashMap<String, PositionsBuilder>();
+      PositionsBuilder unindexed = new PositionsBuilder();
+
+      for(int i = 0; i < _entries.length; i++)
+      {
+        Object value = path.computeValue(_entries[i]);
+
+        if(value instanceof String)
+        {
+          PositionsBuilder builder = builders.get(value);
+          if(builder == null)
+          {
+            builder = new PositionsBuilder();
+            builders.put((String) value, builder);
+          }
+          builder.add(i);
+        }
+        else
+        {
+          // null or no match never matches a String
+          if(value != null && value != PropertySystemFilter.PropertyToken.NO_MATCH)
+            unindexed.add(i);
+        }
+      }
+
+      _positionsByValue = PositionsBuilder.build(builders);
+      _unindexedPositions = unindexed.toArray();
+    }
+
+    /**
+     * @return the positions of the entries for which the value of the property is
+     *         <code>value</code>
+     */
+    public BitSet findPositions(String value)
+    {
+      return toBitSet(_positionsByValue.get(value));
+    }
+
+    /**
+     * @return the positions of the entries for which the value of the property could not be
+     *         indexed
+     */
+    public BitSet findUnindexedPositions()
+    {
+      return toBitSet(_unindexedPositions);
+    }
+  }
+
+  private static class PositionsBuilder
+  {
+    private int[] _positions = new int[4];
+    private int _size = 0;
+
+    private void add(int position)
+    {
+      if(_size == _positions.length)
+        _positions = Arrays.copyOf(_positions, _size * 2);
+      _positions[_size++] = position;
+    }
+
+    private int[] toArray()
+    {
+      return Arrays.copyOf(_positions, _size);
+    }
+
+    private static Map<String, int[]> build(Map<String, PositionsBuilder> builders)
+    {
+      Map<String, int[]> res = new HashMap<String, int[]>(builders.size() * 4 / 3 + 1);
+      for(Map.Entry<String, PositionsBuilder> entry : builders.entrySet())
+        res.put(entry.getKey(), entry.getValue().toArray());
+      return res;
+    }
+  }
+}
@@ -0,0 +1,525 @@
+/*
+ * Copyright (c) 2013 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package org.linkedin.glu.provisioner.core.model;
+
+import org.codehaus.groovy.runtime.DefaultGroovyMethods;
+import org.codehaus.groovy.runtime.typehandling.DefaultTypeTransformation;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiles a (parsed) {@link SystemFilter} tree into a {@link SystemEntryPredicate}: the logic
+ * filters (and/or/not) are folded into short-circuiting loops, the tags and key filters call
+ * {@link SystemEntry} directly and the property filters access the entry fields and the
+ * metadata/init parameters maps without going through groovy dynamic dispatch. Any filter (or
+ * property token) which cannot be compiled is simply delegated to (so the result is always the
+ * same as calling {@link SystemFilter#filter(SystemEntry)}).
+ *
+ * @author yan@pongasoft.com
+ */
+public class SystemFilterCompiler
+{
+  public static final SystemEntryPredicate ACCEPT_ALL = new SystemEntryPredicate()
+  {
+    @Override
+    public boolean apply(SystemEntry entry)
+    {
+      return true;
+    }
+  };
+
+  /**
+   * @return the compiled filter ({@link #ACCEPT_ALL} when <code>filter</code> is
+   *         <code>null</code>)
+   */
+  public static SystemEntryPredicate compile(SystemFilter filter)
+  {
+    if(filter == null)
+      return ACCEPT_ALL;
+
+    if(filter instanceof LogicAndSystemFilterChain)
+      return new AndPredicate(compileAll(((LogicAndSystemFilterChain) filter).getFilters()));
+
+    if(filter instanceof LogicOrSystemFilterChain)
+      return new OrPredicate(compileAll(((LogicOrSystemFilterChain) filter).getFilters()));
+
+    if(filter instanceof LogicNotSystemFilter)
+      return new NotPredicate(compile(((LogicNotSystemFilter) filter).getFilter()));
+
+    if(filter instanceof TagsSystemFilter)
+    {
+      TagsSystemFilter tagsFilter = (TagsSystemFilter) filter;
+      return new TagsPredicate(tagsFilter.getTags(), tagsFilter.isAllTags());
+    }
+
+    if(filter instanceof SystemEntryKeyModelFilter)
+      return new KeysPredicate(((SystemEntryKeyModelFilter) filter).getKeys());
+
+    if(filter instanceof PropertySystemFilter)
+      return compileProperty((PropertySystemFilter) filter);
+
+    return new DelegatePredicate(filter);
+  }
+
+  private static SystemEntryPredicate[] compileAll(Collection<SystemFilter> filters)
+  {
+    SystemEntryPredicate[] predicates = new SystemEntryPredicate[filters.size()];
+    int i = 0;
+    for(SystemFilter filter : filters)
+    {
+      predicates[i++] = compile(filter);
+    }
+    return predicates;
+  }
+
+  private static SystemEntryPredicate compileProperty(PropertySystemFilter filter)
+  {
+    PropertyPath path = compilePropertyPath(filter);
+
+    if(path == null)
+      return new DelegatePredicate(filter);
+
+    return new PropertyPredicate(path, filter.getValue());
+  }
+
+  /**
+   * @return the compiled path to the value of the property or <code>null</code> if it cannot be
+   *         compiled
+   */
+  static PropertyPath compilePropertyPath(PropertySystemFilter filter)
+  {
+    Collection<PropertySystemFilter.PropertyToken> tokens = filter.getTokens();
+
+    if(tokens.isEmpty())
+      return null;
+
+    List<PropertyAccessor> accessors = new ArrayList<PropertyAccessor>(tokens.size());
+
+    boolean first = true;
+    for(PropertySystemFilter.PropertyToken token : tokens)
+    {
+      if(first)
+      {
+        accessors.add(compileEntryAccessor(token));
+        first = false;
+      }
+      else
+        accessors.add(compileValueAccessor(token));
+    }
+
+    return new PropertyPath(accessors.toArray(new PropertyAccessor[accessors.size()]));
+  }
+
+  private static PropertyAccessor compileEntryAccessor(PropertySystemFilter.PropertyToken token)
+  {
+    if(token instanceof PropertySystemFilter.StringPropertyToken)
+    {
+      String name = ((PropertySystemFilter.StringPropertyToken) token).getToken();
+      for(EntryProperty property : EntryProperty.values())
+      {
+        if(property.getName().equals(name))
+          return property;
+      }
+    }
+
+    return new DelegateAccessor(token);
+  }
+
+  private static PropertyAccessor compileValueAccessor(PropertySystemFilter.PropertyToken token)
+  {
+    if(token instanceof PropertySystemFilter.StringPropertyToken)
+      return new MapAccessor((PropertySystemFilter.StringPropertyToken) token);
+
+    if(token instanceof PropertySystemFilter.IndexedPropertyToken)
+    {
+      Object index = ((PropertySystemFilter.IndexedPropertyToken) token).getIndex();
+      if(index instanceof Integer)
+        return new ListAccessor(token, (Integer) index);
+    }
+
+    return new DelegateAccessor(token);
+  }
+
+  /**
+   * Same as groovy <code>==</code>
+   */
+  private static boolean isEqual(Object computedValue, Object value)
+  {
+    if(computedValue instanceof String && value instanceof String)
+      return computedValue.equals(value);
+
+    return DefaultTypeTransformation.compareEqual(computedValue, value);
+  }
+
+  /**
+   * Accesses one level of a property (returns {@link PropertySystemFilter.PropertyToken#NO_MATCH}
+   * when there is no match)
+   */
+  private static interface PropertyAccessor
+  {
+    Object get(Object value);
+  }
+
+  /**
+   * The (first level) properties of an entry accessed directly
+   */
+  private static enum EntryProperty implements PropertyAccessor
+  {
+    AGENT("agent")
+    {
+      @Override
+      Object get(SystemEntry entry)
+      {
+        return entry.getAgent();
+      }
+    },
+    MOUNT_POINT("mountPoint")
+    {
+      @Override
+      Object get(SystemEntry entry)
+      {
+        return entry.getMountPoint();
+      }
+    },
+    SCRIPT("script")
+    {
+      @Override
+      Object get(SystemEntry entry)
+      {
+        return entry.getScript();
+      }
+    },
+    ENTRY_STATE("entryState")
+    {
+      @Override
+      Object get(SystemEntry entry)
+      {
+        return entry.getEntryState();
+      }
+    },
+    PARENT("parent")
+    {
+      @Override
+      Object get(SystemEntry entry)
+      {
+        return entry.getParent();
+      }
+    },
+    KEY("key")
+    {
+      @Override
+      Object get(SystemEntry entry)
+      {
+        return entry.getKey();
+      }
+    },
+    INIT_PARAMETERS("initParameters")
+    {
+      @Override
+      Object get(SystemEntry entry)
+      {
+        return entry.getInitParameters();
+      }
+    },
+    ACTION_ARGS("actionArgs")
+    {
+      @Override
+      Object get(SystemEntry entry)
+      {
+        return entry.getActionArgs();
+      }
+    },
+    METADATA("metadata")
+    {
+      @Override
+      Object get(SystemEntry entry)
+      {
+        return entry.getMetadata();
+      }
+    };
+
+    private final String _name;
+
+    private EntryProperty(String name)
+    {
+      _name = name;
+    }
+
+    public String getName()
+    {
+      return _name;
+    }
+
+    abstract Object get(SystemEntry entry);
+
+    @Override
+    public Object get(Object value)
+    {
+      return get((SystemEntry) value);
+    }
+  }
+
+  /**
+   * <code>value[token]</code> when <code>value</code> is a map (which is the case for metadata and
+   * init parameters)
+   */
+  private static class MapAccessor implements PropertyAccessor
+  {
+    private final PropertySystemFilter.StringPropertyToken _token;
+    private final String _key;
+
+    private MapAccessor(PropertySystemFilter.StringPropertyToken token)
+    {
+      _token = token;
+      _key = token.getToken();
+    }
+
+    @Override
+    public Object get(Object value)
+    {
+      if(value instanceof Map)
+        return ((Map) value).get(_key);
+
+      return _token.matches(value);
+    }
+  }
+
+  /**
+   * <code>value[index]</code> when <code>value</code> is a list
+   */
+  private static class ListAccessor implements PropertyAccessor
+  {
+    private final PropertySystemFilter.PropertyToken _token;
+    private final int _index;
+
+    private ListAccessor(PropertySystemFilter.PropertyToken token, int index)
+    {
+      _token = token;
+      _index = index;
+    }
+
+    @Override
+    public Object get(Object value)
+    {
+      if(value instanceof List)
+        return DefaultGroovyMethods.getAt((List) value, _index);
+
+      return _token.matches(value);
+    }
+  }
+
+  private static class DelegateAccessor implements PropertyAccessor
+  {
+    private final PropertySystemFilter.PropertyToken _token;
+
+    private DelegateAccessor(PropertySystemFilter.PropertyToken token)
+    {
+      _token = token;
+    }
+
+    @Override
+    public Object get(Object value)
+    {
+      return _token.matches(value);
+    }
+  }
+
+  /**
+   * The (compiled) path to the value of a property
+   */
+  static class PropertyPath
+  {
+    private final PropertyAccessor[] _accessors;
+
+    private PropertyPath(PropertyAccessor[] accessors)
+    {
+      _accessors = accessors;
+    }
+
+    /**
+     * @return the value of the property or {@link PropertySystemFilter.PropertyToken#NO_MATCH}
+     *         when there is no match
+     */
+    Object computeValue(SystemEntry entry)
+    {
+      Object computedValue = entry;
+      for(PropertyAccessor accessor : _accessors)
+      {
+        if(computedValue == null)
+          return PropertySystemFilter.PropertyToken.NO_MATCH;
+
+        computedValue = accessor.get(computedValue);
+
+        if(computedValue == PropertySystemFilter.PropertyToken.NO_MATCH)
+          return computedValue;
+      }
+      return computedValue;
+    }
+  }
+
+  private static class PropertyPredicate implements SystemEntryPredicate
+  {
+    private final PropertyPath _path;
+    private final Object _value;
+
+    private PropertyPredicate(PropertyPath path, Object value)
+    {
+      _path = path;
+      _value = value;
+    }
+
+    @Override
+    public boolean apply(SystemEntry entry)
+    {
+      if(entry == null)
+        return false;
+
+      Object computedValue = _path.computeValue(entry);
+
+      if(computedValue == PropertySystemFilter.PropertyToken.NO_MATCH)
+        return false;
+
+      if(computedValue instanceof Collection)
+      {
+        // same as groovy computedValue.find { it == value }
+        for(Object v : (Collection) computedValue)
+        {
+          if(isEqual(v, _value))
+            return DefaultTypeTransformation.castToBoolean(v);
+        }
+        return false;
+      }
+
+      return isEqual(computedValue, _value);
+    }
+  }
+
+  private static class AndPredicate implements SystemEntryPredicate
+  {
+    private final SystemEntryPredicate[] _predicates;
+
+    private AndPredicate(SystemEntryPredicate[] predicates)
+    {
+      _predicates = predicates;
+    }
+
+    @Override
+    public boolean apply(SystemEntry entry)
+    {
+      for(SystemEntryPredicate predicate : _predicates)
+      {
+        if(!predicate.apply(entry))
+          return false;
+      }
+      return true;
+    }
+  }
+
+  private static class OrPredicate implements SystemEntryPredicate
+  {
+    private final SystemEntryPredicate[] _predicates;
+
+    private OrPredicate(SystemEntryPredicate[] predicates)
+    {
+      _predicates = predicates;
+    }
+
+    @Override
+    public boolean apply(SystemEntry entry)
+    {
+      for(SystemEntryPredicate predicate : _predicates)
+      {
+        if(predicate.apply(entry))
+          return true;
+      }
+      return false;
+    }
+  }
+
+  private static class NotPredicate implements SystemEntryPredicate
+  {
+    private final SystemEntryPredicate _predicate;
+
+    private NotPredicate(SystemEntryPredicate predicate)
+    {
+      _predicate = predicate;
+    }
+
+    @Override
+    public boolean apply(SystemEntry entry)
+    {
+      return !_predicate.apply(entry);
+    }
+  }
+
+  private static class TagsPredicate implements SystemEntryPredicate
+  {
+    private final Collection<String> _tags;
+    private final boolean _allTags;
+
+    private TagsPredicate(Collection<String> tags, boolean allTags)
+    {
+      _tags = tags;
+      _allTags = allTags;
+    }
+
+    @Override
+    public boolean apply(SystemEntry entry)
+    {
+      if(entry == null)
+        return false;
+
+      return _allTags ? entry.hasAllTags(_tags) : entry.hasAnyTag(_tags);
+    }
+  }
+
+  private static class KeysPredicate implements SystemEntryPredicate
+  {
+    private final Collection<String> _keys;
+
+    private KeysPredicate(Collection<String> keys)
+    {
+      _keys = keys;
+    }
+
+    @Override
+    public boolean apply(SystemEntry entry)
+    {
+      return _keys.contains(entry == null ? null : entry.getKey());
+    }
+  }
+
+  private static class DelegatePredicate implements SystemEntryPredicate
+  {
+    private final SystemFilter _filter;
+
+    private DelegatePredicate(SystemFilter filter)
+    {
+      _filter = filter;
+    }
+
+    @Override
+    public boolean apply(SystemEntry entry)
+    {
+      return _filter.filter(entry);
+    }
+  }
+}
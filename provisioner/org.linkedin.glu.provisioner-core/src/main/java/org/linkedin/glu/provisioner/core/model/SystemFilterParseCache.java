@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2013 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package org.linkedin.glu.provisioner.core.model;
+
+import org.linkedin.glu.utils.collections.EvictingWithLRUPolicyMap;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded (LRU) and thread safe cache of parsed filters (dsl -> {@link SystemFilter}). Parsing
+ * a filter means compiling and running a groovy script which is expensive, and the same filters
+ * are parsed over and over. Concurrent requests for the same (not yet cached) dsl share the same
+ * parse. Failures are not cached.
+ *
+ * YP Implementation note: the filters returned are shared so they must not be modified (the
+ * logic chains are read only, see {@link SystemFilterBuilder#parse(String)}).
+ *
+ * @author yan@pongasoft.com
+ */
+public class SystemFilterParseCache
+{
+  public static final int DEFAULT_MAX_SIZE = 500;
+
+  private final Map<String, FutureTask<SystemFilter>> _cache;
+
+  private final AtomicLong _hits = new AtomicLong(0);
+  private final AtomicLong _misses = new AtomicLong(0);
+
+  /**
+   * Constructor
+   */
+  public SystemFilterParseCache()
+  {
+    this(DEFAULT_MAX_SIZE);
+  }
+
+  /**
+   * Constructor
+   */
+  public SystemFilterParseCache(int maxSize)
+  {
+    _cache = new EvictingWithLRUPolicyMap<String, FutureTask<SystemFilter>>(maxSize, true);
+  }
+
+  /**
+   * @return the parsed filter (from the cache if possible)
+   * @see SystemFilterBuilder#doParse(String)
+   */
+  public SystemFilter parse(final String dsl)
+  {
+    if(dsl == null)
+      return null;
+
+    FutureTask<SystemFilter> parse;
+    boolean miss = false;
+
+    synchronized(_cache)
+    {
+      parse = _cache.get(dsl);
+      if(parse == null)
+      {
+        parse = new FutureTask<SystemFilter>(new Callable<SystemFilter>()
+        {
+          @Override
+          public SystemFilter call() throws Exception
+          {
+            return SystemFilterBuilder.doParse(dsl);
+          }
+        });
+        _cache.put(dsl, parse);
+        miss = true;
+      }
+    }
+
+    if(miss)
+    {
+      _misses.incrementAndGet();
+      parse.run();
+    }
+    else
+      _hits.incrementAndGet();
+
+    try
+    {
+      return parse.get();
+    }
+    catch(InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      return SystemFilterBuilder.doParse(dsl);
+    }
+    catch(ExecutionException e)
+    {
+      synchronized(_cache)
+      {
+        if(_cache.get(dsl) == parse)
+          _cache.remove(dsl);
+      }
+
+      Throwable cause = e.getCause();
+      if(cause instanceof RuntimeException)
+        throw (RuntimeException) cause;
+      if(cause instanceof Error)
+        throw (Error) cause;
+      throw new RuntimeException(cause);
+    }
+  }
+
+  public long getHits()
+  {
+    return _hits.get();
+  }
+
+  public long getMisses()
+  {
+    return _misses.get();
+  }
+
+  public int getSize()
+  {
+    synchronized(_cache)
+    {
+      return _cache.size();
+    }
+  }
+
+  public void clear()
+  {
+    synchronized(_cache)
+    {
+      _cache.clear();
+    }
+  }
+}
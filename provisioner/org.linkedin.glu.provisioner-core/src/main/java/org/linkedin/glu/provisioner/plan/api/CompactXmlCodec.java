@@ -0,0 +1,341 @@
+/*
+ * Copyright (c) 2013 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package org.linkedin.glu.provisioner.plan.api;
+
+import org.linkedin.util.xml.XML;
+import org.linkedin.util.xml.XMLUtils;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compact (binary) encoding of the xml representation of a plan or of a plan execution
+ * (see {@link Plan#toXml()} and {@link IPlanExecution#toXml()}). All the strings (tag names,
+ * attribute names and values like agents, mount points or actions, text) are stored only once in
+ * a string table and the elements are stored as indices in this table. The result is then
+ * compressed.
+ *
+ * <p>Every text node of the root element is kept as is (including the whitespace between the
+ * tags) and decoding renders the events in order, so the xml is the same as the one originally
+ * encoded by the visitors (the xml declaration is always <code>&lt;?xml version="1.0"?&gt;</code>,
+ * an element without content is rendered as an empty tag and the text is escaped).
+ *
+ * @author yan@pongasoft.com
+ */
+public class CompactXmlCodec
+{
+  public static final byte[] MAGIC = { 'G', 'L', 'U', 'X' };
+  public static final int VERSION = 1;
+
+  private static final int START_ELEMENT = 1;
+  private static final int TEXT = 2;
+  private static final int END_ELEMENT = 3;
+
+  private static final XMLInputFactory XML_INPUT_FACTORY = XMLInputFactory.newInstance();
+
+  private static final CompactXmlCodec INSTANCE = new CompactXmlCodec();
+
+  public static CompactXmlCodec instance()
+  {
+    return INSTANCE;
+  }
+
+  /**
+   * @return <code>true</code> if the content was encoded by this codec
+   */
+  public boolean isEncoded(byte[] content)
+  {
+    if(content == null || content.length < MAGIC.length)
+      return false;
+
+    for(int i = 0; i < MAGIC.length; i++)
+    {
+      if(content[i] != MAGIC[i])
+        return false;
+    }
+
+    return true;
+  }
+
+  public byte[] encode(String xml) throws IOException
+  {
+    Map<String, Integer> strings = new LinkedHashMap<String, Integer>();
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(body);
+
+    try
+    {
+      XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(new StringReader(xml));
+      try
+      {
+        StringBuilder text = new StringBuilder();
+        int depth = 0;
+
+        while(reader.hasNext())
+        {
+          switch(reader.next())
+          {
+            case XMLStreamConstants.START_ELEMENT:
+              writeText(out, strings, text);
+              depth++;
+              out.writeByte(START_ELEMENT);
+              writeVarInt(out, intern(strings, reader.getLocalName()));
+              writeVarInt(out, reader.getAttributeCount());
+              for(int i = 0; i < reader.getAttributeCount(); i++)
+              {
+                writeVarInt(out, intern(strings, reader.getAttributeLocalName(i)));
+                writeVarInt(out, intern(strings, reader.getAttributeValue(i)));
+              }
+              break;
+
+            case XMLStreamConstants.CHARACTERS:
+            case XMLStreamConstants.CDATA:
+            case XMLStreamConstants.SPACE:
+              // outside of the root element, there can only be whitespace (not a text node)
+              if(depth > 0)
+                text.append(reader.getText());
+              break;
+
+            case XMLStreamConstants.END_ELEMENT:
+              writeText(out, strings, text);
+              out.writeByte(END_ELEMENT);
+              depth--;
+              break;
+
+            default:
+              // ignored (comments, processing instructions...)
+              break;
+          }
+        }
+      }
+      finally
+      {
+        reader.close();
+      }
+    }
+    catch(XMLStreamException e)
+    {
+      throw new IOException(e);
+    }
+
+    out.flush();
+
+    ByteArrayOutputStream res = new ByteArrayOutputStream();
+    res.write(MAGIC);
+    res.write(VERSION);
+
+    DataOutputStream compressed = new DataOutputStream(new DeflaterOutputStream(res));
+    writeVarInt(compressed, strings.size());
+    for(String s : strings.keySet())
+    {
+      byte[] bytes = s.getBytes("UTF-8");
+      writeVarInt(compressed, bytes.length);
+      compressed.write(bytes);
+    }
+    body.writeTo(compressed);
+    compressed.close();
+
+    return res.toByteArray();
+  }
+
+  public String decode(byte[] content) throws IOException
+  {
+    if(!isEncoded(content))
+      throw new IOException("not a compact xml content");
+
+    int version = content[MAGIC.length];
+    if(version != VERSION)
+      throw new IOException("unsupported compact xml version: " + version);
+
+    DataInputStream in =
+      new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(content,
+                                                                           MAGIC.length + 1,
+                                                                           content.length - MAGIC.length - 1)));
+    try
+    {
+      String[] strings = new String[readVarInt(in)];
+      for(int i = 0; i < strings.length; i++)
+      {
+        byte[] bytes = new byte[readVarInt(in)];
+        in.readFully(bytes);
+        strings[i] = new String(bytes, "UTF-8");
+      }
+
+      List<Event> events = new ArrayList<Event>();
+      int opcode;
+      while((opcode = in.read()) != -1)
+      {
+        Event event = new Event(opcode);
+        switch(opcode)
+        {
+          case START_ELEMENT:
+            event._value = strings[readVarInt(in)];
+            int attributesCount = readVarInt(in);
+            event._attributes = new LinkedHashMap<String, Object>();
+            for(int i = 0; i < attributesCount; i++)
+            {
+              String name = strings[readVarInt(in)];
+              event._attributes.put(name, strings[readVarInt(in)]);
+            }
+            break;
+
+          case TEXT:
+            event._value = strings[readVarInt(in)];
+            break;
+
+          case END_ELEMENT:
+            break;
+
+          default:
+            throw new IOException("corrupted compact xml content (opcode=" + opcode + ")");
+        }
+        events.add(event);
+      }
+
+      return render(events);
+    }
+    finally
+    {
+      in.close();
+    }
+  }
+
+  /**
+   * Renders the events in order (an element without content is rendered as an empty tag, like the
+   * xml visitors do)
+   */
+  private String render(List<Event> events)
+  {
+    XML xml = new XML();
+    xml.addXMLDecl("1.0");
+
+    List<String> openedTags = new ArrayList<String>();
+
+    int i = 0;
+    while(i < events.size())
+    {
+      Event event = events.get(i);
+      switch(event._opcode)
+      {
+        case START_ELEMENT:
+          Event next = i + 1 < events.size() ? events.get(i + 1) : null;
+          if(next != null && next._opcode == END_ELEMENT)
+          {
+            xml.addEmptyTag(event._value, event._attributes);
+            i += 2;
+          }
+          else
+          {
+            xml.addOpeningTag(event._value, event._attributes);
+            openedTags.add(event._value);
+            i++;
+          }
+          break;
+
+        case TEXT:
+          xml.addXML(XMLUtils.xmlEncode(event._value));
+          i++;
+          break;
+
+        case END_ELEMENT:
+          xml.addClosingTag(openedTags.remove(openedTags.size() - 1));
+          i++;
+          break;
+      }
+    }
+
+    // the visitors end the document with a new line
+    xml.addXML("\n");
+
+    return xml.getXML();
+  }
+
+  private static void writeText(DataOutputStream out,
+                                Map<String, Integer> strings,
+                                StringBuilder text) throws IOException
+  {
+    if(text.length() > 0)
+    {
+      out.writeByte(TEXT);
+      writeVarInt(out, intern(strings, text.toString()));
+      text.setLength(0);
+    }
+  }
+
+  private static int intern(Map<String, Integer> strings, String s)
+  {
+    Integer index = strings.get(s);
+    if(index == null)
+    {
+      index = strings.size();
+      strings.put(s, index);
+    }
+    return index;
+  }
+
+  private static void writeVarInt(DataOutputStream out, int value) throws IOException
+  {
+    while((value & ~0x7F) != 0)
+    {
+      out.writeByte((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    out.writeByte(value);
+  }
+
+  private static int readVarInt(DataInputStream in) throws IOException
+  {
+    int value = 0;
+    int shift = 0;
+    int b;
+    do
+    {
+      b = in.readUnsignedByte();
+      value |= (b & 0x7F) << shift;
+      shift += 7;
+    }
+    while((b & 0x80) != 0);
+    return value;
+  }
+
+  private static class Event
+  {
+    private final int _opcode;
+    private String _value;
+    private Map<String, Object> _attributes;
+
+    private Event(int opcode)
+    {
+      _opcode = opcode;
+    }
+  }
+}
@@ -63,6 +63,14 @@ public abstract class CompositeStepBuilder<T> extends AbstractStepBuilder<T> imp
     return stepBuilder;
   }
 
+  @Override
+  public DagStepBuilder<T> addDagSteps()
+  {
+    DagStepBuilder<T> stepBuilder = new DagStepBuilder<T>();
+    _steps.add(stepBuilder);
+    return stepBuilder;
+  }
+
   @Override
   public ICompositeStepBuilder<T> addCompositeSteps(IStep.Type type)
   {
@@ -70,6 +78,8 @@ public abstract class CompositeStepBuilder<T> extends AbstractStepBuilder<T> imp
     {
       case PARALLEL:
         return addParallelSteps();
+      case DAG:
+        return addDagSteps();
 
       case SEQUENTIAL:
         return addSequentialSteps();
@@ -16,6 +16,9 @@
 
 package org.linkedin.glu.provisioner.plan.api;
 
+import java.util.IdentityHashMap;
+import java.util.Map;
+
 /**
  * @author ypujante@linkedin.com
  */
@@ -73,6 +76,25 @@ public class CompositeStepBuilderVisitor<T> implements IStepVisitor<T>
     return visitCompositeStep(tSequentialStep);
   }
 
+  /**
+   * Visit a dag step: each child ends up in its own node and the dependencies are copied.
+   *
+   * @return <code>null</code> if you want to stop the recursion, otherwise another visitor
+   */
+  @Override
+  public IStepVisitor<T> visitDagStep(DagStep<T> dagStep)
+  {
+    if(_filter.accept(dagStep))
+    {
+      DagStepBuilder<T> builder = _builder.addDagSteps();
+      builder.setMetadata(dagStep.getMetadata());
+      builder.setId(dagStep.getId());
+      return new DagStepBuilderVisitor<T>(dagStep, builder, _filter);
+    }
+    else
+      return null;
+  }
+
   /**
    * common code
    */
@@ -108,4 +130,74 @@ public class CompositeStepBuilderVisitor<T> implements IStepVisitor<T>
   public void endVisit()
   {
   }
+
+  /**
+   * Adds each child of the dag to its own node (so that filtered out children simply end up as
+   * empty nodes) and adds the dependencies at the end of the visit.
+   */
+  private static class DagStepBuilderVisitor<T> implements IStepVisitor<T>
+  {
+    private final DagStep<T> _dagStep;
+    private final DagStepBuilder<T> _builder;
+    private final IStepFilter<T> _filter;
+    private final Map<IStep<T>, ICompositeStepBuilder<T>> _nodes =
+      new IdentityHashMap<IStep<T>, ICompositeStepBuilder<T>>();
+
+    private DagStepBuilderVisitor(DagStep<T> dagStep,
+                                  DagStepBuilder<T> builder,
+                                  IStepFilter<T> filter)
+    {
+      _dagStep = dagStep;
+      _builder = builder;
+      _filter = filter;
+    }
+
+    @Override
+    public void startVisit()
+    {
+    }
+
+    @Override
+    public void visitLeafStep(LeafStep<T> leafStep)
+    {
+      addNode(leafStep).visitLeafStep(leafStep);
+    }
+
+    @Override
+    public IStepVisitor<T> visitSequentialStep(SequentialStep<T> sequentialStep)
+    {
+      return addNode(sequentialStep).visitSequentialStep(sequentialStep);
+    }
+
+    @Override
+    public IStepVisitor<T> visitParallelStep(ParallelStep<T> parallelStep)
+    {
+      return addNode(parallelStep).visitParallelStep(parallelStep);
+    }
+
+    @Override
+    public IStepVisitor<T> visitDagStep(DagStep<T> dagStep)
+    {
+      return addNode(dagStep).visitDagStep(dagStep);
+    }
+
+    private IStepVisitor<T> addNode(IStep<T> step)
+    {
+      ICompositeStepBuilder<T> node = _builder.addNode();
+      _nodes.put(step, node);
+      return new CompositeStepBuilderVisitor<T>(node, _filter);
+    }
+
+    @Override
+    public void endVisit()
+    {
+      for(Map.Entry<IStep<T>, ICompositeStepBuilder<T>> entry : _nodes.entrySet())
+      {
+        for(IStep<T> predecessor : _dagStep.getPredecessors(entry.getKey()))
+        {
+          _builder.addDependency(entry.getValue(), _nodes.get(predecessor));
+        }
+      }
+    }
+  }
 }
@@ -170,6 +170,10 @@ public class CompositeStepCompletionStatus<T> implements IStepCompletionStatus<T
         childrenVisitor = visitor.visitParallelStepStatus(this);
         break;
 
+      case DAG:
+        childrenVisitor = visitor.visitDagStepStatus(this);
+        break;
+
       default:
         throw new RuntimeException("should not be reached");
     }
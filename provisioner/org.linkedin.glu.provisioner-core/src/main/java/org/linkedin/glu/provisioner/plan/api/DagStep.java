@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2013 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.linkedin.glu.provisioner.plan.api;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Represent a collection of steps with dependencies between them (a directed acyclic graph): a
+ * step is executed as soon as all its predecessors have completed. The steps are stored in
+ * topological order (a step always comes after its predecessors).
+ *
+ * @author yan@pongasoft.com
+ */
+public class DagStep<T> extends CompositeStep<T>
+{
+  private final Map<IStep<T>, Collection<IStep<T>>> _predecessors;
+  private final Map<IStep<T>, Integer> _nodeIndexes = new IdentityHashMap<IStep<T>, Integer>();
+
+  /**
+   * Constructor
+   *
+   * @param predecessors the predecessors of each step (identity map). A step not present in the
+   *                     map has no predecessor.
+   */
+  public DagStep(String id,
+                 Map<String, Object> metadata,
+                 Collection<IStep<T>> iSteps,
+                 Map<IStep<T>, Collection<IStep<T>>> predecessors)
+  {
+    super(id, metadata, iSteps);
+    _predecessors = predecessors;
+
+    for(IStep<T> step : iSteps)
+    {
+      _nodeIndexes.put(step, _nodeIndexes.size());
+    }
+  }
+
+  /**
+   * @return the steps which need to be completed before <code>step</code> can execute (never
+   *         <code>null</code>)
+   */
+  public Collection<IStep<T>> getPredecessors(IStep<T> step)
+  {
+    Collection<IStep<T>> predecessors = _predecessors.get(step);
+    if(predecessors == null)
+      return Collections.emptyList();
+    else
+      return Collections.unmodifiableCollection(predecessors);
+  }
+
+  /**
+   * @return the ids of the predecessors of <code>step</code> in the order of the dag (never
+   *         <code>null</code>)
+   */
+  public Collection<String> getPredecessorIds(IStep<T> step)
+  {
+    List<IStep<T>> predecessors = new ArrayList<IStep<T>>(getPredecessors(step));
+    Collections.sort(predecessors, new Comparator<IStep<T>>()
+    {
+      @Override
+      public int compare(IStep<T> s1, IStep<T> s2)
+      {
+        return _nodeIndexes.get(s1).compareTo(_nodeIndexes.get(s2));
+      }
+    });
+
+    Collection<String> res = new ArrayList<String>(predecessors.size());
+    for(IStep<T> predecessor : predecessors)
+    {
+      res.add(predecessor.getId());
+    }
+    return res;
+  }
+
+  /**
+   * Visitor pattern. Will be called back for the recursive structure.
+   */
+  @Override
+  public void acceptVisitor(IStepVisitor<T> visitor)
+  {
+    visitSteps(visitor.visitDagStep(this));
+  }
+
+  /**
+   * @return the type of the step
+   */
+  @Override
+  public Type getType()
+  {
+    return Type.DAG;
+  }
+}
@@ -0,0 +1,283 @@
+/*
+ * Copyright (c) 2013 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.linkedin.glu.provisioner.plan.api;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Builder for a {@link DagStep}. Each child of the dag is a <em>node</em> (see
+ * {@link #addNode()}): the steps added to a node are executed sequentially and dependencies are
+ * expressed between nodes (see {@link #addDependency(ICompositeStepBuilder, ICompositeStepBuilder)}).
+ * Empty nodes are removed (their successors inherit their predecessors) and a node containing
+ * a single step (with no metadata) is replaced by this step.
+ *
+ * @author yan@pongasoft.com
+ */
+public class DagStepBuilder<T> extends CompositeStepBuilder<T>
+{
+  private final List<SequentialStepBuilder<T>> _nodes = new ArrayList<SequentialStepBuilder<T>>();
+  private final Map<ICompositeStepBuilder<T>, Collection<ICompositeStepBuilder<T>>> _predecessors =
+    new IdentityHashMap<ICompositeStepBuilder<T>, Collection<ICompositeStepBuilder<T>>>();
+
+  /**
+   * Constructor
+   */
+  public DagStepBuilder()
+  {
+  }
+
+  /**
+   * Adds a node (with no dependency) to the dag.
+   *
+   * @return the builder to use to add steps to the node
+   */
+  public ICompositeStepBuilder<T> addNode()
+  {
+    SequentialStepBuilder<T> node = new SequentialStepBuilder<T>();
+    _nodes.add(node);
+    _predecessors.put(node, new ArrayList<ICompositeStepBuilder<T>>());
+    return node;
+  }
+
+  /**
+   * Declares that <code>node</code> cannot start until <code>predecessor</code> has completed.
+   * Both must have been created with {@link #addNode()}.
+   */
+  public void addDependency(ICompositeStepBuilder<T> node, ICompositeStepBuilder<T> predecessor)
+  {
+    if(!_predecessors.containsKey(node))
+      throw new IllegalArgumentException("not a node of this dag: " + node);
+
+    if(!_predecessors.containsKey(predecessor))
+      throw new IllegalArgumentException("not a node of this dag: " + predecessor);
+
+    _predecessors.get(node).add(predecessor);
+  }
+
+  @Override
+  public void addLeafStep(LeafStep<T> leafStep)
+  {
+    if(leafStep != null)
+      addNode().addLeafStep(leafStep);
+  }
+
+  @Override
+  public void removeLeafStep(LeafStep<T> leafStep)
+  {
+    for(SequentialStepBuilder<T> node : _nodes)
+    {
+      node.removeLeafStep(leafStep);
+    }
+  }
+
+  @Override
+  public ICompositeStepBuilder<T> addSequentialSteps()
+  {
+    return addNode().addSequentialSteps();
+  }
+
+  @Override
+  public ICompositeStepBuilder<T> addParallelSteps()
+  {
+    return addNode().addParallelSteps();
+  }
+
+  @Override
+  public DagStepBuilder<T> addDagSteps()
+  {
+    return addNode().addDagSteps();
+  }
+
+  @Override
+  public IStep<T> toStep()
+  {
+    Map<ICompositeStepBuilder<T>, IStep<T>> steps =
+      new IdentityHashMap<ICompositeStepBuilder<T>, IStep<T>>();
+
+    for(SequentialStepBuilder<T> node : _nodes)
+    {
+      IStep<T> step = toStep(node);
+      if(step != null)
+        steps.put(node, step);
+    }
+
+    Map<IStep<T>, Collection<IStep<T>>> predecessors =
+      new IdentityHashMap<IStep<T>, Collection<IStep<T>>>();
+    Map<ICompositeStepBuilder<T>, Collection<IStep<T>>> emptyNodesPredecessors =
+      new IdentityHashMap<ICompositeStepBuilder<T>, Collection<IStep<T>>>();
+
+    for(SequentialStepBuilder<T> node : _nodes)
+    {
+      IStep<T> step = steps.get(node);
+      if(step != null)
+      {
+        Collection<IStep<T>> stepPredecessors =
+          findPredecessors(node, steps, emptyNodesPredecessors);
+        if(!stepPredecessors.isEmpty())
+          predecessors.put(step, stepPredecessors);
+      }
+    }
+
+    return new DagStep<T>(getId(),
+                          getMetadata(),
+                          sortSteps(steps, predecessors),
+                          predecessors);
+  }
+
+  @Override
+  protected IStep<T> createStep(Collection<IStep<T>> steps)
+  {
+    return new DagStep<T>(getId(),
+                          getMetadata(),
+                          steps,
+                          Collections.<IStep<T>, Collection<IStep<T>>>emptyMap());
+  }
+
+  /**
+   * @return the step for the node (<code>null</code> if the node is empty)
+   */
+  private IStep<T> toStep(SequentialStepBuilder<T> node)
+  {
+    CompositeStep<T> step = (CompositeStep<T>) node.toStep();
+
+    Collection<IStep<T>> children = step.getSteps();
+
+    if(children.isEmpty())
+      return null;
+
+    if(children.size() == 1 && node.getId() == null && node.getMetadata().isEmpty())
+      return children.iterator().next();
+
+    return step;
+  }
+
+  /**
+   * Computes the (non empty) predecessors of a node: when a predecessor is empty, its own
+   * predecessors are used instead.
+   */
+  private Collection<IStep<T>> findPredecessors(ICompositeStepBuilder<T> node,
+                                                Map<ICompositeStepBuilder<T>, IStep<T>> steps,
+                                                Map<ICompositeStepBuilder<T>, Collection<IStep<T>>> emptyNodesPredecessors)
+  {
+    Set<IStep<T>> res = Collections.newSetFromMap(new IdentityHashMap<IStep<T>, Boolean>());
+
+    for(ICompositeStepBuilder<T> predecessor : _predecessors.get(node))
+    {
+      IStep<T> step = steps.get(predecessor);
+      if(step != null)
+      {
+        res.add(step);
+      }
+      else
+      {
+        if(emptyNodesPredecessors.containsKey(predecessor))
+        {
+          Collection<IStep<T>> predecessors = emptyNodesPredecessors.get(predecessor);
+          if(predecessors == null)
+            throw new IllegalStateException("cycle detected in dag " + getName());
+          res.addAll(predecessors);
+        }
+        else
+        {
+          // null marks the computation in progress (cycle detection)
+          emptyNodesPredecessors.put(predecessor, null);
+          Collection<IStep<T>> predecessors =
+            findPredecessors(predecessor, steps, emptyNodesPredecessors);
+          emptyNodesPredecessors.put(predecessor, predecessors);
+          res.addAll(predecessors);
+        }
+      }
+    }
+
+    return new ArrayList<IStep<T>>(res);
+  }
+
+  /**
+   * Sorts the steps in topological order (keeping the order in which the nodes were added when
+   * there is no dependency)
+   */
+  private Collection<IStep<T>> sortSteps(Map<ICompositeStepBuilder<T>, IStep<T>> steps,
+                                         Map<IStep<T>, Collection<IStep<T>>> predecessors)
+  {
+    Map<IStep<T>, Integer> remainingPredecessors = new IdentityHashMap<IStep<T>, Integer>();
+    Map<IStep<T>, Collection<IStep<T>>> successors =
+      new IdentityHashMap<IStep<T>, Collection<IStep<T>>>();
+
+    Deque<IStep<T>> readySteps = new ArrayDeque<IStep<T>>();
+
+    for(SequentialStepBuilder<T> node : _nodes)
+    {
+      IStep<T> step = steps.get(node);
+      if(step == null)
+        continue;
+
+      Collection<IStep<T>> stepPredecessors = predecessors.get(step);
+      if(stepPredecessors == null)
+      {
+        readySteps.add(step);
+      }
+      else
+      {
+        remainingPredecessors.put(step, stepPredecessors.size());
+        for(IStep<T> predecessor : stepPredecessors)
+        {
+          Collection<IStep<T>> stepSuccessors = successors.get(predecessor);
+          if(stepSuccessors == null)
+          {
+            stepSuccessors = new ArrayList<IStep<T>>();
+            successors.put(predecessor, stepSuccessors);
+          }
+          stepSuccessors.add(step);
+        }
+      }
+    }
+
+    Collection<IStep<T>> sortedSteps = new ArrayList<IStep<T>>(steps.size());
+
+    while(!readySteps.isEmpty())
+    {
+      IStep<T> step = readySteps.removeFirst();
+      sortedSteps.add(step);
+
+      Collection<IStep<T>> stepSuccessors = successors.get(step);
+      if(stepSuccessors != null)
+      {
+        for(IStep<T> successor : stepSuccessors)
+        {
+          int remaining = remainingPredecessors.get(successor) - 1;
+          remainingPredecessors.put(successor, remaining);
+          if(remaining == 0)
+            readySteps.add(successor);
+        }
+      }
+    }
+
+    if(sortedSteps.size() != steps.size())
+      throw new IllegalStateException("cycle detected in dag " + getName());
+
+    return sortedSteps;
+  }
+}
@@ -75,6 +75,13 @@ public class FilteredPlanExecutionProgressTracker<T> implements IPlanExecutionPr
       _tracker.onStepEnd(tiStepCompletionStatus);
   }
 
+  @Override
+  public void onStepQueued(IStepExecution<T> stepExecution)
+  {
+    if(_tracker != null)
+      _tracker.onStepQueued(stepExecution);
+  }
+
   @Override
   public void onStepStart(IStepExecution<T> stepExecution)
   {
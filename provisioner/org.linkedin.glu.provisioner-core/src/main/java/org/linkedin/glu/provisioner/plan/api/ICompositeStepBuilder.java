@@ -29,5 +29,7 @@ public interface ICompositeStepBuilder<T> extends IStepBuilder<T>
 
   ICompositeStepBuilder<T> addParallelSteps();
 
+  DagStepBuilder<T> addDagSteps();
+
   ICompositeStepBuilder<T> addCompositeSteps(IStep.Type type);
 }
\ No newline at end of file
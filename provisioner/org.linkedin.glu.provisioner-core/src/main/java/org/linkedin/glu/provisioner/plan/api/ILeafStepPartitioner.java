@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) 2013 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.linkedin.glu.provisioner.plan.api;
+
+/**
+ * Groups leaf steps into partitions (for example by agent) so that the number of leaf steps
+ * executing at the same time can be limited per partition.
+ *
+ * @author yan@pongasoft.com
+ */
+public interface ILeafStepPartitioner<T>
+{
+  /**
+   * @param leafStep
+   * @return the key of the partition the leaf step belongs to or <code>null</code> if the leaf
+   *         step does not belong to any partition (in which case it is not limited)
+   */
+  Object computePartitionKey(LeafStep<T> leafStep);
+}
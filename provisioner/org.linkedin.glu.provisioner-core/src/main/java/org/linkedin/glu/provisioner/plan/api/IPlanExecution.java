@@ -16,6 +16,8 @@
 
 package org.linkedin.glu.provisioner.plan.api;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Map;
 
 /**
@@ -31,4 +33,9 @@ public interface IPlanExecution<T> extends IStepExecution<T>
   String toXml();
 
   String toXml(Map<String, Object> context);
+
+  /**
+   * Same as {@link #toXml(Map)} but the xml is written to the stream as it gets generated
+   */
+  void writeXml(Map<String, Object> context, OutputStream out) throws IOException;
 }
\ No newline at end of file
@@ -49,6 +49,14 @@ public interface IPlanExecutionProgressTracker<T>
    */
   void onCancelled(IStep<T> step);
 
+  /**
+   * Called when the step is ready to execute but has to wait because too many steps are already
+   * executing ({@link #onStepStart(IStepExecution)} will be called once it starts)
+   *
+   * @param stepExecution step which is queued
+   */
+  void onStepQueued(IStepExecution<T> stepExecution);
+
   /**
    * Called when the execution of the step starts
    *
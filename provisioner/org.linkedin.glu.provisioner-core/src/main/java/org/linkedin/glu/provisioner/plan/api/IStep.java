@@ -27,7 +27,8 @@ public interface IStep<T>
   {
     LEAF,
     SEQUENTIAL,
-    PARALLEL
+    PARALLEL,
+    DAG
   }
 
   /**
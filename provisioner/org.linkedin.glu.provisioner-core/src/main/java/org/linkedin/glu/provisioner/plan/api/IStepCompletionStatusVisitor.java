@@ -45,6 +45,13 @@ public interface IStepCompletionStatusVisitor<T>
    */
   IStepCompletionStatusVisitor<T> visitParallelStepStatus(IStepCompletionStatus<T> status);
 
+  /**
+   * Visit status a dag step.
+   *
+   * @return <code>null</code> if you want to stop the recursion, otherwise another visitor
+   */
+  IStepCompletionStatusVisitor<T> visitDagStepStatus(IStepCompletionStatus<T> status);
+
   /**
    * Called on visit end
    */
@@ -55,6 +55,12 @@ public interface IStepExecution<T>
    */
   boolean isPaused();
 
+  /**
+   * @return <code>true</code> if the step is waiting for other steps to complete before it can
+   *         start (due to concurrency limits)
+   */
+  boolean isQueued();
+
   /**
    * Attempts to cancel execution of this step.
    *
@@ -47,6 +47,13 @@ public interface IStepVisitor<T>
    */
   IStepVisitor<T> visitParallelStep(ParallelStep<T> parallelStep);
 
+  /**
+   * Visit a dag step.
+   *
+   * @return <code>null</code> if you want to stop the recursion, otherwise another visitor
+   */
+  IStepVisitor<T> visitDagStep(DagStep<T> dagStep);
+
   /**
    * Called on visit end
    */
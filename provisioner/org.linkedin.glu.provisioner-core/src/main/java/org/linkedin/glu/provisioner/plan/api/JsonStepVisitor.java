@@ -19,19 +19,33 @@ package org.linkedin.glu.provisioner.plan.api;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.util.Collection;
+
 /**
  * @author yan@pongasoft.com
  */
 public class JsonStepVisitor<T> implements IStepVisitor<T>
 {
   private final JSONObject _steps;
+  private final DagStep<T> _dagStep;
 
   /**
    * Constructor
    */
   public JsonStepVisitor(JSONObject steps)
+  {
+    this(steps, null);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param dagStep the dag being visited when visiting its children (<code>null</code> otherwise)
+   */
+  public JsonStepVisitor(JSONObject steps, DagStep<T> dagStep)
   {
     _steps = steps;
+    _dagStep = dagStep;
   }
 
   @Override
@@ -57,6 +71,13 @@ public class JsonStepVisitor<T> implements IStepVisitor<T>
     return visitCompositeStep(step, "parallel");
   }
 
+  @Override
+  public IStepVisitor<T> visitDagStep(DagStep<T> step)
+  {
+    JSONObject jsonStep = visitStep(step, "dag");
+    return new JsonStepVisitor<T>(jsonStep, step);
+  }
+
   private IStepVisitor<T> visitCompositeStep(CompositeStep<T> step, String type)
   {
     JSONObject jsonStep = visitStep(step, type);
@@ -69,6 +90,14 @@ public class JsonStepVisitor<T> implements IStepVisitor<T>
     {
       JSONObject jsonStep = new JSONObject();
       jsonStep.put("type", type);
+      // children of a dag: id and dependencies so that the dag can be rebuilt
+      if(_dagStep != null)
+      {
+        jsonStep.put("id", step.getId());
+        Collection<String> dependsOn = _dagStep.getPredecessorIds(step);
+        if(!dependsOn.isEmpty())
+          jsonStep.put("dependsOn", dependsOn);
+      }
       jsonStep.put("metadata", step.getMetadata());
       _steps.accumulate("steps", jsonStep);
       return jsonStep;
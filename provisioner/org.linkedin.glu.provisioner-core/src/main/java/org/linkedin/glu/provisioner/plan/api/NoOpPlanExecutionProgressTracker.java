@@ -37,6 +37,16 @@ public class NoOpPlanExecutionProgressTracker<T> implements IPlanExecutionProgre
   {
   }
 
+  /**
+   * Called when the step has to wait before starting
+   *
+   * @param stepExecution step which is queued
+   */
+  @Override
+  public void onStepQueued(IStepExecution<T> stepExecution)
+  {
+  }
+
   /**
    * Called when the execution of the step starts
    *
@@ -21,6 +21,11 @@ import org.json.JSONException;
 import org.json.JSONObject;
 import org.linkedin.util.xml.XMLIndent;
 
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Map;
@@ -175,6 +180,12 @@ public class Plan<T>
           return this;
         }
 
+        @Override
+        public IStepVisitor<T> visitDagStep(DagStep<T> dagStep)
+        {
+          return this;
+        }
+
         @Override
         public void endVisit()
         {
@@ -277,6 +288,52 @@ public class Plan<T>
     return xml.getXML();
   }
 
+  /**
+   * Writes the xml representation of the plan to the stream while visiting the steps (the xml is
+   * never entirely in memory)
+   */
+  public void writeXml(Map<String, Object> context, OutputStream out) throws IOException
+  {
+    XMLStreamWriter xml = XmlStreamStepVisitor.createXMLStreamWriter(out);
+
+    Map<String, Object> attributes = new LinkedHashMap<String, Object>();
+    attributes.putAll(_metadata);
+
+    if(context != null)
+    {
+      attributes.putAll(context);
+    }
+
+    try
+    {
+      xml.writeStartDocument("UTF-8", "1.0");
+
+      if(_step != null)
+      {
+        XmlStreamStepVisitor.writeStartElement(xml, "plan", attributes);
+        _step.acceptVisitor(new XmlStreamStepVisitor<T>(xml));
+        XmlStreamStepVisitor.writeEndElement(xml);
+      }
+      else
+      {
+        XmlStreamStepVisitor.writeEmptyElement(xml, "plan", attributes);
+      }
+
+      xml.writeEndDocument();
+      xml.flush();
+    }
+    catch(XMLStreamException e)
+    {
+      throw new IOException(e);
+    }
+    catch(RuntimeException e)
+    {
+      if(e.getCause() instanceof XMLStreamException)
+        throw new IOException(e.getCause());
+      throw e;
+    }
+  }
+
   public JSONObject toJson()
   {
     JSONObject json = new JSONObject();
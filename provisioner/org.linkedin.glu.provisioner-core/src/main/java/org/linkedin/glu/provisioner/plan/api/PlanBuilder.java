@@ -69,6 +69,10 @@ public class PlanBuilder<T> extends AbstractStepBuilder<T> implements IPlanBuild
         _compositeSteps = new SequentialStepBuilder<T>();
         break;
 
+      case DAG:
+        _compositeSteps = new DagStepBuilder<T>();
+        break;
+
       default:
         throw new RuntimeException("cannot create a builder for " + type);
     }
@@ -88,6 +92,12 @@ public class PlanBuilder<T> extends AbstractStepBuilder<T> implements IPlanBuild
     return addCompositeSteps(IStep.Type.SEQUENTIAL);
   }
 
+  @Override
+  public DagStepBuilder<T> addDagSteps()
+  {
+    return (DagStepBuilder<T>) addCompositeSteps(IStep.Type.DAG);
+  }
+
   @Override
   public IStep<T> toStep()
   {
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2013 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.linkedin.glu.provisioner.plan.api;
+
+import org.linkedin.util.lang.LangUtils;
+import org.linkedin.util.text.Indent;
+import org.linkedin.util.xml.XMLIndent;
+
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Builds the xml of the completion status of a plan incrementally: each step is rendered as soon
+ * as it completes (see {@link #onStepCompleted(IStepCompletionStatus)}) and a composite step
+ * reuses the xml of its children, so that the end of the plan only has to assemble the (already
+ * rendered) top of the tree. The result is the same as {@link IPlanExecution#toXml(Map)}. A step
+ * which was not rendered (its completion was not reported) is rendered when its parent is.
+ *
+ * This class is thread safe.
+ *
+ * @author yan@pongasoft.com
+ */
+public class XmlStepCompletionStatusBuilder<T>
+{
+  private final Plan<T> _plan;
+
+  // the indentation level of each step of the plan (the root step is inside the plan tag)
+  private final Map<IStep<T>, Integer> _levels = new IdentityHashMap<IStep<T>, Integer>();
+
+  // the xml of the completed steps whose parent has not completed yet
+  private final Map<IStepCompletionStatus<T>, String> _fragments =
+    new IdentityHashMap<IStepCompletionStatus<T>, String>();
+
+  /**
+   * Constructor
+   */
+  public XmlStepCompletionStatusBuilder(Plan<T> plan)
+  {
+    _plan = plan;
+    if(plan.getStep() != null)
+      computeLevels(plan.getStep(), 1);
+  }
+
+  /**
+   * Renders the xml of the step (the xml of its children, if any, is reused)
+   */
+  public synchronized void onStepCompleted(IStepCompletionStatus<T> status)
+  {
+    Integer level = _levels.get(status.getStep());
+    if(level != null && !_fragments.containsKey(status))
+      _fragments.put(status, render(status, level));
+  }
+
+  /**
+   * @return the xml of the completed plan (same as {@link IPlanExecution#toXml(Map)})
+   */
+  public synchronized String toXml(IStepCompletionStatus<T> planStatus,
+                                   Map<String, Object> context)
+  {
+    XMLIndent xml = new XMLIndent();
+
+    xml.addXMLDecl("1.0");
+
+    Map<String, Object> attributes = new LinkedHashMap<String, Object>();
+    attributes.putAll(_plan.getMetadata());
+    if(context != null)
+    {
+      attributes.putAll(context);
+    }
+
+    xml.addOpeningTag("plan", attributes);
+    xml.addXML(getFragment(planStatus, 1));
+    xml.addClosingTag("plan");
+
+    _fragments.clear();
+
+    return xml.getXML();
+  }
+
+  private void computeLevels(IStep<T> step, int level)
+  {
+    _levels.put(step, level);
+    if(step instanceof CompositeStep)
+    {
+      for(IStep<T> child : ((CompositeStep<T>) step).getSteps())
+      {
+        computeLevels(child, level + 1);
+      }
+    }
+  }
+
+  /**
+   * @return the already rendered xml of the step (removed since it is used only once) or renders
+   *         it
+   */
+  private String getFragment(IStepCompletionStatus<T> status, int level)
+  {
+    String fragment = _fragments.remove(status);
+    if(fragment == null)
+      fragment = render(status, level);
+    return fragment;
+  }
+
+  private String render(IStepCompletionStatus<T> status, int level)
+  {
+    XMLIndent xml = new XMLIndent(new Indent(level));
+
+    Map<String, Object> attributes = XmlStepCompletionStatusVisitor.computeAttributes(status);
+    Throwable th = status.getThrowable();
+
+    if(status instanceof CompositeStepCompletionStatus)
+    {
+      String tagName = status.getStep().getType().name().toLowerCase();
+      xml.addOpeningTag(tagName, attributes);
+      if(th != null)
+        xml.addTag("exception", LangUtils.getStackTrace(th), "message", th.getMessage());
+      for(IStepCompletionStatus<T> childStatus :
+            ((CompositeStepCompletionStatus<T>) status).getStatuses())
+      {
+        xml.addXML(getFragment(childStatus, level + 1));
+      }
+      xml.addClosingTag(tagName);
+    }
+    else
+    {
+      if(th != null)
+      {
+        xml.addOpeningTag("leaf", attributes);
+        xml.addTag("exception", LangUtils.getStackTrace(th), "message", th.getMessage());
+        xml.addClosingTag("leaf");
+      }
+      else
+      {
+        xml.addEmptyTag("leaf", attributes);
+      }
+    }
+
+    return xml.getXML();
+  }
+}
@@ -68,7 +68,7 @@ public class XmlStepCompletionStatusVisitor<T> implements IStepCompletionStatusV
   {
     _xml = xml;
     _tagName = tagName;
-    _attributes = getAttributes(status);
+    _attributes = computeAttributes(status);
     _throwable = status.getThrowable();
   }
 
@@ -94,7 +94,7 @@ public class XmlStepCompletionStatusVisitor<T> implements IStepCompletionStatusV
   @Override
   public void visitLeafStepStatus(IStepCompletionStatus<T> status)
   {
-    addTag("leaf", getAttributes(status), status.getThrowable());
+    addTag("leaf", computeAttributes(status), status.getThrowable());
   }
 
   /**
@@ -119,6 +119,17 @@ public class XmlStepCompletionStatusVisitor<T> implements IStepCompletionStatusV
     return new XmlStepCompletionStatusVisitor<T>(_xml, "parallel", status);
   }
 
+  /**
+   * Visit status a dag step.
+   *
+   * @return <code>null</code> if you want to stop the recursion, otherwise another visitor
+   */
+  @Override
+  public IStepCompletionStatusVisitor<T> visitDagStepStatus(IStepCompletionStatus<T> status)
+  {
+    return new XmlStepCompletionStatusVisitor<T>(_xml, "dag", status);
+  }
+
   @Override
   public void endVisit()
   {
@@ -142,7 +153,7 @@ public class XmlStepCompletionStatusVisitor<T> implements IStepCompletionStatusV
     }
   }
 
-  private Map<String, Object> getAttributes(IStepCompletionStatus<T> status)
+  static <T> Map<String, Object> computeAttributes(IStepCompletionStatus<T> status)
   {
     Map<String, Object> attributes = new LinkedHashMap<String, Object>();
 
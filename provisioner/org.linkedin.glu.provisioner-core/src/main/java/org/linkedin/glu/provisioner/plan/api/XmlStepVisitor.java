@@ -18,6 +18,8 @@ package org.linkedin.glu.provisioner.plan.api;
 
 import org.linkedin.util.xml.XMLIndent;
 
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.TreeMap;
 
@@ -29,6 +31,7 @@ public class XmlStepVisitor<T> implements IStepVisitor<T>
   private final XMLIndent _xml;
   private final String _tagName;
   private final Map<String, Object> _metadata;
+  private final DagStep<T> _dagStep;
 
   /**
    * Constructor
@@ -42,10 +45,24 @@ public class XmlStepVisitor<T> implements IStepVisitor<T>
    * Constructor
    */
   public XmlStepVisitor(XMLIndent xml, String tagName, Map<String, Object> metadata)
+  {
+    this(xml, tagName, metadata, null);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param dagStep the dag being visited when visiting its children (<code>null</code> otherwise)
+   */
+  public XmlStepVisitor(XMLIndent xml,
+                        String tagName,
+                        Map<String, Object> metadata,
+                        DagStep<T> dagStep)
   {
     _xml = xml;
     _tagName = tagName;
     _metadata = metadata;
+    _dagStep = dagStep;
   }
 
   @Override
@@ -60,19 +77,60 @@ public class XmlStepVisitor<T> implements IStepVisitor<T>
   @Override
   public void visitLeafStep(LeafStep<T> step)
   {
-    _xml.addEmptyTag("leaf", step.getMetadata());
+    _xml.addEmptyTag("leaf", getAttributes(step));
   }
 
   @Override
   public IStepVisitor<T> visitSequentialStep(final SequentialStep<T> step)
   {
-    return new XmlStepVisitor<T>(_xml, "sequential", step.getMetadata());
+    return new XmlStepVisitor<T>(_xml, "sequential", getAttributes(step));
   }
 
   @Override
   public IStepVisitor<T> visitParallelStep(ParallelStep<T> step)
   {
-    return new XmlStepVisitor<T>(_xml, "parallel", step.getMetadata());
+    return new XmlStepVisitor<T>(_xml, "parallel", getAttributes(step));
+  }
+
+  @Override
+  public IStepVisitor<T> visitDagStep(DagStep<T> step)
+  {
+    return new XmlStepVisitor<T>(_xml, "dag", getAttributes(step), step);
+  }
+
+  private Map<String, Object> getAttributes(IStep<T> step)
+  {
+    return getAttributes(_dagStep, step);
+  }
+
+  /**
+   * @return the metadata of the step, preceded by its id and followed by the (comma separated)
+   *         ids of its predecessors when it is a child of a dag so that the dag can be rebuilt
+   */
+  public static <T> Map<String, Object> getAttributes(DagStep<T> dagStep, IStep<T> step)
+  {
+    if(dagStep == null)
+      return step.getMetadata();
+
+    Map<String, Object> attributes = new LinkedHashMap<String, Object>();
+    attributes.put("id", step.getId());
+    if(step.getMetadata() != null)
+      attributes.putAll(step.getMetadata());
+
+    Collection<String> dependsOn = dagStep.getPredecessorIds(step);
+    if(!dependsOn.isEmpty())
+    {
+      StringBuilder sb = new StringBuilder();
+      for(String id : dependsOn)
+      {
+        if(sb.length() > 0)
+          sb.append(',');
+        sb.append(id);
+      }
+      attributes.put("dependsOn", sb.toString());
+    }
+
+    return attributes;
   }
 
   @Override
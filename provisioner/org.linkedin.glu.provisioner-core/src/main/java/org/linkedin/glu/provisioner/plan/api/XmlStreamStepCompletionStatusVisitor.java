@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2013 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package org.linkedin.glu.provisioner.plan.api;
+
+import org.linkedin.util.lang.LangUtils;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.util.Map;
+
+/**
+ * Same as {@link XmlStepCompletionStatusVisitor} but the xml is written (StAX) as the statuses
+ * are visited instead of being built in memory.
+ *
+ * @author yan@pongasoft.com
+ */
+public class XmlStreamStepCompletionStatusVisitor<T> implements IStepCompletionStatusVisitor<T>
+{
+  private final XMLStreamWriter _xml;
+  private final String _tagName;
+  private final Map<String, Object> _attributes;
+  private final Throwable _throwable;
+
+  /**
+   * Constructor
+   */
+  public XmlStreamStepCompletionStatusVisitor(XMLStreamWriter xml)
+  {
+    _xml = xml;
+    _tagName = null;
+    _attributes = null;
+    _throwable = null;
+  }
+
+  /**
+   * Constructor
+   */
+  public XmlStreamStepCompletionStatusVisitor(XMLStreamWriter xml,
+                                              String tagName,
+                                              IStepCompletionStatus<T> status)
+  {
+    _xml = xml;
+    _tagName = tagName;
+    _attributes = XmlStepCompletionStatusVisitor.computeAttributes(status);
+    _throwable = status.getThrowable();
+  }
+
+  @Override
+  public void startVisit()
+  {
+    if(_tagName != null)
+    {
+      XmlStreamStepVisitor.writeStartElement(_xml, _tagName, _attributes);
+      writeException(_throwable);
+    }
+  }
+
+  @Override
+  public void visitLeafStepStatus(IStepCompletionStatus<T> status)
+  {
+    Map<String, Object> attributes = XmlStepCompletionStatusVisitor.computeAttributes(status);
+    Throwable th = status.getThrowable();
+
+    if(th != null)
+    {
+      XmlStreamStepVisitor.writeStartElement(_xml, "leaf", attributes);
+      writeException(th);
+      XmlStreamStepVisitor.writeEndElement(_xml);
+    }
+    else
+    {
+      XmlStreamStepVisitor.writeEmptyElement(_xml, "leaf", attributes);
+    }
+  }
+
+  @Override
+  public IStepCompletionStatusVisitor<T> visitSequentialStepStatus(IStepCompletionStatus<T> status)
+  {
+    return new XmlStreamStepCompletionStatusVisitor<T>(_xml, "sequential", status);
+  }
+
+  @Override
+  public IStepCompletionStatusVisitor<T> visitParallelStepStatus(IStepCompletionStatus<T> status)
+  {
+    return new XmlStreamStepCompletionStatusVisitor<T>(_xml, "parallel", status);
+  }
+
+  @Override
+  public IStepCompletionStatusVisitor<T> visitDagStepStatus(IStepCompletionStatus<T> status)
+  {
+    return new XmlStreamStepCompletionStatusVisitor<T>(_xml, "dag", status);
+  }
+
+  @Override
+  public void endVisit()
+  {
+    if(_tagName != null)
+    {
+      XmlStreamStepVisitor.writeEndElement(_xml);
+    }
+  }
+
+  private void writeException(Throwable th)
+  {
+    if(th == null)
+      return;
+
+    try
+    {
+      _xml.writeStartElement("exception");
+      if(th.getMessage() != null)
+        _xml.writeAttribute("message", th.getMessage());
+      _xml.writeCharacters(LangUtils.getStackTrace(th));
+      _xml.writeEndElement();
+    }
+    catch(XMLStreamException e)
+    {
+      throw new RuntimeException(e);
+    }
+  }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2013 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package org.linkedin.glu.provisioner.plan.api;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Map;
+
+/**
+ * Same as {@link XmlStepVisitor} but the xml is written (StAX) as the steps are visited instead of
+ * being built in memory, so the memory used does not depend on the size of the plan.
+ *
+ * @author yan@pongasoft.com
+ */
+public class XmlStreamStepVisitor<T> implements IStepVisitor<T>
+{
+  private static final XMLOutputFactory XML_OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+
+  private final XMLStreamWriter _xml;
+  private final String _tagName;
+  private final Map<String, Object> _metadata;
+  private final DagStep<T> _dagStep;
+
+  /**
+   * Constructor
+   */
+  public XmlStreamStepVisitor(XMLStreamWriter xml)
+  {
+    this(xml, null, null);
+  }
+
+  /**
+   * Constructor
+   */
+  public XmlStreamStepVisitor(XMLStreamWriter xml, String tagName, Map<String, Object> metadata)
+  {
+    this(xml, tagName, metadata, null);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param dagStep the dag being visited when visiting its children (<code>null</code> otherwise)
+   */
+  public XmlStreamStepVisitor(XMLStreamWriter xml,
+                              String tagName,
+                              Map<String, Object> metadata,
+                              DagStep<T> dagStep)
+  {
+    _xml = xml;
+    _tagName = tagName;
+    _metadata = metadata;
+    _dagStep = dagStep;
+  }
+
+  @Override
+  public void startVisit()
+  {
+    if(_tagName != null)
+    {
+      writeStartElement(_xml, _tagName, _metadata);
+    }
+  }
+
+  @Override
+  public void visitLeafStep(LeafStep<T> step)
+  {
+    writeEmptyElement(_xml, "leaf", XmlStepVisitor.getAttributes(_dagStep, step));
+  }
+
+  @Override
+  public IStepVisitor<T> visitSequentialStep(SequentialStep<T> step)
+  {
+    return new XmlStreamStepVisitor<T>(_xml,
+                                       "sequential",
+                                       XmlStepVisitor.getAttributes(_dagStep, step));
+  }
+
+  @Override
+  public IStepVisitor<T> visitParallelStep(ParallelStep<T> step)
+  {
+    return new XmlStreamStepVisitor<T>(_xml,
+                                       "parallel",
+                                       XmlStepVisitor.getAttributes(_dagStep, step));
+  }
+
+  @Override
+  public IStepVisitor<T> visitDagStep(DagStep<T> step)
+  {
+    return new XmlStreamStepVisitor<T>(_xml,
+                                       "dag",
+                                       XmlStepVisitor.getAttributes(_dagStep, step),
+                                       step);
+  }
+
+  @Override
+  public void endVisit()
+  {
+    if(_tagName != null)
+    {
+      writeEndElement(_xml);
+    }
+  }
+
+  public XMLStreamWriter getXml()
+  {
+    return _xml;
+  }
+
+  /**
+   * @return a (buffered) writer which writes utf-8 to the stream (call <code>flush</code> when
+   *         done)
+   */
+  public static XMLStreamWriter createXMLStreamWriter(OutputStream out) throws IOException
+  {
+    try
+    {
+      Writer writer = new BufferedWriter(new OutputStreamWriter(out, "UTF-8"));
+      return XML_OUTPUT_FACTORY.createXMLStreamWriter(writer);
+    }
+    catch(XMLStreamException e)
+    {
+      throw new IOException(e);
+    }
+  }
+
+  public static void writeStartElement(XMLStreamWriter xml,
+                                       String tagName,
+                                       Map<String, Object> attributes)
+  {
+    try
+    {
+      xml.writeStartElement(tagName);
+      writeAttributes(xml, attributes);
+    }
+    catch(XMLStreamException e)
+    {
+      throw new RuntimeException(e);
+    }
+  }
+
+  public static void writeEmptyElement(XMLStreamWriter xml,
+                                       String tagName,
+                                       Map<String, Object> attributes)
+  {
+    try
+    {
+      xml.writeEmptyElement(tagName);
+      writeAttributes(xml, attributes);
+    }
+    catch(XMLStreamException e)
+    {
+      throw new RuntimeException(e);
+    }
+  }
+
+  public static void writeEndElement(XMLStreamWriter xml)
+  {
+    try
+    {
+      xml.writeEndElement();
+    }
+    catch(XMLStreamException e)
+    {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Same as <code>XMLIndent</code>: <code>null</code> values are skipped
+   */
+  private static void writeAttributes(XMLStreamWriter xml, Map<String, Object> attributes)
+    throws XMLStreamException
+  {
+    if(attributes == null)
+      return;
+
+    for(Map.Entry<String, Object> entry : attributes.entrySet())
+    {
+      if(entry.getValue() != null)
+        xml.writeAttribute(entry.getKey(), entry.getValue().toString());
+    }
+  }
+}
@@ -21,13 +21,21 @@ import org.slf4j.LoggerFactory;
 import org.linkedin.glu.provisioner.plan.api.IStep;
 import org.linkedin.glu.provisioner.plan.api.IStepCompletionStatus;
 import org.linkedin.util.clock.Timespan;
-import org.linkedin.util.concurrent.ConcurrentUtils;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
+ * Note that the state of the executors is protected by a {@link ReentrantLock} (and not by
+ * <code>synchronized</code>) so that a thread waiting on an executor does not pin its carrier
+ * thread when steps are executed on virtual threads.
+ *
  * @author ypujante@linkedin.com
  */
 public abstract class AbstractStepExecutor<T> implements IStepExecutor<T>
@@ -41,6 +49,10 @@ public abstract class AbstractStepExecutor<T> implements IStepExecutor<T>
   private Future<Void> _future;
   private volatile IStepCompletionStatus<T> _completionStatus;
   private long _startTime = 0;
+  private Collection<IStepCompletionListener<T>> _completionListeners = null;
+
+  private final ReentrantLock _lock = new ReentrantLock();
+  private final Condition _stateChanged = _lock.newCondition();
 
   public boolean _paused = false;
   public boolean _cancelled = false;
@@ -68,6 +80,28 @@ public abstract class AbstractStepExecutor<T> implements IStepExecutor<T>
     return _context;
   }
 
+  /**
+   * Acquires the lock protecting the state of this executor (must be followed by
+   * {@link #unlock()} in a <code>finally</code> block)
+   */
+  protected void lock()
+  {
+    _lock.lock();
+  }
+
+  protected void unlock()
+  {
+    _lock.unlock();
+  }
+
+  /**
+   * Wakes up the threads waiting for a state change (must hold the lock)
+   */
+  protected void signalStateChanged()
+  {
+    _stateChanged.signalAll();
+  }
+
   /**
    * @return <code>true</code> if the execution is completed (or aborted).
    */
@@ -84,10 +118,14 @@ public abstract class AbstractStepExecutor<T> implements IStepExecutor<T>
    *                              otherwise, in-progress steps are allowed to complete
    */
   @Override
-  public synchronized void cancel(boolean mayInterruptIfRunning)
+  public void cancel(boolean mayInterruptIfRunning)
   {
-    if(!_cancelled)
+    lock();
+    try
     {
+      if(_cancelled)
+        return;
+
       _cancelled = true;
 
       if(_future == null)
@@ -117,8 +155,12 @@ public abstract class AbstractStepExecutor<T> implements IStepExecutor<T>
       }
 
       _context.onCancelled(getStep());
-      
-      notifyAll();
+
+      signalStateChanged();
+    }
+    finally
+    {
+      unlock();
     }
   }
 
@@ -134,10 +176,14 @@ public abstract class AbstractStepExecutor<T> implements IStepExecutor<T>
    * Executes the step
    */
   @Override
-  public synchronized void execute()
+  public void execute()
   {
-    if(_future == null && !_cancelled)
+    lock();
+    try
     {
+      if(_future != null || _cancelled)
+        return;
+
       if(log.isDebugEnabled())
         debug("execute (submitting)");
 
@@ -191,6 +237,10 @@ public abstract class AbstractStepExecutor<T> implements IStepExecutor<T>
 
       _context.onStepStart(this);
     }
+    finally
+    {
+      unlock();
+    }
   }
 
   protected abstract IStepCompletionStatus<T> doExecute() throws InterruptedException;
@@ -206,6 +256,11 @@ public abstract class AbstractStepExecutor<T> implements IStepExecutor<T>
     return _startTime;
   }
 
+  protected void setStartTime(long startTime)
+  {
+    _startTime = startTime;
+  }
+
   /**
    * @return how long the execution took (or has been taking so far if not completed)
    */
@@ -229,7 +284,10 @@ public abstract class AbstractStepExecutor<T> implements IStepExecutor<T>
 
   public void setCompletionStatus(IStepCompletionStatus<T> completionStatus)
   {
-    synchronized(this)
+    Collection<IStepCompletionListener<T>> listeners = null;
+
+    lock();
+    try
     {
       if(_completionStatus == null)
       {
@@ -238,7 +296,9 @@ public abstract class AbstractStepExecutor<T> implements IStepExecutor<T>
 
         _completionStatus = completionStatus;
         _context.onStepEnd(completionStatus);
-        notifyAll();
+        listeners = _completionListeners;
+        _completionListeners = null;
+        signalStateChanged();
       }
       else
       {
@@ -246,6 +306,61 @@ public abstract class AbstractStepExecutor<T> implements IStepExecutor<T>
           debug("setCompletionStatus " + completionStatus.getStatus() + " ignored: already set to " + _completionStatus.getStatus());
       }
     }
+    finally
+    {
+      unlock();
+    }
+
+    // listeners are called outside the lock
+    if(listeners != null)
+    {
+      for(IStepCompletionListener<T> listener : listeners)
+      {
+        notifyListener(listener, completionStatus);
+      }
+    }
+  }
+
+  /**
+   * Registers a listener to be called when this step completes. If the step is already
+   * completed, the listener is called right away (in the calling thread).
+   */
+  @Override
+  public void addCompletionListener(IStepCompletionListener<T> listener)
+  {
+    IStepCompletionStatus<T> completionStatus;
+
+    lock();
+    try
+    {
+      completionStatus = _completionStatus;
+      if(completionStatus == null)
+      {
+        if(_completionListeners == null)
+          _completionListeners = new ArrayList<IStepCompletionListener<T>>();
+        _completionListeners.add(listener);
+      }
+    }
+    finally
+    {
+      unlock();
+    }
+
+    if(completionStatus != null)
+      notifyListener(listener, completionStatus);
+  }
+
+  private void notifyListener(IStepCompletionListener<T> listener,
+                              IStepCompletionStatus<T> completionStatus)
+  {
+    try
+    {
+      listener.onStepCompleted(completionStatus);
+    }
+    catch(Throwable th)
+    {
+      log.warn("exception in completion listener (ignored)", th);
+    }
   }
 
   /**
@@ -257,13 +372,18 @@ public abstract class AbstractStepExecutor<T> implements IStepExecutor<T>
   @Override
   public IStepCompletionStatus<T> waitForCompletion() throws InterruptedException
   {
-    synchronized(this)
+    lock();
+    try
     {
       while(_completionStatus == null)
-        wait();
+        _stateChanged.await();
 
       return _completionStatus;
     }
+    finally
+    {
+      unlock();
+    }
   }
 
   /**
@@ -279,48 +399,97 @@ public abstract class AbstractStepExecutor<T> implements IStepExecutor<T>
   {
     long endTime = timeout.futureTimeMillis(_context.getClock());
 
-    synchronized(this)
+    lock();
+    try
     {
       while(_completionStatus == null)
       {
-        ConcurrentUtils.awaitUntil(_context.getClock(), this, endTime);
+        long waitTime = endTime - _context.currentTimeMillis();
+        if(waitTime <= 0)
+          throw new TimeoutException();
+        _stateChanged.await(waitTime, TimeUnit.MILLISECONDS);
       }
 
       return _completionStatus;
     }
+    finally
+    {
+      unlock();
+    }
   }
 
   @Override
-  public synchronized void pause()
+  public void pause()
   {
-    if(!_paused && !_cancelled)
+    lock();
+    try
     {
-      _paused = true;
-      _context.onPause(getStep());
+      if(!_paused && !_cancelled)
+      {
+        _paused = true;
+        _context.onPause(getStep());
+      }
+    }
+    finally
+    {
+      unlock();
     }
   }
 
   @Override
-  public synchronized void resume()
+  public void resume()
   {
-    if(_paused && !_cancelled)
+    lock();
+    try
     {
-      _paused = false;
-      notifyAll();
-      _context.onResume(getStep());
+      if(_paused && !_cancelled)
+      {
+        _paused = false;
+        signalStateChanged();
+        _context.onResume(getStep());
+      }
+    }
+    finally
+    {
+      unlock();
     }
   }
 
   @Override
-  public synchronized boolean isPaused()
+  public boolean isPaused()
   {
-    return _paused;
+    lock();
+    try
+    {
+      return _paused;
+    }
+    finally
+    {
+      unlock();
+    }
   }
 
+  /**
+   * By default a step is never queued
+   */
   @Override
-  public synchronized boolean isCancelled()
+  public boolean isQueued()
   {
-    return _cancelled;
+    return false;
+  }
+
+  @Override
+  public boolean isCancelled()
+  {
+    lock();
+    try
+    {
+      return _cancelled;
+    }
+    finally
+    {
+      unlock();
+    }
   }
 
   /**
@@ -329,14 +498,22 @@ public abstract class AbstractStepExecutor<T> implements IStepExecutor<T>
    * @return <code>true</code> if ok to continue... <code>false</code> if aborted.
    * @throws InterruptedException
    */
-  public synchronized boolean waitForResume() throws InterruptedException
+  public boolean waitForResume() throws InterruptedException
   {
-    while(_paused && !_cancelled)
+    lock();
+    try
     {
-      wait();
-    }
+      while(_paused && !_cancelled)
+      {
+        _stateChanged.await();
+      }
 
-    return !_cancelled;
+      return !_cancelled;
+    }
+    finally
+    {
+      unlock();
+    }
   }
 
   protected void debug(String message)
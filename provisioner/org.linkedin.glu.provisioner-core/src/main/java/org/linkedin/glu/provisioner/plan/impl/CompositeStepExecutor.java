@@ -46,23 +46,31 @@ public abstract class CompositeStepExecutor<T> extends AbstractStepExecutor<T>
     return _compositeStep;
   }
 
-  protected synchronized IStepExecutor<T> createChildExecutor(IStep<T> childStep)
+  protected IStepExecutor<T> createChildExecutor(IStep<T> childStep)
   {
-    IStepExecutor<T> executor = _childrenExecutors.get(childStep);
-    if(executor == null)
+    lock();
+    try
     {
-      executor = getContext().createExecutor(childStep);
+      IStepExecutor<T> executor = _childrenExecutors.get(childStep);
+      if(executor == null)
+      {
+        executor = getContext().createExecutor(childStep);
 
-      if(isPaused())
-        executor.pause();
+        if(isPaused())
+          executor.pause();
 
-      if(isCancelled())
-        executor.cancel(true);
+        if(isCancelled())
+          executor.cancel(true);
       
-      _childrenExecutors.put(childStep, executor);
-    }
+        _childrenExecutors.put(childStep, executor);
+      }
 
-    return executor;
+      return executor;
+    }
+    finally
+    {
+      unlock();
+    }
   }
 
   protected Map<IStep<T>, IStepExecutor<T>> getChildrenExecutors()
@@ -100,22 +108,38 @@ public abstract class CompositeStepExecutor<T> extends AbstractStepExecutor<T>
   }
 
   @Override
-  public synchronized void pause()
+  public void pause()
   {
-    super.pause();
-    for(IStepExecutor<T> executor : _childrenExecutors.values())
+    lock();
+    try
     {
-      executor.pause();
+      super.pause();
+      for(IStepExecutor<T> executor : _childrenExecutors.values())
+      {
+        executor.pause();
+      }
+    }
+    finally
+    {
+      unlock();
     }
   }
 
   @Override
-  public synchronized void resume()
+  public void resume()
   {
-    super.resume();
-    for(IStepExecutor<T> executor : _childrenExecutors.values())
+    lock();
+    try
+    {
+      super.resume();
+      for(IStepExecutor<T> executor : _childrenExecutors.values())
+      {
+        executor.resume();
+      }
+    }
+    finally
     {
-      executor.resume();
+      unlock();
     }
   }
 }
@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2013 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.linkedin.glu.provisioner.plan.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.linkedin.glu.provisioner.plan.api.CompositeStepCompletionStatus;
+import org.linkedin.glu.provisioner.plan.api.DagStep;
+import org.linkedin.glu.provisioner.plan.api.IStep;
+import org.linkedin.glu.provisioner.plan.api.IStepCompletionStatus;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Executes each child of the dag as soon as all its predecessors have completed. When a child
+ * does not complete successfully, all the children depending on it (directly or not) are
+ * skipped, the other ones are still executed.
+ *
+ * @author yan@pongasoft.com
+ */
+public class DagStepExecutor<T> extends NonBlockingCompositeStepExecutor<T>
+{
+  public static final String MODULE = DagStepExecutor.class.getName();
+  public static final Logger log = LoggerFactory.getLogger(MODULE);
+
+  private final DagStep<T> _dagStep;
+
+  private final Map<IStep<T>, Integer> _remainingPredecessors =
+    new IdentityHashMap<IStep<T>, Integer>();
+  private final Map<IStep<T>, Collection<IStep<T>>> _successors =
+    new IdentityHashMap<IStep<T>, Collection<IStep<T>>>();
+  private final Set<IStep<T>> _stepsToSkip =
+    Collections.newSetFromMap(new IdentityHashMap<IStep<T>, Boolean>());
+  private int _remainingSteps;
+
+  /**
+   * Constructor
+   */
+  public DagStepExecutor(DagStep<T> step, StepExecutionContext<T> context)
+  {
+    super(step, context);
+    _dagStep = step;
+  }
+
+  @Override
+  protected void doStart()
+  {
+    Collection<IStep<T>> readySteps = new ArrayList<IStep<T>>();
+
+    lock();
+    try
+    {
+      for(IStep<T> step : _dagStep.getSteps())
+      {
+        Collection<IStep<T>> predecessors = _dagStep.getPredecessors(step);
+
+        if(predecessors.isEmpty())
+          readySteps.add(step);
+        else
+          _remainingPredecessors.put(step, predecessors.size());
+
+        for(IStep<T> predecessor : predecessors)
+        {
+          Collection<IStep<T>> successors = _successors.get(predecessor);
+          if(successors == null)
+          {
+            successors = new ArrayList<IStep<T>>();
+            _successors.put(predecessor, successors);
+          }
+          successors.add(step);
+        }
+      }
+
+      _remainingSteps = _dagStep.getSteps().size();
+    }
+    finally
+    {
+      unlock();
+    }
+
+    if(_dagStep.getSteps().isEmpty())
+    {
+      setCompletionStatus(computeCompletionStatus());
+      return;
+    }
+
+    for(IStep<T> step : readySteps)
+    {
+      if(log.isDebugEnabled())
+        debug("executing step " + step.getId());
+
+      executeChild(createChildExecutor(step));
+    }
+  }
+
+  /**
+   * Releases the successors of the completed step. Skipped successors are processed in a loop
+   * (instead of recursively) as a failure can cascade through a long chain of steps.
+   */
+  @Override
+  protected void doChildCompleted(IStepCompletionStatus<T> childCompletionStatus)
+  {
+    Deque<IStepCompletionStatus<T>> completedSteps = new ArrayDeque<IStepCompletionStatus<T>>();
+    completedSteps.add(childCompletionStatus);
+
+    Collection<IStepExecutor<T>> readyExecutors = new ArrayList<IStepExecutor<T>>();
+    boolean completed;
+
+    lock();
+    try
+    {
+      while(!completedSteps.isEmpty())
+      {
+        IStepCompletionStatus<T> completionStatus = completedSteps.removeFirst();
+        IStep<T> step = completionStatus.getStep();
+
+        _remainingSteps--;
+
+        boolean skipSuccessors =
+          completionStatus.getStatus() != IStepCompletionStatus.Status.COMPLETED;
+
+        if(skipSuccessors && log.isDebugEnabled())
+          debug("detected " + completionStatus.getStatus() + " in step " + step.getId());
+
+        Collection<IStep<T>> successors = _successors.get(step);
+        if(successors == null)
+          continue;
+
+        for(IStep<T> successor : successors)
+        {
+          if(skipSuccessors)
+            _stepsToSkip.add(successor);
+
+          int remainingPredecessors = _remainingPredecessors.get(successor) - 1;
+          _remainingPredecessors.put(successor, remainingPredecessors);
+
+          if(remainingPredecessors == 0)
+          {
+            IStepExecutor<T> executor = createChildExecutor(successor);
+
+            if(_stepsToSkip.contains(successor))
+            {
+              if(log.isDebugEnabled())
+                debug("canceling step " + successor.getId());
+
+              executor.cancel(true);
+              completedSteps.add(executor.getCompletionStatus());
+            }
+            else
+            {
+              if(log.isDebugEnabled())
+                debug("executing step " + successor.getId());
+
+              readyExecutors.add(executor);
+            }
+          }
+        }
+      }
+
+      completed = _remainingSteps == 0;
+    }
+    finally
+    {
+      unlock();
+    }
+
+    for(IStepExecutor<T> executor : readyExecutors)
+    {
+      executeChild(executor);
+    }
+
+    if(completed)
+      setCompletionStatus(computeCompletionStatus());
+  }
+
+  /**
+   * @return the status of the children in the order of the dag
+   */
+  @Override
+  protected IStepCompletionStatus<T> computeCompletionStatus()
+  {
+    lock();
+    try
+    {
+      Collection<IStepCompletionStatus<T>> status = new ArrayList<IStepCompletionStatus<T>>();
+
+      for(IStep<T> step : _dagStep.getSteps())
+      {
+        status.add(getChildrenExecutors().get(step).getCompletionStatus());
+      }
+
+      return new CompositeStepCompletionStatus<T>(getCompositeStep(), status);
+    }
+    finally
+    {
+      unlock();
+    }
+  }
+}
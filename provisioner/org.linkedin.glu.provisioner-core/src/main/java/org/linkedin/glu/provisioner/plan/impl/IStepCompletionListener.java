@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) 2013 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.linkedin.glu.provisioner.plan.impl;
+
+import org.linkedin.glu.provisioner.plan.api.IStepCompletionStatus;
+
+/**
+ * Callback invoked when a step executor completes (successfully or not).
+ *
+ * @author yan@pongasoft.com
+ */
+public interface IStepCompletionListener<T>
+{
+  /**
+   * Called exactly once per registration, after the completion status has been set (and
+   * reported to the progress tracker). Note that this method may be called from any thread
+   * (including the one registering the listener if the step is already completed) and should
+   * not block.
+   */
+  void onStepCompleted(IStepCompletionStatus<T> completionStatus);
+}
@@ -26,4 +26,9 @@ public interface IStepExecutor<T> extends IStepExecution<T>
   /**
    * Executes the step */
   void execute();
+
+  /**
+   * Registers a listener to be called when this step completes. If the step is already
+   * completed, the listener is called right away (in the calling thread). */
+  void addCompletionListener(IStepCompletionListener<T> listener);
 }
\ No newline at end of file
@@ -0,0 +1,561 @@
+/*
+ * Copyright (c) 2013 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.linkedin.glu.provisioner.plan.impl;
+
+import org.linkedin.glu.provisioner.plan.api.ILeafStepPartitioner;
+import org.linkedin.glu.provisioner.plan.api.LeafStep;
+import org.linkedin.util.annotations.Initializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Limits how many leaf steps execute at the same time: globally and/or per partition (for
+ * example per agent or per kind of action). Leaf steps which cannot be admitted right away are
+ * queued and admitted in the order in which they were queued as soon as all the limits that apply
+ * to them allow it (a step blocked by the limit of its own partition does not prevent the steps
+ * behind it from being admitted). This class is thread safe and is meant to be shared by all
+ * the plans executed by the same plan executor.
+ *
+ * The waiting leaf steps blocked by the limit of a partition are queued per partition so that
+ * releasing a permit only looks at the leaf steps waiting for the partitions it frees (and at the
+ * ones only waiting for the global limit), never at the whole queue.
+ *
+ * @author yan@pongasoft.com
+ */
+public class LeafStepConcurrencyLimiter<T>
+{
+  public static final String MODULE = LeafStepConcurrencyLimiter.class.getName();
+  public static final Logger log = LoggerFactory.getLogger(MODULE);
+
+  /**
+   * A limit which applies to each partition computed by a partitioner.
+   */
+  public static class PartitionLimit<T>
+  {
+    private ILeafStepPartitioner<T> _partitioner;
+    private int _maxPerPartition = 0;
+    private Map<Object, Integer> _maxByPartition = new HashMap<Object, Integer>();
+
+    /**
+     * Constructor
+     */
+    public PartitionLimit(ILeafStepPartitioner<T> partitioner, int maxPerPartition)
+    {
+      _partitioner = partitioner;
+      _maxPerPartition = maxPerPartition;
+    }
+
+    /**
+     * For dependency injection
+     */
+    public PartitionLimit()
+    {
+    }
+
+    public ILeafStepPartitioner<T> getPartitioner()
+    {
+      return _partitioner;
+    }
+
+    @Initializer(required = true)
+    public void setPartitioner(ILeafStepPartitioner<T> partitioner)
+    {
+      _partitioner = partitioner;
+    }
+
+    public int getMaxPerPartition()
+    {
+      return _maxPerPartition;
+    }
+
+    /**
+     * @param maxPerPartition limit for the partitions not listed in
+     *                        {@link #setMaxByPartition(Map)} (<code>&lt;= 0</code> means unlimited)
+     */
+    @Initializer
+    public void setMaxPerPartition(int maxPerPartition)
+    {
+      _maxPerPartition = maxPerPartition;
+    }
+
+    public Map<Object, Integer> getMaxByPartition()
+    {
+      return _maxByPartition;
+    }
+
+    /**
+     * @param maxByPartition limit for specific partitions (<code>&lt;= 0</code> means unlimited)
+     */
+    @Initializer
+    public void setMaxByPartition(Map<Object, Integer> maxByPartition)
+    {
+      _maxByPartition = maxByPartition;
+    }
+
+    /**
+     * @return the limit for the given partition (<code>&lt;= 0</code> means unlimited)
+     */
+    public int getMax(Object partitionKey)
+    {
+      Integer max = _maxByPartition == null ? null : _maxByPartition.get(partitionKey);
+      return max == null ? _maxPerPartition : max;
+    }
+  }
+
+  /**
+   * A request to execute a leaf step. Once granted, it must be released when the leaf step is
+   * done. Releasing a request which has not been granted yet removes it from the queue.
+   */
+  public class Permit
+  {
+    private final LeafStep<T> _leafStep;
+    private final Object[] _partitionKeys;
+    private final Runnable _onGranted;
+    private final long _sequence;
+    private boolean _granted = false;
+    private boolean _released = false;
+
+    // the queue in which the permit is waiting (and the partition limit it is waiting for)
+    private TreeSet<Permit> _queue = null;
+    private int _blockingPartition = -1;
+
+    private Permit(LeafStep<T> leafStep, Object[] partitionKeys, Runnable onGranted, long sequence)
+    {
+      _leafStep = leafStep;
+      _partitionKeys = partitionKeys;
+      _onGranted = onGranted;
+      _sequence = sequence;
+    }
+
+    public LeafStep<T> getLeafStep()
+    {
+      return _leafStep;
+    }
+
+    public boolean isGranted()
+    {
+      synchronized(LeafStepConcurrencyLimiter.this)
+      {
+        return _granted;
+      }
+    }
+
+    /**
+     * Releases this permit (can be called several times)
+     */
+    public void release()
+    {
+      LeafStepConcurrencyLimiter.this.release(this);
+    }
+  }
+
+  private int _maxConcurrentLeafSteps = 0;
+  private List<PartitionLimit<T>> _partitionLimits = new ArrayList<PartitionLimit<T>>();
+
+  // permits are granted in the order in which they were requested
+  private final Comparator<Permit> _permitOrder = new Comparator<Permit>()
+  {
+    @Override
+    public int compare(Permit p1, Permit p2)
+    {
+      return p1._sequence < p2._sequence ? -1 : (p1._sequence == p2._sequence ? 0 : 1);
+    }
+  };
+
+  // permits not blocked by the limit of their partitions (only by the global limit)
+  private final TreeSet<Permit> _ready = new TreeSet<Permit>(_permitOrder);
+  private int _queuedCount = 0;
+  private long _nextSequence = 0;
+  private int _runningCount = 0;
+  private List<Map<Object, Integer>> _runningCountByPartition = null;
+  private List<Map<Object, Integer>> _readyCountByPartition = null;
+  // permits blocked by the limit of a partition (per partition)
+  private List<Map<Object, TreeSet<Permit>>> _blockedByPartition = null;
+
+  /**
+   * Constructor
+   */
+  public LeafStepConcurrencyLimiter()
+  {
+  }
+
+  /**
+   * Constructor
+   */
+  public LeafStepConcurrencyLimiter(int maxConcurrentLeafSteps)
+  {
+    _maxConcurrentLeafSteps = maxConcurrentLeafSteps;
+  }
+
+  public synchronized int getMaxConcurrentLeafSteps()
+  {
+    return _maxConcurrentLeafSteps;
+  }
+
+  /**
+   * @param maxConcurrentLeafSteps <code>&lt;= 0</code> means unlimited
+   */
+  @Initializer
+  public synchronized void setMaxConcurrentLeafSteps(int maxConcurrentLeafSteps)
+  {
+    _maxConcurrentLeafSteps = maxConcurrentLeafSteps;
+  }
+
+  public synchronized List<PartitionLimit<T>> getPartitionLimits()
+  {
+    return new ArrayList<PartitionLimit<T>>(_partitionLimits);
+  }
+
+  @Initializer
+  public synchronized void setPartitionLimits(List<PartitionLimit<T>> partitionLimits)
+  {
+    if(_runningCountByPartition != null)
+      throw new IllegalStateException("limiter already in use");
+
+    _partitionLimits = new ArrayList<PartitionLimit<T>>(partitionLimits);
+  }
+
+  public void addPartitionLimit(ILeafStepPartitioner<T> partitioner, int maxPerPartition)
+  {
+    addPartitionLimit(new PartitionLimit<T>(partitioner, maxPerPartition));
+  }
+
+  public synchronized void addPartitionLimit(PartitionLimit<T> partitionLimit)
+  {
+    if(_runningCountByPartition != null)
+      throw new IllegalStateException("limiter already in use");
+
+    _partitionLimits.add(partitionLimit);
+  }
+
+  /**
+   * @return <code>true</code> if there is at least one limit configured
+   */
+  public synchronized boolean isLimiting()
+  {
+    return _maxConcurrentLeafSteps > 0 || !_partitionLimits.isEmpty();
+  }
+
+  /**
+   * @return the number of leaf steps currently admitted
+   */
+  public synchronized int getRunningCount()
+  {
+    return _runningCount;
+  }
+
+  /**
+   * @return the number of leaf steps currently waiting to be admitted
+   */
+  public synchronized int getQueuedCount()
+  {
+    return _queuedCount;
+  }
+
+  /**
+   * Requests the permission to execute the leaf step. If the permit is not granted right away
+   * (check {@link Permit#isGranted()}), <code>onGranted</code> will be called (from the thread
+   * releasing another permit) when it gets granted.
+   */
+  public Permit acquire(LeafStep<T> leafStep, Runnable onGranted)
+  {
+    Permit permit;
+    Collection<Permit> granted;
+
+    synchronized(this)
+    {
+      if(_runningCountByPartition == null)
+      {
+        _runningCountByPartition = new ArrayList<Map<Object, Integer>>(_partitionLimits.size());
+        _readyCountByPartition = new ArrayList<Map<Object, Integer>>(_partitionLimits.size());
+        _blockedByPartition = new ArrayList<Map<Object, TreeSet<Permit>>>(_partitionLimits.size());
+        for(int i = 0; i < _partitionLimits.size(); i++)
+        {
+          _runningCountByPartition.add(new HashMap<Object, Integer>());
+          _readyCountByPartition.add(new HashMap<Object, Integer>());
+          _blockedByPartition.add(new HashMap<Object, TreeSet<Permit>>());
+        }
+      }
+
+      Object[] partitionKeys = new Object[_partitionLimits.size()];
+      for(int i = 0; i < partitionKeys.length; i++)
+        partitionKeys[i] = _partitionLimits.get(i).getPartitioner().computePartitionKey(leafStep);
+
+      permit = new Permit(leafStep, partitionKeys, onGranted, _nextSequence++);
+      enqueue(_ready, permit, -1);
+      _queuedCount++;
+
+      granted = grantPermits();
+
+      // the caller is notified by the return value, not the callback
+      granted.remove(permit);
+    }
+
+    notifyGranted(granted);
+
+    return permit;
+  }
+
+  private void release(Permit permit)
+  {
+    Collection<Permit> granted;
+
+    synchronized(this)
+    {
+      if(permit._released)
+        return;
+
+      permit._released = true;
+
+      if(!permit._granted)
+      {
+        boolean ready = permit._queue == _ready;
+        dequeue(permit);
+        _queuedCount--;
+        if(!ready)
+          return;
+        // the permit was holding a place in the partitions it belongs to
+        unblockPermits(permit, -1);
+      }
+      else
+      {
+        _runningCount--;
+        for(int i = 0; i < permit._partitionKeys.length; i++)
+        {
+          Object partitionKey = permit._partitionKeys[i];
+          if(partitionKey != null)
+            increment(_runningCountByPartition.get(i), partitionKey, -1);
+        }
+        unblockPermits(permit, -1);
+      }
+
+      granted = grantPermits();
+    }
+
+    notifyGranted(granted);
+  }
+
+  /**
+   * Grants the ready permits, in order, as long as the global limit allows it (the ones which
+   * turn out to be blocked by the limit of a partition are moved to the queue of the partition).
+   * Must be called while holding the lock.
+   *
+   * @return the permits which have been granted
+   */
+  private Collection<Permit> grantPermits()
+  {
+    Collection<Permit> granted = new ArrayList<Permit>();
+
+    while(!_ready.isEmpty())
+    {
+      if(_maxConcurrentLeafSteps > 0 && _runningCount >= _maxConcurrentLeafSteps)
+        break;
+
+      Permit permit = _ready.first();
+      dequeue(permit);
+
+      int blockingPartition = findBlockingPartition(permit);
+      if(blockingPartition == -1)
+      {
+        permit._granted = true;
+        _queuedCount--;
+        _runningCount++;
+        for(int i = 0; i < permit._partitionKeys.length; i++)
+        {
+          Object partitionKey = permit._partitionKeys[i];
+          if(partitionKey != null)
+            increment(_runningCountByPartition.get(i), partitionKey, 1);
+        }
+        granted.add(permit);
+      }
+      else
+      {
+        block(permit, blockingPartition);
+        // the permit is no longer holding a place in its other partitions
+        unblockPermits(permit, blockingPartition);
+      }
+    }
+
+    return granted;
+  }
+
+  /**
+   * Unblocks the permits waiting for the partitions of the permit (except
+   * <code>excludedPartitionLimitIndex</code>)
+   */
+  private void unblockPermits(Permit permit, int excludedPartitionLimitIndex)
+  {
+    for(int i = 0; i < permit._partitionKeys.length; i++)
+    {
+      Object partitionKey = permit._partitionKeys[i];
+      if(partitionKey != null && i != excludedPartitionLimitIndex)
+        unblockPermits(i, partitionKey);
+    }
+  }
+
+  /**
+   * Called when a place is freed in the partition: moves the permits waiting for this partition
+   * (in order and no more than the places which are not already held by ready permits) to the
+   * ready queue (or to the queue of another partition which still blocks them). Must be called
+   * while holding the lock.
+   */
+  private void unblockPermits(int partitionLimitIndex, Object partitionKey)
+  {
+    TreeSet<Permit> queue = _blockedByPartition.get(partitionLimitIndex).get(partitionKey);
+    if(queue == null)
+      return;
+
+    int available = computeAvailable(partitionLimitIndex, partitionKey);
+    if(available != Integer.MAX_VALUE)
+    {
+      Integer readyCount = _readyCountByPartition.get(partitionLimitIndex).get(partitionKey);
+      if(readyCount != null)
+        available -= readyCount;
+    }
+
+    while(available > 0 && !queue.isEmpty())
+    {
+      Permit permit = queue.first();
+      dequeue(permit);
+
+      int blockingPartition = findBlockingPartition(permit);
+      if(blockingPartition == -1)
+      {
+        enqueue(_ready, permit, -1);
+        available--;
+      }
+      else
+        block(permit, blockingPartition);
+    }
+  }
+
+  /**
+   * @return how many more permits the partition allows
+   */
+  private int computeAvailable(int partitionLimitIndex, Object partitionKey)
+  {
+    int max = _partitionLimits.get(partitionLimitIndex).getMax(partitionKey);
+    if(max <= 0)
+      return Integer.MAX_VALUE;
+
+    Integer count = _runningCountByPartition.get(partitionLimitIndex).get(partitionKey);
+    return count == null ? max : max - count;
+  }
+
+  /**
+   * @return the index of the (first) partition limit which prevents the permit from being granted
+   *         or <code>-1</code> if none
+   */
+  private int findBlockingPartition(Permit permit)
+  {
+    for(int i = 0; i < permit._partitionKeys.length; i++)
+    {
+      Object partitionKey = permit._partitionKeys[i];
+      if(partitionKey != null && computeAvailable(i, partitionKey) <= 0)
+        return i;
+    }
+
+    return -1;
+  }
+
+  private void block(Permit permit, int partitionLimitIndex)
+  {
+    Object partitionKey = permit._partitionKeys[partitionLimitIndex];
+    Map<Object, TreeSet<Permit>> blocked = _blockedByPartition.get(partitionLimitIndex);
+    TreeSet<Permit> queue = blocked.get(partitionKey);
+    if(queue == null)
+    {
+      queue = new TreeSet<Permit>(_permitOrder);
+      blocked.put(partitionKey, queue);
+    }
+    enqueue(queue, permit, partitionLimitIndex);
+  }
+
+  private void enqueue(TreeSet<Permit> queue, Permit permit, int blockingPartition)
+  {
+    queue.add(permit);
+    permit._queue = queue;
+    permit._blockingPartition = blockingPartition;
+    if(queue == _ready)
+      updateReadyCounts(permit, 1);
+  }
+
+  private void dequeue(Permit permit)
+  {
+    TreeSet<Permit> queue = permit._queue;
+    if(queue == null)
+      return;
+
+    queue.remove(permit);
+
+    if(queue == _ready)
+      updateReadyCounts(permit, -1);
+
+    // no need to keep empty queues around
+    if(queue.isEmpty() && permit._blockingPartition != -1)
+      _blockedByPartition.get(permit._blockingPartition)
+        .remove(permit._partitionKeys[permit._blockingPartition]);
+
+    permit._queue = null;
+    permit._blockingPartition = -1;
+  }
+
+  private void updateReadyCounts(Permit permit, int delta)
+  {
+    for(int i = 0; i < permit._partitionKeys.length; i++)
+    {
+      Object partitionKey = permit._partitionKeys[i];
+      if(partitionKey != null)
+        increment(_readyCountByPartition.get(i), partitionKey, delta);
+    }
+  }
+
+  private static void increment(Map<Object, Integer> counts, Object partitionKey, int delta)
+  {
+    Integer count = counts.get(partitionKey);
+    int newCount = (count == null ? 0 : count) + delta;
+    if(newCount == 0)
+      counts.remove(partitionKey);
+    else
+      counts.put(partitionKey, newCount);
+  }
+
+  private void notifyGranted(Collection<Permit> granted)
+  {
+    for(Permit permit : granted)
+    {
+      try
+      {
+        permit._onGranted.run();
+      }
+      catch(Throwable th)
+      {
+        // the leaf step will never release the permit
+        log.warn("exception while starting leaf step (permit released)", th);
+        permit.release();
+      }
+    }
+  }
+}
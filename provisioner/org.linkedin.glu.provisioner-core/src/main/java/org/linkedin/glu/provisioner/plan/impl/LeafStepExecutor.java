@@ -33,6 +33,10 @@ public class LeafStepExecutor<T> extends AbstractStepExecutor<T> implements ISte
   public static final String MODULE = LeafStepExecutor.class.getName();
   public static final Logger log = LoggerFactory.getLogger(MODULE);
 
+  private LeafStepConcurrencyLimiter<T>.Permit _permit = null;
+  private boolean _queued = false;
+  private boolean _running = false;
+
   /**
    * Constructor
    */
@@ -41,13 +45,157 @@ public class LeafStepExecutor<T> extends AbstractStepExecutor<T> implements ISte
     super(step, context);
   }
 
+  /**
+   * When there is a concurrency limiter, the step is submitted only once the limiter grants it
+   * the permission to run (in the meantime it is queued).
+   */
+  @Override
+  public void execute()
+  {
+    LeafStepConcurrencyLimiter<T> limiter = getContext().getLeafStepConcurrencyLimiter();
+
+    if(limiter != null && limiter.isLimiting())
+    {
+      lock();
+      try
+      {
+        if(_permit != null || isCancelled())
+          return;
+
+        _permit = limiter.acquire((LeafStep<T>) getStep(), new Runnable()
+        {
+          @Override
+          public void run()
+          {
+            onPermitGranted();
+          }
+        });
+
+        if(!_permit.isGranted())
+        {
+          if(log.isDebugEnabled())
+            debug("execute (queued)");
+
+          _queued = true;
+          getContext().onStepQueued(this);
+          return;
+        }
+      }
+      finally
+      {
+        unlock();
+      }
+    }
+
+    super.execute();
+  }
+
+  private void onPermitGranted()
+  {
+    lock();
+    try
+    {
+      _queued = false;
+    }
+    finally
+    {
+      unlock();
+    }
+
+    try
+    {
+      // does nothing if the step has been cancelled in the meantime
+      super.execute();
+    }
+    catch(Throwable th)
+    {
+      // the step could not be submitted: failing it releases the permit (it is not running)
+      if(log.isDebugEnabled())
+        debug("exception while starting leaf step", th);
+      setCompletionStatus(createCompletionStatus(IStepCompletionStatus.Status.FAILED, th));
+    }
+  }
+
+  /**
+   * When the step completes without running (cancelled while queued or before starting, or
+   * failing to start), the permit is released (or removed from the queue) right away; otherwise
+   * it is released when the thread running the step is done (see {@link #doExecute()} and
+   * {@link #submit(Callable)}). In both cases, it happens <em>before</em> the completion is
+   * published so that the completion of the plan implies that all its permits are released.
+   */
+  @Override
+  public void setCompletionStatus(IStepCompletionStatus<T> completionStatus)
+  {
+    releasePermitIfNotRunning();
+    super.setCompletionStatus(completionStatus);
+  }
+
+  private void releasePermitIfNotRunning()
+  {
+    LeafStepConcurrencyLimiter<T>.Permit permit;
+
+    lock();
+    try
+    {
+      permit = _running ? null : _permit;
+    }
+    finally
+    {
+      unlock();
+    }
+
+    if(permit != null)
+      permit.release();
+  }
+
+  @Override
+  public boolean isQueued()
+  {
+    lock();
+    try
+    {
+      return _queued && !isCompleted();
+    }
+    finally
+    {
+      unlock();
+    }
+  }
+
   /**
    * Submits the job to the appropriate service executor.
    */
   @Override
-  public <V> Future<V> submit(Callable<V> callable)
+  public <V> Future<V> submit(final Callable<V> callable)
   {
-    return _context.getLeafStepExecutorService().submit(callable);
+    if(_permit == null)
+      return _context.getLeafStepExecutorService().submit(callable);
+
+    return _context.getLeafStepExecutorService().submit(new Callable<V>()
+    {
+      @Override
+      public V call() throws Exception
+      {
+        lock();
+        try
+        {
+          _running = true;
+        }
+        finally
+        {
+          unlock();
+        }
+
+        try
+        {
+          return callable.call();
+        }
+        finally
+        {
+          _permit.release();
+        }
+      }
+    });
   }
 
   @Override
@@ -74,6 +222,19 @@ public class LeafStepExecutor<T> extends AbstractStepExecutor<T> implements ISte
       throwable = th;
       status = IStepCompletionStatus.Status.FAILED;
     }
+    finally
+    {
+      // the step is done: the permit is released when setting the completion status
+      lock();
+      try
+      {
+        _running = false;
+      }
+      finally
+      {
+        unlock();
+      }
+    }
 
     return createCompletionStatus(status, throwable);
   }
@@ -0,0 +1,280 @@
+/*
+ * Copyright (c) 2013 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.linkedin.glu.provisioner.plan.impl;
+
+import org.linkedin.glu.provisioner.plan.api.CompositeStep;
+import org.linkedin.glu.provisioner.plan.api.CompositeStepCompletionStatus;
+import org.linkedin.glu.provisioner.plan.api.IStepCompletionStatus;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * A composite step executor which does not use a thread of its own: it starts its children and
+ * gets notified (via {@link IStepCompletionListener}) when they complete. As a result, no thread
+ * is blocked waiting for children to complete (only leaves use a thread while running).
+ *
+ * @author yan@pongasoft.com
+ */
+public abstract class NonBlockingCompositeStepExecutor<T> extends CompositeStepExecutor<T>
+{
+  private final IStepCompletionListener<T> _childListener = new IStepCompletionListener<T>()
+  {
+    @Override
+    public void onStepCompleted(IStepCompletionStatus<T> completionStatus)
+    {
+      onChildCompleted(completionStatus);
+    }
+  };
+
+  private boolean _started = false;
+  private boolean _startPending = false;
+  private Collection<IStepExecutor<T>> _pendingExecutions = new ArrayList<IStepExecutor<T>>();
+
+  /**
+   * Constructor
+   */
+  protected NonBlockingCompositeStepExecutor(CompositeStep<T> step,
+                                             StepExecutionContext<T> context)
+  {
+    super(step, context);
+  }
+
+  protected IStepCompletionListener<T> getChildListener()
+  {
+    return _childListener;
+  }
+
+  /**
+   * Executes the step: since there is no thread to block, when paused the execution is simply
+   * delayed until {@link #resume()} is called.
+   */
+  @Override
+  public void execute()
+  {
+    boolean start = false;
+
+    lock();
+    try
+    {
+      if(!_started && !isCancelled())
+      {
+        _started = true;
+
+        if(isPaused())
+        {
+          if(log.isDebugEnabled())
+            debug("execute (waiting for resume)");
+          _startPending = true;
+        }
+        else
+          start = true;
+
+        _context.onStepStart(this);
+      }
+    }
+    finally
+    {
+      unlock();
+    }
+
+    if(start)
+      start();
+  }
+
+  private void start()
+  {
+    if(log.isDebugEnabled())
+      debug("execute (executing)");
+
+    try
+    {
+      setStartTime(_context.currentTimeMillis());
+      doStart();
+    }
+    catch(Throwable th)
+    {
+      if(log.isDebugEnabled())
+        debug("exception in execute (ignored)", th);
+      setCompletionStatus(createCompletionStatus(IStepCompletionStatus.Status.FAILED, th));
+    }
+  }
+
+  /**
+   * Starts the execution of the children: must not block!
+   */
+  protected abstract void doStart();
+
+  /**
+   * Called (from any thread) when a child (executed with {@link #executeChild(IStepExecutor)})
+   * completes. Note that it is not called anymore once this step is cancelled.
+   */
+  protected abstract void doChildCompleted(IStepCompletionStatus<T> childCompletionStatus);
+
+  private void onChildCompleted(IStepCompletionStatus<T> childCompletionStatus)
+  {
+    lock();
+    try
+    {
+      if(isCancelled() || isCompleted())
+        return;
+    }
+    finally
+    {
+      unlock();
+    }
+
+    doChildCompleted(childCompletionStatus);
+  }
+
+  /**
+   * Executes the child (which will notify this step when completed) unless this step is
+   * paused in which case the execution will happen on {@link #resume()}
+   */
+  protected void executeChild(IStepExecutor<T> childExecutor)
+  {
+    lock();
+    try
+    {
+      if(isPaused() && !isCancelled())
+      {
+        _pendingExecutions.add(childExecutor);
+        return;
+      }
+    }
+    finally
+    {
+      unlock();
+    }
+
+    childExecutor.addCompletionListener(_childListener);
+    childExecutor.execute();
+  }
+
+  /**
+   * @return the completion status computed from the children (which must all be completed)
+   */
+  protected IStepCompletionStatus<T> computeCompletionStatus()
+  {
+    lock();
+    try
+    {
+      Collection<IStepCompletionStatus<T>> status = new ArrayList<IStepCompletionStatus<T>>();
+
+      for(IStepExecutor<T> executor : getChildrenExecutors().values())
+      {
+        status.add(executor.getCompletionStatus());
+      }
+
+      return new CompositeStepCompletionStatus<T>(getCompositeStep(), status);
+    }
+    finally
+    {
+      unlock();
+    }
+  }
+
+  @Override
+  protected IStepCompletionStatus<T> doExecute() throws InterruptedException
+  {
+    throw new RuntimeException("not reached");
+  }
+
+  /**
+   * Cancels the step: all children are cancelled as well.
+   */
+  @Override
+  public void cancel(boolean mayInterruptIfRunning)
+  {
+    lock();
+    try
+    {
+      if(!_cancelled)
+      {
+        _cancelled = true;
+        _pendingExecutions.clear();
+
+        if(!_started)
+        {
+          if(log.isDebugEnabled())
+            debug("cancel (not started)");
+
+          setStartTime(_context.currentTimeMillis());
+          _context.onStepStart(this);
+          setCompletionStatus(doCancel(false));
+        }
+        else
+        {
+          if(!isCompleted())
+          {
+            if(log.isDebugEnabled())
+              debug("cancel (started)");
+
+            setCompletionStatus(doCancel(true));
+          }
+          else
+          {
+            if(log.isDebugEnabled())
+              debug("cancel (already completed)");
+          }
+        }
+
+        _context.onCancelled(getStep());
+
+        signalStateChanged();
+      }
+    }
+    finally
+    {
+      unlock();
+    }
+  }
+
+  @Override
+  public void resume()
+  {
+    super.resume();
+
+    boolean start;
+    Collection<IStepExecutor<T>> pendingExecutions;
+
+    lock();
+    try
+    {
+      if(isPaused() || isCancelled())
+        return;
+
+      start = _startPending;
+      _startPending = false;
+
+      pendingExecutions = _pendingExecutions;
+      _pendingExecutions = new ArrayList<IStepExecutor<T>>();
+    }
+    finally
+    {
+      unlock();
+    }
+
+    if(start)
+      start();
+
+    for(IStepExecutor<T> childExecutor : pendingExecutions)
+    {
+      executeChild(childExecutor);
+    }
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2013 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.linkedin.glu.provisioner.plan.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.linkedin.glu.provisioner.plan.api.IStep;
+import org.linkedin.glu.provisioner.plan.api.IStepCompletionStatus;
+import org.linkedin.glu.provisioner.plan.api.ParallelStep;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * Executes all the children at once and completes when the last one completes.
+ *
+ * @author yan@pongasoft.com
+ */
+public class NonBlockingParallelStepExecutor<T> extends NonBlockingCompositeStepExecutor<T>
+{
+  public static final String MODULE = NonBlockingParallelStepExecutor.class.getName();
+  public static final Logger log = LoggerFactory.getLogger(MODULE);
+
+  private int _remainingSteps;
+
+  /**
+   * Constructor
+   */
+  public NonBlockingParallelStepExecutor(ParallelStep<T> step, StepExecutionContext<T> context)
+  {
+    super(step, context);
+  }
+
+  @Override
+  protected void doStart()
+  {
+    Collection<IStepExecutor<T>> executors = new ArrayList<IStepExecutor<T>>();
+
+    for(IStep<T> step : getCompositeStep().getSteps())
+    {
+      executors.add(createChildExecutor(step));
+    }
+
+    lock();
+    try
+    {
+      _remainingSteps = executors.size();
+    }
+    finally
+    {
+      unlock();
+    }
+
+    if(executors.isEmpty())
+    {
+      setCompletionStatus(computeCompletionStatus());
+      return;
+    }
+
+    int i = 0;
+    for(IStepExecutor<T> executor : executors)
+    {
+      if(log.isDebugEnabled())
+        debug("executing step " + i);
+
+      executeChild(executor);
+      i++;
+    }
+  }
+
+  @Override
+  protected void doChildCompleted(IStepCompletionStatus<T> childCompletionStatus)
+  {
+    lock();
+    try
+    {
+      _remainingSteps--;
+
+      if(log.isDebugEnabled())
+        debug("step completed (" + _remainingSteps + " remaining)");
+
+      if(_remainingSteps > 0)
+        return;
+    }
+    finally
+    {
+      unlock();
+    }
+
+    setCompletionStatus(computeCompletionStatus());
+  }
+}
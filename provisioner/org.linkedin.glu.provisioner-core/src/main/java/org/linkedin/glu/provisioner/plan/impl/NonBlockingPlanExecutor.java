@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2013 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.linkedin.glu.provisioner.plan.impl;
+
+import org.linkedin.glu.provisioner.plan.api.ILeafStepExecutor;
+import org.linkedin.glu.provisioner.plan.api.IPlanExecutionProgressTracker;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Plan executor which does not block a thread per composite step (parallel or sequential): a
+ * composite step completes when its children complete (see
+ * {@link NonBlockingCompositeStepExecutor}). The only threads used are the ones executing the
+ * leaves, no matter how big or how deep the plan is.
+ *
+ * @author yan@pongasoft.com
+ */
+public class NonBlockingPlanExecutor<T> extends PlanExecutor<T>
+{
+  /**
+   * Constructor
+   */
+  public NonBlockingPlanExecutor(ExecutorService executorService,
+                                 ExecutorService leafExecutorService,
+                                 ILeafStepExecutor<T> leafStepExecutor)
+  {
+    super(executorService, leafExecutorService, leafStepExecutor);
+  }
+
+  /**
+   * Constructor
+   */
+  public NonBlockingPlanExecutor(ExecutorService executorService,
+                                 ILeafStepExecutor<T> leafStepExecutor)
+  {
+    super(executorService, leafStepExecutor);
+  }
+
+  /**
+   * For dependency injection
+   */
+  public NonBlockingPlanExecutor()
+  {
+  }
+
+  @Override
+  protected StepExecutionContext<T> createStepExecutionContext(IPlanExecutionProgressTracker<T> progressTracker)
+  {
+    return new NonBlockingStepExecutionContext<T>(getExecutorService(),
+                                                  getLeafExecutorService(),
+                                                  getLeafStepExecutor(),
+                                                  progressTracker,
+                                                  getClock(),
+                                                  getLeafStepConcurrencyLimiter(),
+                                                  getProgressDispatcher());
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2013 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.linkedin.glu.provisioner.plan.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.linkedin.glu.provisioner.plan.api.IStep;
+import org.linkedin.glu.provisioner.plan.api.IStepCompletionStatus;
+import org.linkedin.glu.provisioner.plan.api.SequentialStep;
+
+import java.util.Iterator;
+
+/**
+ * Executes the children one after the other: the next child is started when the previous one
+ * completes. As soon as one child does not complete successfully, the remaining ones are
+ * skipped.
+ *
+ * @author yan@pongasoft.com
+ */
+public class NonBlockingSequentialStepExecutor<T> extends NonBlockingCompositeStepExecutor<T>
+{
+  public static final String MODULE = NonBlockingSequentialStepExecutor.class.getName();
+  public static final Logger log = LoggerFactory.getLogger(MODULE);
+
+  private Iterator<IStep<T>> _steps;
+  private boolean _needToSkip = false;
+  private int _stepIndex = 0;
+
+  /**
+   * Constructor
+   */
+  public NonBlockingSequentialStepExecutor(SequentialStep<T> step,
+                                           StepExecutionContext<T> context)
+  {
+    super(step, context);
+  }
+
+  @Override
+  protected void doStart()
+  {
+    lock();
+    try
+    {
+      _steps = getCompositeStep().getSteps().iterator();
+    }
+    finally
+    {
+      unlock();
+    }
+
+    executeNextStep();
+  }
+
+  @Override
+  protected void doChildCompleted(IStepCompletionStatus<T> childCompletionStatus)
+  {
+    lock();
+    try
+    {
+      if(childCompletionStatus.getStatus() != IStepCompletionStatus.Status.COMPLETED)
+      {
+        if(log.isDebugEnabled())
+          debug("detected " + childCompletionStatus.getStatus() + " in step " + (_stepIndex - 1));
+        _needToSkip = true;
+      }
+    }
+    finally
+    {
+      unlock();
+    }
+
+    executeNextStep();
+  }
+
+  private void executeNextStep()
+  {
+    IStepExecutor<T> nextExecutor = null;
+
+    lock();
+    try
+    {
+      while(nextExecutor == null && _steps.hasNext())
+      {
+        IStepExecutor<T> stepExecutor = createChildExecutor(_steps.next());
+
+        if(_needToSkip)
+        {
+          if(log.isDebugEnabled())
+            debug("canceling step " + _stepIndex);
+
+          stepExecutor.cancel(true);
+        }
+        else
+        {
+          if(log.isDebugEnabled())
+            debug("executing step " + _stepIndex);
+
+          nextExecutor = stepExecutor;
+        }
+
+        _stepIndex++;
+      }
+    }
+    finally
+    {
+      unlock();
+    }
+
+    if(nextExecutor != null)
+      executeChild(nextExecutor);
+    else
+      setCompletionStatus(computeCompletionStatus());
+  }
+}
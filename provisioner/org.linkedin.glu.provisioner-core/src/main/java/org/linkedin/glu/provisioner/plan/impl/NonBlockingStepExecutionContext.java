@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2013 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.linkedin.glu.provisioner.plan.impl;
+
+import org.linkedin.glu.provisioner.plan.api.ILeafStepExecutor;
+import org.linkedin.glu.provisioner.plan.api.IPlanExecutionProgressTracker;
+import org.linkedin.glu.provisioner.plan.api.IStep;
+import org.linkedin.glu.provisioner.plan.api.IStepCompletionStatus;
+import org.linkedin.glu.provisioner.plan.api.ParallelStep;
+import org.linkedin.glu.provisioner.plan.api.SequentialStep;
+import org.linkedin.util.clock.Clock;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Context in which composite steps are executed with completion callbacks instead of blocking a
+ * thread: only the leaves (and the final {@link #onPlanEnd(IStepCompletionStatus)} notification)
+ * use a thread.
+ *
+ * @author yan@pongasoft.com
+ */
+public class NonBlockingStepExecutionContext<T> extends StepExecutionContext<T>
+{
+  /**
+   * Constructor
+   */
+  public NonBlockingStepExecutionContext(ExecutorService executorService,
+                                         ExecutorService leafStepExecutorService,
+                                         ILeafStepExecutor<T> leafStepExecutor,
+                                         IPlanExecutionProgressTracker<T> tracker,
+                                         Clock clock)
+  {
+    super(executorService, leafStepExecutorService, leafStepExecutor, tracker, clock);
+  }
+
+  /**
+   * Constructor
+   */
+  public NonBlockingStepExecutionContext(ExecutorService executorService,
+                                         ExecutorService leafStepExecutorService,
+                                         ILeafStepExecutor<T> leafStepExecutor,
+                                         IPlanExecutionProgressTracker<T> tracker,
+                                         Clock clock,
+                                         LeafStepConcurrencyLimiter<T> leafStepConcurrencyLimiter)
+  {
+    super(executorService,
+          leafStepExecutorService,
+          leafStepExecutor,
+          tracker,
+          clock,
+          leafStepConcurrencyLimiter);
+  }
+
+  /**
+   * Constructor
+   */
+  public NonBlockingStepExecutionContext(ExecutorService executorService,
+                                         ExecutorService leafStepExecutorService,
+                                         ILeafStepExecutor<T> leafStepExecutor,
+                                         IPlanExecutionProgressTracker<T> tracker,
+                                         Clock clock,
+                                         LeafStepConcurrencyLimiter<T> leafStepConcurrencyLimiter,
+                                         PlanExecutionProgressDispatcher progressDispatcher)
+  {
+    super(executorService,
+          leafStepExecutorService,
+          leafStepExecutor,
+          tracker,
+          clock,
+          leafStepConcurrencyLimiter,
+          progressDispatcher);
+  }
+
+  @Override
+  public IStepExecutor<T> createExecutor(IStep<T> step)
+  {
+    switch(step.getType())
+    {
+      case SEQUENTIAL:
+        return new NonBlockingSequentialStepExecutor<T>((SequentialStep<T>) step, this);
+
+      case PARALLEL:
+        return new NonBlockingParallelStepExecutor<T>((ParallelStep<T>) step, this);
+
+      default:
+        return super.createExecutor(step);
+    }
+  }
+
+  /**
+   * The plan end is notified when the root step completes (no thread waits for it).
+   */
+  @Override
+  protected void handlePlanEnd(final IStepExecutor<T> stepExecutor)
+  {
+    stepExecutor.addCompletionListener(new IStepCompletionListener<T>()
+    {
+      @Override
+      public void onStepCompleted(IStepCompletionStatus<T> completionStatus)
+      {
+        // onPlanEnd waits for the tracker to be done => do not use the caller thread (a leaf
+        // thread most likely)
+        getExecutorService().submit(new Callable<Void>()
+        {
+          @Override
+          public Void call() throws Exception
+          {
+            // the step is completed so waitForCompletion returns right away but it makes sure
+            // that the events generated while completing (like onCancelled) are sent first
+            onPlanEnd(stepExecutor.waitForCompletion());
+            return null;
+          }
+        });
+      }
+    });
+  }
+}
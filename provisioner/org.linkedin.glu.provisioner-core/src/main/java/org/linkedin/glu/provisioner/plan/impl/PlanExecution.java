@@ -22,9 +22,15 @@ import org.linkedin.glu.provisioner.plan.api.IStepExecution;
 import org.linkedin.glu.provisioner.plan.api.IStepCompletionStatus;
 import org.linkedin.glu.provisioner.plan.api.IStep;
 import org.linkedin.glu.provisioner.plan.api.XmlStepCompletionStatusVisitor;
+import org.linkedin.glu.provisioner.plan.api.XmlStreamStepCompletionStatusVisitor;
+import org.linkedin.glu.provisioner.plan.api.XmlStreamStepVisitor;
 import org.linkedin.util.clock.Timespan;
 import org.linkedin.util.xml.XMLIndent;
 
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.concurrent.TimeoutException;
 import java.util.Map;
 import java.util.LinkedHashMap;
@@ -118,6 +124,12 @@ public class PlanExecution<T> implements IPlanExecution<T>
     return _stepExecution.isPaused();
   }
 
+  @Override
+  public boolean isQueued()
+  {
+    return _stepExecution.isQueued();
+  }
+
   @Override
   public IStepCompletionStatus<T> waitForCompletion()
     throws InterruptedException
@@ -168,6 +180,48 @@ public class PlanExecution<T> implements IPlanExecution<T>
     }
   }
 
+  @Override
+  public void writeXml(Map<String, Object> context, OutputStream out) throws IOException
+  {
+    if(_stepExecution.isCompleted())
+    {
+      XMLStreamWriter xml = XmlStreamStepVisitor.createXMLStreamWriter(out);
+
+      Map<String, Object> attributes = new LinkedHashMap<String, Object>();
+      attributes.putAll(_plan.getMetadata());
+      if(context != null)
+      {
+        attributes.putAll(context);
+      }
+
+      try
+      {
+        xml.writeStartDocument("UTF-8", "1.0");
+        XmlStreamStepVisitor.writeStartElement(xml, "plan", attributes);
+        XmlStreamStepCompletionStatusVisitor<T> visitor =
+          new XmlStreamStepCompletionStatusVisitor<T>(xml);
+        _stepExecution.getCompletionStatus().acceptVisitor(visitor);
+        XmlStreamStepVisitor.writeEndElement(xml);
+        xml.writeEndDocument();
+        xml.flush();
+      }
+      catch(XMLStreamException e)
+      {
+        throw new IOException(e);
+      }
+      catch(RuntimeException e)
+      {
+        if(e.getCause() instanceof XMLStreamException)
+          throw new IOException(e.getCause());
+        throw e;
+      }
+    }
+    else
+    {
+      _plan.writeXml(context, out);
+    }
+  }
+
   @Override
   public String toString()
   {
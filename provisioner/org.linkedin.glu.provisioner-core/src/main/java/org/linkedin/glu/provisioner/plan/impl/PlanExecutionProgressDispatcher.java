@@ -0,0 +1,623 @@
+/*
+ * Copyright (c) 2013 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.linkedin.glu.provisioner.plan.impl;
+
+import org.linkedin.glu.provisioner.plan.api.IPlanExecution;
+import org.linkedin.glu.provisioner.plan.api.IPlanExecutionProgressTracker;
+import org.linkedin.glu.provisioner.plan.api.IStep;
+import org.linkedin.glu.provisioner.plan.api.IStepCompletionStatus;
+import org.linkedin.glu.provisioner.plan.api.IStepExecution;
+import org.linkedin.util.annotations.Initializer;
+import org.linkedin.util.clock.ClockUtils;
+import org.linkedin.util.clock.Timespan;
+import org.linkedin.util.lifecycle.Shutdownable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Delivers the progress events of all the plans being executed to their trackers, asynchronously
+ * (so as not to block the threads executing the plans) using a small pool of threads shared by
+ * all the plans. Each plan gets its own {@link Channel} which guarantees that the events of a
+ * given plan are delivered in order (and never concurrently). The events are queued in a lock
+ * free queue and a channel delivers its pending events in batches.
+ *
+ * <p>The total number of pending events is bounded: when the bound ({@link #setCapacity(int)})
+ * is reached, the {@link OverflowPolicy} decides what happens. With the (default)
+ * {@link OverflowPolicy#COALESCE} policy, the events of the steps which cannot be dropped use a
+ * reserve ({@link #setOverflowCapacity(int)}) and are dropped (and counted, see
+ * {@link #getDroppedCount()}) when the reserve is exhausted as well. The start/end events of the
+ * plans are always queued (there are at most 2 per plan being executed).
+ *
+ * @author yan@pongasoft.com
+ */
+public class PlanExecutionProgressDispatcher implements Shutdownable
+{
+  public static final String MODULE = PlanExecutionProgressDispatcher.class.getName();
+  public static final Logger log = LoggerFactory.getLogger(MODULE);
+
+  public static enum OverflowPolicy
+  {
+    /**
+     * the thread generating the event waits until there is room in the queue. Note that the
+     * events are generated by the step executors while holding their lock: a tracker which calls
+     * back into a step execution (while the queue is full) would deadlock, so this policy must
+     * only be used with trackers which do not.
+     */
+    BLOCK,
+
+    /**
+     * the events which only describe a transient state (queued, paused, resumed) are dropped
+     * (the next event for the step supersedes them) while the other events use the overflow
+     * reserve. When the reserve is exhausted, the step events are dropped as well (the final
+     * status of every step is still part of the plan end event) but the plan start/end events are
+     * always queued. The thread generating the event never waits. This is the default.
+     */
+    COALESCE
+  }
+
+  public static final int DEFAULT_CAPACITY = 10000;
+  public static final int DEFAULT_OVERFLOW_CAPACITY = 10000;
+  public static final int DEFAULT_BATCH_SIZE = 100;
+
+  /**
+   * The events of a plan are delivered by one thread at a time, so more than 1 thread is
+   * required for a slow tracker not to delay the events of all the other plans
+   */
+  public static final int DEFAULT_THREAD_COUNT = 4;
+
+  private static final AtomicInteger THREAD_COUNT = new AtomicInteger(0);
+
+  private static class DefaultInstanceHolder
+  {
+    private static final PlanExecutionProgressDispatcher INSTANCE =
+      new PlanExecutionProgressDispatcher();
+  }
+
+  /**
+   * @return a default dispatcher ({@link #DEFAULT_THREAD_COUNT} daemon threads) to use when none
+   * is provided
+   */
+  public static PlanExecutionProgressDispatcher instance()
+  {
+    return DefaultInstanceHolder.INSTANCE;
+  }
+
+  private ExecutorService _executorService;
+  private int _capacity = DEFAULT_CAPACITY;
+  private int _overflowCapacity = DEFAULT_OVERFLOW_CAPACITY;
+  private int _batchSize = DEFAULT_BATCH_SIZE;
+  private OverflowPolicy _overflowPolicy = OverflowPolicy.COALESCE;
+
+  private volatile Semaphore _permits = null;
+  private volatile Semaphore _overflowPermits = null;
+  private final AtomicInteger _droppedCount = new AtomicInteger(0);
+
+  /**
+   * Constructor: uses {@link #DEFAULT_THREAD_COUNT} (daemon) threads
+   */
+  public PlanExecutionProgressDispatcher()
+  {
+    this(DEFAULT_THREAD_COUNT);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param threadCount how many (daemon) threads to use for delivering the events
+   */
+  public PlanExecutionProgressDispatcher(int threadCount)
+  {
+    this(Executors.newFixedThreadPool(threadCount, new ThreadFactory()
+    {
+      @Override
+      public Thread newThread(Runnable runnable)
+      {
+        Thread thread = new Thread(runnable,
+                                   "glu-progress-dispatcher-" + THREAD_COUNT.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    }));
+  }
+
+  /**
+   * Constructor
+   */
+  public PlanExecutionProgressDispatcher(ExecutorService executorService)
+  {
+    _executorService = executorService;
+  }
+
+  public int getCapacity()
+  {
+    return _capacity;
+  }
+
+  /**
+   * @param capacity maximum number of pending events (across all plans)
+   */
+  @Initializer
+  public void setCapacity(int capacity)
+  {
+    if(_permits != null)
+      throw new IllegalStateException("dispatcher already in use");
+    _capacity = capacity;
+  }
+
+  public int getOverflowCapacity()
+  {
+    return _overflowCapacity;
+  }
+
+  /**
+   * @param overflowCapacity maximum number of pending events (across all plans) in excess of the
+   *                         capacity for the step events which cannot be coalesced (only used
+   *                         with the {@link OverflowPolicy#COALESCE} policy)
+   */
+  @Initializer
+  public void setOverflowCapacity(int overflowCapacity)
+  {
+    if(_permits != null)
+      throw new IllegalStateException("dispatcher already in use");
+    _overflowCapacity = overflowCapacity;
+  }
+
+  public int getBatchSize()
+  {
+    return _batchSize;
+  }
+
+  /**
+   * @param batchSize maximum number of events a channel delivers before letting the other
+   *                  channels deliver theirs
+   */
+  @Initializer
+  public void setBatchSize(int batchSize)
+  {
+    _batchSize = batchSize;
+  }
+
+  public OverflowPolicy getOverflowPolicy()
+  {
+    return _overflowPolicy;
+  }
+
+  @Initializer
+  public void setOverflowPolicy(OverflowPolicy overflowPolicy)
+  {
+    _overflowPolicy = overflowPolicy;
+  }
+
+  /**
+   * @return the number of events waiting to be delivered (across all plans)
+   */
+  public int getPendingCount()
+  {
+    Semaphore permits = _permits;
+    if(permits == null)
+      return 0;
+    return _capacity - permits.availablePermits() +
+           _overflowCapacity - _overflowPermits.availablePermits();
+  }
+
+  /**
+   * @return the number of (non transient) step events dropped because the overflow reserve was
+   *         exhausted
+   */
+  public int getDroppedCount()
+  {
+    return _droppedCount.get();
+  }
+
+  /**
+   * @return a new channel to deliver the events of one plan execution to the tracker
+   */
+  public <T> Channel<T> createChannel(IPlanExecutionProgressTracker<T> tracker)
+  {
+    if(_permits == null)
+    {
+      synchronized(this)
+      {
+        if(_permits == null)
+        {
+          _overflowPermits = new Semaphore(_overflowCapacity);
+          _permits = new Semaphore(_capacity);
+        }
+      }
+    }
+
+    return new Channel<T>(tracker);
+  }
+
+  @Override
+  public void shutdown()
+  {
+    _executorService.shutdown();
+  }
+
+  @Override
+  public void waitForShutdown() throws InterruptedException, IllegalStateException
+  {
+    if(!_executorService.isShutdown())
+      throw new IllegalStateException("call shutdown first");
+
+    _executorService.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public void waitForShutdown(Object timeout)
+    throws InterruptedException, IllegalStateException, TimeoutException
+  {
+    if(!_executorService.isShutdown())
+      throw new IllegalStateException("call shutdown first");
+
+    Timespan timespan = ClockUtils.toTimespan(timeout);
+    if(timespan == null)
+      _executorService.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    else
+    if(!_executorService.awaitTermination(timespan.getDurationInMilliseconds(),
+                                          TimeUnit.MILLISECONDS))
+      throw new TimeoutException();
+  }
+
+  /**
+   * An event to deliver (typed dispatch)
+   */
+  private static abstract class Event<T>
+  {
+    // the permit to release once delivered (null if queued without one)
+    Semaphore _permit = null;
+
+    abstract void deliver(IPlanExecutionProgressTracker<T> tracker);
+
+    /**
+     * @return <code>true</code> if the event can be dropped when coalescing
+     */
+    boolean isTransient()
+    {
+      return false;
+    }
+
+    /**
+     * @return <code>true</code> if the event is never dropped (plan start/end)
+     */
+    boolean isMandatory()
+    {
+      return false;
+    }
+  }
+
+  /**
+   * The tracker of one plan execution. All the events are queued and delivered in order by the
+   * dispatcher.
+   */
+  public class Channel<T> implements IPlanExecutionProgressTracker<T>
+  {
+    private final IPlanExecutionProgressTracker<T> _tracker;
+    private final ConcurrentLinkedQueue<Event<T>> _events = new ConcurrentLinkedQueue<Event<T>>();
+    private final AtomicInteger _pendingCount = new AtomicInteger(0);
+    private final AtomicBoolean _scheduled = new AtomicBoolean(false);
+    private volatile boolean _closed = false;
+
+    private final Runnable _deliverer = new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        deliverEvents();
+      }
+    };
+
+    private Channel(IPlanExecutionProgressTracker<T> tracker)
+    {
+      _tracker = tracker;
+    }
+
+    public IPlanExecutionProgressTracker<T> getTracker()
+    {
+      return _tracker;
+    }
+
+    @Override
+    public void onPlanStart(final IPlanExecution<T> planExecution)
+    {
+      enqueue(new Event<T>()
+      {
+        @Override
+        void deliver(IPlanExecutionProgressTracker<T> tracker)
+        {
+          tracker.onPlanStart(planExecution);
+        }
+
+        @Override
+        boolean isMandatory()
+        {
+          return true;
+        }
+      });
+    }
+
+    @Override
+    public void onPlanEnd(final IStepCompletionStatus<T> stepCompletionStatus)
+    {
+      enqueue(new Event<T>()
+      {
+        @Override
+        void deliver(IPlanExecutionProgressTracker<T> tracker)
+        {
+          tracker.onPlanEnd(stepCompletionStatus);
+        }
+
+        @Override
+        boolean isMandatory()
+        {
+          return true;
+        }
+      });
+    }
+
+    @Override
+    public void onPause(final IStep<T> step)
+    {
+      enqueue(new Event<T>()
+      {
+        @Override
+        void deliver(IPlanExecutionProgressTracker<T> tracker)
+        {
+          tracker.onPause(step);
+        }
+
+        @Override
+        boolean isTransient()
+        {
+          return true;
+        }
+      });
+    }
+
+    @Override
+    public void onResume(final IStep<T> step)
+    {
+      enqueue(new Event<T>()
+      {
+        @Override
+        void deliver(IPlanExecutionProgressTracker<T> tracker)
+        {
+          tracker.onResume(step);
+        }
+
+        @Override
+        boolean isTransient()
+        {
+          return true;
+        }
+      });
+    }
+
+    @Override
+    public void onCancelled(final IStep<T> step)
+    {
+      enqueue(new Event<T>()
+      {
+        @Override
+        void deliver(IPlanExecutionProgressTracker<T> tracker)
+        {
+          tracker.onCancelled(step);
+        }
+      });
+    }
+
+    @Override
+    public void onStepQueued(final IStepExecution<T> stepExecution)
+    {
+      enqueue(new Event<T>()
+      {
+        @Override
+        void deliver(IPlanExecutionProgressTracker<T> tracker)
+        {
+          tracker.onStepQueued(stepExecution);
+        }
+
+        @Override
+        boolean isTransient()
+        {
+          return true;
+        }
+      });
+    }
+
+    @Override
+    public void onStepStart(final IStepExecution<T> stepExecution)
+    {
+      enqueue(new Event<T>()
+      {
+        @Override
+        void deliver(IPlanExecutionProgressTracker<T> tracker)
+        {
+          tracker.onStepStart(stepExecution);
+        }
+      });
+    }
+
+    @Override
+    public void onStepEnd(final IStepCompletionStatus<T> stepCompletionStatus)
+    {
+      enqueue(new Event<T>()
+      {
+        @Override
+        void deliver(IPlanExecutionProgressTracker<T> tracker)
+        {
+          tracker.onStepEnd(stepCompletionStatus);
+        }
+      });
+    }
+
+    /**
+     * No more events will be accepted once closed (the pending ones are still delivered).
+     */
+    public void close()
+    {
+      _closed = true;
+    }
+
+    /**
+     * Waits for all the pending events to be delivered
+     *
+     * @throws TimeoutException if the events have not been delivered in time
+     */
+    public void waitForDelivery(Timespan timeout) throws InterruptedException, TimeoutException
+    {
+      long endTime = System.currentTimeMillis() + timeout.getDurationInMilliseconds();
+
+      synchronized(this)
+      {
+        while(_pendingCount.get() > 0)
+        {
+          long waitTime = endTime - System.currentTimeMillis();
+          if(waitTime <= 0)
+            throw new TimeoutException();
+          wait(waitTime);
+        }
+      }
+    }
+
+    private void enqueue(Event<T> event)
+    {
+      if(_closed)
+      {
+        if(log.isDebugEnabled())
+          log.debug("channel closed: event ignored");
+        return;
+      }
+
+      Semaphore permits = _permits;
+
+      if(!permits.tryAcquire())
+      {
+        switch(_overflowPolicy)
+        {
+          case BLOCK:
+            permits.acquireUninterruptibly();
+            event._permit = permits;
+            break;
+
+          case COALESCE:
+            if(event.isTransient())
+            {
+              if(log.isDebugEnabled())
+                log.debug("queue full: transient event dropped");
+              return;
+            }
+            if(_overflowPermits.tryAcquire())
+            {
+              event._permit = _overflowPermits;
+            }
+            else
+            {
+              if(!event.isMandatory())
+              {
+                _droppedCount.incrementAndGet();
+                log.warn("queue and overflow reserve full: step event dropped");
+                return;
+              }
+            }
+            break;
+
+          default:
+            throw new RuntimeException("not reached");
+        }
+      }
+      else
+      {
+        event._permit = permits;
+      }
+
+      _pendingCount.incrementAndGet();
+      _events.add(event);
+
+      if(_scheduled.compareAndSet(false, true))
+        schedule();
+    }
+
+    private void schedule()
+    {
+      try
+      {
+        _executorService.execute(_deliverer);
+      }
+      catch(Throwable th)
+      {
+        // the dispatcher has been shut down... deliver in this thread instead
+        log.warn("dispatcher not available: delivering events in the caller thread");
+        deliverEvents();
+      }
+    }
+
+    private void deliverEvents()
+    {
+      int count = 0;
+
+      Event<T> event;
+      while(count < _batchSize && (event = _events.poll()) != null)
+      {
+        try
+        {
+          event.deliver(_tracker);
+        }
+        catch(Throwable th)
+        {
+          log.warn("Exception in progress tracker (ignored): " + th.getMessage());
+          if(log.isDebugEnabled())
+          {
+            log.debug("Exception in progress tracker (ignored)", th);
+          }
+        }
+        finally
+        {
+          if(event._permit != null)
+            event._permit.release();
+        }
+
+        count++;
+      }
+
+      if(count > 0 && _pendingCount.addAndGet(-count) == 0)
+      {
+        synchronized(this)
+        {
+          notifyAll();
+        }
+      }
+
+      _scheduled.set(false);
+
+      // an event may have been added after the last poll but before resetting the flag
+      if(!_events.isEmpty() && _scheduled.compareAndSet(false, true))
+        schedule();
+    }
+  }
+}
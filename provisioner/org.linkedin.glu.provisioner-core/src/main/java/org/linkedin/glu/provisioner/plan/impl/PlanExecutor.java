@@ -37,6 +37,9 @@ public class PlanExecutor<T> implements IPlanExecutor<T>
   private ExecutorService _executorService;
   private ExecutorService _leafExecutorService;
   private ILeafStepExecutor<T> _leafStepExecutor;
+  private LeafStepConcurrencyLimiter<T> _leafStepConcurrencyLimiter;
+  private PlanExecutionProgressDispatcher _progressDispatcher =
+    PlanExecutionProgressDispatcher.instance();
 
   /**
    * Constructor
@@ -110,6 +113,35 @@ public class PlanExecutor<T> implements IPlanExecutor<T>
     _leafStepExecutor = leafStepExecutor;
   }
 
+  public LeafStepConcurrencyLimiter<T> getLeafStepConcurrencyLimiter()
+  {
+    return _leafStepConcurrencyLimiter;
+  }
+
+  /**
+   * @param leafStepConcurrencyLimiter limits how many leaf steps execute at the same time (shared
+   *                                   by all plans executed by this executor)
+   */
+  @Initializer
+  public void setLeafStepConcurrencyLimiter(LeafStepConcurrencyLimiter<T> leafStepConcurrencyLimiter)
+  {
+    _leafStepConcurrencyLimiter = leafStepConcurrencyLimiter;
+  }
+
+  public PlanExecutionProgressDispatcher getProgressDispatcher()
+  {
+    return _progressDispatcher;
+  }
+
+  /**
+   * @param progressDispatcher delivers the progress events to the trackers (shared by all plans)
+   */
+  @Initializer
+  public void setProgressDispatcher(PlanExecutionProgressDispatcher progressDispatcher)
+  {
+    _progressDispatcher = progressDispatcher;
+  }
+
   /**
    * Execute the provided plan. Note that this call is non blocking and will return an execution
    * object with which to interract.
@@ -135,12 +167,22 @@ public class PlanExecutor<T> implements IPlanExecutor<T>
   public IPlanExecution<T> executePlan(Plan<T> plan,
                                        IPlanExecutionProgressTracker<T> progressTracker)
   {
-    StepExecutionContext<T> ctx = new StepExecutionContext<T>(_executorService,
-                                                              _leafExecutorService,
-                                                              _leafStepExecutor,
-                                                              progressTracker,
-                                                              _clock);
+    StepExecutionContext<T> ctx = createStepExecutionContext(progressTracker);
 
     return ctx.executePlan(plan);
   }
+
+  /**
+   * Creates the context for one plan execution
+   */
+  protected StepExecutionContext<T> createStepExecutionContext(IPlanExecutionProgressTracker<T> progressTracker)
+  {
+    return new StepExecutionContext<T>(_executorService,
+                                       _leafExecutorService,
+                                       _leafStepExecutor,
+                                       progressTracker,
+                                       _clock,
+                                       _leafStepConcurrencyLimiter,
+                                       _progressDispatcher);
+  }
 }
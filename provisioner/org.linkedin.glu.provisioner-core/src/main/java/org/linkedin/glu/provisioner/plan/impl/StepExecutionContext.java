@@ -22,6 +22,7 @@ import org.slf4j.LoggerFactory;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Callable;
 
+import org.linkedin.glu.provisioner.plan.api.DagStep;
 import org.linkedin.glu.provisioner.plan.api.ILeafStepExecutor;
 import org.linkedin.glu.provisioner.plan.api.LeafStep;
 import org.linkedin.glu.provisioner.plan.api.IPlanExecutionProgressTracker;
@@ -34,7 +35,7 @@ import org.linkedin.glu.provisioner.plan.api.IStepExecution;
 import org.linkedin.glu.provisioner.plan.api.NoOpPlanExecutionProgressTracker;
 import org.linkedin.glu.provisioner.plan.api.IPlanExecution;
 import org.linkedin.util.clock.Clock;
-import org.linkedin.util.reflect.ObjectProxyBuilder;
+import org.linkedin.util.clock.Timespan;
 
 /**
  * @author ypujante@linkedin.com
@@ -49,9 +50,10 @@ public class StepExecutionContext<T> implements IPlanExecutionProgressTracker<T>
   private final ILeafStepExecutor<T> _leafStepExecutor;
   private final IPlanExecutionProgressTracker<T> _originalTracker;
   private final Clock _clock;
+  private final LeafStepConcurrencyLimiter<T> _leafStepConcurrencyLimiter;
+  private final PlanExecutionProgressDispatcher _progressDispatcher;
 
-  private IPlanExecutionProgressTracker<T> _tracker;
-  private AsyncPlanExecutionProgressTrackerProxy<T> _trackerProxy;
+  private PlanExecutionProgressDispatcher.Channel<T> _tracker;
 
   /**
    * Constructor
@@ -61,12 +63,47 @@ public class StepExecutionContext<T> implements IPlanExecutionProgressTracker<T>
                               ILeafStepExecutor<T> leafStepExecutor,
                               IPlanExecutionProgressTracker<T> tracker,
                               Clock clock)
+  {
+    this(executorService, leafStepExecutorService, leafStepExecutor, tracker, clock, null);
+  }
+
+  /**
+   * Constructor
+   */
+  public StepExecutionContext(ExecutorService executorService,
+                              ExecutorService leafStepExecutorService,
+                              ILeafStepExecutor<T> leafStepExecutor,
+                              IPlanExecutionProgressTracker<T> tracker,
+                              Clock clock,
+                              LeafStepConcurrencyLimiter<T> leafStepConcurrencyLimiter)
+  {
+    this(executorService,
+         leafStepExecutorService,
+         leafStepExecutor,
+         tracker,
+         clock,
+         leafStepConcurrencyLimiter,
+         PlanExecutionProgressDispatcher.instance());
+  }
+
+  /**
+   * Constructor
+   */
+  public StepExecutionContext(ExecutorService executorService,
+                              ExecutorService leafStepExecutorService,
+                              ILeafStepExecutor<T> leafStepExecutor,
+                              IPlanExecutionProgressTracker<T> tracker,
+                              Clock clock,
+                              LeafStepConcurrencyLimiter<T> leafStepConcurrencyLimiter,
+                              PlanExecutionProgressDispatcher progressDispatcher)
   {
     _executorService = executorService;
     _leafStepExecutorService = leafStepExecutorService;
     _leafStepExecutor = leafStepExecutor;
     _originalTracker = tracker;
     _clock = clock;
+    _leafStepConcurrencyLimiter = leafStepConcurrencyLimiter;
+    _progressDispatcher = progressDispatcher;
   }
 
   public Clock getClock()
@@ -89,6 +126,14 @@ public class StepExecutionContext<T> implements IPlanExecutionProgressTracker<T>
     return _leafStepExecutor;
   }
 
+  /**
+   * @return the limiter to use for leaf steps or <code>null</code> if there is no limit
+   */
+  public LeafStepConcurrencyLimiter<T> getLeafStepConcurrencyLimiter()
+  {
+    return _leafStepConcurrencyLimiter;
+  }
+
   public void executeLeafStep(LeafStep<T> leafStep) throws Exception
   {
     _leafStepExecutor.executeLeafStep(leafStep);
@@ -112,6 +157,9 @@ public class StepExecutionContext<T> implements IPlanExecutionProgressTracker<T>
       case PARALLEL:
         return new ParallelStepExecutor<T>((ParallelStep<T>) step, this);
 
+      case DAG:
+        return new DagStepExecutor<T>((DagStep<T>) step, this);
+
       default:
         throw new RuntimeException("not reached");
     }
@@ -119,7 +167,7 @@ public class StepExecutionContext<T> implements IPlanExecutionProgressTracker<T>
 
   public IPlanExecution<T> executePlan(Plan<T> plan)
   {
-    final IStepExecutor<T> stepExecutor = createExecutor(plan.getStep());
+    IStepExecutor<T> stepExecutor = createExecutor(plan.getStep());
 
     PlanExecution<T> planExecution = new PlanExecution<T>(plan, stepExecutor);
 
@@ -127,6 +175,17 @@ public class StepExecutionContext<T> implements IPlanExecutionProgressTracker<T>
 
     stepExecutor.execute();
 
+    handlePlanEnd(stepExecutor);
+
+    return planExecution;
+  }
+
+  /**
+   * Makes sure that {@link #onPlanEnd(IStepCompletionStatus)} gets called when the plan
+   * completes. This implementation uses a thread which waits for the plan to complete.
+   */
+  protected void handlePlanEnd(final IStepExecutor<T> stepExecutor)
+  {
     _executorService.submit(new Callable<Void>()
     {
       @Override
@@ -138,8 +197,6 @@ public class StepExecutionContext<T> implements IPlanExecutionProgressTracker<T>
         return null;
       }
     });
-
-    return planExecution;
   }
 
   @Override
@@ -158,10 +215,10 @@ public class StepExecutionContext<T> implements IPlanExecutionProgressTracker<T>
   public void onPlanEnd(IStepCompletionStatus<T> tiStepCompletionStatus)
   {
     _tracker.onPlanEnd(tiStepCompletionStatus);
-    _trackerProxy.shutdown();
+    _tracker.close();
     try
     {
-      _trackerProxy.waitForShutdown(1000);
+      _tracker.waitForDelivery(Timespan.parse("1s"));
     }
     catch(Exception e)
     {
@@ -171,7 +228,6 @@ public class StepExecutionContext<T> implements IPlanExecutionProgressTracker<T>
   }
 
   @Override
-  @SuppressWarnings("unchecked")
   public void onPlanStart(IPlanExecution<T> tPlan)
   {
     IPlanExecutionProgressTracker<T> tracker = _originalTracker;
@@ -179,8 +235,7 @@ public class StepExecutionContext<T> implements IPlanExecutionProgressTracker<T>
     if(tracker == null)
       tracker = NoOpPlanExecutionProgressTracker.instance();
 
-    _trackerProxy = new AsyncPlanExecutionProgressTrackerProxy<T>(tracker);
-    _tracker = ObjectProxyBuilder.createProxy(_trackerProxy, IPlanExecutionProgressTracker.class);
+    _tracker = _progressDispatcher.createChannel(tracker);
 
     _tracker.onPlanStart(tPlan);
   }
@@ -197,6 +252,12 @@ public class StepExecutionContext<T> implements IPlanExecutionProgressTracker<T>
     _tracker.onStepEnd(tiStepCompletionStatus);
   }
 
+  @Override
+  public void onStepQueued(IStepExecution<T> stepExecution)
+  {
+    _tracker.onStepQueued(stepExecution);
+  }
+
   @Override
   public void onStepStart(IStepExecution<T> stepExecution)
   {
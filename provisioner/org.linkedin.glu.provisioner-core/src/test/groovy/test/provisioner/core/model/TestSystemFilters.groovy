@@ -24,6 +24,8 @@ import org.linkedin.glu.provisioner.core.model.SystemEntryStateSystemFilter
 import org.linkedin.glu.provisioner.core.model.SystemModel
 import org.linkedin.glu.provisioner.core.model.SystemEntry
 import org.linkedin.glu.provisioner.core.model.SystemFilterBuilder
+import org.linkedin.glu.provisioner.core.model.SystemFilterCompiler
+import org.linkedin.glu.provisioner.core.model.SystemFilterParseCache
 import org.linkedin.glu.provisioner.core.model.TagsSystemFilter
 
 /**
@@ -159,6 +161,81 @@ class TestSystemFilters extends GroovyTestCase
     assertFalse(new TagsSystemFilter(['osx'], false).filter(null))
   }
 
+  /**
+   * The compiled filters must behave exactly like the (groovy) filters
+   */
+  public void testCompiledFilters()
+  {
+    def filters = [
+      "agent='h1'",
+      "entryState='running'",
+      "parent='/'",
+      "key='h1:/m/2'",
+      "metadata.em1='ev2'",
+      "metadata.em2.eem2='eev2'",
+      "metadata.em1.foo='ev1'",
+      "initParameters.ip2='c1'",
+      "initParameters.ip4.m2='mv3'",
+      "foo='bar'",
+      "and{agent='h1';or{script='s2';not{mountPoint='/m/2'}}}",
+      "or{tags.hasAny('e:tag3');initParameters.ip1='iv1'}",
+      "not{tags='a:tag1;e:tag1'}"
+    ].collect { SystemFilterBuilder.parse(it) }
+
+    filters << new PropertySystemFilter(name: 'initParameters.ip2').appendIndex(0)
+    filters[-1].value = 'c1'
+    filters << new PropertySystemFilter(name: 'initParameters.ip4').appendIndex(-1)
+    filters[-1].value = [m3: 'mv4']
+    filters << new SystemEntryKeyModelFilter(keys: ['h1:/m/1', 'h2:/m/1'])
+    filters << new SystemEntryStateSystemFilter(states: ['running'])
+
+    filters.each { filter ->
+      def predicate = SystemFilterCompiler.compile(filter)
+      [*model.findEntries(), null].each { entry ->
+        assertEquals("${filter} / ${entry?.key}",
+                     filter.filter(entry) as boolean,
+                     predicate.apply(entry))
+      }
+    }
+
+    assertTrue(SystemFilterCompiler.compile(null).apply(entries[0]))
+  }
+
+  public void testParseCache()
+  {
+    def cache = new SystemFilterParseCache(2)
+
+    def f1 = cache.parse("agent='h1';tags='e:tag1'")
+    assertEquals("and{agent='h1';tags='e:tag1'}", f1.toDSL())
+    assertEquals(0, cache.hits)
+    assertEquals(1, cache.misses)
+
+    // same dsl => same (shared) filter
+    assertTrue(f1.is(cache.parse("agent='h1';tags='e:tag1'")))
+    assertEquals(1, cache.hits)
+    assertEquals(1, cache.misses)
+
+    // the parsed filters are read only
+    shouldFail(UnsupportedOperationException) {
+      f1.filters << new PropertySystemFilter(name: 'agent', value: 'h2')
+    }
+
+    // failures are not cached
+    shouldFail { cache.parse("and{") }
+    assertEquals(1, cache.size)
+
+    // LRU
+    def f2 = cache.parse("agent='h2'")
+    assertTrue(f1.is(cache.parse("agent='h1';tags='e:tag1'")))
+    cache.parse("agent='h3'")
+    assertEquals(2, cache.size)
+    assertTrue(f1.is(cache.parse("agent='h1';tags='e:tag1'")))
+    assertFalse(f2.is(cache.parse("agent='h2'")))
+    assertEquals(f2, cache.parse("agent='h2'"))
+
+    assertTrue(SystemFilterBuilder.parse(" agent='h1' ").is(SystemFilterBuilder.parse("agent='h1'")))
+  }
+
   private checkFiltering(String filterString, String expectedToString, expectedEntries)
   {
     def filter = SystemFilterBuilder.parse(filterString)
@@ -19,6 +19,7 @@ package test.provisioner.core.model
 
 import org.linkedin.glu.provisioner.core.model.SystemModel
 import org.linkedin.glu.provisioner.core.model.SystemEntry
+import org.linkedin.glu.provisioner.core.model.SystemFilterBuilder
 import org.linkedin.glu.provisioner.core.model.JSONSystemModelSerializer
 import org.linkedin.groovy.util.collections.GroovyCollectionsUtils
 
@@ -113,6 +114,175 @@ class TestSystemModel extends GroovyTestCase
     assertEquals(sd.metadata, filteredModel.metadata)
   }
 
+  /**
+   * A filtered model is a view on the unfiltered model: making sure that the indexes (children,
+   * agent) are properly filtered and that modifying either model does not affect the other one
+   */
+  public void testFilteredView()
+  {
+    def sd = new SystemModel(fabric: 'f1')
+
+    sd.addEntry(new SystemEntry(agent: 'h1', mountPoint: "/p1", script: 's1'))
+    sd.addEntry(new SystemEntry(agent: 'h1', mountPoint: "/c1", script: 's1', parent: '/p1'))
+    sd.addEntry(new SystemEntry(agent: 'h1', mountPoint: "/c2", script: 's2', parent: '/p1'))
+    sd.addEntry(new SystemEntry(agent: 'h10', mountPoint: "/m1", script: 's1'))
+    sd.addEntry(new SystemEntry(agent: 'h2', mountPoint: "/m1", script: 's2'))
+
+    def filteredModel = sd.filterBy('script', 's1')
+    assertEquals(['h10:/m1', 'h1:/c1', 'h1:/p1'], filteredModel.findEntries().key)
+    assertEquals(['h1:/c1'] as Set, filteredModel.findChildrenKeys('h1:/p1'))
+    assertEquals(['h1:/c1', 'h1:/p1'], filteredModel.findAgentEntries('h1').key)
+    assertTrue(filteredModel.unfilter().is(sd))
+
+    // chained filters
+    def chainedModel = filteredModel.filterBy('agent', 'h1')
+    assertEquals(['h1:/c1', 'h1:/p1'], chainedModel.findEntries().key)
+    assertEquals(sd.filterBy("script='s1';agent='h1'").findEntries(), chainedModel.findEntries())
+    assertTrue(chainedModel.unfilter().is(sd))
+    assertNull(chainedModel.findEntry('h10:/m1'))
+
+    // modifying the view does not modify the unfiltered model
+    chainedModel.addEntry(new SystemEntry(agent: 'h1', mountPoint: "/c3", script: 's1', parent: '/p1'))
+    assertEquals(['h1:/c1', 'h1:/c3'] as Set, chainedModel.findChildrenKeys('h1:/p1'))
+    assertNull(sd.findEntry('h1:/c3'))
+    assertEquals(['h10:/m1', 'h1:/c1', 'h1:/p1'], filteredModel.findEntries().key)
+
+    // modifying the unfiltered model does not modify the view
+    sd.addEntry(new SystemEntry(agent: 'h1', mountPoint: "/c4", script: 's1', parent: '/p1'))
+    assertEquals(['h10:/m1', 'h1:/c1', 'h1:/p1'], filteredModel.findEntries().key)
+    assertEquals(['h1:/c1', 'h1:/c4'] as Set, sd.filterBy('script', 's1').findChildrenKeys('h1:/p1'))
+  }
+
+  /**
+   * The index is shared by the model and its views: modifying an entry (through its setters) after
+   * filtering must be reflected by the next filter
+   */
+  public void testModifiedEntryAfterFiltering()
+  {
+    def sd = new SystemModel(fabric: 'f1')
+
+    sd.addEntry(new SystemEntry(agent: 'h1', mountPoint: "/m1", script: 's1', tags: ['t1']))
+    sd.addEntry(new SystemEntry(agent: 'h1', mountPoint: "/m2", script: 's1', entryState: 'stopped'))
+
+    def view = sd.filterBy('script', 's1')
+    assertEquals(['h1:/m1'], sd.filterBy("tags='t1'").findEntries().key)
+    assertEquals(['h1:/m2'], sd.filterBy("entryState='stopped'").findEntries().key)
+
+    def entry = sd.findEntry('h1:/m2')
+    entry.tags = ['t1']
+    entry.entryState = 'installed'
+
+    assertEquals(['h1:/m1', 'h1:/m2'], sd.filterBy("tags='t1'").findEntries().key)
+    assertEquals(['h1:/m1', 'h1:/m2'], view.filterBy("tags='t1'").findEntries().key)
+    assertEquals([], sd.filterBy("entryState='stopped'").findEntries().key)
+    assertEquals(['h1:/m2'], view.filterBy("entryState='installed'").findEntries().key)
+
+    // once indexed, the content of an entry can only be replaced (not modified in place)
+    shouldFail(UnsupportedOperationException) { entry.metadata.product = 'p1' }
+    entry.metadata = [product: 'p1']
+    assertEquals(['h1:/m2'], sd.filterBy('metadata.product', 'p1').findEntries().key)
+  }
+
+  /**
+   * Tags and property equality filters use the inverted indexes: making sure that the result is
+   * the same as evaluating the filter on each entry
+   */
+  public void testIndexedFiltering()
+  {
+    def sd = new SystemModel(fabric: 'f1')
+    sd.addAgentTags('h1', ['dc-east'])
+    sd.addAgentTags('h2', ['dc-west'])
+
+    sd.addEntry(new SystemEntry(agent: 'h1', mountPoint: "/m1", script: 's1',
+                                metadata: [product: 'p1', versions: ['1.0', '2.0']],
+                                tags: ['frontend']))
+    sd.addEntry(new SystemEntry(agent: 'h1', mountPoint: "/m2", script: 's2',
+                                metadata: [product: 'p2', versions: '2.0'],
+                                tags: ['backend']))
+    sd.addEntry(new SystemEntry(agent: 'h2', mountPoint: "/m1", script: 's1',
+                                metadata: [product: 'p1', versions: "${'2'}.0"],
+                                tags: ['frontend']))
+    sd.addEntry(new SystemEntry(agent: 'h3', mountPoint: "/m1", script: 's1',
+                                metadata: [product: 'p1', versions: '1.0']))
+
+    def check = { String dsl, List<String> expectedKeys ->
+      def filter = SystemFilterBuilder.parse(dsl)
+      assertEquals(dsl, expectedKeys, sd.filterBy(filter).findEntries().key)
+      assertEquals(dsl, sd.findEntries().findAll { filter.filter(it) }.key, expectedKeys)
+    }
+
+    check("tags='frontend;dc-east'", ['h1:/m1'])
+    check("tags.hasAny('backend;dc-west')", ['h1:/m2', 'h2:/m1'])
+    check("agent='h1'", ['h1:/m1', 'h1:/m2'])
+    check("metadata.product='p1';not{agent='h2'}", ['h1:/m1', 'h3:/m1'])
+    // collection and GString values are not indexed
+    check("metadata.versions='2.0'", ['h1:/m1', 'h1:/m2', 'h2:/m1'])
+    check("or{tags='backend';and{script='s1';metadata.versions='1.0'}}", ['h1:/m1', 'h1:/m2', 'h3:/m1'])
+    check("tags='frontend';metadata.unknown='x'", [])
+
+    // the inverted indexes (shared with the views) follow the modifications of the entries
+    def view = sd.filterBy("script='s1'")
+    def entry = sd.findEntry('h3:/m1')
+    entry.tags = ['backend']
+    entry.metadata = [product: 'p2', versions: '1.0']
+    check("tags='backend'", ['h1:/m2', 'h3:/m1'])
+    check("metadata.product='p1'", ['h1:/m1', 'h2:/m1'])
+    check("metadata.product='p2';metadata.versions='1.0'", ['h3:/m1'])
+    assertEquals(['h3:/m1'], view.filterBy("tags='backend'").findEntries().key)
+    assertEquals(['h3:/m1'], view.filterBy('metadata.product', 'p2').findEntries().key)
+  }
+
+  public void testClone()
+  {
+    def sd = new SystemModel(fabric: 'f1', metadata: [m1: [v: 'v1']])
+    sd.addAgentTags('h1', ['a:t1'])
+    sd.addEntry(new SystemEntry(agent: 'h1', mountPoint: "/m1", script: 's1',
+                                initParameters: [ip1: ['c1']],
+                                tags: ['e:t1']))
+
+    def clone = sd.clone()
+    assertEquals(sd.toExternalRepresentation(), clone.toExternalRepresentation())
+
+    // deep copy: modifying the clone does not affect the original
+    clone.metadata.m1.v = 'v2'
+    clone.findEntry('h1:/m1').initParameters.ip1 << 'c2'
+    assertEquals('v1', sd.metadata.m1.v)
+    assertEquals(['c1'], sd.findEntry('h1:/m1').initParameters.ip1)
+
+    // flattened view is invalidated when the entry changes
+    def entry = sd.findEntry('h1:/m1')
+    assertEquals('s1', entry.flattenedView.script)
+    entry.script = 's2'
+    assertEquals('s2', entry.flattenedView.script)
+
+    // shallow clone shares the entries but not the model
+    def shallow = sd.shallowClone()
+    assertTrue(entry.is(shallow.findEntry('h1:/m1')))
+    shallow.addEntry(new SystemEntry(agent: 'h2', mountPoint: "/m1", script: 's1'))
+    assertEquals(['h1:/m1'], sd.findEntries().key)
+    assertEquals(['h1:/m1', 'h2:/m1'], shallow.findEntries().key)
+
+    // a flattened entry is read only (copy on write: the clone shares the flattened version)
+    shouldFail(UnsupportedOperationException) { entry.initParameters.ip2 = 'iv2' }
+    def updatedEntry = entry.clone()
+    assertTrue(updatedEntry.flattenedView.is(entry.flattenedView))
+    updatedEntry.entryState = 'stopped'
+    assertEquals('stopped', updatedEntry.flattenedView.entryState)
+
+    // modifying the shallow clone only records the modified entries
+    shallow.updateEntry(updatedEntry)
+    shallow.removeEntry('h2:/m1')
+    shallow.addEntry(new SystemEntry(agent: 'h1', mountPoint: "/c1", script: 's1', parent: '/m1'))
+    assertEquals(['h1:/c1', 'h1:/m1'], shallow.findEntries().key)
+    assertEquals(['h1:/c1', 'h1:/m1'], shallow.findAgentEntries('h1').key)
+    assertEquals([], shallow.findAgentEntries('h2'))
+    assertEquals(['h1:/c1'] as Set, shallow.findChildrenKeys('h1:/m1'))
+    assertEquals(['h1:/m1'], shallow.filterBy('entryState', 'stopped').findEntries().key)
+    assertEquals(['h1:/c1', 'h1:/m1'], shallow.shallowClone().findEntries().key)
+    assertTrue(entry.is(sd.findEntry('h1:/m1')))
+    assertEquals(['h1:/m1'], sd.findEntries().key)
+  }
+
   public void testStats()
   {
     def sd = new SystemModel(fabric: 'f1', metadata: [m1: 'v1'])
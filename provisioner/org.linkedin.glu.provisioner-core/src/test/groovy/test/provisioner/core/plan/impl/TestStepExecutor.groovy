@@ -16,16 +16,25 @@
 
 package test.provisioner.core.plan.impl
 
+import java.util.concurrent.CountDownLatch
 import java.util.concurrent.Executors
+import java.util.concurrent.TimeoutException
+import java.util.concurrent.atomic.AtomicInteger
 import org.linkedin.glu.provisioner.plan.api.LeafStep
 import org.linkedin.glu.provisioner.plan.api.ILeafStepExecutor
+import org.linkedin.glu.provisioner.plan.api.ILeafStepPartitioner
 import org.linkedin.glu.provisioner.plan.api.NoOpPlanExecutionProgressTracker
 import org.linkedin.glu.provisioner.plan.api.IStepCompletionStatus
 import org.linkedin.glu.provisioner.plan.api.Plan
 import org.linkedin.glu.provisioner.plan.api.XmlStepCompletionStatusVisitor
 import org.linkedin.glu.provisioner.core.plan.impl.StepBuilder
+import org.linkedin.glu.provisioner.plan.impl.LeafStepConcurrencyLimiter
+import org.linkedin.glu.provisioner.plan.impl.NonBlockingPlanExecutor
+import org.linkedin.glu.provisioner.plan.impl.PlanExecutionProgressDispatcher
+import org.linkedin.glu.provisioner.plan.impl.PlanExecutor
 import org.linkedin.glu.provisioner.plan.impl.StepExecutionContext
 import org.linkedin.util.clock.Clock
+import org.linkedin.util.clock.Timespan
 
 /**
  * @author ypujante@linkedin.com */
@@ -45,6 +54,11 @@ public class TestStepExecutor extends GroovyTestCase
                                                                staticClock);
 
   public void testErrorInSequentialSteps()
+  {
+    checkErrorInSequentialSteps(ctx)
+  }
+
+  private void checkErrorInSequentialSteps(def ctx)
   {
     def out = []
 
@@ -77,6 +91,332 @@ public class TestStepExecutor extends GroovyTestCase
     assertEquals(["S0.L1.1"], out)
   }
 
+  public void testNonBlockingExecution()
+  {
+    def planExecutor = new NonBlockingPlanExecutor(Executors.newCachedThreadPool(),
+                                                   leafStepExecutor as ILeafStepExecutor)
+
+    checkErrorInSequentialSteps(planExecutor)
+
+    // pause/resume: the parallel step does not start until resumed
+    def out = []
+    def started = new CountDownLatch(1)
+    def latch = new CountDownLatch(1)
+
+    def stepBuilder = new StepBuilder().sequential(name: 'S0') {
+      leaf(name: 'S0.L1.1', action: { started.countDown(); latch.await(); out << "S0.L1.1" })
+      parallel(name: 'S0.P1.2') {
+        leaf(name: 'S0.P1.2.L2.1', action: { out << "S0.P1.2.L2.1" })
+        leaf(name: 'S0.P1.2.L2.2', action: { out << "S0.P1.2.L2.2" })
+      }
+    }
+
+    def execution = planExecutor.executePlan(new Plan(stepBuilder.toStep()))
+    started.await()
+    execution.pause()
+    latch.countDown()
+    shouldFail(TimeoutException) { execution.waitForCompletion(Timespan.parse('250')) }
+    assertEquals(["S0.L1.1"], out)
+
+    execution.resume()
+    assertEquals(IStepCompletionStatus.Status.COMPLETED, execution.waitForCompletion().status)
+    assertEquals(["S0.L1.1", "S0.P1.2.L2.1", "S0.P1.2.L2.2"], out.sort())
+
+    // cancel: the running leaf is interrupted and the rest is skipped
+    started = new CountDownLatch(1)
+    latch = new CountDownLatch(1)
+    out = []
+    execution = planExecutor.executePlan(new Plan(stepBuilder.toStep()))
+    started.await()
+    execution.cancel(true)
+    def status = execution.waitForCompletion()
+    assertTrue(execution.isCancelled())
+    assertEquals([IStepCompletionStatus.Status.CANCELLED,
+                  IStepCompletionStatus.Status.SKIPPED], status.statuses.status)
+    assertEquals([], out)
+  }
+
+  public void testDag()
+  {
+    def planExecutor = new PlanExecutor(Executors.newCachedThreadPool(),
+                                        leafStepExecutor as ILeafStepExecutor)
+
+    def out = []
+    def latch = new CountDownLatch(1)
+
+    // D0.L1.3 does not wait for the (slow) D0.L1.2
+    def stepBuilder = new StepBuilder().dag(name: 'D0') {
+      leaf(id: 'L1', name: 'D0.L1.1', action: { out << "D0.L1.1" })
+      leaf(id: 'L2', name: 'D0.L1.2', action: { latch.await(); out << "D0.L1.2" })
+      leaf(id: 'L3', name: 'D0.L1.3', dependsOn: ['L1'], action: { out << "D0.L1.3"; latch.countDown() })
+      leaf(id: 'L4', name: 'D0.L1.4', dependsOn: ['L2', 'L3'], action: { out << "D0.L1.4" })
+    }
+
+    def status = planExecutor.executePlan(new Plan(stepBuilder.toStep())).waitForCompletion()
+    assertEquals(IStepCompletionStatus.Status.COMPLETED, status.status)
+    assertEquals(["D0.L1.1", "D0.L1.3", "D0.L1.2", "D0.L1.4"], out)
+
+    // failure: only the steps depending on the failed step are skipped
+    out = []
+    stepBuilder = new StepBuilder().dag(name: 'D0') {
+      leaf(id: 'L1', name: 'D0.L1.1', action: { throw new Exception('D0.L1.1') })
+      leaf(id: 'L2', name: 'D0.L1.2', action: { out << "D0.L1.2" })
+      sequential(id: 'S3', name: 'D0.S1.3', dependsOn: ['L1']) {
+        leaf(name: 'D0.S1.3.L2.1', action: { out << "D0.S1.3.L2.1" })
+      }
+      leaf(id: 'L4', name: 'D0.L1.4', dependsOn: ['S3'], action: { out << "D0.L1.4" })
+      leaf(id: 'L5', name: 'D0.L1.5', dependsOn: ['L2'], action: { out << "D0.L1.5" })
+    }
+
+    status = planExecutor.executePlan(new Plan(stepBuilder.toStep())).waitForCompletion()
+    assertEquals(IStepCompletionStatus.Status.FAILED, status.status)
+    assertEquals([IStepCompletionStatus.Status.FAILED,
+                  IStepCompletionStatus.Status.COMPLETED,
+                  IStepCompletionStatus.Status.SKIPPED,
+                  IStepCompletionStatus.Status.COMPLETED,
+                  IStepCompletionStatus.Status.SKIPPED], status.statuses.status)
+    assertEquals(['D0.L1.1', 'D0.L1.2', 'D0.S1.3', 'D0.L1.5', 'D0.L1.4'], status.statuses.step.name)
+    assertEquals(["D0.L1.2", "D0.L1.5"], out)
+  }
+
+  public void testConcurrencyLimits()
+  {
+    def limiter = new LeafStepConcurrencyLimiter(3)
+    limiter.addPartitionLimit({ LeafStep leafStep -> leafStep.metadata.agent } as ILeafStepPartitioner, 2)
+
+    def planExecutor = new NonBlockingPlanExecutor(Executors.newCachedThreadPool(),
+                                                   leafStepExecutor as ILeafStepExecutor)
+    planExecutor.leafStepConcurrencyLimiter = limiter
+
+    def running = [:]
+    def maxRunning = [:]
+    def update = { String key, int delta ->
+      synchronized(running)
+      {
+        running[key] = (running[key] ?: 0) + delta
+        maxRunning[key] = Math.max(maxRunning[key] ?: 0, running[key])
+      }
+    }
+    def action = { String agent ->
+      update('all', 1); update(agent, 1)
+      Thread.sleep(20)
+      update(agent, -1); update('all', -1)
+    }
+
+    def stepBuilder = new StepBuilder().parallel(name: 'P0') {
+      (1..4).each { i ->
+        leaf(name: "P0.a1.${i}", agent: 'a1', action: action.curry('a1'))
+        leaf(name: "P0.a2.${i}", agent: 'a2', action: action.curry('a2'))
+        leaf(name: "P0.a3.${i}", agent: 'a3', action: action.curry('a3'))
+      }
+    }
+
+    def queued = []
+    def tracker = [onStepQueued: { queued << it.step.metadata.name }] as NoOpPlanExecutionProgressTracker
+
+    def status = planExecutor.executePlan(new Plan(stepBuilder.toStep()), tracker).waitForCompletion()
+    assertEquals(IStepCompletionStatus.Status.COMPLETED, status.status)
+    assertEquals(12, status.statuses.size())
+    assertEquals(3, maxRunning['all'])
+    ['a1', 'a2', 'a3'].each { assertTrue(maxRunning[it] <= 2) }
+    // permits are released when the threads are done (right after the completion of the steps)
+    while(limiter.runningCount > 0)
+      Thread.sleep(10)
+    assertEquals(0, limiter.queuedCount)
+
+    // cancelling the plan removes the queued steps from the queue (the running steps hold on to
+    // their permit until they are really done)
+    def latch = new CountDownLatch(1)
+    def started = new AtomicInteger(0)
+    def uninterruptible = {
+      started.incrementAndGet()
+      while(latch.count > 0)
+      {
+        try { latch.await() } catch(InterruptedException e) { }
+      }
+    }
+    stepBuilder = new StepBuilder().parallel(name: 'P0') {
+      (1..5).each { i ->
+        leaf(name: "P0.a1.${i}", agent: 'a1', action: uninterruptible)
+      }
+    }
+    try
+    {
+      def planExecution = planExecutor.executePlan(new Plan(stepBuilder.toStep()))
+      while(limiter.queuedCount < 3)
+        Thread.sleep(10)
+      planExecution.cancel(true)
+      status = planExecution.waitForCompletion(Timespan.parse('5s'))
+      assertTrue(status.statuses.status.every {
+        it == IStepCompletionStatus.Status.CANCELLED || it == IStepCompletionStatus.Status.SKIPPED
+      })
+      assertEquals(0, limiter.queuedCount)
+      assertTrue(limiter.runningCount <= 2)
+      assertTrue(started.get() <= 2)
+    }
+    finally
+    {
+      latch.countDown()
+    }
+    while(limiter.runningCount > 0)
+      Thread.sleep(10)
+  }
+
+  /**
+   * Steps blocked by the limit of a partition wait in the queue of this partition: releasing a
+   * permit grants (in order) the steps waiting for the partitions it frees
+   */
+  public void testConcurrencyLimiterPartitions()
+  {
+    def limiter = new LeafStepConcurrencyLimiter(3)
+    limiter.addPartitionLimit({ LeafStep leafStep -> leafStep.metadata.agent } as ILeafStepPartitioner, 1)
+    limiter.addPartitionLimit({ LeafStep leafStep -> leafStep.metadata.action } as ILeafStepPartitioner, 2)
+
+    def granted = []
+    def acquire = { String name, String agent, String action ->
+      def permit = limiter.acquire(new LeafStep(name, [agent: agent, action: action], null)) {
+        granted << name
+      }
+      if(permit.granted)
+        granted << name
+      return permit
+    }
+
+    def p1 = acquire('p1', 'a1', 'deploy')
+    def p2 = acquire('p2', 'a1', 'deploy') // blocked by agent a1
+    def p3 = acquire('p3', 'a2', 'deploy')
+    def p4 = acquire('p4', 'a3', 'deploy') // blocked by action deploy
+    def p5 = acquire('p5', 'a3', 'undeploy') // global limit not reached yet
+    assertEquals(['p1', 'p3', 'p5'], granted)
+    assertEquals(2, limiter.queuedCount)
+
+    // frees agent a1 (and a place for action deploy which p2 takes before p4)
+    p1.release()
+    assertEquals(['p1', 'p3', 'p5', 'p2'], granted)
+
+    // frees action deploy: p4 is still blocked by agent a3
+    p3.release()
+    assertEquals(['p1', 'p3', 'p5', 'p2'], granted)
+
+    // a queued permit can be released
+    p4.release()
+    assertEquals(0, limiter.queuedCount)
+
+    [p2, p5].each { it.release() }
+    assertEquals(0, limiter.runningCount)
+  }
+
+  /**
+   * A step which cannot be started once its permit is granted fails (and releases its permit)
+   */
+  public void testConcurrencyLimitsStartFailure()
+  {
+    def limiter = new LeafStepConcurrencyLimiter(1)
+
+    def leafExecutorService = Executors.newCachedThreadPool()
+    def planExecutor = new NonBlockingPlanExecutor(Executors.newCachedThreadPool(),
+                                                   leafExecutorService,
+                                                   leafStepExecutor as ILeafStepExecutor)
+    planExecutor.leafStepConcurrencyLimiter = limiter
+
+    // the first step shuts down the executor once the 2 other steps are queued
+    def stepBuilder = new StepBuilder().parallel(name: 'P0') {
+      leaf(name: 'P0.L1.1', action: {
+        while(limiter.queuedCount < 2)
+          Thread.sleep(10)
+        leafExecutorService.shutdown()
+      })
+      leaf(name: 'P0.L1.2', action: { })
+      leaf(name: 'P0.L1.3', action: { })
+    }
+
+    def status =
+      planExecutor.executePlan(new Plan(stepBuilder.toStep())).waitForCompletion(Timespan.parse('5s'))
+    assertEquals(IStepCompletionStatus.Status.FAILED, status.status)
+    assertEquals([IStepCompletionStatus.Status.COMPLETED,
+                  IStepCompletionStatus.Status.FAILED,
+                  IStepCompletionStatus.Status.FAILED], status.statuses.status)
+    assertEquals(0, limiter.runningCount)
+    assertEquals(0, limiter.queuedCount)
+  }
+
+  public void testProgressDispatcher()
+  {
+    // very small capacity => the threads executing the plans wait for the tracker
+    def dispatcher = new PlanExecutionProgressDispatcher(2)
+    dispatcher.capacity = 3
+    dispatcher.batchSize = 2
+    dispatcher.overflowPolicy = PlanExecutionProgressDispatcher.OverflowPolicy.BLOCK
+
+    def planExecutor = new PlanExecutor(Executors.newCachedThreadPool(),
+                                        leafStepExecutor as ILeafStepExecutor)
+    planExecutor.progressDispatcher = dispatcher
+
+    def events = [:]
+    def createTracker = { String planName ->
+      def planEvents = []
+      events[planName] = planEvents
+      [
+        onPlanStart: { planEvents << 'planStart' },
+        onStepStart: { planEvents << "start:${it.step.metadata.name}".toString(); Thread.sleep(1) },
+        onStepEnd: { planEvents << "end:${it.step.metadata.name}".toString() },
+        onPlanEnd: { planEvents << 'planEnd' }
+      ] as NoOpPlanExecutionProgressTracker
+    }
+
+    def executions = (1..5).collect { p ->
+      def stepBuilder = new StepBuilder().parallel(name: "P${p}") {
+        (1..10).each { i -> leaf(name: "P${p}.L${i}") }
+      }
+      planExecutor.executePlan(new Plan([name: "plan${p}"], stepBuilder.toStep()),
+                               createTracker("plan${p}"))
+    }
+
+    executions.each { assertEquals(IStepCompletionStatus.Status.COMPLETED, it.waitForCompletion().status) }
+    while(dispatcher.pendingCount > 0 || events.values().any { it[-1] != 'planEnd' })
+      Thread.sleep(10)
+
+    // events are delivered in order for each plan
+    (1..5).each { p ->
+      def planEvents = events["plan${p}"]
+      assertEquals(24, planEvents.size())
+      assertEquals('planStart', planEvents[0])
+      assertEquals("start:P${p}".toString(), planEvents[1])
+      assertEquals("end:P${p}".toString(), planEvents[-2])
+      (1..10).each { i ->
+        assertTrue(planEvents.indexOf("start:P${p}.L${i}".toString()) < planEvents.indexOf("end:P${p}.L${i}".toString()))
+      }
+    }
+
+    // coalesce: when full, transient events are dropped, the other step events use the overflow
+    // reserve (and are dropped once exhausted) and the plan events are never dropped
+    dispatcher = new PlanExecutionProgressDispatcher(1)
+    dispatcher.capacity = 1
+    dispatcher.overflowCapacity = 1
+    dispatcher.overflowPolicy = PlanExecutionProgressDispatcher.OverflowPolicy.COALESCE
+    def latch = new CountDownLatch(1)
+    def received = []
+    def channel = dispatcher.createChannel([
+      onPlanStart: { latch.await(); received << 'planStart' },
+      onPause: { received << 'pause' },
+      onStepStart: { received << 'stepStart' },
+      onStepEnd: { received << 'stepEnd' },
+      onPlanEnd: { received << 'planEnd' }
+    ] as NoOpPlanExecutionProgressTracker)
+    channel.onPlanStart(null) // holds the only permit until delivered
+    channel.onPause(null) // dropped
+    channel.onStepStart(null) // uses the overflow reserve
+    channel.onStepEnd(null) // dropped (does not block)
+    channel.onPlanEnd(null) // queued anyway
+    assertEquals(2, dispatcher.pendingCount)
+    assertEquals(1, dispatcher.droppedCount)
+    latch.countDown()
+    channel.waitForDelivery(Timespan.parse('5s'))
+    assertEquals(['planStart', 'stepStart', 'planEnd'], received)
+    assertEquals(0, dispatcher.pendingCount)
+    dispatcher.shutdown()
+  }
+
   public void testXml()
   {
     def stepBuilder = new StepBuilder().sequential(name: 'S0') {
@@ -16,6 +16,7 @@
 
 package test.provisioner.core.plan.impl
 
+import org.linkedin.glu.provisioner.plan.api.CompactXmlCodec
 import org.linkedin.glu.provisioner.plan.api.Plan
 import org.linkedin.glu.provisioner.core.plan.impl.StepBuilder
 
@@ -76,4 +77,141 @@ class TestXml extends GroovyTestCase
 </plan>
 """, plan.toXml())
   }
+
+  /**
+   * The streamed xml is not indented but otherwise identical
+   */
+  public void testPlanXmlStream()
+  {
+    def stepBuilder = new StepBuilder().sequential(name: 'S0', k: 'K0') {
+      leaf(name: 'S0.L1.1', k: 'K0.L1.1', action: { out << "S0.L1.1" })
+      sequential(name: 'S0.S1.2') {
+        leaf(name: 'S0.S1.2.L2.1', action: { out << "S0.S1.2.L2.1" })
+      }
+      parallel(name: 'S0.P1.3') {
+        leaf(name: 'S0.P1.3.L2.1', action: { out << "S0.P1.3.L2.1" })
+        leaf(name: 'S0.P1.3.L2.2', action: { out << "S0.P1.3.L2.2" })
+      }
+    }
+
+    def plan = new Plan([name: "plan1", k1: 'v1'], stepBuilder.toStep())
+
+    def out = new ByteArrayOutputStream()
+    plan.writeXml([fabric: 'f<1'], out)
+
+    assertEquals('<?xml version="1.0" encoding="UTF-8"?>' +
+                 '<plan name="plan1" k1="v1" fabric="f&lt;1">' +
+                 '<sequential name="S0" k="K0">' +
+                 '<leaf name="S0.L1.1" k="K0.L1.1"/>' +
+                 '<sequential name="S0.S1.2"><leaf name="S0.S1.2.L2.1"/></sequential>' +
+                 '<parallel name="S0.P1.3">' +
+                 '<leaf name="S0.P1.3.L2.1"/><leaf name="S0.P1.3.L2.2"/>' +
+                 '</parallel>' +
+                 '</sequential>' +
+                 '</plan>',
+                 out.toString('UTF-8'))
+  }
+
+  /**
+   * The children of a dag are serialized with their id and dependencies so that the dag can be
+   * rebuilt (with the <code>StepBuilder</code>)
+   */
+  public void testDagXml()
+  {
+    def stepBuilder = new StepBuilder().dag(name: 'D0') {
+      leaf(id: 'L1', name: 'D0.L1.1', action: { })
+      leaf(id: 'L2', name: 'D0.L1.2', action: { })
+      sequential(id: 'S3', name: 'D0.S1.3', dependsOn: ['L1']) {
+        leaf(name: 'D0.S1.3.L2.1', action: { })
+      }
+      leaf(id: 'L4', name: 'D0.L1.4', dependsOn: ['S3', 'L1'], action: { })
+    }
+
+    def plan = new Plan([name: "plan1"], stepBuilder.toStep())
+
+    String xml = """<?xml version="1.0"?>
+<plan name="plan1">
+  <dag name="D0">
+    <leaf id="L1" name="D0.L1.1" />
+    <leaf id="L2" name="D0.L1.2" />
+    <sequential id="S3" name="D0.S1.3" dependsOn="L1">
+      <leaf name="D0.S1.3.L2.1" />
+    </sequential>
+    <leaf id="L4" name="D0.L1.4" dependsOn="L1,S3" />
+  </dag>
+</plan>
+"""
+
+    assertEquals(xml, plan.toXml())
+
+    def out = new ByteArrayOutputStream()
+    plan.writeXml([:], out)
+    assertTrue(out.toString('UTF-8').contains('<leaf id="L4" name="D0.L1.4" dependsOn="L1,S3"/>'))
+
+    // rebuilding the dag from the xml
+    def builder = new StepBuilder()
+    def rebuild
+    rebuild = { node ->
+      if(node.name() == 'leaf')
+        builder.leaf(node.attributes() + [action: { }])
+      else
+        builder.invokeMethod(node.name(), [new LinkedHashMap(node.attributes()),
+                                           { node.children().each { rebuild(it) } }] as Object[])
+    }
+    def step = rebuild(new XmlParser().parseText(xml).dag[0]).toStep()
+
+    assertEquals(xml, new Plan([name: "plan1"], step).toXml())
+  }
+
+  /**
+   * The compact encoding renders the same xml
+   */
+  public void testCompactXmlCodec()
+  {
+    def stepBuilder = new StepBuilder().sequential(name: 'S0', k: 'K0') {
+      leaf(name: 'S0.L1.1', agent: 'a1', mountPoint: '/m/1', action: { out << "S0.L1.1" })
+      parallel(name: 'S0.P1.2') {
+        leaf(name: 'S0.P1.2.L2.1', agent: 'a1', mountPoint: '/m/1', action: { })
+        leaf(name: 'S0.P1.2.L2.2', agent: 'a2', mountPoint: '/m/"1"', action: { })
+      }
+    }
+
+    def plan = new Plan([name: "plan1"], stepBuilder.toStep())
+
+    CompactXmlCodec codec = CompactXmlCodec.instance()
+
+    String xml = plan.toXml()
+    byte[] content = codec.encode(xml)
+    assertTrue(codec.isEncoded(content))
+    assertFalse(codec.isEncoded(xml.getBytes('UTF-8')))
+    assertEquals(xml, codec.decode(content))
+
+    // text (exception) content
+    xml = """<?xml version="1.0"?>
+<plan name="plan1">
+  <sequential name="S0" status="FAILED">
+    <leaf name="S0.L1.1" status="FAILED">
+      <exception message="a &lt; b">java.lang.Exception: a &lt; b
+	at S0.L1.1</exception>
+    </leaf>
+    <leaf name="S0.L1.2" status="COMPLETED" />
+  </sequential>
+</plan>
+"""
+    assertEquals(xml, codec.decode(codec.encode(xml)))
+
+    // text made of whitespace only is kept as well
+    xml = '<?xml version="1.0"?>\n' +
+          '<plan name="plan1">\n' +
+          '  <leaf name="S0.L1.1" status="FAILED">\n' +
+          '    <exception message=" ">  \n\t</exception>\n' +
+          '  </leaf>\n' +
+          '</plan>\n'
+    assertEquals(xml, codec.decode(codec.encode(xml)))
+
+    // mixed content is escaped as well
+    xml = codec.decode(codec.encode('<plan><leaf name="L1"/>a &lt; b &amp; c</plan>'))
+    assertTrue(xml.contains('a &lt; b &amp; c'))
+    assertEquals('a < b & c', new XmlParser().parseText(xml).text().trim())
+  }
 }
@@ -17,6 +17,7 @@
 package org.linkedin.glu.groovy.utils.collections
 
 import org.linkedin.groovy.util.collections.GroovyCollectionsUtils
+import org.linkedin.util.lang.LangUtils
 
 /**
  * @author yan@pongasoft.com */
@@ -66,6 +67,94 @@ public class GluGroovyCollectionUtils extends GroovyCollectionsUtils
     subMap(map, newKeys)
   }
 
+  /**
+   * Deep copy of a structure made of maps and collections. Unlike {@link LangUtils#deepClone}
+   * (which uses serialization), only the containers are copied: the immutable values (strings,
+   * numbers, booleans...) are shared.
+   *
+   * @return the copy (<code>null</code> if <code>o</code> is <code>null</code>)
+   */
+  static def deepCopy(def o)
+  {
+    if(o == null ||
+       o instanceof String ||
+       o instanceof Number ||
+       o instanceof Boolean ||
+       o instanceof Character ||
+       o instanceof Enum ||
+       o instanceof GString)
+      return o
+
+    if(o instanceof Map)
+    {
+      Map res = o instanceof SortedMap ? new TreeMap((Comparator) o.comparator()) : new LinkedHashMap(o.size())
+      o.each { k, v -> res.put(k, deepCopy(v)) }
+      return res
+    }
+
+    if(o instanceof Collection)
+    {
+      Collection res
+
+      if(o instanceof SortedSet)
+        res = new TreeSet((Comparator) o.comparator())
+      else
+        if(o instanceof Set)
+          res = new LinkedHashSet(o.size())
+        else
+          res = new ArrayList(o.size())
+
+      o.each { res.add(deepCopy(it)) }
+      return res
+    }
+
+    if(o instanceof Serializable)
+      return LangUtils.deepClone(o)
+
+    return o
+  }
+
+  /**
+   * Same as {@link #deepCopy(Object)} except that the copied containers are read only (and the
+   * values which are not containers are shared).
+   *
+   * @return the read only copy (<code>null</code> if <code>o</code> is <code>null</code>)
+   */
+  static def deepFreeze(def o)
+  {
+    if(o instanceof Map)
+    {
+      Map res = o instanceof SortedMap ? new TreeMap((Comparator) o.comparator()) : new LinkedHashMap(o.size())
+      o.each { k, v -> res.put(k, deepFreeze(v)) }
+      return res instanceof SortedMap ?
+        Collections.unmodifiableSortedMap(res) :
+        Collections.unmodifiableMap(res)
+    }
+
+    if(o instanceof Collection)
+    {
+      if(o instanceof SortedSet)
+      {
+        SortedSet res = new TreeSet((Comparator) o.comparator())
+        o.each { res.add(deepFreeze(it)) }
+        return Collections.unmodifiableSortedSet(res)
+      }
+
+      if(o instanceof Set)
+      {
+        Set res = new LinkedHashSet(o.size())
+        o.each { res.add(deepFreeze(it)) }
+        return Collections.unmodifiableSet(res)
+      }
+
+      List res = new ArrayList(o.size())
+      o.each { res.add(deepFreeze(it)) }
+      return Collections.unmodifiableList(res)
+    }
+
+    return o
+  }
+
   /**
    * Paginates a collection: return how many elements you want (which also represent the number of
    * elements per "page" and an optional offset representing at which "page" to start
@@ -46,6 +46,12 @@ public class NoPluginsPluginService implements PluginService
     log.warn("Ignoring map plugin")
   }
 
+  @Override
+  boolean hasPluginMethod(Class targetService, String pluginMethod)
+  {
+    return false
+  }
+
   @Override
   def executeMethod(Class targetService, String pluginMethod, Map pluginArgs)
   {
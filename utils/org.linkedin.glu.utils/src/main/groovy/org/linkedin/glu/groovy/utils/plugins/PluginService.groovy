@@ -26,6 +26,12 @@ public interface PluginService
 
   void initializePlugin(Map plugin, Map initParameters)
 
+  /**
+   * @return <code>true</code> if a plugin defines the method (or its pre/post variant). Allows
+   *         the caller to skip building the plugin arguments entirely.
+   */
+  boolean hasPluginMethod(Class targetService, String pluginMethod)
+
   def executeMethod(Class targetService, String pluginMethod, Map pluginArgs)
 
   def executePrePostMethods(Class targetService,
@@ -1,5 +1,5 @@
 /*
- * Copyright (c) 2011 Yan Pujante
+ * Copyright (c) 2011-2013 Yan Pujante
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -20,6 +20,8 @@ import org.slf4j.Logger
 import org.slf4j.LoggerFactory
 import org.linkedin.util.reflect.ReflectUtils
 
+import java.util.concurrent.ConcurrentHashMap
+
 /**
  * @author yan@pongasoft.com */
 public class PluginServiceImpl implements PluginService
@@ -27,7 +29,23 @@ public class PluginServiceImpl implements PluginService
   public static final String MODULE =  PluginService.class.getName();
   public static final Logger log = LoggerFactory.getLogger(MODULE);
 
-  def plugin
+  private def _plugin
+
+  /**
+   * Dispatch table built when the plugin is set: (service, method) -> ordered closures
+   */
+  private volatile DispatchTable _dispatchTable = new DispatchTable(null)
+
+  def getPlugin()
+  {
+    return _plugin
+  }
+
+  void setPlugin(def plugin)
+  {
+    _plugin = plugin
+    _dispatchTable = new DispatchTable(plugin)
+  }
 
   @Override
   void initializePlugin(String pluginClassName, Map initParameters)
@@ -80,10 +98,29 @@ public class PluginServiceImpl implements PluginService
     executeMethod(PluginService, 'initialize', initParameters)
   }
 
+  @Override
+  boolean hasPluginMethod(Class targetService, String pluginMethod)
+  {
+    ServiceMethods methods = _dispatchTable.findServiceMethods(targetService)
+
+    if(methods == null)
+      return false
+
+    return methods.methods.containsKey(pluginMethod) ||
+           methods.preMethods.containsKey(pluginMethod) ||
+           methods.postMethods.containsKey(pluginMethod)
+  }
+
   @Override
   def executeMethod(Class targetService, String pluginMethod, Map pluginArgs)
   {
-    executePluginClosure("${targetService.simpleName}_${pluginMethod}", pluginArgs)
+    DispatchTable dispatchTable = _dispatchTable
+    ServiceMethods methods = dispatchTable.findServiceMethods(targetService)
+
+    if(methods == null)
+      return null
+
+    executeClosures(dispatchTable, methods.methods[pluginMethod], pluginArgs)
   }
 
   @Override
@@ -92,8 +129,17 @@ public class PluginServiceImpl implements PluginService
                             Map pluginArgs,
                             Closure serviceClosure)
   {
-    def pluginResult =
-      executePluginClosure("${targetService.simpleName}_pre_${pluginMethod}", pluginArgs)
+    DispatchTable dispatchTable = _dispatchTable
+    ServiceMethods methods = dispatchTable.findServiceMethods(targetService)
+
+    List<Closure> preClosures = methods?.preMethods?.get(pluginMethod)
+    List<Closure> postClosures = methods?.postMethods?.get(pluginMethod)
+
+    // no plugin attached to this method => simply execute the service closure
+    if(preClosures == null && postClosures == null)
+      return serviceClosure(pluginArgs)
+
+    def pluginResult = executeClosures(dispatchTable, preClosures, pluginArgs)
 
     try
     {
@@ -107,8 +153,7 @@ public class PluginServiceImpl implements PluginService
 
       args.remove('pluginResult')
       args.serviceResult = res
-      pluginResult = executePluginClosure("${targetService.simpleName}_post_${pluginMethod}",
-                                          args)
+      pluginResult = executeClosures(dispatchTable, postClosures, args)
       if(pluginResult != null)
         res = pluginResult
 
@@ -120,52 +165,133 @@ public class PluginServiceImpl implements PluginService
       if(pluginArgs)
         args.putAll(pluginArgs)
       args.serviceException = th
-      executePluginClosure("${targetService.simpleName}_post_${pluginMethod}",
-                           args)
+      executeClosures(dispatchTable, postClosures, args)
       throw th
     }
   }
 
-  private def executePluginClosure(def plugin, String closureName, Map pluginArgs)
+  /**
+   * Executes the closures in order. When the plugin is a collection, the result of a closure is
+   * provided to the next one (<code>pluginResult</code>).
+   */
+  private static def executeClosures(DispatchTable dispatchTable,
+                                     List<Closure> closures,
+                                     Map pluginArgs)
   {
+    if(closures == null)
+      return null
+
+    if(!dispatchTable.chained)
+      return closures[0](pluginArgs)
+
     def res = null
-    def closure = null
 
-    if(plugin instanceof Collection)
-    {
-      plugin.each {
-        if(res != null)
-          pluginArgs.pluginResult = res
+    closures.each { Closure closure ->
+      if(res != null)
+        pluginArgs.pluginResult = res
 
-        def pluginResult = executePluginClosure(it, closureName, pluginArgs)
+      def pluginResult = closure(pluginArgs)
 
-        if(pluginResult != null)
-          res = pluginResult
-      }
+      if(pluginResult != null)
+        res = pluginResult
+    }
 
-      pluginArgs.remove('pluginResult')
+    pluginArgs.remove('pluginResult')
 
-      return res
+    return res
+  }
+
+  /**
+   * The closures defined by a plugin, indexed by service simple name (the convention being
+   * <code>&lt;service simple name&gt;_[pre_|post_]&lt;method&gt;</code>)
+   */
+  private static class DispatchTable
+  {
+    final boolean chained
+    final Map<String, ServiceMethods> servicesByName = [:]
+    final Map<Class, ServiceMethods> servicesByClass = new ConcurrentHashMap<Class, ServiceMethods>()
+
+    DispatchTable(def plugin)
+    {
+      chained = plugin instanceof Collection
+      addPlugin(plugin)
     }
 
-    if(plugin instanceof Map)
+    ServiceMethods findServiceMethods(Class targetService)
     {
-      closure = plugin[closureName]
+      ServiceMethods methods = servicesByClass.get(targetService)
+
+      if(methods == null)
+      {
+        methods = servicesByName[targetService.simpleName] ?: ServiceMethods.NONE
+        servicesByClass.put(targetService, methods)
+      }
+
+      return methods.is(ServiceMethods.NONE) ? null : methods
     }
-    else
+
+    private void addPlugin(def plugin)
     {
-      if(plugin?.hasProperty(closureName))
-        closure = plugin."${closureName}"
+      if(plugin == null)
+        return
+
+      if(plugin instanceof Collection)
+      {
+        plugin.each { addPlugin(it) }
+        return
+      }
+
+      Map closures = plugin instanceof Map ? plugin : plugin.properties
+
+      closures.each { name, closure ->
+        if(closure instanceof Closure)
+          addClosure(name.toString(), closure)
+      }
     }
 
-    if(closure)
-      res = closure(pluginArgs)
+    private void addClosure(String closureName, Closure closure)
+    {
+      int idx = closureName.indexOf('_')
+      if(idx <= 0)
+        return
 
-    return res
+      String serviceName = closureName.substring(0, idx)
+      String methodName = closureName.substring(idx + 1)
+
+      ServiceMethods methods = servicesByName[serviceName]
+      if(methods == null)
+      {
+        methods = new ServiceMethods()
+        servicesByName[serviceName] = methods
+      }
+
+      addMethod(methods.methods, methodName, closure)
+      if(methodName.startsWith('pre_'))
+        addMethod(methods.preMethods, methodName.substring(4), closure)
+      if(methodName.startsWith('post_'))
+        addMethod(methods.postMethods, methodName.substring(5), closure)
+    }
+
+    private static void addMethod(Map<String, List<Closure>> methods,
+                                  String methodName,
+                                  Closure closure)
+    {
+      List<Closure> closures = methods[methodName]
+      if(closures == null)
+      {
+        closures = []
+        methods[methodName] = closures
+      }
+      closures << closure
+    }
   }
 
-  private def executePluginClosure(String closureName, Map pluginArgs)
+  private static class ServiceMethods
   {
-    executePluginClosure(plugin, closureName, pluginArgs)
+    static final ServiceMethods NONE = new ServiceMethods()
+
+    final Map<String, List<Closure>> methods = [:]
+    final Map<String, List<Closure>> preMethods = [:]
+    final Map<String, List<Closure>> postMethods = [:]
   }
-}
\ No newline at end of file
+}
@@ -35,6 +35,17 @@ public class EvictingWithLRUPolicyMap<K, V> extends LinkedHashMap<K, V>
     _maxElements = maxElements;
   }
 
+  /**
+   * @param accessOrder <code>true</code> for access order (reading an element makes it the most
+   *                    recently used), <code>false</code> for insertion order
+   *                    (see {@link LinkedHashMap#LinkedHashMap(int, float, boolean)})
+   */
+  public EvictingWithLRUPolicyMap(int maxElements, boolean accessOrder)
+  {
+    super(16, 0.75f, accessOrder);
+    _maxElements = maxElements;
+  }
+
   @Override
   protected boolean removeEldestEntry(Map.Entry<K, V> kvEntry)
   {
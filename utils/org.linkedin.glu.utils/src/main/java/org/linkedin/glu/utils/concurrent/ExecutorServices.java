@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2013 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.linkedin.glu.utils.concurrent;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Factory methods for the executor services used to execute plans.
+ *
+ * @author yan@pongasoft.com
+ */
+public class ExecutorServices
+{
+  public static final String MODULE = ExecutorServices.class.getName();
+  public static final Logger log = LoggerFactory.getLogger(MODULE);
+
+  private static final Method NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = findVirtualThreadFactoryMethod();
+
+  /**
+   * @return <code>true</code> if the jvm supports virtual threads (java 21+)
+   */
+  public static boolean isVirtualThreadSupported()
+  {
+    return NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null;
+  }
+
+  /**
+   * Creates an executor service which starts a new virtual thread for each task: blocking a
+   * virtual thread (on I/O for example) does not block a platform thread so a large number of
+   * tasks can run at the same time on a few carrier threads. When the jvm does not support
+   * virtual threads, a cached thread pool is returned instead.
+   */
+  public static ExecutorService newVirtualThreadPerTaskExecutor()
+  {
+    if(NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null)
+    {
+      try
+      {
+        return (ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invoke(null);
+      }
+      catch(Exception e)
+      {
+        log.warn("could not create virtual thread executor (ignored)", e);
+      }
+    }
+    else
+    {
+      log.warn("virtual threads are not supported by this jvm: using a cached thread pool instead");
+    }
+
+    return Executors.newCachedThreadPool();
+  }
+
+  private static Method findVirtualThreadFactoryMethod()
+  {
+    try
+    {
+      return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+    }
+    catch(NoSuchMethodException e)
+    {
+      return null;
+    }
+  }
+
+  /**
+   * Constructor
+   */
+  private ExecutorServices()
+  {
+  }
+}
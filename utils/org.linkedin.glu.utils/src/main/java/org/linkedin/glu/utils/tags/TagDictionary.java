@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2013 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package org.linkedin.glu.utils.tags;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Interns tags into (small) ints so that a set of tags can be represented as a bitmap. Tags are
+ * never removed from the dictionary: there is no global dictionary, a dictionary is scoped to its
+ * owner (ex: a system model) and is garbage collected with it (and the taggeables using it).
+ *
+ * This class is thread safe.
+ *
+ * @author yan@pongasoft.com
+ */
+public class TagDictionary
+{
+  private final ConcurrentMap<String, Integer> _ids = new ConcurrentHashMap<String, Integer>();
+
+  // id -> tag (copied when it grows)
+  private volatile String[] _tags = new String[16];
+  private int _size = 0;
+
+  /**
+   * Constructor
+   */
+  public TagDictionary()
+  {
+  }
+
+  /**
+   * @return the id of the tag (adding it to the dictionary if it is not present yet)
+   */
+  public int intern(String tag)
+  {
+    Integer id = _ids.get(tag);
+    if(id != null)
+      return id;
+
+    if(tag == null)
+      throw new NullPointerException("null tag");
+
+    synchronized(this)
+    {
+      id = _ids.get(tag);
+      if(id != null)
+        return id;
+
+      String[] tags = _tags;
+      if(_size == tags.length)
+      {
+        tags = Arrays.copyOf(tags, _size * 2);
+        tags[_size] = tag;
+        _tags = tags;
+      }
+      else
+        tags[_size] = tag;
+
+      id = _size++;
+      _ids.put(tag, id);
+      return id;
+    }
+  }
+
+  /**
+   * @return the id of the tag or <code>-1</code> if the tag is not in the dictionary
+   */
+  public int findId(String tag)
+  {
+    if(tag == null)
+      return -1;
+
+    Integer id = _ids.get(tag);
+    return id == null ? -1 : id;
+  }
+
+  /**
+   * @return the tag associated to the id
+   */
+  public String getTag(int id)
+  {
+    return _tags[id];
+  }
+
+  /**
+   * @return the ids of all the tags (adding them to the dictionary if necessary)
+   */
+  public BitSet intern(Collection<String> tags)
+  {
+    BitSet res = new BitSet();
+    for(String tag : tags)
+      res.set(intern(tag));
+    return res;
+  }
+
+  /**
+   * @return the ids of all the tags or <code>null</code> if at least one of them is not in
+   *         the dictionary
+   */
+  public BitSet findIds(Collection<String> tags)
+  {
+    BitSet res = new BitSet();
+    for(String tag : tags)
+    {
+      int id = findId(tag);
+      if(id == -1)
+        return null;
+      res.set(id);
+    }
+    return res;
+  }
+
+  /**
+   * @return the ids of the tags which are in the dictionary (ignore the others)
+   */
+  public BitSet findKnownIds(Collection<String> tags)
+  {
+    BitSet res = new BitSet();
+    for(String tag : tags)
+    {
+      int id = findId(tag);
+      if(id != -1)
+        res.set(id);
+    }
+    return res;
+  }
+
+  public int size()
+  {
+    return _ids.size();
+  }
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright (c) 2013 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package org.linkedin.glu.utils.tags;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Compact implementation of {@link Taggeable}: the tags are interned in a {@link TagDictionary}
+ * (provided by the owner of the taggeables, ex: a system model) and stored in a bitmap, so that
+ * checking tags (all/any/common/missing) is a bitwise operation. {@link #getTags()} returns a
+ * (sorted) copy.
+ *
+ * Note that the ids of a dictionary are small and dense (the number of distinct tags of the owner)
+ * so a plain {@link BitSet} (a few longs) is already as compact as a compressed bitmap would be.
+ *
+ * @author yan@pongasoft.com
+ */
+public class TaggeableBitSetImpl implements Taggeable
+{
+  private final TagDictionary _dictionary;
+
+  /**
+   * YP implementation note: for fast access, this bitmap will never be synchronized as
+   * it will never be modified! It will be replaced when it changes, hence the volatile keyword
+   */
+  private volatile BitSet _tags;
+
+  /**
+   * Constructor
+   */
+  public TaggeableBitSetImpl(TagDictionary dictionary)
+  {
+    _dictionary = dictionary;
+    _tags = new BitSet();
+  }
+
+  /**
+   * Constructor
+   */
+  public TaggeableBitSetImpl(TagDictionary dictionary, Collection<String> tags)
+  {
+    _dictionary = dictionary;
+    _tags = dictionary.intern(tags);
+  }
+
+  public TagDictionary getDictionary()
+  {
+    return _dictionary;
+  }
+
+  @Override
+  public int getTagsCount()
+  {
+    return _tags.cardinality();
+  }
+
+  @Override
+  public boolean hasTags()
+  {
+    return !_tags.isEmpty();
+  }
+
+  @Override
+  public Set<String> getTags()
+  {
+    return toTags(_tags);
+  }
+
+  @Override
+  public boolean hasTag(String tag)
+  {
+    int id = _dictionary.findId(tag);
+    return id != -1 && _tags.get(id);
+  }
+
+  @Override
+  public boolean hasAllTags(Collection<String> tags)
+  {
+    BitSet ids = _dictionary.findIds(tags);
+    if(ids == null)
+      return false;
+    ids.andNot(_tags);
+    return ids.isEmpty();
+  }
+
+  @Override
+  public boolean hasAnyTag(Collection<String> tags)
+  {
+    return _dictionary.findKnownIds(tags).intersects(_tags);
+  }
+
+  @Override
+  public Set<String> getCommonTags(Collection<String> tags)
+  {
+    BitSet ids = _dictionary.findKnownIds(tags);
+    ids.and(_tags);
+    return toTags(ids);
+  }
+
+  @Override
+  public Set<String> getMissingTags(Collection<String> tags)
+  {
+    BitSet localTags = _tags;
+
+    Set<String> res = new TreeSet<String>();
+
+    for(String tag : tags)
+    {
+      int id = _dictionary.findId(tag);
+      if(id == -1 || !localTags.get(id))
+        res.add(tag);
+    }
+
+    return res;
+  }
+
+  @Override
+  public boolean addTag(String tag)
+  {
+    int id = _dictionary.intern(tag);
+
+    synchronized(this)
+    {
+      if(_tags.get(id))
+        return false;
+
+      BitSet newTags = (BitSet) _tags.clone();
+      newTags.set(id);
+      _tags = newTags;
+
+      return true;
+    }
+  }
+
+  @Override
+  public Set<String> addTags(Collection<String> tags)
+  {
+    BitSet ids = _dictionary.intern(tags);
+
+    synchronized(this)
+    {
+      BitSet newTags = (BitSet) _tags.clone();
+      newTags.or(ids);
+
+      // already present
+      ids.and(_tags);
+
+      _tags = newTags;
+    }
+
+    return toTags(ids);
+  }
+
+  @Override
+  public boolean removeTag(String tag)
+  {
+    int id = _dictionary.findId(tag);
+    if(id == -1)
+      return false;
+
+    synchronized(this)
+    {
+      if(!_tags.get(id))
+        return false;
+
+      BitSet newTags = (BitSet) _tags.clone();
+      newTags.clear(id);
+      _tags = newTags;
+
+      return true;
+    }
+  }
+
+  @Override
+  public Set<String> removeTags(Collection<String> tags)
+  {
+    Set<String> res = new TreeSet<String>();
+
+    synchronized(this)
+    {
+      BitSet newTags = (BitSet) _tags.clone();
+
+      for(String tag : tags)
+      {
+        int id = _dictionary.findId(tag);
+        if(id == -1 || !newTags.get(id))
+          res.add(tag);
+        else
+          newTags.clear(id);
+      }
+
+      _tags = newTags;
+    }
+
+    return res;
+  }
+
+  @Override
+  public void setTags(Collection<String> tags)
+  {
+    BitSet ids = _dictionary.intern(tags);
+
+    synchronized(this)
+    {
+      _tags = ids;
+    }
+  }
+
+  private Set<String> toTags(BitSet ids)
+  {
+    Set<String> res = new TreeSet<String>();
+    for(int i = ids.nextSetBit(0); i >= 0; i = ids.nextSetBit(i + 1))
+      res.add(_dictionary.getTag(i));
+    return res;
+  }
+
+  /**
+   * Same semantic as {@link TaggeableSetImpl#equals(Object)}: 2 taggeables are equal if they
+   * have the same tags.
+   */
+  @Override
+  public boolean equals(Object o)
+  {
+    if(this == o) return true;
+
+    if(o instanceof TaggeableBitSetImpl)
+    {
+      TaggeableBitSetImpl taggeable = (TaggeableBitSetImpl) o;
+      if(_dictionary == taggeable._dictionary)
+        return _tags.equals(taggeable._tags);
+      return getTags().equals(taggeable.getTags());
+    }
+
+    if(o instanceof TaggeableSetImpl)
+      return getTags().equals(((TaggeableSetImpl) o).getTags());
+
+    return false;
+  }
+
+  /**
+   * Same as <code>getTags().hashCode()</code> (without creating the set)
+   */
+  @Override
+  public int hashCode()
+  {
+    BitSet tags = _tags;
+    int res = 0;
+    for(int i = tags.nextSetBit(0); i >= 0; i = tags.nextSetBit(i + 1))
+      res += _dictionary.getTag(i).hashCode();
+    return res;
+  }
+}
@@ -212,6 +212,7 @@ public abstract class TaggeableSetImpl implements Taggeable
   public boolean equals(Object o)
   {
     if(this == o) return true;
+    if(o instanceof TaggeableBitSetImpl) return o.equals(this);
     if(!(o instanceof TaggeableSetImpl)) return false;
 
     TaggeableSetImpl taggeable = (TaggeableSetImpl) o;
@@ -16,7 +16,9 @@
 
 package test.utils.tags
 
+import org.linkedin.glu.utils.tags.TagDictionary
 import org.linkedin.glu.utils.tags.Taggeable
+import org.linkedin.glu.utils.tags.TaggeableBitSetImpl
 import org.linkedin.glu.utils.tags.TaggeableHashSetImpl
 import org.linkedin.glu.utils.tags.TagsSerializer
 import org.linkedin.glu.utils.tags.ReadOnlyTaggeable
@@ -28,7 +30,32 @@ public class TestTaggeable extends GroovyTestCase
 {
   public void testTaggeableImpl()
   {
-    Taggeable taggeable = new TaggeableHashSetImpl()
+    checkTaggeable(new TaggeableHashSetImpl())
+  }
+
+  public void testTaggeableBitSetImpl()
+  {
+    checkTaggeable(new TaggeableBitSetImpl(new TagDictionary()))
+
+    TagDictionary dictionary = new TagDictionary()
+
+    // equality is based on the tags (whatever the implementation or the dictionary)
+    assertEquals(new TaggeableBitSetImpl(dictionary, ['fruit', 'rock']), new TaggeableTreeSetImpl(['rock', 'fruit']))
+    assertEquals(new TaggeableTreeSetImpl(['rock', 'fruit']), new TaggeableBitSetImpl(dictionary, ['fruit', 'rock']))
+    assertEquals(new TaggeableTreeSetImpl(['rock', 'fruit']).hashCode(),
+                 new TaggeableBitSetImpl(dictionary, ['fruit', 'rock']).hashCode())
+    assertEquals(new TaggeableBitSetImpl(new TagDictionary(), ['fruit', 'rock']),
+                 new TaggeableBitSetImpl(dictionary, ['rock', 'fruit']))
+    assertFalse(new TaggeableBitSetImpl(dictionary, ['fruit']).equals(new TaggeableBitSetImpl(dictionary, ['rock'])))
+
+    // tags are returned sorted
+    assertEquals(['fruit', 'rock', 'vegetable'],
+                 new TaggeableBitSetImpl(dictionary, ['vegetable', 'fruit', 'rock']).tags as List)
+    assertEquals(3, dictionary.size())
+  }
+
+  private void checkTaggeable(Taggeable taggeable)
+  {
 
     // empty
     assertFalse(taggeable.hasTags())